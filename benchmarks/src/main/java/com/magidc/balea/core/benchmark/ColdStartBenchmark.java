@@ -0,0 +1,126 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magidc.balea.core.container.DataSourceContainerManager;
+
+/**
+ * Cold start latency of {@link DataSourceContainerManager#getDataSource(Object)}
+ * against a simulated Docker daemon: creating a new container, resuming a
+ * paused one and starting a stopped one
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColdStartBenchmark {
+	@State(Scope.Benchmark)
+	public static class PausedContainer {
+		@Setup(Level.Invocation)
+		public void setUp(ColdStartBenchmark coldStartBenchmark) {
+			coldStartBenchmark.dataSourceContainerManager.hibernateDataSourceContainer(DATA_SOURCE_ID);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class RemovedContainer {
+		@Setup(Level.Invocation)
+		public void setUp(ColdStartBenchmark coldStartBenchmark) {
+			coldStartBenchmark.dataSourceContainerManager.stopAndRemoveDataSourceContainer(DATA_SOURCE_ID);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class StoppedContainer {
+		@Setup(Level.Invocation)
+		public void setUp(ColdStartBenchmark coldStartBenchmark) {
+			coldStartBenchmark.dataSourceContainerManager.stopDataSourceContainer(DATA_SOURCE_ID);
+		}
+	}
+
+	private static final String DATA_SOURCE_ID = "tenant";
+
+	/**
+	 * Latency of every Docker API call
+	 */
+	@Param({ "0", "10" })
+	private long dockerLatencyMillis;
+
+	/**
+	 * Time the database takes to accept connections once its container is running
+	 */
+	@Param({ "0", "50" })
+	private long readinessMillis;
+
+	private DataSourceContainerManager dataSourceContainerManager;
+
+	@Benchmark
+	public DataSource createContainer(RemovedContainer removedContainer) throws Exception {
+		return dataSourceContainerManager.getDataSource(DATA_SOURCE_ID);
+	}
+
+	@Benchmark
+	public DataSource resumePausedContainer(PausedContainer pausedContainer) throws Exception {
+		return dataSourceContainerManager.getDataSource(DATA_SOURCE_ID);
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		FakeDockerClient fakeDockerClient = new FakeDockerClient(5432);
+		fakeDockerClient.setDefaultLatencyMillis(dockerLatencyMillis);
+		FakeDataSourceConfigurer fakeDataSourceConfigurer = new FakeDataSourceConfigurer();
+		fakeDataSourceConfigurer.setReadinessMillis(readinessMillis);
+		dataSourceContainerManager = fakeDockerClient.createDataSourceContainerManager(fakeDataSourceConfigurer);
+		dataSourceContainerManager.getDataSource(DATA_SOURCE_ID);
+	}
+
+	@Benchmark
+	public DataSource startStoppedContainer(StoppedContainer stoppedContainer) throws Exception {
+		return dataSourceContainerManager.getDataSource(DATA_SOURCE_ID);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		dataSourceContainerManager.closeDockerClient();
+	}
+}
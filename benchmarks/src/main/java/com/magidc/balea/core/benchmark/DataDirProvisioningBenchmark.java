@@ -0,0 +1,165 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magidc.balea.core.container.volume.DataDirTemplateCloner;
+import com.magidc.balea.core.container.volume.DataDirTemplateParameters;
+
+/**
+ * Provisioning time of the data directory of a new data source, cloning a
+ * template sized as a freshly initialized database cluster versus running the
+ * database initialization command. Initialization is only measured on request
+ * (<code>-p provisioning=template,init</code>) as it needs the database
+ * binaries installed
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataDirProvisioningBenchmark {
+	/**
+	 * "template" clones the template, "init" runs the initialization command
+	 */
+	@Param({ "template" })
+	private String provisioning;
+
+	@Param({ "false", "true" })
+	private boolean reflinkEnabled;
+
+	/**
+	 * Command initializing an empty data directory
+	 */
+	@Param({ "initdb -D {dataDir} -U postgres -A trust" })
+	private String initCommand;
+
+	@Param({ "1000" })
+	private int templateFileCount;
+
+	@Param({ "40" })
+	private int templateMegabytes;
+
+	private Path workDir;
+	private Path templateDataDir;
+	private Path dataDir;
+	private DataDirTemplateCloner dataDirTemplateCloner;
+	private long dataDirSequence;
+
+	/**
+	 * Template files are spread over a few directories, with the block and WAL
+	 * segment sizes of a database cluster
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @throws IOException
+	 */
+	private void createTemplate() throws IOException {
+		Random random = new Random(42);
+		List<Path> dirs = new ArrayList<>();
+		for (String dir : Arrays.asList("base/1", "base/12139", "base/12144", "global", "pg_xlog", "pg_clog"))
+			dirs.add(Files.createDirectories(templateDataDir.resolve(dir)));
+		long walSegmentBytes = Math.min(16L << 20, (long) templateMegabytes << 19);
+		byte[] walSegment = new byte[(int) walSegmentBytes];
+		random.nextBytes(walSegment);
+		Files.write(templateDataDir.resolve("pg_xlog/000000010000000000000001"), walSegment);
+		long fileBytes = Math.max(8192, (((long) templateMegabytes << 20) - walSegmentBytes) / templateFileCount / 8192 * 8192);
+		byte[] file = new byte[(int) fileBytes];
+		for (int i = 0; i < templateFileCount; i++) {
+			random.nextBytes(file);
+			Files.write(dirs.get(i % dirs.size()).resolve(String.valueOf(10000 + i)), file);
+		}
+		Files.write(templateDataDir.resolve("PG_VERSION"), "9.4\n".getBytes());
+	}
+
+	private void delete(Path dir) throws IOException {
+		if (!Files.exists(dir))
+			return;
+		try (Stream<Path> paths = Files.walk(dir)) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+				Files.delete(path);
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void deleteDataDir() throws IOException {
+		delete(dataDir);
+	}
+
+	@Setup(Level.Invocation)
+	public void nextDataDir() {
+		dataDir = workDir.resolve(String.format("tenant%d", dataDirSequence++));
+	}
+
+	@Benchmark
+	public boolean provision() throws Exception {
+		if (provisioning.equals("template"))
+			return dataDirTemplateCloner.clone(templateDataDir.toString(), dataDir.toString());
+		List<String> command = Arrays.stream(initCommand.split(" "))
+				.map(argument -> argument.replace("{dataDir}", dataDir.toString()))
+				.collect(Collectors.toList());
+		return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.to(workDir.resolve("init.log").toFile()))
+				.start()
+				.waitFor() == 0;
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		workDir = Files.createTempDirectory("balea-provisioning");
+		templateDataDir = workDir.resolve("template");
+		createTemplate();
+		DataDirTemplateParameters dataDirTemplateParameters = new DataDirTemplateParameters();
+		dataDirTemplateParameters.setReflinkEnabled(reflinkEnabled);
+		dataDirTemplateCloner = new DataDirTemplateCloner(dataDirTemplateParameters);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		dataDirTemplateCloner.close();
+		delete(workDir);
+	}
+}
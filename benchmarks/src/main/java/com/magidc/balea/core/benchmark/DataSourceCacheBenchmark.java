@@ -0,0 +1,82 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.benchmark;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magidc.balea.core.proxy.cache.DataSourceCacheManager;
+import com.magidc.balea.core.proxy.cache.config.DataSourceCacheParameters;
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+
+/**
+ * Data source cache hit and miss paths under contention. Misses obtain in
+ * memory data sources instantly, so they measure capacity reservation and
+ * eviction only
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class DataSourceCacheBenchmark {
+	@Param({ "16", "1024" })
+	private int activeDataSources;
+
+	private DataSourceCacheManager dataSourceCacheManager;
+
+	@Benchmark
+	public ManagedDataSource hit() throws SQLException {
+		return dataSourceCacheManager.acquireManagedDataSource((long) ThreadLocalRandom.current().nextInt(activeDataSources));
+	}
+
+	@Benchmark
+	public ManagedDataSource miss() throws SQLException {
+		// Ids drawn from four times the cache capacity, so most requests miss
+		return dataSourceCacheManager.acquireManagedDataSource((long) ThreadLocalRandom.current().nextInt(4 * activeDataSources));
+	}
+
+	@Setup
+	public void setUp() throws SQLException {
+		DataSourceCacheParameters dataSourceCacheParameters = new DataSourceCacheParameters(3600000L);
+		dataSourceCacheParameters.setMaximumActiveDataSources(activeDataSources);
+		dataSourceCacheManager = new DataSourceCacheManager(new StubDataSourceCacheManagerConfigurer(), dataSourceCacheParameters);
+		for (long id = 0; id < activeDataSources; id++)
+			dataSourceCacheManager.acquireManagedDataSource(id);
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import com.magidc.balea.core.proxy.cache.DataSourceCacheManager;
+import com.magidc.balea.core.proxy.cache.config.DataSourceCacheParameters;
+import com.magidc.balea.core.proxy.cache.eviction.AdaptiveEvictionPolicy;
+import com.magidc.balea.core.proxy.cache.eviction.EvictionPolicy;
+import com.magidc.balea.core.proxy.cache.eviction.LfuEvictionPolicy;
+import com.magidc.balea.core.proxy.cache.eviction.LruEvictionPolicy;
+
+/**
+ * Replays a synthetic multi-tenant access trace against a bounded data source
+ * cache with each eviction policy and reports hit ratio and cold start time.
+ * The trace follows a skewed popularity that rotates periodically (daily
+ * pattern) with scans over rarely used tenants (reporting jobs). One tenant out
+ * of four is expensive to start
+ * 
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.magidc.balea.core.benchmark.EvictionPolicySimulation
+ * </pre>
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class EvictionPolicySimulation {
+	private static final int TENANTS = 400;
+	private static final int CAPACITY = 40;
+	private static final int REQUESTS = 20000;
+	private static final int ROTATION_PERIOD = 5000;
+	private static final int SCAN_PERIOD = 1000;
+	private static final int SCAN_LENGTH = 40;
+	private static final double ZIPF_EXPONENT = 0.9;
+	private static final long CHEAP_COLD_START_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+	private static final long EXPENSIVE_COLD_START_NANOS = TimeUnit.MILLISECONDS.toNanos(4);
+
+	private static class SimulatedColdStartConfigurer extends StubDataSourceCacheManagerConfigurer {
+		private final AtomicLong coldStarts = new AtomicLong();
+		private final AtomicLong coldStartNanos = new AtomicLong();
+
+		@Override
+		public DataSource obtainDataSource(Object dataSourceId) throws IOException {
+			long cost = (Integer) dataSourceId % 4 == 0 ? EXPENSIVE_COLD_START_NANOS : CHEAP_COLD_START_NANOS;
+			LockSupport.parkNanos(cost);
+			coldStarts.incrementAndGet();
+			coldStartNanos.addAndGet(cost);
+			return super.obtainDataSource(dataSourceId);
+		}
+	}
+
+	private static int[] createTrace() {
+		Random random = new Random(42);
+		double[] cumulativeProbabilities = new double[TENANTS];
+		double total = 0;
+		for (int rank = 0; rank < TENANTS; rank++) {
+			total += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+			cumulativeProbabilities[rank] = total;
+		}
+
+		List<Integer> popularity = new ArrayList<>();
+		for (int tenant = 0; tenant < TENANTS; tenant++)
+			popularity.add(tenant);
+		Collections.shuffle(popularity, random);
+
+		int[] trace = new int[REQUESTS];
+		int i = 0;
+		while (i < REQUESTS) {
+			if (i > 0 && i % ROTATION_PERIOD == 0)
+				Collections.rotate(popularity, TENANTS / 8);
+			if (i > 0 && i % SCAN_PERIOD == 0) {
+				int scanStart = TENANTS / 2 + random.nextInt(TENANTS / 2 - SCAN_LENGTH);
+				for (int j = 0; j < SCAN_LENGTH && i < REQUESTS; j++)
+					trace[i++] = popularity.get(scanStart + j);
+				continue;
+			}
+			double sample = random.nextDouble() * total;
+			int rank = 0;
+			while (cumulativeProbabilities[rank] < sample)
+				rank++;
+			trace[i++] = popularity.get(rank);
+		}
+		return trace;
+	}
+
+	public static void main(String[] args) {
+		int[] trace = createTrace();
+		System.out.println(String.format("%d requests, %d tenants, capacity %d", REQUESTS, TENANTS, CAPACITY));
+		System.out.println(String.format("%-10s %10s %12s %16s", "Policy", "Hit ratio", "Cold starts", "Cold start (ms)"));
+		simulate("LRU", LruEvictionPolicy::new, trace);
+		simulate("LFU", LfuEvictionPolicy::new, trace);
+		simulate("Adaptive", AdaptiveEvictionPolicy::new, trace);
+	}
+
+	private static void simulate(String name, Supplier<EvictionPolicy> evictionPolicySupplier, int[] trace) {
+		SimulatedColdStartConfigurer configurer = new SimulatedColdStartConfigurer();
+		DataSourceCacheParameters dataSourceCacheParameters = new DataSourceCacheParameters(TimeUnit.HOURS.toMillis(1));
+		dataSourceCacheParameters.setMaximumActiveDataSources(CAPACITY);
+		dataSourceCacheParameters.setEvictionPolicy(evictionPolicySupplier.get());
+		DataSourceCacheManager dataSourceCacheManager = new DataSourceCacheManager(configurer, dataSourceCacheParameters);
+		for (int tenant : trace)
+			dataSourceCacheManager.getManagedDataSource(tenant);
+		System.out.println(String.format("%-10s %10.3f %12d %16d", name, dataSourceCacheManager.getHitRatio(), configurer.coldStarts.get(),
+				TimeUnit.NANOSECONDS.toMillis(configurer.coldStartNanos.get())));
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import com.magidc.balea.core.core.config.DataSourceConfigurer;
+
+/**
+ * Data source configurer of simulated containers. Data sources become valid a
+ * configurable time after being created, simulating database start up
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class FakeDataSourceConfigurer implements DataSourceConfigurer {
+	private static final class StartingDataSource extends StubDataSource {
+		private final long readyNanos;
+
+		private StartingDataSource(long readyNanos) {
+			this.readyNanos = readyNanos;
+		}
+	}
+
+	private volatile long readinessMillis;
+	private volatile Object dataSourceId;
+
+	@Override
+	public DataSource createDataSource(String host, int port) {
+		return new StartingDataSource(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readinessMillis));
+	}
+
+	@Override
+	public String getDataDirPath(Object dataSourceId, String dataSourceContainerDataDirPath) {
+		return String.format("/tmp/balea/%s", dataSourceId);
+	}
+
+	@Override
+	public Object getDataSourceId() {
+		return dataSourceId;
+	}
+
+	public void setDataSourceId(Object dataSourceId) {
+		this.dataSourceId = dataSourceId;
+	}
+
+	/**
+	 * Time since data source creation until it accepts connections
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readinessMillis
+	 */
+	public void setReadinessMillis(long readinessMillis) {
+		this.readinessMillis = readinessMillis;
+	}
+
+	@Override
+	public boolean validateDataSource(DataSource dataSource) {
+		return !(dataSource instanceof StartingDataSource) || System.nanoTime() - ((StartingDataSource) dataSource).readyNanos >= 0;
+	}
+}
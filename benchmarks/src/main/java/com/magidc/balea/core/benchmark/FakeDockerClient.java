@@ -0,0 +1,347 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.benchmark;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.CreateContainerResponse;
+import com.github.dockerjava.api.exception.DockerClientException;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.Image;
+import com.github.dockerjava.api.model.Info;
+import com.github.dockerjava.api.model.Ports.Binding;
+import com.github.dockerjava.api.model.PullResponseItem;
+import com.github.dockerjava.api.model.Statistics;
+import com.magidc.balea.core.container.DataSourceContainerManager;
+import com.magidc.balea.core.container.config.DataSourceContainerParameters;
+import com.magidc.balea.core.container.runtime.ContainerRuntime;
+import com.magidc.balea.core.container.runtime.docker.DockerContainerRuntime;
+import com.magidc.balea.core.core.config.DataSourceConfigurer;
+
+/**
+ * In process Docker daemon simulation. Supports the container lifecycle
+ * commands used by the data source container manager, each one delayed by a
+ * configurable latency. Commands are dynamic proxies of docker-java command
+ * interfaces, so no Docker daemon nor network is needed. Several instances
+ * simulate several Docker hosts, any of them can be made unreachable
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class FakeDockerClient implements InvocationHandler {
+	private static final class FakeContainer {
+		private final String id;
+		private final String name;
+		private final Integer hostPort;
+		private volatile String state = "created";
+
+		private FakeContainer(String id, String name, Integer hostPort) {
+			this.id = id;
+			this.name = name;
+			this.hostPort = hostPort;
+		}
+	}
+
+	/**
+	 * Shared by every simulated host, as Docker container ids are unique
+	 */
+	private static final AtomicLong containerSequence = new AtomicLong();
+
+	private final int dataSourcePort;
+	private final ConcurrentMap<String, FakeContainer> containers = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Long> commandLatenciesMillis = new ConcurrentHashMap<>();
+	private final Set<String> images = ConcurrentHashMap.newKeySet();
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private volatile long defaultLatencyMillis;
+	private volatile long memTotalBytes = 17179869184L;
+	private volatile long containerMemoryUsageBytes = 268435456L;
+	private volatile boolean unreachable;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourcePort
+	 *            Port exposed by data source containers
+	 */
+	public FakeDockerClient(int dataSourcePort) {
+		this.dataSourcePort = dataSourcePort;
+		this.images.add("postgres:9.4");
+	}
+
+	private Object createCommand(String commandName, Class<?> commandType, Object[] commandArgs) {
+		Map<String, Object> parameters = new HashMap<>();
+		return Proxy.newProxyInstance(FakeDockerClient.class.getClassLoader(), new Class<?>[] { commandType }, (proxy, method, args) -> {
+			if (method.getDeclaringClass() == Object.class)
+				return method.getName().equals("equals") ? proxy == args[0] : method.getName().equals("hashCode") ? System.identityHashCode(proxy) : commandName;
+			if (method.getName().equals("exec"))
+				return execute(commandName, commandArgs, parameters, args);
+			if (method.getName().equals("close"))
+				return null;
+			if (method.getReturnType().isInstance(proxy)) {
+				parameters.put(method.getName(), args == null || args.length == 0 ? null : args[0]);
+				return proxy;
+			}
+			throw new UnsupportedOperationException(String.format("%s.%s", commandName, method.getName()));
+		});
+	}
+
+	/**
+	 * Creates a container manager on top of this simulation. Docker proxy mode is
+	 * used so data source hosts are not inspected, and TCP probing is disabled as
+	 * nothing listens on the simulated ports
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceConfigurer
+	 * @return
+	 */
+	public DataSourceContainerManager createDataSourceContainerManager(DataSourceConfigurer dataSourceConfigurer) {
+		return createDataSourceContainerManager(dataSourceConfigurer, new DockerContainerRuntime(createDockerClient(), "localhost"));
+	}
+
+	/**
+	 * Creates a container manager with the same parameters on top of any container
+	 * runtime, i.e. one placing containers on several simulated hosts
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceConfigurer
+	 * @param containerRuntime
+	 * @return
+	 */
+	public DataSourceContainerManager createDataSourceContainerManager(DataSourceConfigurer dataSourceConfigurer, ContainerRuntime containerRuntime) {
+		DataSourceContainerParameters dataSourceContainerParameters = new DataSourceContainerParameters();
+		dataSourceContainerParameters.setImageName("postgres:9.4");
+		dataSourceContainerParameters.setDataVolumes(new String[] { "/var/lib/postgresql/data" });
+		dataSourceContainerParameters.setPort(dataSourcePort);
+		dataSourceContainerParameters.useDockerProxy(20000, 29999);
+		dataSourceContainerParameters.setReadinessTcpProbeEnabled(false);
+		dataSourceContainerParameters.setReadinessInitialPollIntervalMillis(1);
+		return new DataSourceContainerManager(dataSourceContainerParameters, dataSourceConfigurer, containerRuntime);
+	}
+
+	/**
+	 * Creates a Docker client backed by this simulation
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public DockerClient createDockerClient() {
+		return (DockerClient) Proxy.newProxyInstance(FakeDockerClient.class.getClassLoader(), new Class<?>[] { DockerClient.class }, this);
+	}
+
+	private Object execute(String commandName, Object[] commandArgs, Map<String, Object> parameters, Object[] execArgs) throws IOException {
+		if (unreachable)
+			throw new DockerClientException(String.format("%s: Connection refused", commandName));
+		switch (commandName) {
+		case "eventsCmd":
+			// No events are emitted, state changes are registered by the container
+			// manager itself
+			return execArgs[0];
+		case "infoCmd":
+			simulateLatency(commandName);
+			return objectMapper.readValue(String.format("{\"MemTotal\":%d}", memTotalBytes), Info.class);
+		case "statsCmd":
+			simulateLatency(commandName);
+			findContainer((String) commandArgs[0]);
+			@SuppressWarnings("unchecked")
+			ResultCallback<Statistics> statsCallback = (ResultCallback<Statistics>) execArgs[0];
+			statsCallback.onNext(objectMapper.readValue(String.format("{\"memory_stats\":{\"usage\":%d}}", containerMemoryUsageBytes), Statistics.class));
+			return statsCallback;
+		case "listImagesCmd":
+			simulateLatency(commandName);
+			return images.contains(parameters.get("withImageNameFilter")) ? Collections.singletonList(new Image()) : Collections.emptyList();
+		case "pullImageCmd":
+			simulateLatency(commandName);
+			images.add((String) commandArgs[0]);
+			@SuppressWarnings("unchecked")
+			ResultCallback<PullResponseItem> pullCallback = (ResultCallback<PullResponseItem>) execArgs[0];
+			pullCallback.onNext(objectMapper.readValue(String.format("{\"status\":\"Status: Downloaded newer image for %s\"}", commandArgs[0]),
+					PullResponseItem.class));
+			pullCallback.onComplete();
+			return pullCallback;
+		case "listContainersCmd":
+			simulateLatency(commandName);
+			return listContainers();
+		case "createContainerCmd":
+			simulateLatency(commandName);
+			String id = String.format("%064x", containerSequence.incrementAndGet());
+			containers.put(id, new FakeContainer(id, (String) parameters.get("withName"), findHostPort((HostConfig) parameters.get("withHostConfig"))));
+			CreateContainerResponse createContainerResponse = new CreateContainerResponse();
+			createContainerResponse.setId(id);
+			return createContainerResponse;
+		case "startContainerCmd":
+		case "unpauseContainerCmd":
+			simulateLatency(commandName);
+			findContainer((String) commandArgs[0]).state = "running";
+			return null;
+		case "pauseContainerCmd":
+			simulateLatency(commandName);
+			findContainer((String) commandArgs[0]).state = "paused";
+			return null;
+		case "stopContainerCmd":
+			simulateLatency(commandName);
+			findContainer((String) commandArgs[0]).state = "exited";
+			return null;
+		case "removeContainerCmd":
+			simulateLatency(commandName);
+			if (containers.remove(commandArgs[0]) == null)
+				throw new NotFoundException(String.format("No such container: %s", commandArgs[0]));
+			return null;
+		default:
+			throw new UnsupportedOperationException(commandName);
+		}
+	}
+
+	private FakeContainer findContainer(String containerId) {
+		FakeContainer container = containers.get(containerId);
+		if (container == null)
+			throw new NotFoundException(String.format("No such container: %s", containerId));
+		return container;
+	}
+
+	private Integer findHostPort(HostConfig hostConfig) {
+		if (hostConfig == null || hostConfig.getPortBindings() == null)
+			return null;
+		for (Binding[] bindings : hostConfig.getPortBindings().getBindings().values()) {
+			if (bindings != null && bindings.length > 0 && bindings[0].getHostPortSpec() != null)
+				return Integer.valueOf(bindings[0].getHostPortSpec());
+		}
+		return null;
+	}
+
+	public int getContainerCount() {
+		return containers.size();
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class)
+			return method.getName().equals("equals") ? proxy == args[0] : method.getName().equals("hashCode") ? System.identityHashCode(proxy) : "FakeDockerClient";
+		if (method.getName().equals("close"))
+			return null;
+		if (method.getName().endsWith("Cmd"))
+			return createCommand(method.getName(), method.getReturnType(), args);
+		throw new UnsupportedOperationException(method.getName());
+	}
+
+	/**
+	 * Container listing is deserialized from the same JSON the Docker API returns
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 * @throws IOException
+	 */
+	private List<Container> listContainers() throws IOException {
+		List<Container> listedContainers = new ArrayList<>();
+		for (FakeContainer container : containers.values()) {
+			String ports = container.hostPort == null ? ""
+					: String.format("{\"PrivatePort\":%d,\"PublicPort\":%d,\"Type\":\"tcp\"}", dataSourcePort, container.hostPort);
+			listedContainers.add(objectMapper.readValue(
+					String.format("{\"Id\":\"%s\",\"Names\":[\"/%s\"],\"State\":\"%s\",\"Ports\":[%s]}", container.id, container.name, container.state, ports),
+					Container.class));
+		}
+		return listedContainers;
+	}
+
+	/**
+	 * Removes an image, so it is pulled again when needed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param imageName
+	 */
+	public void removeImage(String imageName) {
+		images.remove(imageName);
+	}
+
+	/**
+	 * Memory usage reported by the stats of every simulated container
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerMemoryUsageBytes
+	 */
+	public void setContainerMemoryUsageBytes(long containerMemoryUsageBytes) {
+		this.containerMemoryUsageBytes = containerMemoryUsageBytes;
+	}
+
+	/**
+	 * Latency of every command without a specific one
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param defaultLatencyMillis
+	 */
+	public void setDefaultLatencyMillis(long defaultLatencyMillis) {
+		this.defaultLatencyMillis = defaultLatencyMillis;
+	}
+
+	/**
+	 * Physical memory reported by the simulated host
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param memTotalBytes
+	 */
+	public void setMemTotalBytes(long memTotalBytes) {
+		this.memTotalBytes = memTotalBytes;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param commandName
+	 *            Name of the Docker client method creating the command (i.e.
+	 *            "createContainerCmd")
+	 * @param latencyMillis
+	 */
+	public void setLatencyMillis(String commandName, long latencyMillis) {
+		commandLatenciesMillis.put(commandName, latencyMillis);
+	}
+
+	/**
+	 * While unreachable every command fails as if the host was down
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param unreachable
+	 */
+	public void setUnreachable(boolean unreachable) {
+		this.unreachable = unreachable;
+	}
+
+	private void simulateLatency(String commandName) {
+		long latencyMillis = commandLatenciesMillis.getOrDefault(commandName, defaultLatencyMillis);
+		if (latencyMillis > 0)
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magidc.balea.core.container.DataSourceContainerManager;
+import com.magidc.balea.core.container.runtime.ContainerRuntime;
+import com.magidc.balea.core.container.runtime.docker.DockerContainerRuntime;
+import com.magidc.balea.core.container.runtime.placement.MultiHostContainerRuntime;
+import com.magidc.balea.core.container.runtime.placement.PlacementParameters;
+
+/**
+ * Cold start latency of new containers placed over several simulated Docker
+ * hosts, one of them slower than the others, optionally with one host down
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlacementBenchmark {
+	@Param({ "1", "4" })
+	private int hostCount;
+
+	/**
+	 * Latency of every Docker API call of the fast hosts
+	 */
+	@Param({ "5" })
+	private long dockerLatencyMillis;
+
+	/**
+	 * Latency of every Docker API call of the slow host
+	 */
+	@Param({ "50" })
+	private long slowHostDockerLatencyMillis;
+
+	/**
+	 * Whether the last host is unreachable, so containers fail over to the others
+	 */
+	@Param({ "false", "true" })
+	private boolean hostDown;
+
+	private final List<FakeDockerClient> fakeDockerClients = new ArrayList<>();
+	private DataSourceContainerManager dataSourceContainerManager;
+	private long dataSourceSequence;
+
+	@Benchmark
+	public DataSource createContainer() throws Exception {
+		return dataSourceContainerManager.getDataSource(String.format("tenant%d", dataSourceSequence++));
+	}
+
+	@TearDown(Level.Iteration)
+	public void removeContainers() {
+		dataSourceContainerManager.stopAndAndRemoveAllDataSourceContainers();
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		Map<String, ContainerRuntime> containerRuntimesByHost = new LinkedHashMap<>();
+		for (int i = 0; i < hostCount; i++) {
+			FakeDockerClient fakeDockerClient = new FakeDockerClient(5432);
+			fakeDockerClient.setDefaultLatencyMillis(i == 0 ? slowHostDockerLatencyMillis : dockerLatencyMillis);
+			fakeDockerClient.setUnreachable(hostDown && hostCount > 1 && i == hostCount - 1);
+			fakeDockerClients.add(fakeDockerClient);
+			containerRuntimesByHost.put(String.format("host%d", i), new DockerContainerRuntime(fakeDockerClient.createDockerClient(), String.format("host%d", i)));
+		}
+		dataSourceContainerManager = fakeDockerClients.get(0).createDataSourceContainerManager(new FakeDataSourceConfigurer(),
+				new MultiHostContainerRuntime(containerRuntimesByHost, new PlacementParameters()));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		dataSourceContainerManager.closeDockerClient();
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.benchmark;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.magidc.balea.core.core.config.DataSourceConfigurer;
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+import com.magidc.balea.core.proxy.factory.RoutingDataSourceFactory;
+
+import javassist.util.proxy.MethodHandler;
+import javassist.util.proxy.ProxyFactory;
+
+/**
+ * Per call cost of the routing proxy. <code>reflective*</code> benchmarks
+ * reproduce the former dispatch (cache lookup, access date allocation and
+ * {@link Method#invoke}), <code>routing*</code> benchmarks use the
+ * precompiled invocation path of the data source method handler
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-opens", "java.base/java.lang=ALL-UNNAMED" })
+public class ProxyInvocationBenchmark {
+	private static class ReflectiveMethodHandler implements MethodHandler {
+		private final LoadingCache<Object, ManagedDataSource> dataSourceCache;
+		private final DataSourceConfigurer dataSourceConfigurer;
+
+		private ReflectiveMethodHandler(DataSourceConfigurer dataSourceConfigurer) {
+			this.dataSourceCache = CacheBuilder.newBuilder()
+					.expireAfterAccess(60000L, TimeUnit.MILLISECONDS)
+					.build(new CacheLoader<Object, ManagedDataSource>() {
+						@Override
+						public ManagedDataSource load(Object dataSourceId) {
+							return new ManagedDataSource(dataSourceId, new StubDataSource());
+						}
+					});
+			this.dataSourceConfigurer = dataSourceConfigurer;
+		}
+
+		@Override
+		public Object invoke(Object self, Method method, Method proceed, Object[] args) throws Throwable {
+			ManagedDataSource managedDataSource = dataSourceCache.get(dataSourceConfigurer.getDataSourceId());
+			managedDataSource.setLastAccess(new Date());
+			return method.invoke(managedDataSource.getDataSource(), args);
+		}
+	}
+
+	@Param({ "1", "100" })
+	private int dataSources;
+
+	private DataSource reflectiveDataSource;
+	private DataSource routingDataSource;
+	private Object dataSourceId;
+
+	private DataSourceConfigurer createDataSourceConfigurer() {
+		return new DataSourceConfigurer() {
+			@Override
+			public DataSource createDataSource(String host, int port) {
+				return new StubDataSource();
+			}
+
+			@Override
+			public String getDataDirPath(Object dataSourceId, String dataSourceContainerDataDirPath) {
+				return null;
+			}
+
+			@Override
+			public Object getDataSourceId() {
+				return ProxyInvocationBenchmark.this.dataSourceId;
+			}
+
+			@Override
+			public boolean validateDataSource(DataSource dataSource) {
+				return true;
+			}
+		};
+	}
+
+	@Benchmark
+	public Connection reflectiveGetConnection() throws SQLException {
+		return reflectiveDataSource.getConnection();
+	}
+
+	@Benchmark
+	public boolean reflectiveIsWrapperFor() throws SQLException {
+		return reflectiveDataSource.isWrapperFor(DataSource.class);
+	}
+
+	@Benchmark
+	public Connection routingGetConnection() throws SQLException {
+		return routingDataSource.getConnection();
+	}
+
+	@Benchmark
+	public boolean routingIsWrapperFor() throws SQLException {
+		return routingDataSource.isWrapperFor(DataSource.class);
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		DataSourceConfigurer dataSourceConfigurer = createDataSourceConfigurer();
+		ProxyFactory proxyFactory = new ProxyFactory();
+		proxyFactory.setSuperclass(StubDataSource.class);
+		reflectiveDataSource = (DataSource) proxyFactory.create(new Class<?>[0], new Object[0], new ReflectiveMethodHandler(dataSourceConfigurer));
+
+		routingDataSource = RoutingDataSourceFactory.createRoutingDataSource(StubDataSource.class, 0L, new StubDataSourceCacheManagerConfigurer(),
+				dataSourceConfigurer, 60000L);
+		for (long id = 0; id < dataSources; id++) {
+			dataSourceId = id;
+			reflectiveDataSource.getConnection();
+			routingDataSource.getConnection();
+		}
+		dataSourceId = (long) dataSources - 1;
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magidc.balea.core.core.config.DataSourceConfigurer;
+import com.magidc.balea.core.proxy.FederatedDataSource;
+import com.magidc.balea.core.proxy.cache.config.DataSourceCacheManagerConfigurer;
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+import com.magidc.balea.core.proxy.factory.RoutingDataSourceFactory;
+import com.magidc.balea.core.proxy.federation.BatchResult;
+import com.magidc.balea.core.proxy.federation.BatchStatement;
+
+/**
+ * Ingestion of rows of several data sources, one routed statement per row
+ * against a sharded batch. Data sources simulate a network round trip for each
+ * statement execution, batch execution and commit
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "--add-opens", "java.base/java.lang=ALL-UNNAMED" })
+public class ShardedBatchBenchmark {
+	/**
+	 * Data source whose connections wait a round trip on every call reaching the
+	 * database
+	 * 
+	 * @author magidc <info@magidc.io>
+	 *
+	 */
+	private static final class RoundTripDataSource extends StubDataSource {
+		private final long roundTripNanos;
+
+		private RoundTripDataSource(long roundTripNanos) {
+			this.roundTripNanos = roundTripNanos;
+		}
+
+		private PreparedStatement createPreparedStatement() {
+			int[] batchSize = new int[1];
+			return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { PreparedStatement.class },
+					(proxy, method, args) -> {
+						switch (method.getName()) {
+						case "addBatch":
+							batchSize[0]++;
+							return null;
+						case "executeBatch":
+							LockSupport.parkNanos(roundTripNanos);
+							int[] updateCounts = new int[batchSize[0]];
+							Arrays.fill(updateCounts, 1);
+							batchSize[0] = 0;
+							return updateCounts;
+						case "executeUpdate":
+							LockSupport.parkNanos(roundTripNanos);
+							return 1;
+						default:
+							return null;
+						}
+					});
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			boolean[] autoCommit = { true };
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+				switch (method.getName()) {
+				case "prepareStatement":
+					return createPreparedStatement();
+				case "getAutoCommit":
+					return autoCommit[0];
+				case "setAutoCommit":
+					autoCommit[0] = (Boolean) args[0];
+					return null;
+				case "commit":
+				case "rollback":
+					LockSupport.parkNanos(roundTripNanos);
+					return null;
+				default:
+					return null;
+				}
+			});
+		}
+	}
+
+	private static final String INSERT_SQL = "INSERT INTO events (id, payload) VALUES (?, ?)";
+
+	@Param({ "1000" })
+	private int rows;
+
+	@Param({ "10" })
+	private int dataSources;
+
+	@Param({ "200" })
+	private long roundTripMicros;
+
+	private DataSource routingDataSource;
+	private List<BatchStatement> batchStatements;
+	private volatile Object dataSourceId;
+
+	@Setup
+	public void setUp() throws Exception {
+		DataSourceConfigurer dataSourceConfigurer = new DataSourceConfigurer() {
+			@Override
+			public DataSource createDataSource(String host, int port) {
+				return null;
+			}
+
+			@Override
+			public String getDataDirPath(Object dataSourceId, String dataSourceContainerDataDirPath) {
+				return null;
+			}
+
+			@Override
+			public Object getDataSourceId() {
+				return dataSourceId;
+			}
+
+			@Override
+			public boolean validateDataSource(DataSource dataSource) {
+				return true;
+			}
+		};
+		DataSourceCacheManagerConfigurer dataSourceCacheManagerConfigurer = new StubDataSourceCacheManagerConfigurer() {
+			@Override
+			public DataSource obtainDataSource(Object dataSourceId) {
+				return new RoundTripDataSource(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+			}
+
+			@Override
+			public boolean validateDataSource(ManagedDataSource managedDataSource) {
+				return true;
+			}
+		};
+		routingDataSource = RoutingDataSourceFactory.createRoutingDataSource(StubDataSource.class, -1L, dataSourceCacheManagerConfigurer,
+				dataSourceConfigurer, 600000L);
+		batchStatements = new ArrayList<>(rows);
+		for (long row = 0; row < rows; row++)
+			batchStatements.add(new BatchStatement(row % dataSources, INSERT_SQL, row, "payload"));
+		// Data sources are active in both benchmarks
+		shardedBatch();
+	}
+
+	@Benchmark
+	public int perRowRouting() throws SQLException {
+		int updateCount = 0;
+		for (BatchStatement batchStatement : batchStatements) {
+			dataSourceId = batchStatement.getDataSourceId();
+			try (Connection connection = routingDataSource.getConnection();
+					PreparedStatement preparedStatement = connection.prepareStatement(batchStatement.getSql())) {
+				Object[] parameters = batchStatement.getParameters();
+				for (int i = 0; i < parameters.length; i++)
+					preparedStatement.setObject(i + 1, parameters[i]);
+				updateCount += preparedStatement.executeUpdate();
+			}
+		}
+		return updateCount;
+	}
+
+	@Benchmark
+	public int shardedBatch() throws SQLException {
+		int updateCount = 0;
+		for (BatchResult batchResult : ((FederatedDataSource) routingDataSource).executeShardedBatch(batchStatements).values()) {
+			if (!batchResult.isSucceeded())
+				throw batchResult.getFailure();
+			updateCount += batchResult.getUpdateCounts().length;
+		}
+		return updateCount;
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.benchmark;
+
+import java.io.IOException;
+
+import javax.sql.DataSource;
+
+import com.magidc.balea.core.proxy.cache.config.DataSourceCacheManagerConfigurer;
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+
+/**
+ * Cache manager configurer producing in memory data sources
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class StubDataSourceCacheManagerConfigurer implements DataSourceCacheManagerConfigurer {
+
+	@Override
+	public void closeDataSource(Object dataSourceId) throws IOException {
+	}
+
+	@Override
+	public DataSource obtainDataSource(Object dataSourceId) throws IOException {
+		return new StubDataSource();
+	}
+
+	@Override
+	public boolean validateDataSource(ManagedDataSource managedDataSource) throws IOException {
+		return true;
+	}
+}
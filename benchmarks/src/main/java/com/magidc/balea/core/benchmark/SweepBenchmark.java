@@ -0,0 +1,91 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magidc.balea.core.container.DataSourceContainerManager;
+import com.magidc.balea.core.proxy.cache.DataSourceCacheManager;
+import com.magidc.balea.core.proxy.cache.config.DataSourceCacheParameters;
+import com.magidc.balea.core.proxy.cache.docker.DockerDataSourceCacheManagerConfigurer;
+
+/**
+ * Cost of the periodic sweeps as the number of containers grows: cache clean
+ * up validating every active data source and hibernation sweep over paused
+ * containers that are not idle long enough to be stopped
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SweepBenchmark {
+	@Param({ "10", "100", "1000" })
+	private int containers;
+
+	private DataSourceContainerManager dataSourceContainerManager;
+	private DataSourceCacheManager dataSourceCacheManager;
+
+	@Benchmark
+	public void cacheCleanUp() throws IOException {
+		dataSourceCacheManager.cleanUpDataSourceCache();
+	}
+
+	@Benchmark
+	public void hibernationSweep() {
+		dataSourceContainerManager.sweepHibernatedDataSourceContainers();
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		FakeDockerClient fakeDockerClient = new FakeDockerClient(5432);
+		dataSourceContainerManager = fakeDockerClient.createDataSourceContainerManager(new FakeDataSourceConfigurer());
+		dataSourceCacheManager = new DataSourceCacheManager(new DockerDataSourceCacheManagerConfigurer(dataSourceContainerManager),
+				new DataSourceCacheParameters(3600000L));
+		for (int i = 0; i < containers; i++) {
+			dataSourceCacheManager.acquireManagedDataSource(String.format("active%d", i));
+			String hibernatedDataSourceId = String.format("hibernated%d", i);
+			dataSourceContainerManager.getDataSource(hibernatedDataSourceId);
+			dataSourceContainerManager.hibernateDataSourceContainer(hibernatedDataSourceId);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		dataSourceContainerManager.closeDockerClient();
+	}
+}
@@ -19,39 +19,64 @@
 package com.magidc.balea.core.container;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import javax.sql.DataSource;
 
-import org.apache.commons.lang.ArrayUtils;
-
 import com.github.dockerjava.api.DockerClient;
-import com.github.dockerjava.api.command.CreateContainerCmd;
-import com.github.dockerjava.api.command.CreateContainerResponse;
 import com.github.dockerjava.api.exception.DockerException;
-import com.github.dockerjava.api.model.Bind;
-import com.github.dockerjava.api.model.Container;
-import com.github.dockerjava.api.model.ContainerPort;
-import com.github.dockerjava.api.model.ExposedPort;
-import com.github.dockerjava.api.model.HostConfig;
-import com.github.dockerjava.api.model.PortBinding;
-import com.github.dockerjava.api.model.Ports.Binding;
-import com.github.dockerjava.api.model.Volume;
 import com.github.dockerjava.core.DockerClientBuilder;
 import com.github.dockerjava.core.DockerClientConfig;
-import com.github.dockerjava.core.command.PullImageResultCallback;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.magidc.balea.core.container.config.DataSourceContainerParameters;
+import com.magidc.balea.core.container.config.ResourceProfile;
+import com.magidc.balea.core.container.model.DataSourceContainer;
+import com.magidc.balea.core.container.model.DataSourceContainerState;
+import com.magidc.balea.core.container.packing.ConsistentHashRing;
+import com.magidc.balea.core.container.packing.PackedTenantDataSource;
+import com.magidc.balea.core.container.packing.TenantMigrator;
+import com.magidc.balea.core.container.packing.TenantPacking;
+import com.magidc.balea.core.container.readiness.DataSourceReadinessChecker;
+import com.magidc.balea.core.container.readiness.ReadinessPhase;
+import com.magidc.balea.core.container.readiness.ReadinessReport;
+import com.magidc.balea.core.container.registry.DataSourceContainerRegistry;
+import com.magidc.balea.core.container.registry.HostPortAllocator;
+import com.magidc.balea.core.container.registry.ImageRegistry;
+import com.magidc.balea.core.container.resource.MemoryPressureMonitor;
+import com.magidc.balea.core.container.runtime.ContainerRuntime;
+import com.magidc.balea.core.container.runtime.ContainerSpec;
+import com.magidc.balea.core.container.runtime.docker.DockerContainerRuntime;
+import com.magidc.balea.core.container.volume.DataDirTemplateCloner;
 import com.magidc.balea.core.core.config.DataSourceConfigurer;
+import com.magidc.balea.core.metrics.ColdStartPhase;
+import com.magidc.balea.core.metrics.ColdStartTrace;
+import com.magidc.balea.core.metrics.ColdStartTracer;
+import com.magidc.balea.core.metrics.MetricsRecorder;
+import com.magidc.balea.core.model.ReadReplicaId;
 import com.magidc.balea.core.model.exception.DataSourceNotAvailableException;
 
 /**
- * Management component for Docker based databases
+ * Management component for container based databases
  * 
  * @author magidc <info@magidc.io>
  *
@@ -59,94 +84,468 @@ import com.magidc.balea.core.model.exception.DataSourceNotAvailableException;
 public class DataSourceContainerManager {
 	private DataSourceContainerParameters dataSourceContainerParameters;
 	private DataSourceConfigurer dataSourceConfigurer;
-	private DockerClient dockerClient;
-	private String dockerHost;
+	private ContainerRuntime containerRuntime;
+	private DataSourceContainerRegistry dataSourceContainerRegistry;
+	private ImageRegistry imageRegistry;
 	private boolean proxyMode = false;
+	private final Striped<Lock> containerLocks = Striped.lock(64);
+	private ScheduledExecutorService hibernationScheduler;
+	private DataSourceReadinessChecker dataSourceReadinessChecker;
+	private final ConcurrentMap<String, ReadinessReport> readinessReports = new ConcurrentHashMap<>();
+	private MemoryPressureMonitor memoryPressureMonitor;
+	private DataDirTemplateCloner dataDirTemplateCloner;
+	private ColdStartTracer coldStartTracer;
+	private TenantPacking tenantPacking;
+	private volatile Consumer<Object> tenantMoveHandler;
+	private MetricsRecorder metricsRecorder;
 
 	public DataSourceContainerManager(DataSourceContainerParameters dataSourceContainerParameters, DataSourceConfigurer dataSourceConfigurer,
 			DockerClientConfig dockerClientConfig) {
+		this(dataSourceContainerParameters, dataSourceConfigurer, DockerClientBuilder.getInstance(dockerClientConfig).build(),
+				dockerClientConfig.getDockerHost().getHost());
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceContainerParameters
+	 * @param dataSourceConfigurer
+	 * @param dockerClient
+	 *            Docker client, closed by {@link #closeDockerClient()}
+	 * @param dockerHost
+	 *            Host of the data sources when Docker proxy is used
+	 */
+	public DataSourceContainerManager(DataSourceContainerParameters dataSourceContainerParameters, DataSourceConfigurer dataSourceConfigurer,
+			DockerClient dockerClient, String dockerHost) {
+		this(dataSourceContainerParameters, dataSourceConfigurer, new DockerContainerRuntime(dockerClient, dockerHost));
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceContainerParameters
+	 * @param dataSourceConfigurer
+	 * @param containerRuntime
+	 *            Runtime managing data source containers, closed by
+	 *            {@link #closeDockerClient()}
+	 */
+	public DataSourceContainerManager(DataSourceContainerParameters dataSourceContainerParameters, DataSourceConfigurer dataSourceConfigurer,
+			ContainerRuntime containerRuntime) {
 		this.dataSourceContainerParameters = dataSourceContainerParameters;
 		this.dataSourceConfigurer = dataSourceConfigurer;
-		this.proxyMode = dataSourceContainerParameters.usesDockerProxy();
-		this.dockerHost = dockerClientConfig.getDockerHost().getHost();
-		this.dockerClient = DockerClientBuilder.getInstance(dockerClientConfig).build();
+		// Containers without their own network address are reached through
+		// published ports, as behind Docker proxy
+		this.proxyMode = dataSourceContainerParameters.usesDockerProxy() || !containerRuntime.hasContainerNetwork();
+		this.coldStartTracer = dataSourceContainerParameters.getColdStartTracer();
+		this.metricsRecorder = coldStartTracer != null ? coldStartTracer.decorate(dataSourceContainerParameters.getMetricsRecorder())
+				: dataSourceContainerParameters.getMetricsRecorder();
+		this.containerRuntime = containerRuntime;
+		this.dataSourceContainerRegistry = new DataSourceContainerRegistry(containerRuntime, dataSourceContainerParameters);
+		if (dataSourceContainerParameters.getFirstHostPort() != null)
+			this.dataSourceContainerRegistry.setHostPortAllocator(
+					new HostPortAllocator(dataSourceContainerParameters.getFirstHostPort(), dataSourceContainerParameters.getLastHostPort()));
+		this.dataSourceContainerRegistry.start();
+		this.imageRegistry = new ImageRegistry(containerRuntime, dataSourceContainerParameters);
+		this.imageRegistry.start();
+		// Pulled in the background, data source requests do not wait for it
+		if (dataSourceContainerParameters.getImageName() != null)
+			this.imageRegistry.register(dataSourceContainerParameters.getImageName());
+		if (dataSourceContainerParameters.getMemoryStatsSamplePeriodMillis() > 0) {
+			this.memoryPressureMonitor = new MemoryPressureMonitor(containerRuntime, dataSourceContainerRegistry, dataSourceContainerParameters);
+			this.memoryPressureMonitor.start();
+		}
+		if (dataSourceContainerParameters.getTenantPackingParameters() != null)
+			this.tenantPacking = new TenantPacking(dataSourceContainerParameters.getTenantPackingParameters());
+		if (dataSourceContainerParameters.getDataDirTemplateParameters() != null)
+			this.dataDirTemplateCloner = new DataDirTemplateCloner(dataSourceContainerParameters.getDataDirTemplateParameters());
+		this.dataSourceReadinessChecker = new DataSourceReadinessChecker(containerRuntime, dataSourceContainerRegistry, dataSourceContainerParameters,
+				dataSourceConfigurer);
+		registerContainerGauges();
+		scheduleHibernationSweep();
+	}
+
+	/**
+	 * Brings an existing container back to running state (unpausing or starting
+	 * it) and checks its data source
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param container
+	 * @return Active data source or null if container is not usable
+	 * @throws InterruptedException
+	 */
+	private DataSource activateContainer(DataSourceContainer container) throws InterruptedException {
+		DataSourceContainerState initialState = container.getState();
+		Integer logsSinceSeconds = null;
+		switch (initialState) {
+		case PAUSED:
+			unpauseContainer(container.getId());
+			break;
+		case CREATED:
+		case STOPPED:
+			logsSinceSeconds = currentEpochSeconds();
+			startContainer(container.getId());
+			break;
+		default:
+			break;
+		}
+
+		if (initialState == DataSourceContainerState.RUNNING) {
+			// Container was supposed to be running, it is not usable if it is not ready
+			// to accept connections
+			DataSource dataSource = createDataSource(container);
+			return validateDataSource(dataSource) ? dataSource : null;
+		}
+		try {
+			return waitForActiveDataSource(container, logsSinceSeconds);
+		} catch (DataSourceNotAvailableException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Activates the container of a data source. Packed tenants count as active in
+	 * their shared container until they are hibernated, and their data source
+	 * follows them to the container they are moved to
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 * @throws InterruptedException
+	 * @throws DataSourceNotAvailableException
+	 */
+	private DataSource activateDataSource(Object dataSourceId) throws InterruptedException, DataSourceNotAvailableException {
+		if (!isPacked(dataSourceId))
+			return activateOrCreateContainer(dataSourceId);
+		String containerDataSourceId = tenantPacking.activateTenant(dataSourceId);
+		boolean activated = false;
+		try {
+			activateOrCreateContainer(containerDataSourceId);
+			activated = true;
+		} finally {
+			if (!activated)
+				tenantPacking.deactivateTenant(dataSourceId);
+		}
+		return new PackedTenantDataSource(dataSourceId, this::getTenantDataSource);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 * @throws InterruptedException
+	 * @throws DataSourceNotAvailableException
+	 */
+	private DataSource activateOrCreateContainer(Object dataSourceId) throws InterruptedException, DataSourceNotAvailableException {
+		String containerName = createContainerName(dataSourceId);
+		Lock containerLock = containerLocks.get(containerName);
+		long lockStartNanos = System.nanoTime();
+		containerLock.lockInterruptibly();
+		try {
+			recordColdStartPhase(ColdStartPhase.LOCK, lockStartNanos);
+			DataSourceContainer container = findContainerByName(containerName).orElse(null);
+			if (coldStartTracer != null)
+				coldStartTracer.recordInitialContainerState(container != null ? container.getState().name() : null);
+			if (container != null) {
+				DataSource dataSource;
+				try {
+					dataSource = activateContainer(container);
+				} catch (RuntimeException e) {
+					// Container runtime failed to activate it (i.e. its host is not reachable),
+					// it is replaced by a new one
+					e.printStackTrace();
+					dataSource = null;
+				}
+				if (dataSource != null)
+					return dataSource;
+				// Container exist but it is not able to accept connections
+				if (coldStartTracer != null)
+					coldStartTracer.recordContainerReplacement();
+				removeContainer(container.getId());
+			}
+			return createContainer(dataSourceId, containerName);
+		} finally {
+			containerLock.unlock();
+		}
+	}
+
+	/**
+	 * Keeps an existing running container if its data source is valid, otherwise
+	 * the container is removed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param container
+	 * @param adoptedDataSources
+	 */
+	private void adoptContainer(DataSourceContainer container, Map<Object, DataSource> adoptedDataSources) {
+		Lock containerLock = containerLocks.get(container.getName());
+		containerLock.lock();
+		try {
+			if (container.isRunning()) {
+				DataSource dataSource = createDataSource(container);
+				if (validateDataSource(dataSource)) {
+					// Tenants of a packed container are not known until they are requested,
+					// and read replicas are started again if their data source is still hot
+					if (tenantPacking != null || ReadReplicaId.parse(container.getDataSourceId()) != null)
+						hibernateContainer(container.getDataSourceId());
+					else
+						adoptedDataSources.put(dataSourceConfigurer.parseDataSourceId(container.getDataSourceId()), dataSource);
+					return;
+				}
+			}
+			removeContainer(container.getId());
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		} finally {
+			containerLock.unlock();
+		}
+	}
+
+	/**
+	 * Adopts the managed containers left by a previous run instead of removing
+	 * them. Running containers are validated in parallel and kept if their data
+	 * source is valid. Invalid ones and containers never started are removed in
+	 * parallel. Hibernated containers are kept and moved through the hibernation
+	 * tiers as usual
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Data sources of adopted containers by data source id, as parsed by
+	 *         the data source configurer. Empty if tenants are packed, as adopted
+	 *         containers are hibernated until their tenants are requested
+	 * @throws InterruptedException
+	 */
+	public Map<Object, DataSource> adoptDataSourceContainers() throws InterruptedException {
+		List<DataSourceContainer> containers = dataSourceContainerRegistry.getAll().stream()
+				.filter(c -> c.isManaged() && (c.isRunning() || c.getState() == DataSourceContainerState.CREATED))
+				.collect(Collectors.toList());
+		Map<Object, DataSource> adoptedDataSources = new ConcurrentHashMap<>();
+		if (containers.isEmpty())
+			return adoptedDataSources;
+
+		ExecutorService adoptionExecutor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(dataSourceContainerParameters.getContainerAdoptionThreads(), containers.size())),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-container-adoption-%d").build());
+		try {
+			adoptionExecutor.invokeAll(containers.stream().map(container -> Executors.callable(() -> adoptContainer(container, adoptedDataSources)))
+					.collect(Collectors.toList()));
+		} finally {
+			adoptionExecutor.shutdownNow();
+		}
+		return adoptedDataSources;
+	}
+
+	/**
+	 * Image presence is answered by the image registry. Only if it is still being
+	 * pulled in the background, it is waited for up to the container starting up
+	 * timeout
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @throws InterruptedException
+	 * @throws DataSourceNotAvailableException
+	 */
+	private void awaitImage() throws InterruptedException, DataSourceNotAvailableException {
+		long listStartNanos = System.nanoTime();
+		boolean imageReady = isImageReady();
+		recordColdStartPhase(ColdStartPhase.LIST, listStartNanos);
+		if (imageReady)
+			return;
+		long pullStartNanos = System.nanoTime();
+		boolean pulled = awaitImageReady(dataSourceContainerParameters.getContainerStartingUpTimeoutMillis());
+		recordColdStartPhase(ColdStartPhase.PULL, pullStartNanos);
+		if (!pulled)
+			throw new DataSourceNotAvailableException();
+	}
+
+	/**
+	 * Waits for the image of data source containers to be pulled in the
+	 * background, i.e. as readiness gate before serving data source requests
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param timeoutMillis
+	 * @return False if the image is not present yet after the timeout
+	 * @throws InterruptedException
+	 */
+	public boolean awaitImageReady(long timeoutMillis) throws InterruptedException {
+		return dataSourceContainerParameters.getImageName() == null || imageRegistry.awaitImage(dataSourceContainerParameters.getImageName(), timeoutMillis);
 	}
 
+	private void checkNotPacked(Object dataSourceId) {
+		if (isPacked(dataSourceId))
+			throw new IllegalArgumentException(String.format("Data source %s is packed in shared container %s with other tenants", dataSourceId,
+					tenantPacking.getContainerDataSourceId(dataSourceId)));
+	}
+
+	/**
+	 * Stops background processes and closes the container runtime
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @throws IOException
+	 */
 	public void closeDockerClient() throws IOException {
-		if (dockerClient != null)
-			dockerClient.close();
+		if (hibernationScheduler != null)
+			hibernationScheduler.shutdownNow();
+		if (memoryPressureMonitor != null)
+			memoryPressureMonitor.close();
+		if (dataDirTemplateCloner != null)
+			dataDirTemplateCloner.close();
+		imageRegistry.close();
+		dataSourceContainerRegistry.close();
+		if (containerRuntime != null)
+			containerRuntime.close();
+	}
+
+	private long countManagedContainers(DataSourceContainerState state) {
+		return dataSourceContainerRegistry.getAll().stream()
+				.filter(c -> c.isManaged() && c.getState() == state)
+				.count();
+	}
+
+	/**
+	 * Creates and starts a new container for a data source
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param containerName
+	 * @return
+	 * @throws InterruptedException
+	 * @throws DataSourceNotAvailableException
+	 */
+	private DataSource createContainer(Object dataSourceId, String containerName) throws InterruptedException, DataSourceNotAvailableException {
+		awaitImage();
+
+		ContainerSpec containerSpec = createContainerSpec(dataSourceId, containerName);
+		// Read replicas are provisioned by their read replica provisioner, a cloned
+		// template would be an empty replica
+		if (dataDirTemplateCloner != null && !(dataSourceId instanceof ReadReplicaId))
+			provisionDataDirs(containerSpec);
+		long createStartNanos = System.nanoTime();
+		String containerId;
+		try {
+			containerId = metricsRecorder.timeDockerCall("createContainer", () -> containerRuntime.createContainer(containerSpec));
+		} catch (RuntimeException e) {
+			releaseHostPort(containerSpec.getHostPort());
+			throw e;
+		}
+		recordColdStartPhase(ColdStartPhase.CREATE, createStartNanos);
+		Integer hostPort = containerSpec.getHostPort();
+		if (hostPort == null && proxyMode)
+			hostPort = metricsRecorder.timeDockerCall("inspectContainer",
+					() -> containerRuntime.findHostPort(containerId, dataSourceContainerParameters.getPort()));
+		DataSourceContainer container = dataSourceContainerRegistry.register(containerId, containerName, DataSourceContainerState.CREATED, hostPort);
+		ResourceProfile resourceProfile = containerSpec.getResourceProfile();
+		if (memoryPressureMonitor != null && resourceProfile != null && resourceProfile.getMemoryBytes() != null)
+			memoryPressureMonitor.estimateMemoryUsage(containerId, resourceProfile.getMemoryBytes());
+		int logsSinceSeconds = currentEpochSeconds();
+		startContainer(containerId);
+		DataSource dataSource;
+		try {
+			dataSource = waitForActiveDataSource(container, logsSinceSeconds);
+		} catch (DataSourceNotAvailableException e) {
+			removeContainer(containerId);
+			throw e;
+		}
+		containerRuntime.recordColdStart(containerId, System.nanoTime() - createStartNanos);
+		return dataSource;
 	}
 
 	private String createContainerName(Object dataSourceId) {
 		return String.format("%s%s", dataSourceContainerParameters.getContainerNamePrefix(), dataSourceId.toString());
 	}
 
-	private DataSource createDataSource(String containerId) {
-		int port = proxyMode ? findPortBinding(containerId) : dataSourceContainerParameters.getPort();
-		String host = proxyMode ? dockerHost : findContainerIP(containerId);
-		return dataSourceConfigurer.createDataSource(host, port);
+	private DataSource createDataSource(DataSourceContainer dataSourceContainer) {
+		return dataSourceConfigurer.createDataSource(findDataSourceHost(dataSourceContainer), findDataSourcePort(dataSourceContainer));
 	}
 
-	private List<Bind> createDataVolumeBinds(Object dataSourceId) {
-		return Stream.of(dataSourceContainerParameters.getDataVolumes())
-				.map(v -> new Bind(dataSourceConfigurer.getDataDirPath(dataSourceId, v), new Volume(v)))
-				.collect(Collectors.toList());
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerDataSourceId
+	 * @param dataSourceId
+	 * @return Data source of a tenant in a running packed container
+	 * @throws SQLTransientConnectionException
+	 */
+	private DataSource createTenantDataSource(String containerDataSourceId, Object dataSourceId) throws SQLTransientConnectionException {
+		DataSourceContainer container = findContainerByName(createContainerName(containerDataSourceId)).orElse(null);
+		if (container == null || !container.isRunning())
+			throw new SQLTransientConnectionException(String.format("Container %s of data source %s is not running", containerDataSourceId, dataSourceId));
+		return dataSourceConfigurer.createDataSource(findDataSourceHost(container), findDataSourcePort(container), dataSourceId);
 	}
 
-	private List<String> createEnv() {
-		return dataSourceContainerParameters
-				.getEnvironmentVariables().entrySet().stream()
-				.map(e -> String.format("%s=%s", e.getKey(), e.getValue()))
-				.collect(Collectors.toList());
+	/**
+	 * Container definition of a data source, with the resource limits given by
+	 * the resource profile resolver. Its port is published when data sources are
+	 * reached through published ports, on the port reserved by the host port
+	 * allocator or given by the port binding supplier, or on one chosen by the
+	 * container runtime if there are none
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param containerName
+	 * @return
+	 */
+	private ContainerSpec createContainerSpec(Object dataSourceId, String containerName) {
+		ContainerSpec containerSpec = new ContainerSpec();
+		containerSpec.setName(containerName);
+		containerSpec.setImageName(dataSourceContainerParameters.getImageName());
+		containerSpec.setContainerPort(dataSourceContainerParameters.getPort());
+		for (String dataVolume : dataSourceContainerParameters.getDataVolumes())
+			containerSpec.getBinds().put(dataSourceConfigurer.getDataDirPath(dataSourceId, dataVolume), dataVolume);
+		containerSpec.getEnvironmentVariables().putAll(dataSourceContainerParameters.getEnvironmentVariables());
+		if (dataSourceContainerParameters.getResourceProfileResolver() != null)
+			containerSpec.setResourceProfile(dataSourceContainerParameters.getResourceProfileResolver().resolveResourceProfile(dataSourceId));
+		HostPortAllocator hostPortAllocator = dataSourceContainerRegistry.getHostPortAllocator();
+		if (proxyMode && hostPortAllocator != null)
+			containerSpec.setHostPort(hostPortAllocator.allocate());
+		else if (proxyMode && dataSourceContainerParameters.getPortBindingSupplier() != null)
+			containerSpec.setHostPort(dataSourceContainerParameters.getPortBindingSupplier().getAvailablePort(dataSourceContainerRegistry.getBindedPorts()));
+		return containerSpec;
 	}
 
-	private PortBinding createPortBinding() {
-		return new PortBinding(
-				Binding.bindPort(dataSourceContainerParameters.getPortBindingSupplier().getAvailablePort(getBindedPorts())),
-				ExposedPort.tcp(dataSourceContainerParameters.getPort()));
+	private int currentEpochSeconds() {
+		return (int) TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
 	}
 
-	private Optional<Container> findContainerByName(List<Container> containers, String containerName) {
-		String formattedName = getFormatterContainerName(containerName);
-		return containers.stream().filter(c -> ArrayUtils.contains(c.getNames(), formattedName)).findAny();
+	private Optional<DataSourceContainer> findContainerByName(String containerName) {
+		return dataSourceContainerRegistry.findByName(containerName);
 	}
 
-	private Optional<Container> findContainerByName(String containerName) {
-		return findContainerByName(dockerClient.listContainersCmd().withShowAll(true).exec(), containerName);
+	private String findContainerAddress(String containerId) {
+		return metricsRecorder.timeDockerCall("inspectContainer", () -> containerRuntime.findContainerAddress(containerId));
 	}
 
-	@SuppressWarnings("deprecation")
-	private String findContainerIP(String containerId) {
-		return dockerClient.inspectContainerCmd(containerId).exec().getNetworkSettings().getIpAddress();
+	private String findDataSourceHost(DataSourceContainer dataSourceContainer) {
+		return proxyMode ? containerRuntime.findPublishedPortsHost(dataSourceContainer.getId()) : findContainerAddress(dataSourceContainer.getId());
 	}
 
-	private int findPortBinding(String containerId) {
-		return Integer.parseInt(
-				findPortBindings(containerId).get(ExposedPort.tcp(dataSourceContainerParameters.getPort()))[0].getHostPortSpec());
+	private int findDataSourcePort(DataSourceContainer dataSourceContainer) {
+		return proxyMode ? findPortBinding(dataSourceContainer) : dataSourceContainerParameters.getPort();
 	}
 
-	private Map<ExposedPort, Binding[]> findPortBindings(String containerId) {
-		return dockerClient.inspectContainerCmd(containerId).exec().getNetworkSettings().getPorts().getBindings();
+	private int findPortBinding(DataSourceContainer dataSourceContainer) {
+		if (dataSourceContainer.getHostPort() != null)
+			return dataSourceContainer.getHostPort();
+		return metricsRecorder.timeDockerCall("inspectContainer",
+				() -> containerRuntime.findHostPort(dataSourceContainer.getId(), dataSourceContainerParameters.getPort()));
 	}
 
 	/**
-	 * Collecting all linked ports of current containers
+	 * Ids (as strings) of data sources whose container is running, taken from a
+	 * single pass over the container registry
 	 * 
 	 * @author magidc <info@magidc.io>
 	 * @return
 	 */
-	private Collection<Integer> getBindedPorts() {
-		return dockerClient.listContainersCmd().withShowAll(true).exec().stream()
-				.flatMap(c -> Stream.of(c.getPorts()))
-				.map(ContainerPort::getPublicPort)
-				.filter(Objects::nonNull)
+	public Set<String> findRunningDataSourceIds() {
+		return dataSourceContainerRegistry.getAll().stream()
+				.filter(c -> c.isManaged() && c.isRunning())
+				.map(DataSourceContainer::getDataSourceId)
 				.collect(Collectors.toSet());
 	}
 
 	/**
-	 * Gets a data source instance to access to a data base running in a Docker
+	 * Gets a data source instance to access to a data base running in a
 	 * container. If container is not present, it will be created. If container is
-	 * not running, it will be started
+	 * hibernated, it will be unpaused or started
 	 * 
 	 * @author magidc <info@magidc.io>
 	 * @param dataSourceId
@@ -157,63 +556,386 @@ public class DataSourceContainerManager {
 	 * @throws DataSourceNotAvailableException
 	 */
 	public DataSource getDataSource(Object dataSourceId) throws DockerException, InterruptedException, IOException, DataSourceNotAvailableException {
+		if (coldStartTracer == null)
+			return activateDataSource(dataSourceId);
+		ColdStartTrace coldStartTrace = coldStartTracer.begin(dataSourceId);
+		boolean succeeded = false;
+		try {
+			DataSource dataSource = activateDataSource(dataSourceId);
+			succeeded = true;
+			return dataSource;
+		} finally {
+			coldStartTracer.end(coldStartTrace, succeeded);
+		}
+	}
 
-		String containerName = createContainerName(dataSourceId);
-		Container container = findContainerByName(containerName).orElse(null);
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Data source of a packed tenant in its current container
+	 * @throws SQLException
+	 */
+	private DataSource getTenantDataSource(Object dataSourceId) throws SQLException {
+		String containerDataSourceId = tenantPacking.getContainerDataSourceId(dataSourceId);
+		DataSource dataSource = tenantPacking.getTenantDataSource(dataSourceId, containerDataSourceId);
+		if (dataSource == null) {
+			dataSource = createTenantDataSource(containerDataSourceId, dataSourceId);
+			tenantPacking.bindTenantDataSource(dataSourceId, containerDataSourceId, dataSource);
+		}
+		return dataSource;
+	}
 
-		// Container exist but it is not ready to accept connections
-		if (container != null && (!isContainerUp(container) || !validateDataSource(createDataSource(container.getId())))) {
-			dockerClient.removeContainerCmd(container.getId()).withForce(true).exec();
-			container = null;
+	/**
+	 * Moves a container to the first enabled hibernation tier (paused, stopped or
+	 * removed). Paused tier is skipped under memory pressure, as paused containers
+	 * keep their memory. Packed containers are kept running while any of their
+	 * tenants is active
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerDataSourceId
+	 */
+	private void hibernateContainer(Object containerDataSourceId) {
+		String containerName = createContainerName(containerDataSourceId);
+		Lock containerLock = containerLocks.get(containerName);
+		containerLock.lock();
+		try {
+			if (tenantPacking != null && !tenantPacking.isContainerIdle(containerDataSourceId.toString()))
+				return;
+			Optional<DataSourceContainer> containerOptional = findContainerByName(containerName);
+			if (!containerOptional.isPresent() || !containerOptional.get().isRunning())
+				return;
+			String containerId = containerOptional.get().getId();
+			if (dataSourceContainerParameters.getPausedContainerIdleTimeMillis() != 0 && !isUnderMemoryPressure())
+				pauseContainer(containerId);
+			else if (dataSourceContainerParameters.getStoppedContainerIdleTimeMillis() != 0)
+				stopContainer(containerId);
+			else
+				removeContainer(containerId);
+		} finally {
+			containerLock.unlock();
 		}
+	}
 
-		if (container == null) {
-			if (!imageExist())
-				dockerClient.pullImageCmd(dataSourceContainerParameters.getImageName()).exec(new PullImageResultCallback()).awaitCompletion();
+	/**
+	 * Hibernates the container of a data source that stops to be used. A packed
+	 * tenant stops to count as active, its container is only hibernated once none
+	 * of its tenants is active
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @see #hibernateContainer(Object)
+	 */
+	public void hibernateDataSourceContainer(Object dataSourceId) {
+		if (!isPacked(dataSourceId)) {
+			hibernateContainer(dataSourceId);
+			return;
+		}
+		String containerDataSourceId = tenantPacking.deactivateTenant(dataSourceId);
+		if (containerDataSourceId != null)
+			hibernateContainer(containerDataSourceId);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Fraction of the host memory in use by running and paused
+	 *         containers, -1 if it is not measured
+	 * @see DataSourceContainerParameters#setMemoryStatsSamplePeriodMillis(long)
+	 */
+	public double getMemoryPressure() {
+		return memoryPressureMonitor != null ? memoryPressureMonitor.getMemoryPressure() : -1;
+	}
+
+	/**
+	 * Gets the readiness report of the last start up of a data source container,
+	 * with the latency of each readiness phase
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Readiness report or null if the container has not been started
+	 */
+	public ReadinessReport getReadinessReport(Object dataSourceId) {
+		return readinessReports.get(createContainerName(resolveContainerDataSourceId(dataSourceId)));
+	}
+
+	/**
+	 * Checks if the data source corresponds to an active container
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 */
+	public boolean isDataSourceContainerUp(Object dataSourceId) {
+		Optional<DataSourceContainer> containerOptional = findContainerByName(createContainerName(resolveContainerDataSourceId(dataSourceId)));
+		return containerOptional.isPresent() && containerOptional.get().isRunning();
+	}
 
-			HostConfig hostConfig = new HostConfig();
-			hostConfig.withBinds(createDataVolumeBinds(dataSourceId));
-			if (proxyMode)
-				hostConfig.withPortBindings(createPortBinding());
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Whether the image of data source containers is present, so data
+	 *         source containers can be created without pulling it
+	 */
+	public boolean isImageReady() {
+		return dataSourceContainerParameters.getImageName() == null || imageRegistry.isPresent(dataSourceContainerParameters.getImageName());
+	}
 
-			CreateContainerCmd createContainerCmd = dockerClient.createContainerCmd(dataSourceContainerParameters.getImageName())
-					.withName(containerName)
-					.withHostConfig(hostConfig).withEnv(createEnv());
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Whether the data source is a tenant packed in a shared container.
+	 *         Read replicas have their own container
+	 */
+	private boolean isPacked(Object dataSourceId) {
+		return tenantPacking != null && !(dataSourceId instanceof ReadReplicaId);
+	}
 
-			CreateContainerResponse createContainerResponse = createContainerCmd.exec();
-			dockerClient.startContainerCmd(createContainerResponse.getId()).exec();
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Whether the memory in use by containers exceeds the maximum memory
+	 *         pressure
+	 */
+	public boolean isUnderMemoryPressure() {
+		return getMemoryPressure() > dataSourceContainerParameters.getMaximumMemoryPressure();
+	}
+
+	/**
+	 * Memory pressure check before starting a data source, counting the memory
+	 * limit of its container unless it is already running or paused
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Whether the memory in use by containers would exceed the maximum
+	 *         memory pressure once the data source is started
+	 */
+	public boolean isUnderMemoryPressure(Object dataSourceId) {
+		if (memoryPressureMonitor == null)
+			return false;
+		long additionalMemoryBytes = 0;
+		Object containerDataSourceId = resolveContainerDataSourceId(dataSourceId);
+		Optional<DataSourceContainer> containerOptional = findContainerByName(createContainerName(containerDataSourceId));
+		boolean resident = containerOptional.isPresent()
+				&& (containerOptional.get().isRunning() || containerOptional.get().getState() == DataSourceContainerState.PAUSED);
+		if (!resident && dataSourceContainerParameters.getResourceProfileResolver() != null) {
+			ResourceProfile resourceProfile = dataSourceContainerParameters.getResourceProfileResolver().resolveResourceProfile(containerDataSourceId);
+			if (resourceProfile != null && resourceProfile.getMemoryBytes() != null)
+				additionalMemoryBytes = resourceProfile.getMemoryBytes();
+		}
+		return memoryPressureMonitor.getMemoryPressure(additionalMemoryBytes) > dataSourceContainerParameters.getMaximumMemoryPressure();
+	}
+
+	private void pauseContainer(String containerId) {
+		metricsRecorder.timeDockerCall("pauseContainer", () -> containerRuntime.pauseContainer(containerId));
+		dataSourceContainerRegistry.updateState(containerId, DataSourceContainerState.PAUSED, System.currentTimeMillis());
+	}
+
+	/**
+	 * Clones the data directory templates into the missing or empty data
+	 * directories of a new container
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerSpec
+	 * @throws InterruptedException
+	 */
+	private void provisionDataDirs(ContainerSpec containerSpec) throws InterruptedException {
+		long provisionStartNanos = System.nanoTime();
+		Map<String, String> templateDataDirPaths = dataSourceContainerParameters.getDataDirTemplateParameters().getTemplateDataDirPaths();
+		for (Map.Entry<String, String> bind : containerSpec.getBinds().entrySet()) {
+			String templateDataDirPath = templateDataDirPaths.get(bind.getValue());
+			if (templateDataDirPath == null)
+				continue;
 			try {
-				return waitForActiveDataSource(createDataSource(createContainerResponse.getId()), 0);
-			} catch (DataSourceNotAvailableException e) {
-				dockerClient.removeContainerCmd(createContainerResponse.getId()).withForce(true).exec();
-				throw e;
+				dataDirTemplateCloner.clone(templateDataDirPath, bind.getKey());
+			} catch (IOException e) {
+				releaseHostPort(containerSpec.getHostPort());
+				throw new UncheckedIOException(e);
 			}
 		}
-		return createDataSource(container.getId());
+		recordColdStartPhase(ColdStartPhase.PROVISION, provisionStartNanos);
 	}
 
-	private String getFormatterContainerName(String containerName) {
-		return String.format("/%s", containerName);
+	/**
+	 * Runs the tenant move handler, a failing handler does not stop the
+	 * rebalance
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 */
+	private void notifyTenantMove(Object dataSourceId) {
+		Consumer<Object> currentTenantMoveHandler = tenantMoveHandler;
+		if (currentTenantMoveHandler == null)
+			return;
+		try {
+			currentTenantMoveHandler.accept(dataSourceId);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
 	}
 
-	private boolean imageExist() {
-		return !dockerClient.listImagesCmd().withImageNameFilter(dataSourceContainerParameters.getImageName()).exec().isEmpty();
+	/**
+	 * Moves packed tenants to a ring of the given number of containers. Only the
+	 * tenants whose container changes are moved, one at a time: their source and
+	 * target containers are kept running while the tenant migrator copies their
+	 * data, then the tenant is reassigned and the tenant move handler closes the
+	 * connections still open to its source container (i.e. pooled connections of
+	 * its cached data source), so its next connections go to the new one. Writes
+	 * made to the source container during the migration
+	 * are left to the tenant migrator. Once every tenant is moved, the new ring
+	 * replaces the current one and containers left idle are hibernated. If the
+	 * rebalance fails, tenants already moved stay in their new container and the
+	 * current ring is kept
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerCount
+	 * @param dataSourceIds
+	 *            Ids of every tenant with data, as the ring does not keep them
+	 * @return Moved tenants with the id of the data source of their new container
+	 * @throws InterruptedException
+	 * @throws DataSourceNotAvailableException
+	 * @throws SQLException
+	 *             If the tenant migrator fails
+	 */
+	public synchronized Map<Object, String> rebalanceTenants(int containerCount, Collection<?> dataSourceIds)
+			throws InterruptedException, DataSourceNotAvailableException, SQLException {
+		if (tenantPacking == null)
+			throw new IllegalStateException("Tenant packing is disabled");
+		ConsistentHashRing ring = tenantPacking.createRing(containerCount);
+		TenantMigrator tenantMigrator = dataSourceContainerParameters.getTenantPackingParameters().getTenantMigrator();
+		Map<Object, String> movedTenants = new LinkedHashMap<>();
+		Set<String> rebalancedContainerDataSourceIds = new HashSet<>(tenantPacking.getContainerDataSourceIds());
+		rebalancedContainerDataSourceIds.removeAll(ring.getNodes());
+		try {
+			for (Object dataSourceId : dataSourceIds) {
+				String sourceContainerDataSourceId = tenantPacking.getContainerDataSourceId(dataSourceId);
+				String targetContainerDataSourceId = ring.getNode(dataSourceId);
+				if (sourceContainerDataSourceId.equals(targetContainerDataSourceId))
+					continue;
+				rebalancedContainerDataSourceIds.add(sourceContainerDataSourceId);
+				rebalancedContainerDataSourceIds.add(targetContainerDataSourceId);
+				tenantPacking.retainContainer(sourceContainerDataSourceId);
+				tenantPacking.retainContainer(targetContainerDataSourceId);
+				try {
+					// Target container must be running for the active tenants moved to it
+					activateOrCreateContainer(targetContainerDataSourceId);
+					if (tenantMigrator != null) {
+						activateOrCreateContainer(sourceContainerDataSourceId);
+						tenantMigrator.migrateTenant(dataSourceId, createTenantDataSource(sourceContainerDataSourceId, dataSourceId),
+								createTenantDataSource(targetContainerDataSourceId, dataSourceId));
+					}
+					tenantPacking.moveTenant(dataSourceId, targetContainerDataSourceId);
+					movedTenants.put(dataSourceId, targetContainerDataSourceId);
+					notifyTenantMove(dataSourceId);
+				} finally {
+					tenantPacking.releaseContainer(sourceContainerDataSourceId);
+					tenantPacking.releaseContainer(targetContainerDataSourceId);
+				}
+			}
+			tenantPacking.replaceRing(ring);
+		} finally {
+			for (String containerDataSourceId : rebalancedContainerDataSourceIds)
+				hibernateContainer(containerDataSourceId);
+		}
+		return movedTenants;
 	}
 
-	private boolean isContainerUp(Container container) {
-		return container.getStatus().startsWith("Up ");
+	private void recordColdStartPhase(ColdStartPhase coldStartPhase, long startNanos) {
+		metricsRecorder.recordColdStartPhase(coldStartPhase, System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Container counts by state and available host ports, sampled by the metrics
+	 * recorder. Paused and stopped containers are the hibernated ones
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	private void registerContainerGauges() {
+		metricsRecorder.registerGauge("balea.containers.running", () -> countManagedContainers(DataSourceContainerState.RUNNING));
+		metricsRecorder.registerGauge("balea.containers.paused", () -> countManagedContainers(DataSourceContainerState.PAUSED));
+		metricsRecorder.registerGauge("balea.containers.stopped", () -> countManagedContainers(DataSourceContainerState.STOPPED));
+		HostPortAllocator hostPortAllocator = dataSourceContainerRegistry.getHostPortAllocator();
+		if (hostPortAllocator != null)
+			metricsRecorder.registerGauge("balea.hostPorts.available", hostPortAllocator::getAvailablePortCount);
+		if (memoryPressureMonitor != null)
+			metricsRecorder.registerGauge("balea.memory.pressure", memoryPressureMonitor::getMemoryPressure);
+	}
+
+	/**
+	 * Releases a host port allocated for a container that could not be created
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param hostPort
+	 */
+	private void releaseHostPort(Integer hostPort) {
+		HostPortAllocator hostPortAllocator = dataSourceContainerRegistry.getHostPortAllocator();
+		if (hostPortAllocator != null && hostPort != null)
+			hostPortAllocator.release(hostPort);
+	}
+
+	/**
+	 * Force removal of a container, keeping container registry up to date
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 */
+	private void removeContainer(String containerId) {
+		metricsRecorder.timeDockerCall("removeContainer", () -> containerRuntime.removeContainer(containerId));
+		dataSourceContainerRegistry.unregister(containerId);
 	}
 
 	/**
-	 * Checks if the data source corresponds to an active container
 	 * 
 	 * @author magidc <info@magidc.io>
 	 * @param dataSourceId
-	 * @return
+	 * @return Id of the data source of the container the data source runs in: the
+	 *         data source itself or, if tenants are packed, its shared container
 	 */
-	public boolean isDataSourceContainerUp(Object dataSourceId) {
-		Optional<Container> containerOptional = findContainerByName(createContainerName(dataSourceId));
-		return containerOptional.isPresent() && isContainerUp(containerOptional.get());
+	public Object resolveContainerDataSourceId(Object dataSourceId) {
+		return isPacked(dataSourceId) ? tenantPacking.getContainerDataSourceId(dataSourceId) : dataSourceId;
+	}
+
+	/**
+	 * Scheduling process to move hibernated containers to deeper hibernation tiers
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	private void scheduleHibernationSweep() {
+		hibernationScheduler = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-container-hibernation-%d").build());
+		long sweepPeriodMillis = dataSourceContainerParameters.getContainerHibernationSweepPeriodMillis();
+		hibernationScheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sweepHibernatedDataSourceContainers();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}, sweepPeriodMillis, sweepPeriodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void startContainer(String containerId) {
+		long startStartNanos = System.nanoTime();
+		metricsRecorder.timeDockerCall("startContainer", () -> containerRuntime.startContainer(containerId));
+		recordColdStartPhase(ColdStartPhase.START, startStartNanos);
+		dataSourceContainerRegistry.updateState(containerId, DataSourceContainerState.RUNNING, System.currentTimeMillis());
+	}
+
+	/**
+	 * Handler called when a packed tenant is moved to another container, before
+	 * its source container is released, to close the connections still open to
+	 * it. Set by the data source cache manager to invalidate the cached data
+	 * source of the tenant
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param tenantMoveHandler
+	 *            Consumer of moved data source ids
+	 */
+	public void setTenantMoveHandler(Consumer<Object> tenantMoveHandler) {
+		this.tenantMoveHandler = tenantMoveHandler;
 	}
 
 	/**
@@ -222,9 +944,11 @@ public class DataSourceContainerManager {
 	 * @author magidc <info@magidc.io>
 	 */
 	public void stopAndAndRemoveAllDataSourceContainers() {
-		dockerClient.listContainersCmd().withShowAll(true).exec().stream()
-				.filter(c -> c.getNames().length == 1 && c.getNames()[0].startsWith("/" + dataSourceContainerParameters.getContainerNamePrefix()))
-				.forEach(c -> dockerClient.removeContainerCmd(c.getId()).withForce(true).exec());
+		dataSourceContainerRegistry.getAll().stream()
+				.filter(DataSourceContainer::isManaged)
+				.map(DataSourceContainer::getId)
+				.collect(Collectors.toList())
+				.forEach(this::removeContainer);
 	}
 
 	/**
@@ -232,11 +956,47 @@ public class DataSourceContainerManager {
 	 * 
 	 * @author magidc <info@magidc.io>
 	 * @param dataSourceId
+	 * @throws IllegalArgumentException
+	 *             If the data source is a packed tenant, as its container is shared
+	 *             by other tenants
+	 * @see #stopAndRemoveSharedContainer(String)
 	 */
 	public void stopAndRemoveDataSourceContainer(Object dataSourceId) {
-		Optional<Container> containerOptional = findContainerByName(createContainerName(dataSourceId));
+		checkNotPacked(dataSourceId);
+		Optional<DataSourceContainer> containerOptional = findContainerByName(createContainerName(dataSourceId));
 		if (containerOptional.isPresent())
-			dockerClient.removeContainerCmd(containerOptional.get().getId()).withForce(true).exec();
+			removeContainer(containerOptional.get().getId());
+	}
+
+	/**
+	 * Stops and removes a shared container with every tenant packed in it. Its
+	 * active tenants fail until the container is created again on their next
+	 * activation
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerDataSourceId
+	 */
+	public void stopAndRemoveSharedContainer(String containerDataSourceId) {
+		if (tenantPacking == null)
+			throw new IllegalStateException("Tenant packing is disabled");
+		Optional<DataSourceContainer> containerOptional = findContainerByName(createContainerName(containerDataSourceId));
+		if (containerOptional.isPresent())
+			removeContainer(containerOptional.get().getId());
+	}
+
+	/**
+	 * Stops a container. Paused containers are resumed first so the database
+	 * receives the stop signal and shuts down cleanly
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 */
+	private void stopContainer(String containerId) {
+		Optional<DataSourceContainer> containerOptional = dataSourceContainerRegistry.findById(containerId);
+		if (containerOptional.isPresent() && containerOptional.get().getState() == DataSourceContainerState.PAUSED)
+			metricsRecorder.timeDockerCall("unpauseContainer", () -> containerRuntime.unpauseContainer(containerId));
+		metricsRecorder.timeDockerCall("stopContainer", () -> containerRuntime.stopContainer(containerId));
+		dataSourceContainerRegistry.updateState(containerId, DataSourceContainerState.STOPPED, System.currentTimeMillis());
 	}
 
 	/**
@@ -244,11 +1004,89 @@ public class DataSourceContainerManager {
 	 * 
 	 * @author magidc <info@magidc.io>
 	 * @param dataSourceId
+	 * @throws IllegalArgumentException
+	 *             If the data source is a packed tenant, as its container is shared
+	 *             by other tenants
 	 */
 	public void stopDataSourceContainer(Object dataSourceId) {
-		Optional<Container> containerOptional = findContainerByName(createContainerName(dataSourceId));
+		checkNotPacked(dataSourceId);
+		Optional<DataSourceContainer> containerOptional = findContainerByName(createContainerName(dataSourceId));
 		if (containerOptional.isPresent())
-			dockerClient.stopContainerCmd(containerOptional.get().getId());
+			stopContainer(containerOptional.get().getId());
+	}
+
+	/**
+	 * Stops the managed container paused for the longest time, releasing its
+	 * memory
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return False if there are no paused containers
+	 */
+	public boolean stopLongestPausedDataSourceContainer() {
+		while (true) {
+			Optional<DataSourceContainer> pausedContainer = dataSourceContainerRegistry.getAll().stream()
+					.filter(c -> c.isManaged() && c.getState() == DataSourceContainerState.PAUSED)
+					.min(Comparator.comparingLong(DataSourceContainer::getStateChangedMillis));
+			if (!pausedContainer.isPresent())
+				return false;
+			Lock containerLock = containerLocks.get(pausedContainer.get().getName());
+			containerLock.lock();
+			try {
+				// State could have changed while waiting for the lock
+				DataSourceContainer currentContainer = dataSourceContainerRegistry.findById(pausedContainer.get().getId()).orElse(null);
+				if (currentContainer != null && currentContainer.getState() == DataSourceContainerState.PAUSED) {
+					stopContainer(currentContainer.getId());
+					return true;
+				}
+			} finally {
+				containerLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Moves hibernated containers to the next hibernation tier once they have been
+	 * idle in the current one for the configured time: paused containers are
+	 * stopped and stopped containers are removed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void sweepHibernatedDataSourceContainers() {
+		long pausedContainerIdleTimeMillis = dataSourceContainerParameters.getPausedContainerIdleTimeMillis();
+		long stoppedContainerIdleTimeMillis = dataSourceContainerParameters.getStoppedContainerIdleTimeMillis();
+		for (DataSourceContainer container : dataSourceContainerRegistry.getAll()) {
+			if (!container.isManaged() || container.isRunning())
+				continue;
+			Lock containerLock = containerLocks.get(container.getName());
+			containerLock.lock();
+			try {
+				// State could have changed while waiting for the lock
+				DataSourceContainer currentContainer = dataSourceContainerRegistry.findById(container.getId()).orElse(null);
+				if (currentContainer == null)
+					continue;
+				long idleTimeMillis = System.currentTimeMillis() - currentContainer.getStateChangedMillis();
+				if (currentContainer.getState() == DataSourceContainerState.PAUSED && pausedContainerIdleTimeMillis >= 0
+						&& idleTimeMillis >= pausedContainerIdleTimeMillis) {
+					if (stoppedContainerIdleTimeMillis != 0)
+						stopContainer(currentContainer.getId());
+					else
+						removeContainer(currentContainer.getId());
+				} else if (currentContainer.getState() == DataSourceContainerState.STOPPED && stoppedContainerIdleTimeMillis >= 0
+						&& idleTimeMillis >= stoppedContainerIdleTimeMillis)
+					removeContainer(currentContainer.getId());
+			} catch (Exception e) {
+				e.printStackTrace();
+			} finally {
+				containerLock.unlock();
+			}
+		}
+	}
+
+	private void unpauseContainer(String containerId) {
+		long unpauseStartNanos = System.nanoTime();
+		metricsRecorder.timeDockerCall("unpauseContainer", () -> containerRuntime.unpauseContainer(containerId));
+		recordColdStartPhase(ColdStartPhase.START, unpauseStartNanos);
+		dataSourceContainerRegistry.updateState(containerId, DataSourceContainerState.RUNNING, System.currentTimeMillis());
 	}
 
 	/**
@@ -263,25 +1101,32 @@ public class DataSourceContainerManager {
 	}
 
 	/**
-	 * Waits until the data source is active
+	 * Waits until the data source of a starting container is active
 	 * 
 	 * @author magidc <info@magidc.io>
-	 * @param dataSource
-	 * @param waitingTimeMillis
+	 * @param container
+	 * @param logsSinceSeconds
+	 *            Epoch seconds of the container start, null if container has not
+	 *            been started (i.e. unpaused)
 	 * @return
 	 * @throws InterruptedException
 	 * @throws DataSourceNotAvailableException
 	 */
-	private DataSource waitForActiveDataSource(DataSource dataSource, long waitingTimeMillis)
+	private DataSource waitForActiveDataSource(DataSourceContainer container, Integer logsSinceSeconds)
 			throws InterruptedException, DataSourceNotAvailableException {
-		Thread.sleep(1000);
-		long newWaitingTimeMillis = waitingTimeMillis;
-		while (!validateDataSource(dataSource)) {
-			newWaitingTimeMillis += dataSourceContainerParameters.getContainerStartingUpAttempPeriodMillis();
-			if (newWaitingTimeMillis > dataSourceContainerParameters.getContainerStartingUpTimeoutMillis())
-				throw new DataSourceNotAvailableException();
-			Thread.sleep(newWaitingTimeMillis);
-		}
+		String host = findDataSourceHost(container);
+		int port = findDataSourcePort(container);
+		DataSource dataSource = dataSourceConfigurer.createDataSource(host, port);
+		long readinessStartNanos = System.nanoTime();
+		ReadinessReport readinessReport = dataSourceReadinessChecker.awaitReadiness(container.getId(), host, port, dataSource, logsSinceSeconds);
+		recordColdStartPhase(ColdStartPhase.READINESS, readinessStartNanos);
+		if (coldStartTracer != null)
+			for (ReadinessPhase readinessPhase : ReadinessPhase.values())
+				if (readinessReport.getPhaseMillis(readinessPhase) != null)
+					coldStartTracer.recordReadinessAttempts(readinessPhase.name(), readinessReport.getAttempts(readinessPhase));
+		readinessReports.put(container.getName(), readinessReport);
+		if (!readinessReport.isReady())
+			throw new DataSourceNotAvailableException();
 		return dataSource;
 	}
 }
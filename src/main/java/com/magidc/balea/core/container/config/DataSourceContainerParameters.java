@@ -21,6 +21,11 @@ package com.magidc.balea.core.container.config;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.magidc.balea.core.container.packing.TenantPackingParameters;
+import com.magidc.balea.core.container.volume.DataDirTemplateParameters;
+import com.magidc.balea.core.metrics.ColdStartTracer;
+import com.magidc.balea.core.metrics.MetricsRecorder;
+
 /**
  * 
  * @author magidc <info@magidc.io>
@@ -31,15 +36,54 @@ public class DataSourceContainerParameters {
 	private String[] dataVolumes;
 	private int port;
 	private PortBindingSupplier portBindingSupplier;
+	private Integer firstHostPort;
+	private Integer lastHostPort;
+	private int containerAdoptionThreads = 8;
 	private int containerStartingUpAttempPeriodMillis = 1000;
-	private int containerStartingUpTimeoutMillis = 5000;
+	private int containerStartingUpTimeoutMillis = 30000;
+	private long readinessInitialPollIntervalMillis = 25;
+	private double readinessPollIntervalMultiplier = 1.5;
+	private double readinessPollJitter = 0.2;
+	private boolean readinessTcpProbeEnabled = true;
+	private int readinessTcpConnectTimeoutMillis = 250;
+	private boolean readinessHealthCheckEnabled = false;
+	private String readinessLogPattern;
 	private String containerNamePrefix = "managed_";
+	private long containerRegistryResyncPeriodMillis = 60000;
+	private long imageRegistryResyncPeriodMillis = 300000;
+	private long containerHibernationSweepPeriodMillis = 10000;
+	private long pausedContainerIdleTimeMillis = 300000;
+	private long stoppedContainerIdleTimeMillis = 3600000;
 	private Map<String, String> environmentVariables = new HashMap<String, String>();
+	private ResourceProfileResolver resourceProfileResolver;
+	private DataDirTemplateParameters dataDirTemplateParameters;
+	private long memoryStatsSamplePeriodMillis = 0;
+	private int memoryStatsThreads = 4;
+	private double maximumMemoryPressure = 0.9;
+	private MetricsRecorder metricsRecorder = MetricsRecorder.NONE;
+	private ColdStartTracer coldStartTracer;
+	private TenantPackingParameters tenantPackingParameters;
+
+	public ColdStartTracer getColdStartTracer() {
+		return coldStartTracer;
+	}
+
+	public int getContainerAdoptionThreads() {
+		return containerAdoptionThreads;
+	}
+
+	public long getContainerHibernationSweepPeriodMillis() {
+		return containerHibernationSweepPeriodMillis;
+	}
 
 	public String getContainerNamePrefix() {
 		return containerNamePrefix;
 	}
 
+	public long getContainerRegistryResyncPeriodMillis() {
+		return containerRegistryResyncPeriodMillis;
+	}
+
 	public int getContainerStartingUpAttempPeriodMillis() {
 		return containerStartingUpAttempPeriodMillis;
 	}
@@ -48,6 +92,10 @@ public class DataSourceContainerParameters {
 		return containerStartingUpTimeoutMillis;
 	}
 
+	public DataDirTemplateParameters getDataDirTemplateParameters() {
+		return dataDirTemplateParameters;
+	}
+
 	public String[] getDataVolumes() {
 		return dataVolumes;
 	}
@@ -56,10 +104,48 @@ public class DataSourceContainerParameters {
 		return environmentVariables;
 	}
 
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return First port of the host port range allocated by the built-in
+	 *         allocator, null if the allocator is not used
+	 */
+	public Integer getFirstHostPort() {
+		return firstHostPort;
+	}
+
 	public String getImageName() {
 		return imageName;
 	}
 
+	public long getImageRegistryResyncPeriodMillis() {
+		return imageRegistryResyncPeriodMillis;
+	}
+
+	public Integer getLastHostPort() {
+		return lastHostPort;
+	}
+
+	public double getMaximumMemoryPressure() {
+		return maximumMemoryPressure;
+	}
+
+	public long getMemoryStatsSamplePeriodMillis() {
+		return memoryStatsSamplePeriodMillis;
+	}
+
+	public int getMemoryStatsThreads() {
+		return memoryStatsThreads;
+	}
+
+	public MetricsRecorder getMetricsRecorder() {
+		return metricsRecorder;
+	}
+
+	public long getPausedContainerIdleTimeMillis() {
+		return pausedContainerIdleTimeMillis;
+	}
+
 	public int getPort() {
 		return port;
 	}
@@ -68,18 +154,121 @@ public class DataSourceContainerParameters {
 		return portBindingSupplier;
 	}
 
+	public long getReadinessInitialPollIntervalMillis() {
+		return readinessInitialPollIntervalMillis;
+	}
+
+	public String getReadinessLogPattern() {
+		return readinessLogPattern;
+	}
+
+	public double getReadinessPollIntervalMultiplier() {
+		return readinessPollIntervalMultiplier;
+	}
+
+	public double getReadinessPollJitter() {
+		return readinessPollJitter;
+	}
+
+	public int getReadinessTcpConnectTimeoutMillis() {
+		return readinessTcpConnectTimeoutMillis;
+	}
+
+	public ResourceProfileResolver getResourceProfileResolver() {
+		return resourceProfileResolver;
+	}
+
+	public long getStoppedContainerIdleTimeMillis() {
+		return stoppedContainerIdleTimeMillis;
+	}
+
+	public TenantPackingParameters getTenantPackingParameters() {
+		return tenantPackingParameters;
+	}
+
+	public boolean isReadinessHealthCheckEnabled() {
+		return readinessHealthCheckEnabled;
+	}
+
+	public boolean isReadinessTcpProbeEnabled() {
+		return readinessTcpProbeEnabled;
+	}
+
+	/**
+	 * Tracer of data source cold starts, keeping a timeline of their phases and
+	 * container runtime calls. Disabled by default
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param coldStartTracer
+	 */
+	public void setColdStartTracer(ColdStartTracer coldStartTracer) {
+		this.coldStartTracer = coldStartTracer;
+	}
+
+	/**
+	 * Number of threads validating or removing existing containers when they are
+	 * adopted
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerAdoptionThreads
+	 */
+	public void setContainerAdoptionThreads(int containerAdoptionThreads) {
+		this.containerAdoptionThreads = containerAdoptionThreads;
+	}
+
+	public void setContainerHibernationSweepPeriodMillis(long containerHibernationSweepPeriodMillis) {
+		this.containerHibernationSweepPeriodMillis = containerHibernationSweepPeriodMillis;
+	}
+
 	public void setContainerNamePrefix(String containerNamePrefix) {
 		this.containerNamePrefix = containerNamePrefix;
 	}
 
+	/**
+	 * Period of the full container listing used to resynchronize the container
+	 * registry with Docker daemon, in between it is kept current from Docker events
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerRegistryResyncPeriodMillis
+	 */
+	public void setContainerRegistryResyncPeriodMillis(long containerRegistryResyncPeriodMillis) {
+		this.containerRegistryResyncPeriodMillis = containerRegistryResyncPeriodMillis;
+	}
+
+	/**
+	 * Maximum interval between readiness probes while a container is starting up
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerStartingUpAttempPeriodMillis
+	 */
 	public void setContainerStartingUpAttempPeriodMillis(int containerStartingUpAttempPeriodMillis) {
 		this.containerStartingUpAttempPeriodMillis = containerStartingUpAttempPeriodMillis;
 	}
 
+	/**
+	 * Maximum time for a starting container to become ready, measured from the
+	 * first readiness probe
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerStartingUpTimeoutMillis
+	 */
 	public void setContainerStartingUpTimeoutMillis(int containerStartingUpTimeoutMillis) {
 		this.containerStartingUpTimeoutMillis = containerStartingUpTimeoutMillis;
 	}
 
+	/**
+	 * Data directories of new data sources are cloned from pre-initialized
+	 * templates instead of being initialized by the database on first start.
+	 * Disabled if not set. Data directories and templates must be reachable from
+	 * this host
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataDirTemplateParameters
+	 */
+	public void setDataDirTemplateParameters(DataDirTemplateParameters dataDirTemplateParameters) {
+		this.dataDirTemplateParameters = dataDirTemplateParameters;
+	}
+
 	public void setDataVolumes(String[] dataVolumes) {
 		this.dataVolumes = dataVolumes;
 	}
@@ -92,6 +281,73 @@ public class DataSourceContainerParameters {
 		this.imageName = imageName;
 	}
 
+	/**
+	 * Period of the image presence check used to resynchronize the image registry
+	 * with Docker daemon, missing images are pulled again. In between it is kept
+	 * current from Docker image events
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param imageRegistryResyncPeriodMillis
+	 */
+	public void setImageRegistryResyncPeriodMillis(long imageRegistryResyncPeriodMillis) {
+		this.imageRegistryResyncPeriodMillis = imageRegistryResyncPeriodMillis;
+	}
+
+	/**
+	 * Fraction of the host memory in use by data source containers from which
+	 * hibernated containers are stopped instead of paused and new data sources
+	 * are admitted only after releasing memory
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param maximumMemoryPressure
+	 */
+	public void setMaximumMemoryPressure(double maximumMemoryPressure) {
+		this.maximumMemoryPressure = maximumMemoryPressure;
+	}
+
+	/**
+	 * Period to sample the memory usage of running and paused containers from
+	 * their stats, used to measure host memory pressure. Zero disables it
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param memoryStatsSamplePeriodMillis
+	 */
+	public void setMemoryStatsSamplePeriodMillis(long memoryStatsSamplePeriodMillis) {
+		this.memoryStatsSamplePeriodMillis = memoryStatsSamplePeriodMillis;
+	}
+
+	/**
+	 * Number of threads sampling container stats
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param memoryStatsThreads
+	 */
+	public void setMemoryStatsThreads(int memoryStatsThreads) {
+		this.memoryStatsThreads = memoryStatsThreads;
+	}
+
+	/**
+	 * Recorder of cold start phases, Docker API calls and container counts.
+	 * Disabled by default
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param metricsRecorder
+	 */
+	public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+		this.metricsRecorder = metricsRecorder;
+	}
+
+	/**
+	 * Time a hibernated container stays paused before being stopped. Zero skips
+	 * the paused tier, a negative value keeps the container paused indefinitely
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param pausedContainerIdleTimeMillis
+	 */
+	public void setPausedContainerIdleTimeMillis(long pausedContainerIdleTimeMillis) {
+		this.pausedContainerIdleTimeMillis = pausedContainerIdleTimeMillis;
+	}
+
 	public void setPort(int port) {
 		this.port = port;
 	}
@@ -100,6 +356,104 @@ public class DataSourceContainerParameters {
 		this.portBindingSupplier = portBindingSupplier;
 	}
 
+	/**
+	 * Waits for the container HEALTHCHECK to report healthy before validating the
+	 * data source. Ignored for images without HEALTHCHECK
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readinessHealthCheckEnabled
+	 */
+	public void setReadinessHealthCheckEnabled(boolean readinessHealthCheckEnabled) {
+		this.readinessHealthCheckEnabled = readinessHealthCheckEnabled;
+	}
+
+	/**
+	 * Interval before the second readiness probe, growing on each attempt by the
+	 * poll interval multiplier up to the container starting up attempt period
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readinessInitialPollIntervalMillis
+	 */
+	public void setReadinessInitialPollIntervalMillis(long readinessInitialPollIntervalMillis) {
+		this.readinessInitialPollIntervalMillis = readinessInitialPollIntervalMillis;
+	}
+
+	/**
+	 * Regular expression of the container log line announcing that the database
+	 * is ready (i.e. "ready to accept connections"). Log stream is not followed if
+	 * it is not set
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readinessLogPattern
+	 */
+	public void setReadinessLogPattern(String readinessLogPattern) {
+		this.readinessLogPattern = readinessLogPattern;
+	}
+
+	public void setReadinessPollIntervalMultiplier(double readinessPollIntervalMultiplier) {
+		this.readinessPollIntervalMultiplier = readinessPollIntervalMultiplier;
+	}
+
+	/**
+	 * Random variation applied to each readiness poll interval, as a fraction of
+	 * the interval, so containers started together are not probed in lockstep
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readinessPollJitter
+	 */
+	public void setReadinessPollJitter(double readinessPollJitter) {
+		this.readinessPollJitter = readinessPollJitter;
+	}
+
+	public void setReadinessTcpConnectTimeoutMillis(int readinessTcpConnectTimeoutMillis) {
+		this.readinessTcpConnectTimeoutMillis = readinessTcpConnectTimeoutMillis;
+	}
+
+	/**
+	 * Probes the database port with a plain TCP connection before validating the
+	 * data source, which is much cheaper than a JDBC connection
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readinessTcpProbeEnabled
+	 */
+	public void setReadinessTcpProbeEnabled(boolean readinessTcpProbeEnabled) {
+		this.readinessTcpProbeEnabled = readinessTcpProbeEnabled;
+	}
+
+	/**
+	 * Resolver of the resource limits of each data source container. Containers
+	 * have no limits if it is not set
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param resourceProfileResolver
+	 */
+	public void setResourceProfileResolver(ResourceProfileResolver resourceProfileResolver) {
+		this.resourceProfileResolver = resourceProfileResolver;
+	}
+
+	/**
+	 * Time a hibernated container stays stopped before being removed. Zero skips
+	 * the stopped tier, a negative value keeps the container stopped indefinitely
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param stoppedContainerIdleTimeMillis
+	 */
+	public void setStoppedContainerIdleTimeMillis(long stoppedContainerIdleTimeMillis) {
+		this.stoppedContainerIdleTimeMillis = stoppedContainerIdleTimeMillis;
+	}
+
+	/**
+	 * Packing of many data sources (tenants) in a fixed number of shared
+	 * containers by consistent hashing, instead of one container per data source.
+	 * Disabled by default
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param tenantPackingParameters
+	 */
+	public void setTenantPackingParameters(TenantPackingParameters tenantPackingParameters) {
+		this.tenantPackingParameters = tenantPackingParameters;
+	}
+
 	/**
 	 * Supplier of ports available to be bind with new containers
 	 * 
@@ -110,8 +464,24 @@ public class DataSourceContainerParameters {
 		this.portBindingSupplier = portBindingSupplier;
 	}
 
+	/**
+	 * Container ports are published on host ports of the given range, allocated
+	 * by the built-in host port allocator. It takes precedence over any port
+	 * binding supplier
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param firstHostPort
+	 *            Inclusive
+	 * @param lastHostPort
+	 *            Inclusive
+	 */
+	public void useDockerProxy(int firstHostPort, int lastHostPort) {
+		this.firstHostPort = firstHostPort;
+		this.lastHostPort = lastHostPort;
+	}
+
 	public boolean usesDockerProxy() {
-		return portBindingSupplier != null;
+		return portBindingSupplier != null || firstHostPort != null;
 	}
 
 }
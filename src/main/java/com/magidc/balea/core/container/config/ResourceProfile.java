@@ -0,0 +1,95 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Resource limits of the container of a data source. Limits not set are not
+ * applied
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class ResourceProfile {
+	private Long memoryBytes;
+	private Integer cpuShares;
+	private String cpusetCpus;
+	private Map<String, String> tmpfs = new LinkedHashMap<>();
+
+	public Integer getCpuShares() {
+		return cpuShares;
+	}
+
+	public String getCpusetCpus() {
+		return cpusetCpus;
+	}
+
+	public Long getMemoryBytes() {
+		return memoryBytes;
+	}
+
+	public Map<String, String> getTmpfs() {
+		return tmpfs;
+	}
+
+	/**
+	 * Relative CPU weight against other containers when CPU is contended (1024
+	 * by default in Docker)
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param cpuShares
+	 */
+	public void setCpuShares(Integer cpuShares) {
+		this.cpuShares = cpuShares;
+	}
+
+	/**
+	 * CPUs the container is allowed to run on (i.e. "0-3" or "0,2")
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param cpusetCpus
+	 */
+	public void setCpusetCpus(String cpusetCpus) {
+		this.cpusetCpus = cpusetCpus;
+	}
+
+	/**
+	 * Hard memory limit. Swap is not allowed beyond it, so a tenant exceeding it
+	 * does not make the host swap
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param memoryBytes
+	 */
+	public void setMemoryBytes(Long memoryBytes) {
+		this.memoryBytes = memoryBytes;
+	}
+
+	/**
+	 * In memory file systems (i.e. for temporary files), mount options by
+	 * container directory (i.e. "rw,size=256m")
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param tmpfs
+	 */
+	public void setTmpfs(Map<String, String> tmpfs) {
+		this.tmpfs = tmpfs;
+	}
+}
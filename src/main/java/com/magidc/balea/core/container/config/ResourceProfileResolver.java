@@ -0,0 +1,36 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.config;
+
+/**
+ * Resolves the resource limits of the container of each data source (i.e. by
+ * tenant plan)
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public interface ResourceProfileResolver {
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Resource profile or null if the container has no limits
+	 */
+	public ResourceProfile resolveResourceProfile(Object dataSourceId);
+}
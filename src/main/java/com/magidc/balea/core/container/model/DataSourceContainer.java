@@ -0,0 +1,122 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.model;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Snapshot of a container known by the container registry
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class DataSourceContainer {
+	private final String id;
+	private final String name;
+	private final String dataSourceId;
+	private final DataSourceContainerState state;
+	private final Integer hostPort;
+	private final Set<Integer> bindedPorts;
+	private final long stateChangedMillis;
+
+	public DataSourceContainer(String id, String name, String dataSourceId, DataSourceContainerState state, Integer hostPort, Set<Integer> bindedPorts,
+			long stateChangedMillis) {
+		super();
+		this.id = id;
+		this.name = name;
+		this.dataSourceId = dataSourceId;
+		this.state = state;
+		this.hostPort = hostPort;
+		this.bindedPorts = Collections.unmodifiableSet(bindedPorts);
+		this.stateChangedMillis = stateChangedMillis;
+	}
+
+	/**
+	 * All host ports bound to the container
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public Set<Integer> getBindedPorts() {
+		return bindedPorts;
+	}
+
+	/**
+	 * Data source id (as string) of a managed container, null if the container is
+	 * not managed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public String getDataSourceId() {
+		return dataSourceId;
+	}
+
+	/**
+	 * Host port bound to the data source port, null if not bound
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public Integer getHostPort() {
+		return hostPort;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public DataSourceContainerState getState() {
+		return state;
+	}
+
+	public long getStateChangedMillis() {
+		return stateChangedMillis;
+	}
+
+	public boolean isManaged() {
+		return dataSourceId != null;
+	}
+
+	public boolean isRunning() {
+		return state == DataSourceContainerState.RUNNING;
+	}
+
+	/**
+	 * Copy of this container in a new state
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param state
+	 * @param stateChangedMillis
+	 * @return
+	 */
+	public DataSourceContainer withState(DataSourceContainerState state, long stateChangedMillis) {
+		return new DataSourceContainer(id, name, dataSourceId, state, hostPort, bindedPorts, stateChangedMillis);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("DataSourceContainer [id=%s, name=%s, state=%s, hostPort=%s]", id, name, state, hostPort);
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.model;
+
+/**
+ * Lifecycle state of a data source container
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public enum DataSourceContainerState {
+	CREATED, RUNNING, PAUSED, STOPPED;
+
+	/**
+	 * Maps a Docker container state (as reported by container listing) to a data
+	 * source container state
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dockerState
+	 * @return
+	 */
+	public static DataSourceContainerState fromDockerState(String dockerState) {
+		if (dockerState == null)
+			return STOPPED;
+		switch (dockerState) {
+		case "created":
+			return CREATED;
+		case "running":
+		case "restarting":
+			return RUNNING;
+		case "paused":
+			return PAUSED;
+		default:
+			return STOPPED;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.packing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Immutable consistent hash ring. Every node is placed in several points of the
+ * ring (virtual nodes) so keys are evenly spread, and adding or removing a node
+ * only moves the keys of that node
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class ConsistentHashRing {
+	private static final HashFunction HASH_FUNCTION = Hashing.murmur3_32();
+
+	private static int hash(String value) {
+		return HASH_FUNCTION.hashString(value, StandardCharsets.UTF_8).asInt();
+	}
+
+	private final TreeMap<Integer, String> ring = new TreeMap<>();
+	private final Set<String> nodes;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param nodes
+	 * @param virtualNodes
+	 *            Points of the ring per node
+	 */
+	public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+		this.nodes = Collections.unmodifiableSet(new LinkedHashSet<>(nodes));
+		for (String node : this.nodes)
+			for (int i = 0; i < Math.max(1, virtualNodes); i++)
+				ring.putIfAbsent(hash(String.format("%s#%d", node, i)), node);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param key
+	 * @return Node owning the key, the first one clockwise from its hash
+	 */
+	public String getNode(Object key) {
+		if (ring.isEmpty())
+			throw new IllegalStateException("Consistent hash ring has no nodes");
+		Map.Entry<Integer, String> entry = ring.ceilingEntry(hash(String.valueOf(key)));
+		return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+	}
+
+	public Set<String> getNodes() {
+		return nodes;
+	}
+}
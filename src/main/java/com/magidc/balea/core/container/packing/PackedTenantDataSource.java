@@ -0,0 +1,111 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.packing;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * Data source of a tenant packed in a shared container. The container of the
+ * tenant is resolved on every connection, so connections follow the tenant
+ * when it is moved to another container. Data sources keeping its connections
+ * (i.e. connection pools) are invalidated by the tenant move handler of the
+ * container manager
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class PackedTenantDataSource implements DataSource {
+	/**
+	 * Resolves the data source of a tenant in its current container
+	 * 
+	 * @author magidc <info@magidc.io>
+	 *
+	 */
+	@FunctionalInterface
+	public interface TenantDataSourceResolver {
+		public DataSource resolveTenantDataSource(Object dataSourceId) throws SQLException;
+	}
+
+	private final Object dataSourceId;
+	private final TenantDataSourceResolver tenantDataSourceResolver;
+	private int loginTimeout;
+	private PrintWriter logWriter;
+
+	public PackedTenantDataSource(Object dataSourceId, TenantDataSourceResolver tenantDataSourceResolver) {
+		this.dataSourceId = dataSourceId;
+		this.tenantDataSourceResolver = tenantDataSourceResolver;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return tenantDataSourceResolver.resolveTenantDataSource(dataSourceId).getConnection();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return tenantDataSourceResolver.resolveTenantDataSource(dataSourceId).getConnection(username, password);
+	}
+
+	public Object getDataSourceId() {
+		return dataSourceId;
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return loginTimeout;
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return logWriter;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		this.loginTimeout = seconds;
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		this.logWriter = out;
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this))
+			return iface.cast(this);
+		throw new SQLException(String.format("Not a wrapper for %s", iface.getName()));
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.packing;
+
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+/**
+ * Moves the database or schema of a tenant between packed containers when
+ * tenants are rebalanced
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+@FunctionalInterface
+public interface TenantMigrator {
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param sourceDataSource
+	 *            Data source of the tenant in the container it leaves
+	 * @param targetDataSource
+	 *            Data source of the tenant in the container it moves to
+	 * @throws SQLException
+	 */
+	public void migrateTenant(Object dataSourceId, DataSource sourceDataSource, DataSource targetDataSource) throws SQLException;
+}
@@ -0,0 +1,199 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.packing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.sql.DataSource;
+
+/**
+ * Assignment of tenants (logical data source ids) to the containers they are
+ * packed in, by consistent hashing. Tracks the active tenants of each
+ * container, so containers are only hibernated once none of their tenants is
+ * in use, and the data source of each active tenant in its current container
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class TenantPacking {
+	private static final class TenantBinding {
+		private final String containerId;
+		private final DataSource dataSource;
+
+		private TenantBinding(String containerId, DataSource dataSource) {
+			this.containerId = containerId;
+			this.dataSource = dataSource;
+		}
+	}
+
+	private final TenantPackingParameters tenantPackingParameters;
+	private volatile ConsistentHashRing ring;
+	// Tenants already moved by a rebalance in progress, until the new ring
+	// replaces the current one
+	private final ConcurrentMap<Object, String> movedTenants = new ConcurrentHashMap<>();
+	private final Map<Object, String> activeTenants = new HashMap<>();
+	private final Map<String, Integer> containerRetentions = new HashMap<>();
+	private final ConcurrentMap<Object, TenantBinding> tenantBindings = new ConcurrentHashMap<>();
+
+	public TenantPacking(TenantPackingParameters tenantPackingParameters) {
+		this.tenantPackingParameters = tenantPackingParameters;
+		this.ring = createRing(tenantPackingParameters.getContainerCount());
+	}
+
+	/**
+	 * Counts a tenant as in use. Its data source is resolved again, as its
+	 * container could have been recreated since it was last active
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Id of the container data source the tenant is packed in
+	 */
+	public synchronized String activateTenant(Object dataSourceId) {
+		String containerDataSourceId = getContainerDataSourceId(dataSourceId);
+		tenantBindings.remove(dataSourceId);
+		activeTenants.put(dataSourceId, containerDataSourceId);
+		return containerDataSourceId;
+	}
+
+	/**
+	 * Keeps the data source of a tenant in a container, until the tenant is
+	 * deactivated or moved
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param containerId
+	 * @param dataSource
+	 */
+	public void bindTenantDataSource(Object dataSourceId, String containerId, DataSource dataSource) {
+		tenantBindings.put(dataSourceId, new TenantBinding(containerId, dataSource));
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerCount
+	 * @return Ring of the given number of containers. Containers are numbered, so
+	 *         a ring with one more container keeps every other container
+	 */
+	public ConsistentHashRing createRing(int containerCount) {
+		List<String> containerDataSourceIds = new ArrayList<>(containerCount);
+		for (int i = 0; i < containerCount; i++)
+			containerDataSourceIds.add(String.format("%s%d", tenantPackingParameters.getContainerDataSourceIdPrefix(), i));
+		return new ConsistentHashRing(containerDataSourceIds, tenantPackingParameters.getVirtualNodes());
+	}
+
+	/**
+	 * Stops counting a tenant as in use
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Id of the container data source the tenant was active in, null if it
+	 *         was not active
+	 */
+	public synchronized String deactivateTenant(Object dataSourceId) {
+		tenantBindings.remove(dataSourceId);
+		return activeTenants.remove(dataSourceId);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Id of the data source of the container the tenant is packed in
+	 */
+	public String getContainerDataSourceId(Object dataSourceId) {
+		String movedContainerDataSourceId = movedTenants.get(dataSourceId);
+		return movedContainerDataSourceId != null ? movedContainerDataSourceId : ring.getNode(dataSourceId);
+	}
+
+	public Set<String> getContainerDataSourceIds() {
+		return ring.getNodes();
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param containerId
+	 * @return Data source of the tenant bound to the given container, null if
+	 *         there is none
+	 */
+	public DataSource getTenantDataSource(Object dataSourceId, String containerId) {
+		TenantBinding tenantBinding = tenantBindings.get(dataSourceId);
+		return tenantBinding != null && tenantBinding.containerId.equals(containerId) ? tenantBinding.dataSource : null;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerDataSourceId
+	 * @return Whether the container has neither active tenants nor retentions, so
+	 *         it can be hibernated
+	 */
+	public synchronized boolean isContainerIdle(String containerDataSourceId) {
+		return !containerRetentions.containsKey(containerDataSourceId) && !activeTenants.containsValue(containerDataSourceId);
+	}
+
+	/**
+	 * Assigns a tenant to another container ahead of the ring replacement. If the
+	 * tenant is active, it is counted in its new container
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param containerDataSourceId
+	 */
+	public synchronized void moveTenant(Object dataSourceId, String containerDataSourceId) {
+		movedTenants.put(dataSourceId, containerDataSourceId);
+		if (activeTenants.containsKey(dataSourceId))
+			activeTenants.put(dataSourceId, containerDataSourceId);
+		tenantBindings.remove(dataSourceId);
+	}
+
+	public synchronized void releaseContainer(String containerDataSourceId) {
+		containerRetentions.computeIfPresent(containerDataSourceId, (id, retentions) -> retentions > 1 ? retentions - 1 : null);
+	}
+
+	/**
+	 * Replaces the ring once every tenant to rebalance has been moved
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param ring
+	 */
+	public synchronized void replaceRing(ConsistentHashRing ring) {
+		this.ring = ring;
+		movedTenants.clear();
+	}
+
+	/**
+	 * Keeps a container from being hibernated without active tenants, i.e. while
+	 * tenants are migrated
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerDataSourceId
+	 */
+	public synchronized void retainContainer(String containerDataSourceId) {
+		containerRetentions.merge(containerDataSourceId, 1, Integer::sum);
+	}
+}
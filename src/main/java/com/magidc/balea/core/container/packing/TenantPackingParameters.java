@@ -0,0 +1,92 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.packing;
+
+/**
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class TenantPackingParameters {
+	private int containerCount = 16;
+	private int virtualNodes = 128;
+	private String containerDataSourceIdPrefix = "pack-";
+	private TenantMigrator tenantMigrator;
+
+	public int getContainerCount() {
+		return containerCount;
+	}
+
+	public String getContainerDataSourceIdPrefix() {
+		return containerDataSourceIdPrefix;
+	}
+
+	public TenantMigrator getTenantMigrator() {
+		return tenantMigrator;
+	}
+
+	public int getVirtualNodes() {
+		return virtualNodes;
+	}
+
+	/**
+	 * Number of containers tenants are packed in
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerCount
+	 */
+	public void setContainerCount(int containerCount) {
+		this.containerCount = containerCount;
+	}
+
+	/**
+	 * Prefix of the ids packed containers are managed by, followed by the
+	 * container number (i.e. <code>pack-0</code>). They are the data source ids
+	 * given to {@link com.magidc.balea.core.core.config.DataSourceConfigurer}
+	 * to resolve data directories and to resource profile resolvers
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerDataSourceIdPrefix
+	 */
+	public void setContainerDataSourceIdPrefix(String containerDataSourceIdPrefix) {
+		this.containerDataSourceIdPrefix = containerDataSourceIdPrefix;
+	}
+
+	/**
+	 * Moves tenants between containers when they are rebalanced. Null if the
+	 * database or schema of moved tenants is created on demand
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param tenantMigrator
+	 */
+	public void setTenantMigrator(TenantMigrator tenantMigrator) {
+		this.tenantMigrator = tenantMigrator;
+	}
+
+	/**
+	 * Points of the consistent hash ring per container. More points spread
+	 * tenants more evenly
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param virtualNodes
+	 */
+	public void setVirtualNodes(int virtualNodes) {
+		this.virtualNodes = virtualNodes;
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.readiness;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import com.magidc.balea.core.container.config.DataSourceContainerParameters;
+import com.magidc.balea.core.container.registry.DataSourceContainerRegistry;
+import com.magidc.balea.core.container.runtime.ContainerRuntime;
+import com.magidc.balea.core.core.config.DataSourceConfigurer;
+
+/**
+ * Detects when a starting data source container is ready to accept
+ * connections. Readiness is awaited in phases, from the cheapest signal to the
+ * most reliable one: a line in the container log, a TCP connection to the
+ * database port, the container HEALTHCHECK status and finally a JDBC validation
+ * of the data source. Each phase but the last one can be disabled. Phases are
+ * polled with exponential backoff and jitter, bounded by the container starting
+ * up timeout
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class DataSourceReadinessChecker {
+	// Time to wait for the peer closing a TCP probe connection. Docker userland
+	// proxy accepts connections on published ports before the database listens
+	// and closes them right away
+	private static final int TCP_PROBE_CLOSE_DETECTION_MILLIS = 20;
+	private static final String HEALTHY = "healthy";
+
+	private final ContainerRuntime containerRuntime;
+	private final DataSourceContainerRegistry dataSourceContainerRegistry;
+	private final DataSourceContainerParameters dataSourceContainerParameters;
+	private final DataSourceConfigurer dataSourceConfigurer;
+	private final Pattern readinessLogPattern;
+
+	public DataSourceReadinessChecker(ContainerRuntime containerRuntime, DataSourceContainerRegistry dataSourceContainerRegistry,
+			DataSourceContainerParameters dataSourceContainerParameters, DataSourceConfigurer dataSourceConfigurer) {
+		this.containerRuntime = containerRuntime;
+		this.dataSourceContainerRegistry = dataSourceContainerRegistry;
+		this.dataSourceContainerParameters = dataSourceContainerParameters;
+		this.dataSourceConfigurer = dataSourceConfigurer;
+		this.readinessLogPattern = dataSourceContainerParameters.getReadinessLogPattern() != null
+				? Pattern.compile(dataSourceContainerParameters.getReadinessLogPattern())
+				: null;
+	}
+
+	private boolean awaitPhase(ReadinessReport readinessReport, ReadinessPhase readinessPhase, BooleanSupplier probe, long deadlineNanos)
+			throws InterruptedException {
+		ReadinessBackoff readinessBackoff = new ReadinessBackoff(dataSourceContainerParameters.getReadinessInitialPollIntervalMillis(),
+				dataSourceContainerParameters.getContainerStartingUpAttempPeriodMillis(), dataSourceContainerParameters.getReadinessPollIntervalMultiplier(),
+				dataSourceContainerParameters.getReadinessPollJitter());
+		long phaseStartNanos = System.nanoTime();
+		int attempts = 0;
+		while (true) {
+			attempts++;
+			if (probe.getAsBoolean()) {
+				readinessReport.recordPhase(readinessPhase, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStartNanos), attempts);
+				return true;
+			}
+			long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+			if (remainingMillis <= 0) {
+				readinessReport.recordFailure(readinessPhase, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStartNanos), attempts);
+				return false;
+			}
+			Thread.sleep(Math.min(remainingMillis, readinessBackoff.nextDelayMillis()));
+		}
+	}
+
+	/**
+	 * Waits until the data source of a container is ready to accept connections
+	 * or the container starting up timeout expires
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @param host
+	 *            Host the data source connects to
+	 * @param port
+	 *            Port the data source connects to
+	 * @param dataSource
+	 * @param logsSinceSeconds
+	 *            Epoch seconds of the container start, log stream is not followed
+	 *            if null (i.e. unpaused containers do not log again readiness)
+	 * @return Readiness report, not ready if timeout expired
+	 * @throws InterruptedException
+	 */
+	public ReadinessReport awaitReadiness(String containerId, String host, int port, DataSource dataSource, Integer logsSinceSeconds)
+			throws InterruptedException {
+		ReadinessReport readinessReport = new ReadinessReport(containerId);
+		long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(dataSourceContainerParameters.getContainerStartingUpTimeoutMillis());
+		if (readinessLogPattern != null && logsSinceSeconds != null) {
+			LogLineMatcher logLineMatcher = new LogLineMatcher(readinessLogPattern);
+			Closeable outputStream = containerRuntime.followOutput(containerId, logsSinceSeconds, logLineMatcher);
+			try {
+				if (!awaitPhase(readinessReport, ReadinessPhase.LOG, logLineMatcher::isMatched, deadlineNanos))
+					return readinessReport;
+			} finally {
+				closeQuietly(outputStream);
+			}
+		}
+		if (dataSourceContainerParameters.isReadinessTcpProbeEnabled()
+				&& !awaitPhase(readinessReport, ReadinessPhase.TCP, () -> probeTcp(host, port), deadlineNanos))
+			return readinessReport;
+		if (dataSourceContainerParameters.isReadinessHealthCheckEnabled() && findHealthStatus(containerId) != null
+				&& !awaitPhase(readinessReport, ReadinessPhase.HEALTH_CHECK, () -> HEALTHY.equals(findHealthStatus(containerId)), deadlineNanos))
+			return readinessReport;
+		if (awaitPhase(readinessReport, ReadinessPhase.JDBC, () -> dataSourceConfigurer.validateDataSource(dataSource), deadlineNanos))
+			readinessReport.recordReady();
+		return readinessReport;
+	}
+
+	private void closeQuietly(Closeable outputStream) {
+		try {
+			outputStream.close();
+		} catch (IOException e) {
+			// Log stream already closed
+		}
+	}
+
+	/**
+	 * Finds the HEALTHCHECK status of a container, from container runtime events
+	 * or inspecting the container if no event has been received yet
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @return Health status or null if container has no HEALTHCHECK
+	 */
+	private String findHealthStatus(String containerId) {
+		String healthStatus = dataSourceContainerRegistry.getHealthStatus(containerId);
+		if (healthStatus != null)
+			return healthStatus;
+		return dataSourceContainerParameters.getMetricsRecorder().timeDockerCall("inspectContainer", () -> containerRuntime.findHealthStatus(containerId));
+	}
+
+	private boolean probeTcp(String host, int port) {
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(host, port), dataSourceContainerParameters.getReadinessTcpConnectTimeoutMillis());
+			socket.setSoTimeout(TCP_PROBE_CLOSE_DETECTION_MILLIS);
+			try {
+				// Databases waiting for the client to talk first keep the connection open
+				return socket.getInputStream().read() != -1;
+			} catch (SocketTimeoutException e) {
+				return true;
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+}
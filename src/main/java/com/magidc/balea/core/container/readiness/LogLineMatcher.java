@@ -0,0 +1,67 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.readiness;
+
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Consumes container output until a line matches the readiness pattern
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class LogLineMatcher implements Consumer<String> {
+	// Bounds the buffered text of a line without line break
+	private static final int MAXIMUM_PARTIAL_LINE_LENGTH = 8192;
+
+	private final Pattern pattern;
+	private final StringBuilder partialLine = new StringBuilder();
+	private volatile boolean matched;
+
+	public LogLineMatcher(Pattern pattern) {
+		this.pattern = pattern;
+	}
+
+	@Override
+	public void accept(String output) {
+		if (matched || output == null)
+			return;
+		synchronized (partialLine) {
+			partialLine.append(output);
+			int lineStart = 0;
+			int lineEnd;
+			while ((lineEnd = partialLine.indexOf("\n", lineStart)) >= 0) {
+				if (pattern.matcher(partialLine.subSequence(lineStart, lineEnd)).find()) {
+					matched = true;
+					partialLine.setLength(0);
+					return;
+				}
+				lineStart = lineEnd + 1;
+			}
+			partialLine.delete(0, lineStart);
+			if (partialLine.length() > MAXIMUM_PARTIAL_LINE_LENGTH)
+				partialLine.delete(0, partialLine.length() - MAXIMUM_PARTIAL_LINE_LENGTH);
+		}
+	}
+
+	public boolean isMatched() {
+		return matched;
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.readiness;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter for readiness polling
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class ReadinessBackoff {
+	private final long maximumIntervalMillis;
+	private final double multiplier;
+	private final double jitter;
+	private double intervalMillis;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param initialIntervalMillis
+	 * @param maximumIntervalMillis
+	 * @param multiplier
+	 *            Growth of the interval after each delay
+	 * @param jitter
+	 *            Maximum random variation of each delay, as a fraction of the
+	 *            interval
+	 */
+	public ReadinessBackoff(long initialIntervalMillis, long maximumIntervalMillis, double multiplier, double jitter) {
+		this.maximumIntervalMillis = Math.max(1, maximumIntervalMillis);
+		this.multiplier = Math.max(1, multiplier);
+		this.jitter = Math.max(0, Math.min(1, jitter));
+		this.intervalMillis = Math.max(1, Math.min(initialIntervalMillis, this.maximumIntervalMillis));
+	}
+
+	/**
+	 * Gets the delay before the next attempt and increases the interval
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public long nextDelayMillis() {
+		double variation = jitter == 0 ? 0 : intervalMillis * jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+		long delayMillis = Math.max(1, Math.round(intervalMillis + variation));
+		intervalMillis = Math.min(maximumIntervalMillis, intervalMillis * multiplier);
+		return delayMillis;
+	}
+}
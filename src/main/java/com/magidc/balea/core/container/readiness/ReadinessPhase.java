@@ -0,0 +1,44 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.readiness;
+
+/**
+ * Phases of container readiness detection, in the order they are awaited
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public enum ReadinessPhase {
+	/**
+	 * Container log stream shows the configured readiness line
+	 */
+	LOG,
+	/**
+	 * Database port accepts TCP connections
+	 */
+	TCP,
+	/**
+	 * Container HEALTHCHECK reports healthy
+	 */
+	HEALTH_CHECK,
+	/**
+	 * Data source is validated through a JDBC connection
+	 */
+	JDBC
+}
@@ -0,0 +1,126 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.readiness;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Outcome of a container readiness detection with the time spent and the
+ * number of probes of each phase. Phases not enabled or not applicable are not
+ * reported
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class ReadinessReport {
+	private final String containerId;
+	private final long startedMillis;
+	private final long startedNanos;
+	private final Map<ReadinessPhase, Long> phaseMillis = new EnumMap<>(ReadinessPhase.class);
+	private final Map<ReadinessPhase, Integer> phaseAttempts = new EnumMap<>(ReadinessPhase.class);
+	private ReadinessPhase failedPhase;
+	private long totalMillis;
+	private boolean ready;
+
+	public ReadinessReport(String containerId) {
+		this.containerId = containerId;
+		this.startedMillis = System.currentTimeMillis();
+		this.startedNanos = System.nanoTime();
+	}
+
+	/**
+	 * Number of probes done in a phase
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readinessPhase
+	 * @return
+	 */
+	public int getAttempts(ReadinessPhase readinessPhase) {
+		Integer attempts = phaseAttempts.get(readinessPhase);
+		return attempts != null ? attempts : 0;
+	}
+
+	public String getContainerId() {
+		return containerId;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Phase that did not complete before the timeout, null if container
+	 *         is ready
+	 */
+	public ReadinessPhase getFailedPhase() {
+		return failedPhase;
+	}
+
+	/**
+	 * Time spent in a phase
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readinessPhase
+	 * @return Phase latency or null if the phase has not been awaited
+	 */
+	public Long getPhaseMillis(ReadinessPhase readinessPhase) {
+		return phaseMillis.get(readinessPhase);
+	}
+
+	public long getStartedMillis() {
+		return startedMillis;
+	}
+
+	public long getTotalMillis() {
+		return totalMillis;
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	void recordFailure(ReadinessPhase readinessPhase, long phaseMillis, int attempts) {
+		recordPhase(readinessPhase, phaseMillis, attempts);
+		this.failedPhase = readinessPhase;
+		this.totalMillis = (System.nanoTime() - startedNanos) / 1000000;
+	}
+
+	void recordPhase(ReadinessPhase readinessPhase, long phaseMillis, int attempts) {
+		this.phaseMillis.put(readinessPhase, phaseMillis);
+		this.phaseAttempts.put(readinessPhase, attempts);
+	}
+
+	void recordReady() {
+		this.ready = true;
+		this.totalMillis = (System.nanoTime() - startedNanos) / 1000000;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder stringBuilder = new StringBuilder();
+		stringBuilder.append("ReadinessReport [containerId=").append(containerId)
+				.append(", ready=").append(ready)
+				.append(", totalMillis=").append(totalMillis);
+		for (Entry<ReadinessPhase, Long> phase : phaseMillis.entrySet())
+			stringBuilder.append(", ").append(phase.getKey()).append("=").append(phase.getValue()).append("ms/").append(getAttempts(phase.getKey()));
+		if (failedPhase != null)
+			stringBuilder.append(", failedPhase=").append(failedPhase);
+		return stringBuilder.append("]").toString();
+	}
+}
@@ -0,0 +1,386 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.registry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.magidc.balea.core.container.config.DataSourceContainerParameters;
+import com.magidc.balea.core.container.model.DataSourceContainer;
+import com.magidc.balea.core.container.model.DataSourceContainerState;
+import com.magidc.balea.core.container.runtime.ContainerEventListener;
+import com.magidc.balea.core.container.runtime.ContainerRuntime;
+import com.magidc.balea.core.container.runtime.RuntimeContainer;
+
+/**
+ * In memory registry of containers indexed by container id, name, data source
+ * id and host port. It is seeded by a single container listing, kept current
+ * from container runtime events and periodically resynchronized, so lookups do
+ * not need any round trip to the container runtime
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class DataSourceContainerRegistry {
+	private final ContainerRuntime containerRuntime;
+	private final DataSourceContainerParameters dataSourceContainerParameters;
+	private final ConcurrentMap<String, DataSourceContainer> containersById = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, DataSourceContainer> containersByName = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, DataSourceContainer> containersByDataSourceId = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Integer, DataSourceContainer> containersByHostPort = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, String> healthStatusesById = new ConcurrentHashMap<>();
+	private ScheduledExecutorService scheduler;
+	private volatile Closeable eventsStream;
+	private volatile HostPortAllocator hostPortAllocator;
+
+	public DataSourceContainerRegistry(ContainerRuntime containerRuntime, DataSourceContainerParameters dataSourceContainerParameters) {
+		this.containerRuntime = containerRuntime;
+		this.dataSourceContainerParameters = dataSourceContainerParameters;
+	}
+
+	/**
+	 * Stops listening container runtime events and periodic resynchronization
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		if (scheduler != null)
+			scheduler.shutdownNow();
+		if (eventsStream != null)
+			eventsStream.close();
+		eventsStream = null;
+	}
+
+	private DataSourceContainer createDataSourceContainer(RuntimeContainer runtimeContainer, long stateChangedMillis) {
+		Integer hostPort = runtimeContainer.getHostPortsByContainerPort().get(dataSourceContainerParameters.getPort());
+		Set<Integer> bindedPorts = new HashSet<>(runtimeContainer.getHostPortsByContainerPort().values());
+		return new DataSourceContainer(runtimeContainer.getId(), runtimeContainer.getName(), resolveDataSourceId(runtimeContainer.getName()),
+				runtimeContainer.getState(), hostPort, bindedPorts, stateChangedMillis);
+	}
+
+	/**
+	 * Finds the container of a data source
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 */
+	public Optional<DataSourceContainer> findByDataSourceId(Object dataSourceId) {
+		return Optional.ofNullable(containersByDataSourceId.get(dataSourceId.toString()));
+	}
+
+	/**
+	 * Finds the container with the given host port bound
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param hostPort
+	 * @return
+	 */
+	public Optional<DataSourceContainer> findByHostPort(int hostPort) {
+		return Optional.ofNullable(containersByHostPort.get(hostPort));
+	}
+
+	public Optional<DataSourceContainer> findById(String containerId) {
+		return Optional.ofNullable(containersById.get(containerId));
+	}
+
+	public Optional<DataSourceContainer> findByName(String containerName) {
+		return Optional.ofNullable(containersByName.get(containerName));
+	}
+
+	/**
+	 * Gets all known containers, managed or not
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public Collection<DataSourceContainer> getAll() {
+		return containersById.values();
+	}
+
+	/**
+	 * Collecting all host ports bound to known containers
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public Set<Integer> getBindedPorts() {
+		return new HashSet<>(containersByHostPort.keySet());
+	}
+
+	/**
+	 * Gets the last HEALTHCHECK status (starting, healthy or unhealthy) reported by
+	 * container runtime events since the container was started
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @return Health status or null if none has been reported
+	 */
+	public String getHealthStatus(String containerId) {
+		return healthStatusesById.get(containerId);
+	}
+
+	public HostPortAllocator getHostPortAllocator() {
+		return hostPortAllocator;
+	}
+
+	private void inspectAndRegister(String containerId, long stateChangedMillis) {
+		RuntimeContainer runtimeContainer = dataSourceContainerParameters.getMetricsRecorder().timeDockerCall("inspectContainer",
+				() -> containerRuntime.inspectContainer(containerId));
+		if (runtimeContainer != null)
+			register(createDataSourceContainer(runtimeContainer, stateChangedMillis));
+		else
+			unregister(containerId);
+	}
+
+	private void onEvent(String containerId, String action) {
+		// Health status actions come as "health_status: healthy"
+		if (action.startsWith("health_status:")) {
+			healthStatusesById.put(containerId, action.substring("health_status:".length()).trim());
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		DataSourceContainerState state;
+		switch (action) {
+		case "destroy":
+			unregister(containerId);
+			return;
+		case "create":
+			if (!containersById.containsKey(containerId))
+				inspectAndRegister(containerId, now);
+			return;
+		case "start":
+		case "restart":
+			healthStatusesById.remove(containerId);
+			state = DataSourceContainerState.RUNNING;
+			break;
+		case "unpause":
+			state = DataSourceContainerState.RUNNING;
+			break;
+		case "pause":
+			state = DataSourceContainerState.PAUSED;
+			break;
+		case "die":
+		case "stop":
+			healthStatusesById.remove(containerId);
+			state = DataSourceContainerState.STOPPED;
+			break;
+		default:
+			return;
+		}
+		if (!updateState(containerId, state, now))
+			inspectAndRegister(containerId, now);
+	}
+
+	/**
+	 * Registers or replaces a container
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceContainer
+	 */
+	public synchronized void register(DataSourceContainer dataSourceContainer) {
+		DataSourceContainer previous = containersById.put(dataSourceContainer.getId(), dataSourceContainer);
+		if (previous != null)
+			removeIndexes(previous);
+		containersByName.put(dataSourceContainer.getName(), dataSourceContainer);
+		if (dataSourceContainer.isManaged())
+			containersByDataSourceId.put(dataSourceContainer.getDataSourceId(), dataSourceContainer);
+		for (Integer bindedPort : dataSourceContainer.getBindedPorts()) {
+			containersByHostPort.put(bindedPort, dataSourceContainer);
+			if (hostPortAllocator != null)
+				hostPortAllocator.reserve(bindedPort);
+		}
+	}
+
+	/**
+	 * Registers a container created or modified by the container manager itself,
+	 * without waiting for the corresponding container runtime event
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @param containerName
+	 * @param state
+	 * @param hostPort
+	 * @return
+	 */
+	public DataSourceContainer register(String containerId, String containerName, DataSourceContainerState state, Integer hostPort) {
+		Set<Integer> bindedPorts = new HashSet<>();
+		if (hostPort != null)
+			bindedPorts.add(hostPort);
+		DataSourceContainer dataSourceContainer = new DataSourceContainer(containerId, containerName, resolveDataSourceId(containerName), state, hostPort,
+				bindedPorts, System.currentTimeMillis());
+		register(dataSourceContainer);
+		return dataSourceContainer;
+	}
+
+	private void removeIndexes(DataSourceContainer dataSourceContainer) {
+		containersByName.remove(dataSourceContainer.getName(), dataSourceContainer);
+		if (dataSourceContainer.isManaged())
+			containersByDataSourceId.remove(dataSourceContainer.getDataSourceId(), dataSourceContainer);
+		for (Integer bindedPort : dataSourceContainer.getBindedPorts())
+			containersByHostPort.remove(bindedPort, dataSourceContainer);
+	}
+
+	private String resolveDataSourceId(String containerName) {
+		String containerNamePrefix = dataSourceContainerParameters.getContainerNamePrefix();
+		return containerName != null && containerName.startsWith(containerNamePrefix) ? containerName.substring(containerNamePrefix.length()) : null;
+	}
+
+	/**
+	 * Replaces registry content with a single listing of all containers. Entries
+	 * registered while listing are kept. Events subscription is restored if it was
+	 * lost
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void resync() {
+		if (eventsStream == null)
+			subscribeEvents();
+
+		long listingStartMillis = System.currentTimeMillis();
+		List<RuntimeContainer> runtimeContainers = dataSourceContainerParameters.getMetricsRecorder().timeDockerCall("listContainers",
+				containerRuntime::listContainers);
+		Map<String, DataSourceContainer> listedContainers = new HashMap<>();
+		for (RuntimeContainer runtimeContainer : runtimeContainers)
+			listedContainers.put(runtimeContainer.getId(), createDataSourceContainer(runtimeContainer, listingStartMillis));
+
+		synchronized (this) {
+			for (DataSourceContainer dataSourceContainer : containersById.values()) {
+				if (!listedContainers.containsKey(dataSourceContainer.getId()) && dataSourceContainer.getStateChangedMillis() < listingStartMillis)
+					unregister(dataSourceContainer.getId());
+			}
+			for (DataSourceContainer listedContainer : listedContainers.values()) {
+				DataSourceContainer dataSourceContainer = containersById.get(listedContainer.getId());
+				if (dataSourceContainer == null || dataSourceContainer.getStateChangedMillis() < listingStartMillis)
+					register(dataSourceContainer == null || dataSourceContainer.getState() != listedContainer.getState() ? listedContainer
+							: listedContainer.withState(listedContainer.getState(), dataSourceContainer.getStateChangedMillis()));
+			}
+		}
+	}
+
+	/**
+	 * Host port allocator kept in sync with the host ports of known containers:
+	 * ports are reserved when containers are registered, so the allocator is
+	 * reconciled with existing containers when the registry is seeded, and
+	 * released when they are unregistered. It has to be set before starting the
+	 * registry
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param hostPortAllocator
+	 */
+	public void setHostPortAllocator(HostPortAllocator hostPortAllocator) {
+		this.hostPortAllocator = hostPortAllocator;
+	}
+
+	/**
+	 * Seeds the registry and starts listening container runtime events and
+	 * periodic resynchronization
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public synchronized void start() {
+		resync();
+		scheduler = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-container-registry-%d").build());
+		long resyncPeriodMillis = dataSourceContainerParameters.getContainerRegistryResyncPeriodMillis();
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					resync();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}, resyncPeriodMillis, resyncPeriodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized void subscribeEvents() {
+		if (eventsStream != null)
+			return;
+		eventsStream = containerRuntime.subscribeEvents(new ContainerEventListener() {
+			@Override
+			public void onClose() {
+				eventsStream = null;
+			}
+
+			@Override
+			public void onEvent(String containerId, String action) {
+				try {
+					DataSourceContainerRegistry.this.onEvent(containerId, action);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Removes a container from the registry, releasing its host ports
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 */
+	public synchronized void unregister(String containerId) {
+		DataSourceContainer previous = containersById.remove(containerId);
+		healthStatusesById.remove(containerId);
+		if (previous != null) {
+			removeIndexes(previous);
+			if (hostPortAllocator != null) {
+				for (Integer bindedPort : previous.getBindedPorts()) {
+					if (!containersByHostPort.containsKey(bindedPort))
+						hostPortAllocator.release(bindedPort);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Updates the state of a registered container
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @param state
+	 * @param stateChangedMillis
+	 * @return False if the container is not registered
+	 */
+	public synchronized boolean updateState(String containerId, DataSourceContainerState state, long stateChangedMillis) {
+		DataSourceContainer dataSourceContainer = containersById.get(containerId);
+		if (dataSourceContainer == null)
+			return false;
+		if (dataSourceContainer.getState() != state)
+			register(dataSourceContainer.withState(state, stateChangedMillis));
+		return true;
+	}
+}
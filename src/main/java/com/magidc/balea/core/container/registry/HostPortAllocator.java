@@ -0,0 +1,113 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.registry;
+
+import java.util.BitSet;
+
+/**
+ * Allocator of host ports published by data source containers, backed by a
+ * bitmap over a port range. Ports are reserved atomically when allocated, so
+ * concurrent container creations never get the same port. Allocation goes
+ * round robin over the range, so a released port is not handed out again
+ * while free ones remain
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class HostPortAllocator {
+	private final int firstPort;
+	private final int lastPort;
+	private final BitSet allocatedPorts;
+	private int nextPortIndex;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param firstPort
+	 *            First port of the range, inclusive
+	 * @param lastPort
+	 *            Last port of the range, inclusive
+	 */
+	public HostPortAllocator(int firstPort, int lastPort) {
+		if (firstPort < 1 || lastPort > 65535 || firstPort > lastPort)
+			throw new IllegalArgumentException(String.format("Invalid host port range %d-%d", firstPort, lastPort));
+		this.firstPort = firstPort;
+		this.lastPort = lastPort;
+		this.allocatedPorts = new BitSet(lastPort - firstPort + 1);
+	}
+
+	/**
+	 * Reserves a free port of the range
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 * @throws IllegalStateException
+	 *             If every port of the range is in use
+	 */
+	public synchronized int allocate() {
+		int rangeSize = lastPort - firstPort + 1;
+		int portIndex = allocatedPorts.nextClearBit(nextPortIndex);
+		if (portIndex >= rangeSize)
+			portIndex = allocatedPorts.nextClearBit(0);
+		if (portIndex >= rangeSize)
+			throw new IllegalStateException(String.format("No host port available in range %d-%d", firstPort, lastPort));
+		allocatedPorts.set(portIndex);
+		nextPortIndex = portIndex + 1;
+		return firstPort + portIndex;
+	}
+
+	public synchronized int getAvailablePortCount() {
+		return lastPort - firstPort + 1 - allocatedPorts.cardinality();
+	}
+
+	public int getFirstPort() {
+		return firstPort;
+	}
+
+	public int getLastPort() {
+		return lastPort;
+	}
+
+	public boolean isInRange(int port) {
+		return port >= firstPort && port <= lastPort;
+	}
+
+	/**
+	 * Frees a port. Ports out of the range are ignored
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param port
+	 */
+	public synchronized void release(int port) {
+		if (isInRange(port))
+			allocatedPorts.clear(port - firstPort);
+	}
+
+	/**
+	 * Marks a port as in use (i.e. bound by an existing container). Ports out of
+	 * the range are ignored
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param port
+	 */
+	public synchronized void reserve(int port) {
+		if (isInRange(port))
+			allocatedPorts.set(port - firstPort);
+	}
+}
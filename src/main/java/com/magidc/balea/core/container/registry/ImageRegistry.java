@@ -0,0 +1,258 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.registry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.magidc.balea.core.container.config.DataSourceContainerParameters;
+import com.magidc.balea.core.container.runtime.ContainerRuntime;
+import com.magidc.balea.core.container.runtime.ImageEventListener;
+import com.magidc.balea.core.metrics.MetricsRecorder;
+
+/**
+ * In memory registry of the images needed by data source containers. Images
+ * are checked and pulled in the background as soon as they are registered, kept
+ * current from image events and periodically resynchronized, pulling again the
+ * removed ones, so containers are created without any image listing or pull
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class ImageRegistry {
+	private final ContainerRuntime containerRuntime;
+	private final DataSourceContainerParameters dataSourceContainerParameters;
+	private final MetricsRecorder metricsRecorder;
+	/**
+	 * Completed once the image is present, failed if its last pull failed
+	 */
+	private final ConcurrentMap<String, CompletableFuture<Void>> imagesByName = new ConcurrentHashMap<>();
+	private final AtomicBoolean checkScheduled = new AtomicBoolean();
+	private ScheduledExecutorService scheduler;
+	private volatile Closeable eventsStream;
+
+	public ImageRegistry(ContainerRuntime containerRuntime, DataSourceContainerParameters dataSourceContainerParameters) {
+		this.containerRuntime = containerRuntime;
+		this.dataSourceContainerParameters = dataSourceContainerParameters;
+		this.metricsRecorder = dataSourceContainerParameters.getMetricsRecorder();
+	}
+
+	/**
+	 * Waits for an image to be present, pulling it again if its last pull failed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param imageName
+	 * @param timeoutMillis
+	 * @return False if the image is not present yet after the timeout
+	 * @throws InterruptedException
+	 */
+	public boolean awaitImage(String imageName, long timeoutMillis) throws InterruptedException {
+		CompletableFuture<Void> image = imagesByName.get(imageName);
+		if (image == null || image.isCompletedExceptionally())
+			image = imagesByName.compute(imageName, (name, current) -> current == null || current.isCompletedExceptionally() ? pull(name) : current);
+		try {
+			image.get(timeoutMillis, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (TimeoutException e) {
+			return false;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new UncheckedExecutionException(e.getCause());
+		}
+	}
+
+	/**
+	 * Checks the presence of an image, starting its pull if it is missing. Images
+	 * being pulled are left as they are
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param imageName
+	 */
+	private void check(String imageName) {
+		if (metricsRecorder.timeDockerCall("listImages", () -> containerRuntime.imageExists(imageName)))
+			imagesByName.computeIfPresent(imageName, (name, image) -> image.isCompletedExceptionally() ? CompletableFuture.completedFuture(null) : image);
+		else
+			imagesByName.computeIfPresent(imageName, (name, image) -> image.isDone() ? pull(name) : image);
+	}
+
+	private void checkAll() {
+		for (String imageName : new ArrayList<>(imagesByName.keySet())) {
+			try {
+				check(imageName);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Stops listening image events and periodic resynchronization. Pulls in
+	 * progress are cancelled
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		if (scheduler != null)
+			scheduler.shutdownNow();
+		if (eventsStream != null)
+			eventsStream.close();
+		eventsStream = null;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param imageName
+	 * @return Whether the image is known to be present, no round trip to the
+	 *         container runtime is done
+	 */
+	public boolean isPresent(String imageName) {
+		CompletableFuture<Void> image = imagesByName.get(imageName);
+		return image != null && image.isDone() && !image.isCompletedExceptionally();
+	}
+
+	/**
+	 * Pulls an image in the background if it does not exist
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param imageName
+	 * @return
+	 */
+	private CompletableFuture<Void> pull(String imageName) {
+		return CompletableFuture.runAsync(() -> {
+			if (metricsRecorder.timeDockerCall("listImages", () -> containerRuntime.imageExists(imageName)))
+				return;
+			long pullStartNanos = System.nanoTime();
+			boolean failed = true;
+			try {
+				containerRuntime.pullImage(imageName);
+				failed = false;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CompletionException(e);
+			} finally {
+				metricsRecorder.recordDockerCall("pullImage", System.nanoTime() - pullStartNanos, failed);
+			}
+		}, scheduler);
+	}
+
+	/**
+	 * Registers an image needed by data source containers, it is pulled in the
+	 * background if it does not exist. Registry must be started
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param imageName
+	 */
+	public void register(String imageName) {
+		imagesByName.computeIfAbsent(imageName, this::pull);
+	}
+
+	/**
+	 * Checks the presence of every registered image, pulling the missing ones.
+	 * Events subscription is restored if it was lost
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void resync() {
+		if (eventsStream == null)
+			subscribeEvents();
+		checkAll();
+	}
+
+	/**
+	 * Schedules a check of every registered image, unless one is already
+	 * scheduled
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	private void scheduleCheck() {
+		if (scheduler.isShutdown() || !checkScheduled.compareAndSet(false, true))
+			return;
+		scheduler.execute(() -> {
+			checkScheduled.set(false);
+			checkAll();
+		});
+	}
+
+	/**
+	 * Starts listening image events and periodic resynchronization
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public synchronized void start() {
+		scheduler = Executors.newScheduledThreadPool(2,
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-image-registry-%d").build());
+		subscribeEvents();
+		long resyncPeriodMillis = dataSourceContainerParameters.getImageRegistryResyncPeriodMillis();
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					resync();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}, resyncPeriodMillis, resyncPeriodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Any image event triggers a background check of the registered images, as
+	 * removal events are identified by image id instead of name
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	private synchronized void subscribeEvents() {
+		if (eventsStream != null)
+			return;
+		try {
+			eventsStream = containerRuntime.subscribeImageEvents(new ImageEventListener() {
+				@Override
+				public void onClose() {
+					eventsStream = null;
+					// Events missed until the subscription is restored, i.e. from hosts
+					// reachable again
+					scheduleCheck();
+				}
+
+				@Override
+				public void onEvent(String imageName, String action) {
+					scheduleCheck();
+				}
+			});
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+}
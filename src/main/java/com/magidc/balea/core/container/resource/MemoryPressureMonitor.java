@@ -0,0 +1,179 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.resource;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.magidc.balea.core.container.config.DataSourceContainerParameters;
+import com.magidc.balea.core.container.model.DataSourceContainer;
+import com.magidc.balea.core.container.model.DataSourceContainerState;
+import com.magidc.balea.core.container.registry.DataSourceContainerRegistry;
+import com.magidc.balea.core.container.runtime.ContainerRuntime;
+
+/**
+ * Measures host memory pressure from the memory usage of running and paused
+ * containers, sampled periodically from their stats. Pressure is computed on
+ * demand from the last samples and the current container states, so it drops
+ * as soon as a container is stopped or removed. Containers not sampled yet
+ * count as their estimated usage (i.e. their memory limit)
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class MemoryPressureMonitor {
+	private final ContainerRuntime containerRuntime;
+	private final DataSourceContainerRegistry dataSourceContainerRegistry;
+	private final DataSourceContainerParameters dataSourceContainerParameters;
+	private final ConcurrentMap<String, Long> memoryUsagesById = new ConcurrentHashMap<>();
+	private volatile long totalMemoryBytes = -1;
+	private ScheduledExecutorService scheduler;
+	private ExecutorService statsExecutor;
+
+	public MemoryPressureMonitor(ContainerRuntime containerRuntime, DataSourceContainerRegistry dataSourceContainerRegistry,
+			DataSourceContainerParameters dataSourceContainerParameters) {
+		this.containerRuntime = containerRuntime;
+		this.dataSourceContainerRegistry = dataSourceContainerRegistry;
+		this.dataSourceContainerParameters = dataSourceContainerParameters;
+	}
+
+	/**
+	 * Stops sampling container stats
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public synchronized void close() {
+		if (scheduler != null)
+			scheduler.shutdownNow();
+		if (statsExecutor != null)
+			statsExecutor.shutdownNow();
+	}
+
+	/**
+	 * Sets the expected memory usage of a new container until it is sampled
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @param memoryBytes
+	 */
+	public void estimateMemoryUsage(String containerId, long memoryBytes) {
+		memoryUsagesById.putIfAbsent(containerId, memoryBytes);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Fraction of the host memory in use by running and paused
+	 *         containers, -1 if host memory is unknown
+	 */
+	public double getMemoryPressure() {
+		return getMemoryPressure(0);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param additionalMemoryBytes
+	 *            Memory of a container about to be started
+	 * @return Fraction of the host memory that would be in use by running and
+	 *         paused containers, -1 if host memory is unknown
+	 */
+	public double getMemoryPressure(long additionalMemoryBytes) {
+		long hostMemoryBytes = totalMemoryBytes;
+		if (hostMemoryBytes <= 0)
+			return -1;
+		long usedMemoryBytes = additionalMemoryBytes;
+		for (DataSourceContainer container : dataSourceContainerRegistry.getAll()) {
+			if (isResident(container)) {
+				Long memoryUsage = memoryUsagesById.get(container.getId());
+				if (memoryUsage != null)
+					usedMemoryBytes += memoryUsage;
+			}
+		}
+		return (double) usedMemoryBytes / hostMemoryBytes;
+	}
+
+	private boolean isResident(DataSourceContainer container) {
+		return container.getState() == DataSourceContainerState.RUNNING || container.getState() == DataSourceContainerState.PAUSED;
+	}
+
+	/**
+	 * Samples host memory and the memory usage of every running and paused
+	 * container in parallel. Samples of containers no longer registered are
+	 * discarded, those of stopped containers are kept as estimation for their
+	 * next start
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @throws InterruptedException
+	 */
+	public void sampleMemoryUsage() throws InterruptedException {
+		long hostMemoryBytes = dataSourceContainerParameters.getMetricsRecorder().timeDockerCall("info", containerRuntime::findTotalMemoryBytes);
+		Collection<DataSourceContainer> containers = dataSourceContainerRegistry.getAll();
+		statsExecutor.invokeAll(containers.stream()
+				.filter(this::isResident)
+				.map(container -> Executors.callable(() -> sampleMemoryUsage(container.getId())))
+				.collect(Collectors.toList()));
+		Set<String> containerIds = dataSourceContainerRegistry.getAll().stream().map(DataSourceContainer::getId).collect(Collectors.toSet());
+		memoryUsagesById.keySet().retainAll(containerIds);
+		totalMemoryBytes = hostMemoryBytes;
+	}
+
+	private void sampleMemoryUsage(String containerId) {
+		try {
+			long memoryUsage = dataSourceContainerParameters.getMetricsRecorder().timeDockerCall("stats",
+					() -> containerRuntime.findMemoryUsageBytes(containerId));
+			if (memoryUsage >= 0)
+				memoryUsagesById.put(containerId, memoryUsage);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Starts sampling container stats periodically
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public synchronized void start() {
+		statsExecutor = Executors.newFixedThreadPool(Math.max(1, dataSourceContainerParameters.getMemoryStatsThreads()),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-memory-stats-%d").build());
+		scheduler = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-memory-pressure-%d").build());
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sampleMemoryUsage();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}, 0, dataSourceContainerParameters.getMemoryStatsSamplePeriodMillis(), TimeUnit.MILLISECONDS);
+	}
+}
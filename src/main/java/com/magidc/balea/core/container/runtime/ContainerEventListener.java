@@ -0,0 +1,44 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.runtime;
+
+/**
+ * Listener of container runtime events. Actions follow Docker events naming:
+ * "create", "start", "restart", "pause", "unpause", "die", "stop", "destroy"
+ * and "health_status: [status]"
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public interface ContainerEventListener {
+	/**
+	 * Events stream has been closed, no more events will be received
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void onClose();
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @param action
+	 */
+	public void onEvent(String containerId, String action);
+}
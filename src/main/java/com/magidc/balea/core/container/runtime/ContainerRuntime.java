@@ -0,0 +1,201 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.runtime;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runtime managing the lifecycle of data source containers (i.e. Docker
+ * daemon or local database server processes)
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public interface ContainerRuntime extends Closeable {
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerSpec
+	 * @return Container id
+	 */
+	public String createContainer(ContainerSpec containerSpec);
+
+	/**
+	 * Address of a container in its own network, used when container ports are
+	 * not published
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @return
+	 */
+	public String findContainerAddress(String containerId);
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @return Health check status (i.e. "starting", "healthy") or null if the
+	 *         container has no health check
+	 */
+	public String findHealthStatus(String containerId);
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @param containerPort
+	 * @return Host port a container port is published on, null if it is not
+	 *         published
+	 */
+	public Integer findHostPort(String containerId, int containerPort);
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @return Memory in use by a container in bytes, -1 if it is unknown
+	 */
+	public default long findMemoryUsageBytes(String containerId) {
+		return -1;
+	}
+
+	/**
+	 * Host where the published ports of a container are reachable, which depends
+	 * on the container for runtimes spread over several hosts
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @return
+	 */
+	public String findPublishedPortsHost(String containerId);
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Physical memory of the host in bytes, -1 if it is unknown
+	 */
+	public default long findTotalMemoryBytes() {
+		return -1;
+	}
+
+	/**
+	 * Follows the output of a container
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @param sinceEpochSeconds
+	 *            Output produced before is skipped
+	 * @param outputConsumer
+	 *            Receives output chunks, not necessarily split by lines
+	 * @return Handle to stop following the output
+	 */
+	public Closeable followOutput(String containerId, int sinceEpochSeconds, Consumer<String> outputConsumer);
+
+	/**
+	 * Whether containers are reachable at their own network address. Otherwise
+	 * every container port has to be published on a distinct host port
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public boolean hasContainerNetwork();
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param imageName
+	 * @return
+	 */
+	public boolean imageExists(String imageName);
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @return Container or null if it does not exist
+	 */
+	public RuntimeContainer inspectContainer(String containerId);
+
+	/**
+	 * Lists all containers, including non running ones
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public List<RuntimeContainer> listContainers();
+
+	public void pauseContainer(String containerId);
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param imageName
+	 * @throws InterruptedException
+	 */
+	public void pullImage(String imageName) throws InterruptedException;
+
+	/**
+	 * Notifies the time taken by a new container to accept connections since its
+	 * creation was requested
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @param nanos
+	 */
+	public default void recordColdStart(String containerId, long nanos) {
+	}
+
+	/**
+	 * Stops if needed and removes a container. Data volumes are kept. Missing
+	 * containers are ignored
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 */
+	public void removeContainer(String containerId);
+
+	public void startContainer(String containerId);
+
+	public void stopContainer(String containerId);
+
+	/**
+	 * Subscribes to container lifecycle events
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerEventListener
+	 * @return Handle to cancel the subscription
+	 */
+	public Closeable subscribeEvents(ContainerEventListener containerEventListener);
+
+	/**
+	 * Subscribes to image events. Runtimes without images never notify any
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param imageEventListener
+	 * @return Handle to cancel the subscription
+	 */
+	public default Closeable subscribeImageEvents(ImageEventListener imageEventListener) {
+		return () -> {
+		};
+	}
+
+	public void unpauseContainer(String containerId);
+}
@@ -0,0 +1,113 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.runtime;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.magidc.balea.core.container.config.ResourceProfile;
+
+/**
+ * Definition of a data source container to be created
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class ContainerSpec {
+	private String name;
+	private String imageName;
+	private int containerPort;
+	private Integer hostPort;
+	private Map<String, String> binds = new LinkedHashMap<>();
+	private Map<String, String> environmentVariables = new LinkedHashMap<>();
+	private ResourceProfile resourceProfile;
+
+	/**
+	 * Host directories bound to container directories
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Container directory by host directory
+	 */
+	public Map<String, String> getBinds() {
+		return binds;
+	}
+
+	public int getContainerPort() {
+		return containerPort;
+	}
+
+	public Map<String, String> getEnvironmentVariables() {
+		return environmentVariables;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Host port the container port is published on, null if it is not
+	 *         published
+	 */
+	public Integer getHostPort() {
+		return hostPort;
+	}
+
+	public String getImageName() {
+		return imageName;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Resource limits or null if the container has no limits
+	 */
+	public ResourceProfile getResourceProfile() {
+		return resourceProfile;
+	}
+
+	public void setBinds(Map<String, String> binds) {
+		this.binds = binds;
+	}
+
+	public void setContainerPort(int containerPort) {
+		this.containerPort = containerPort;
+	}
+
+	public void setEnvironmentVariables(Map<String, String> environmentVariables) {
+		this.environmentVariables = environmentVariables;
+	}
+
+	public void setHostPort(Integer hostPort) {
+		this.hostPort = hostPort;
+	}
+
+	public void setImageName(String imageName) {
+		this.imageName = imageName;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public void setResourceProfile(ResourceProfile resourceProfile) {
+		this.resourceProfile = resourceProfile;
+	}
+}
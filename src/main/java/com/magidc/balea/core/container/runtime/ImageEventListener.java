@@ -0,0 +1,45 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.runtime;
+
+/**
+ * Listener of container runtime image events. Actions follow Docker events
+ * naming: "pull", "tag", "untag", "delete", "import" and "load"
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public interface ImageEventListener {
+	/**
+	 * Events stream has been closed, no more events will be received
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void onClose();
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param imageName
+	 *            Image name, or image id if the event is not bound to a name (i.e.
+	 *            "delete")
+	 * @param action
+	 */
+	public void onEvent(String imageName, String action);
+}
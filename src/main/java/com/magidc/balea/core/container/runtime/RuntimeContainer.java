@@ -0,0 +1,69 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.runtime;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.magidc.balea.core.container.model.DataSourceContainerState;
+
+/**
+ * Container as reported by a container runtime
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class RuntimeContainer {
+	private final String id;
+	private final String name;
+	private final DataSourceContainerState state;
+	private final Map<Integer, Integer> hostPortsByContainerPort;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param id
+	 * @param name
+	 * @param state
+	 * @param hostPortsByContainerPort
+	 *            Published ports
+	 */
+	public RuntimeContainer(String id, String name, DataSourceContainerState state, Map<Integer, Integer> hostPortsByContainerPort) {
+		this.id = id;
+		this.name = name;
+		this.state = state;
+		this.hostPortsByContainerPort = Collections.unmodifiableMap(hostPortsByContainerPort);
+	}
+
+	public Map<Integer, Integer> getHostPortsByContainerPort() {
+		return hostPortsByContainerPort;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public DataSourceContainerState getState() {
+		return state;
+	}
+}
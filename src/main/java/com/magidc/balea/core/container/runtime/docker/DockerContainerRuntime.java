@@ -0,0 +1,379 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.runtime.docker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.CreateContainerCmd;
+import com.github.dockerjava.api.command.HealthState;
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Bind;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.ContainerPort;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventType;
+import com.github.dockerjava.api.model.ExposedPort;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.PortBinding;
+import com.github.dockerjava.api.model.Ports;
+import com.github.dockerjava.api.model.Ports.Binding;
+import com.github.dockerjava.api.model.Statistics;
+import com.github.dockerjava.api.model.Volume;
+import com.github.dockerjava.core.async.ResultCallbackTemplate;
+import com.github.dockerjava.core.command.EventsResultCallback;
+import com.github.dockerjava.core.command.LogContainerResultCallback;
+import com.github.dockerjava.core.command.PullImageResultCallback;
+import com.magidc.balea.core.container.config.ResourceProfile;
+import com.magidc.balea.core.container.model.DataSourceContainerState;
+import com.magidc.balea.core.container.runtime.ContainerEventListener;
+import com.magidc.balea.core.container.runtime.ContainerRuntime;
+import com.magidc.balea.core.container.runtime.ContainerSpec;
+import com.magidc.balea.core.container.runtime.ImageEventListener;
+import com.magidc.balea.core.container.runtime.RuntimeContainer;
+
+/**
+ * Docker based container runtime
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class DockerContainerRuntime implements ContainerRuntime {
+	private static final long STATS_TIMEOUT_SECONDS = 10;
+
+	private final DockerClient dockerClient;
+	private final String dockerHost;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dockerClient
+	 * @param dockerHost
+	 *            Host of Docker daemon, where published ports are reachable
+	 */
+	public DockerContainerRuntime(DockerClient dockerClient, String dockerHost) {
+		this.dockerClient = dockerClient;
+		this.dockerHost = dockerHost;
+	}
+
+	@Override
+	public void close() throws IOException {
+		dockerClient.close();
+	}
+
+	@Override
+	public String createContainer(ContainerSpec containerSpec) {
+		HostConfig hostConfig = new HostConfig();
+		hostConfig.withBinds(containerSpec.getBinds().entrySet().stream()
+				.map(b -> new Bind(b.getKey(), new Volume(b.getValue())))
+				.collect(Collectors.toList()));
+		if (containerSpec.getHostPort() != null)
+			hostConfig.withPortBindings(new PortBinding(Binding.bindPort(containerSpec.getHostPort()), ExposedPort.tcp(containerSpec.getContainerPort())));
+		ResourceProfile resourceProfile = containerSpec.getResourceProfile();
+		if (resourceProfile != null) {
+			// Memory limit includes swap, so containers do not swap beyond it
+			if (resourceProfile.getMemoryBytes() != null)
+				hostConfig.withMemory(resourceProfile.getMemoryBytes()).withMemorySwap(resourceProfile.getMemoryBytes());
+			if (resourceProfile.getCpuShares() != null)
+				hostConfig.withCpuShares(resourceProfile.getCpuShares());
+			if (resourceProfile.getCpusetCpus() != null)
+				hostConfig.withCpusetCpus(resourceProfile.getCpusetCpus());
+			if (!resourceProfile.getTmpfs().isEmpty())
+				hostConfig.withTmpFs(resourceProfile.getTmpfs());
+		}
+
+		CreateContainerCmd createContainerCmd = dockerClient.createContainerCmd(containerSpec.getImageName())
+				.withName(containerSpec.getName())
+				.withHostConfig(hostConfig)
+				.withEnv(containerSpec.getEnvironmentVariables().entrySet().stream()
+						.map(e -> String.format("%s=%s", e.getKey(), e.getValue()))
+						.collect(Collectors.toList()));
+		return createContainerCmd.exec().getId();
+	}
+
+	private RuntimeContainer createRuntimeContainer(Container container) {
+		Map<Integer, Integer> hostPortsByContainerPort = new HashMap<>();
+		for (ContainerPort containerPort : container.getPorts()) {
+			if (containerPort.getPublicPort() != null && containerPort.getPrivatePort() != null)
+				hostPortsByContainerPort.put(containerPort.getPrivatePort(), containerPort.getPublicPort());
+		}
+		String name = container.getNames() != null && container.getNames().length > 0 ? removeNameSlash(container.getNames()[0]) : container.getId();
+		return new RuntimeContainer(container.getId(), name, DataSourceContainerState.fromDockerState(container.getState()), hostPortsByContainerPort);
+	}
+
+	private RuntimeContainer createRuntimeContainer(InspectContainerResponse inspectContainerResponse) {
+		Map<Integer, Integer> hostPortsByContainerPort = new HashMap<>();
+		Ports portBindings = inspectContainerResponse.getHostConfig().getPortBindings();
+		if (portBindings != null) {
+			for (Entry<ExposedPort, Binding[]> portBinding : portBindings.getBindings().entrySet()) {
+				if (portBinding.getValue() == null)
+					continue;
+				for (Binding binding : portBinding.getValue()) {
+					if (binding.getHostPortSpec() != null && !binding.getHostPortSpec().isEmpty())
+						hostPortsByContainerPort.put(portBinding.getKey().getPort(), Integer.parseInt(binding.getHostPortSpec()));
+				}
+			}
+		}
+		DataSourceContainerState state;
+		if (Boolean.TRUE.equals(inspectContainerResponse.getState().getPaused()))
+			state = DataSourceContainerState.PAUSED;
+		else
+			state = DataSourceContainerState.fromDockerState(inspectContainerResponse.getState().getStatus());
+		return new RuntimeContainer(inspectContainerResponse.getId(), removeNameSlash(inspectContainerResponse.getName()), state,
+				hostPortsByContainerPort);
+	}
+
+	@Override
+	@SuppressWarnings("deprecation")
+	public String findContainerAddress(String containerId) {
+		return dockerClient.inspectContainerCmd(containerId).exec().getNetworkSettings().getIpAddress();
+	}
+
+	@Override
+	public String findHealthStatus(String containerId) {
+		try {
+			HealthState healthState = dockerClient.inspectContainerCmd(containerId).exec().getState().getHealth();
+			return healthState != null ? healthState.getStatus() : null;
+		} catch (NotFoundException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public Integer findHostPort(String containerId, int containerPort) {
+		Binding[] bindings = dockerClient.inspectContainerCmd(containerId).exec().getNetworkSettings().getPorts().getBindings()
+				.get(ExposedPort.tcp(containerPort));
+		return bindings != null && bindings.length > 0 ? Integer.valueOf(bindings[0].getHostPortSpec()) : null;
+	}
+
+	/**
+	 * Memory usage from the first sample of the container stats stream
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @return
+	 */
+	@Override
+	public long findMemoryUsageBytes(String containerId) {
+		CompletableFuture<Long> memoryUsage = new CompletableFuture<>();
+		ResultCallback<Statistics> statsCallback = dockerClient.statsCmd(containerId)
+				.exec(new ResultCallbackTemplate<ResultCallback<Statistics>, Statistics>() {
+					@Override
+					public void onComplete() {
+						memoryUsage.complete(-1L);
+						super.onComplete();
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+						memoryUsage.complete(-1L);
+						super.onError(throwable);
+					}
+
+					@Override
+					public void onNext(Statistics statistics) {
+						Long usage = statistics.getMemoryStats() != null ? statistics.getMemoryStats().getUsage() : null;
+						memoryUsage.complete(usage != null ? usage : -1L);
+					}
+				});
+		try {
+			return memoryUsage.get(STATS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return -1;
+		} catch (ExecutionException | TimeoutException e) {
+			return -1;
+		} finally {
+			try {
+				statsCallback.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	@Override
+	public String findPublishedPortsHost(String containerId) {
+		return dockerHost;
+	}
+
+	@Override
+	public long findTotalMemoryBytes() {
+		Long memTotal = dockerClient.infoCmd().exec().getMemTotal();
+		return memTotal != null ? memTotal : -1;
+	}
+
+	@Override
+	public Closeable followOutput(String containerId, int sinceEpochSeconds, Consumer<String> outputConsumer) {
+		return dockerClient.logContainerCmd(containerId)
+				.withStdOut(true)
+				.withStdErr(true)
+				.withFollowStream(true)
+				.withSince(sinceEpochSeconds)
+				.exec(new LogContainerResultCallback() {
+					@Override
+					public void onNext(Frame frame) {
+						if (frame.getPayload() != null)
+							outputConsumer.accept(new String(frame.getPayload(), StandardCharsets.UTF_8));
+					}
+				});
+	}
+
+	@Override
+	public boolean hasContainerNetwork() {
+		return true;
+	}
+
+	@Override
+	public boolean imageExists(String imageName) {
+		return !dockerClient.listImagesCmd().withImageNameFilter(imageName).exec().isEmpty();
+	}
+
+	@Override
+	public RuntimeContainer inspectContainer(String containerId) {
+		try {
+			return createRuntimeContainer(dockerClient.inspectContainerCmd(containerId).exec());
+		} catch (NotFoundException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public List<RuntimeContainer> listContainers() {
+		List<RuntimeContainer> runtimeContainers = new ArrayList<>();
+		for (Container container : dockerClient.listContainersCmd().withShowAll(true).exec())
+			runtimeContainers.add(createRuntimeContainer(container));
+		return runtimeContainers;
+	}
+
+	@Override
+	public void pauseContainer(String containerId) {
+		dockerClient.pauseContainerCmd(containerId).exec();
+	}
+
+	@Override
+	public void pullImage(String imageName) throws InterruptedException {
+		dockerClient.pullImageCmd(imageName).exec(new PullImageResultCallback()).awaitCompletion();
+	}
+
+	@Override
+	public void removeContainer(String containerId) {
+		try {
+			dockerClient.removeContainerCmd(containerId).withForce(true).exec();
+		} catch (NotFoundException e) {
+			// Already removed
+		}
+	}
+
+	private String removeNameSlash(String containerName) {
+		return containerName != null && containerName.startsWith("/") ? containerName.substring(1) : containerName;
+	}
+
+	@Override
+	public void startContainer(String containerId) {
+		dockerClient.startContainerCmd(containerId).exec();
+	}
+
+	@Override
+	public void stopContainer(String containerId) {
+		dockerClient.stopContainerCmd(containerId).exec();
+	}
+
+	@Override
+	public Closeable subscribeEvents(ContainerEventListener containerEventListener) {
+		return dockerClient.eventsCmd()
+				.withSince(String.valueOf(System.currentTimeMillis() / 1000))
+				.exec(new EventsResultCallback() {
+					@Override
+					public void onComplete() {
+						super.onComplete();
+						containerEventListener.onClose();
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+						containerEventListener.onClose();
+						super.onError(throwable);
+					}
+
+					@Override
+					public void onNext(Event event) {
+						if (event.getType() != null && event.getType() != EventType.CONTAINER)
+							return;
+						String containerId = event.getId() != null ? event.getId() : event.getActor() != null ? event.getActor().getId() : null;
+						String action = event.getAction() != null ? event.getAction() : event.getStatus();
+						if (containerId != null && action != null)
+							containerEventListener.onEvent(containerId, action);
+					}
+				});
+	}
+
+	@Override
+	public Closeable subscribeImageEvents(ImageEventListener imageEventListener) {
+		return dockerClient.eventsCmd()
+				.withSince(String.valueOf(System.currentTimeMillis() / 1000))
+				.exec(new EventsResultCallback() {
+					@Override
+					public void onComplete() {
+						super.onComplete();
+						imageEventListener.onClose();
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+						imageEventListener.onClose();
+						super.onError(throwable);
+					}
+
+					@Override
+					public void onNext(Event event) {
+						if (event.getType() != EventType.IMAGE)
+							return;
+						// Tag events are identified by image id, name is an attribute
+						String imageName = event.getActor() != null && event.getActor().getAttributes() != null
+								? event.getActor().getAttributes().get("name") : null;
+						if (imageName == null)
+							imageName = event.getId() != null ? event.getId() : event.getActor() != null ? event.getActor().getId() : null;
+						if (imageName != null && event.getAction() != null)
+							imageEventListener.onEvent(imageName, event.getAction());
+					}
+				});
+	}
+
+	@Override
+	public void unpauseContainer(String containerId) {
+		dockerClient.unpauseContainerCmd(containerId).exec();
+	}
+}
@@ -0,0 +1,672 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.runtime.placement;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.magidc.balea.core.container.model.DataSourceContainerState;
+import com.magidc.balea.core.container.runtime.ContainerEventListener;
+import com.magidc.balea.core.container.runtime.ContainerRuntime;
+import com.magidc.balea.core.container.runtime.ContainerSpec;
+import com.magidc.balea.core.container.runtime.ImageEventListener;
+import com.magidc.balea.core.container.runtime.RuntimeContainer;
+
+/**
+ * Container runtime spreading data source containers over several hosts, each
+ * one managed by its own runtime (i.e. a Docker daemon per host). New
+ * containers are placed on the host their data source lived on if it is
+ * available and has free memory, otherwise on the host with the lowest score
+ * by used memory, running containers and recent cold start latency.
+ * <p>
+ * A host is marked as unavailable when it is not reachable after a failed call.
+ * Its containers are not listed and new ones are placed on other hosts until
+ * it is reachable again, then the containers whose data source was moved
+ * meanwhile are removed. Data directories must be reachable from every host
+ * (i.e. shared storage) for data sources to fail over. Containers are reached
+ * through published ports, so a host port range or a port binding supplier is
+ * needed
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class MultiHostContainerRuntime implements ContainerRuntime {
+	private static final class ContainerHost {
+		private final String name;
+		private final ContainerRuntime containerRuntime;
+		private final AtomicInteger runningContainers = new AtomicInteger();
+		private final AtomicInteger residentContainers = new AtomicInteger();
+		private volatile boolean available = true;
+		private volatile long totalMemoryBytes = -1;
+		private volatile double coldStartMillis = -1;
+
+		private ContainerHost(String name, ContainerRuntime containerRuntime) {
+			this.name = name;
+			this.containerRuntime = containerRuntime;
+		}
+	}
+
+	/**
+	 * Subscription to the container or image events of every available host. It
+	 * is closed as a whole when the events of any host stop, so it is renewed
+	 * including hosts reachable again
+	 * 
+	 * @author magidc <info@magidc.io>
+	 *
+	 */
+	private final class EventSubscription implements Closeable {
+		private final Runnable closeListener;
+		private final List<Closeable> eventStreams = new CopyOnWriteArrayList<>();
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		private EventSubscription(Runnable closeListener) {
+			this.closeListener = closeListener;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed.compareAndSet(false, true))
+				return;
+			eventSubscriptions.remove(this);
+			for (Closeable eventStream : eventStreams)
+				closeQuietly(eventStream);
+			closeListener.run();
+		}
+	}
+
+	private final PlacementParameters placementParameters;
+	private final List<ContainerHost> hosts = new ArrayList<>();
+	private final ConcurrentMap<String, ContainerHost> hostsByContainerId = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, ContainerHost> hostsByContainerName = new ConcurrentHashMap<>();
+	private final Set<String> placedContainerNames = ConcurrentHashMap.newKeySet();
+	private final Set<EventSubscription> eventSubscriptions = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService hostRefreshScheduler;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerRuntimesByHost
+	 *            Runtime of each host by host name, closed by {@link #close()}
+	 * @param placementParameters
+	 */
+	public MultiHostContainerRuntime(Map<String, ContainerRuntime> containerRuntimesByHost, PlacementParameters placementParameters) {
+		this.placementParameters = placementParameters;
+		for (Map.Entry<String, ContainerRuntime> entry : containerRuntimesByHost.entrySet())
+			hosts.add(new ContainerHost(entry.getKey(), entry.getValue()));
+		refreshHosts();
+		this.hostRefreshScheduler = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-host-refresh-%d").build());
+		long hostRefreshPeriodMillis = placementParameters.getHostRefreshPeriodMillis();
+		hostRefreshScheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					refreshHosts();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}, hostRefreshPeriodMillis, hostRefreshPeriodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Calls the runtime of the host of a container. If the call fails and the
+	 * host is not reachable, it is marked as unavailable
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @param call
+	 * @return
+	 */
+	private <T> T callContainerHost(String containerId, Function<ContainerRuntime, T> call) {
+		ContainerHost host = locateContainer(containerId);
+		if (host == null)
+			throw new IllegalStateException(String.format("No such container: %s", containerId));
+		if (!host.available)
+			throw new IllegalStateException(String.format("Host %s of container %s is not available", host.name, containerId));
+		try {
+			return call.apply(host.containerRuntime);
+		} catch (RuntimeException e) {
+			if (!isReachable(host))
+				host.available = false;
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		hostRefreshScheduler.shutdownNow();
+		for (EventSubscription eventSubscription : new ArrayList<>(eventSubscriptions))
+			closeQuietly(eventSubscription);
+		for (ContainerHost host : hosts)
+			host.containerRuntime.close();
+	}
+
+	private void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Creates a container on the host chosen by placement. If the host is not
+	 * reachable it is marked as unavailable and the container is placed on
+	 * another one
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerSpec
+	 * @return
+	 */
+	@Override
+	public String createContainer(ContainerSpec containerSpec) {
+		Set<ContainerHost> failedHosts = new HashSet<>();
+		while (true) {
+			ContainerHost host = placeContainer(containerSpec, failedHosts);
+			try {
+				String containerId = host.containerRuntime.createContainer(containerSpec);
+				hostsByContainerId.put(containerId, host);
+				hostsByContainerName.put(containerSpec.getName(), host);
+				placedContainerNames.add(containerSpec.getName());
+				return containerId;
+			} catch (RuntimeException e) {
+				host.runningContainers.decrementAndGet();
+				host.residentContainers.decrementAndGet();
+				if (isReachable(host))
+					throw e;
+				host.available = false;
+				failedHosts.add(host);
+			}
+		}
+	}
+
+	@Override
+	public String findContainerAddress(String containerId) {
+		return callContainerHost(containerId, r -> r.findContainerAddress(containerId));
+	}
+
+	@Override
+	public String findHealthStatus(String containerId) {
+		ContainerHost host = locateContainer(containerId);
+		return host != null && host.available ? callContainerHost(containerId, r -> r.findHealthStatus(containerId)) : null;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerName
+	 * @return Name of the host a container lives on, or lived on before being
+	 *         removed, null if it is unknown
+	 */
+	public String findHostName(String containerName) {
+		ContainerHost host = hostsByContainerName.get(containerName);
+		return host != null ? host.name : null;
+	}
+
+	@Override
+	public Integer findHostPort(String containerId, int containerPort) {
+		return callContainerHost(containerId, r -> r.findHostPort(containerId, containerPort));
+	}
+
+	@Override
+	public long findMemoryUsageBytes(String containerId) {
+		ContainerHost host = locateContainer(containerId);
+		return host != null && host.available ? callContainerHost(containerId, r -> r.findMemoryUsageBytes(containerId)) : -1;
+	}
+
+	@Override
+	public String findPublishedPortsHost(String containerId) {
+		ContainerHost host = locateContainer(containerId);
+		if (host == null)
+			throw new IllegalStateException(String.format("No such container: %s", containerId));
+		return host.containerRuntime.findPublishedPortsHost(containerId);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Memory of the available hosts as of their last refresh, -1 if it is
+	 *         unknown for all of them
+	 */
+	@Override
+	public long findTotalMemoryBytes() {
+		long totalMemoryBytes = -1;
+		for (ContainerHost host : getAvailableHosts()) {
+			if (host.totalMemoryBytes > 0)
+				totalMemoryBytes = Math.max(totalMemoryBytes, 0) + host.totalMemoryBytes;
+		}
+		return totalMemoryBytes;
+	}
+
+	@Override
+	public Closeable followOutput(String containerId, int sinceEpochSeconds, Consumer<String> outputConsumer) {
+		return callContainerHost(containerId, r -> r.followOutput(containerId, sinceEpochSeconds, outputConsumer));
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Names of the hosts currently available
+	 */
+	public List<String> getAvailableHostNames() {
+		return getAvailableHosts().stream().map(h -> h.name).collect(Collectors.toList());
+	}
+
+	private List<ContainerHost> getAvailableHosts() {
+		return hosts.stream().filter(h -> h.available).collect(Collectors.toList());
+	}
+
+	/**
+	 * Containers of different hosts are not reachable at their own network
+	 * address
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	@Override
+	public boolean hasContainerNetwork() {
+		return false;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param host
+	 * @param containerMemoryBytes
+	 *            Memory of the new container
+	 * @return Whether the estimated free memory of the host fits a new container
+	 */
+	private boolean hasFreeMemory(ContainerHost host, long containerMemoryBytes) {
+		return host.totalMemoryBytes <= 0
+				|| host.totalMemoryBytes - host.residentContainers.get() * placementParameters.getContainerMemoryBytes() >= containerMemoryBytes;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param imageName
+	 * @return Whether the image exists in every available host
+	 */
+	@Override
+	public boolean imageExists(String imageName) {
+		for (ContainerHost host : getAvailableHosts()) {
+			try {
+				if (!host.containerRuntime.imageExists(imageName))
+					return false;
+			} catch (RuntimeException e) {
+				if (isReachable(host))
+					throw e;
+				host.available = false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public RuntimeContainer inspectContainer(String containerId) {
+		ContainerHost host = locateContainer(containerId);
+		return host != null && host.available ? callContainerHost(containerId, r -> r.inspectContainer(containerId)) : null;
+	}
+
+	private boolean isReachable(ContainerHost host) {
+		try {
+			host.containerRuntime.listContainers();
+			return true;
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public List<RuntimeContainer> listContainers() {
+		List<RuntimeContainer> runtimeContainers = new ArrayList<>();
+		for (ContainerHost host : getAvailableHosts()) {
+			try {
+				runtimeContainers.addAll(listHostContainers(host));
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				host.available = false;
+			}
+		}
+		return runtimeContainers;
+	}
+
+	/**
+	 * Lists the containers of a host, updating its container counts. Containers
+	 * placed on another available host meanwhile are stale copies left by a fail
+	 * over, they are removed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param host
+	 * @return
+	 */
+	private List<RuntimeContainer> listHostContainers(ContainerHost host) {
+		List<RuntimeContainer> hostContainers = new ArrayList<>();
+		int runningContainers = 0;
+		int residentContainers = 0;
+		for (RuntimeContainer runtimeContainer : host.containerRuntime.listContainers()) {
+			ContainerHost dataSourceHost = hostsByContainerName.putIfAbsent(runtimeContainer.getName(), host);
+			if (dataSourceHost != null && dataSourceHost != host) {
+				if (dataSourceHost.available && placedContainerNames.contains(runtimeContainer.getName())) {
+					host.containerRuntime.removeContainer(runtimeContainer.getId());
+					continue;
+				}
+				if (!dataSourceHost.available)
+					hostsByContainerName.put(runtimeContainer.getName(), host);
+			}
+			hostsByContainerId.put(runtimeContainer.getId(), host);
+			if (runtimeContainer.getState() == DataSourceContainerState.RUNNING)
+				runningContainers++;
+			if (runtimeContainer.getState() == DataSourceContainerState.RUNNING || runtimeContainer.getState() == DataSourceContainerState.PAUSED)
+				residentContainers++;
+			hostContainers.add(runtimeContainer);
+		}
+		host.runningContainers.set(runningContainers);
+		host.residentContainers.set(residentContainers);
+		return hostContainers;
+	}
+
+	/**
+	 * Finds the host of a container, asking available hosts for containers not
+	 * listed yet
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @return Host or null if no available host has the container
+	 */
+	private ContainerHost locateContainer(String containerId) {
+		ContainerHost host = hostsByContainerId.get(containerId);
+		if (host != null)
+			return host;
+		for (ContainerHost availableHost : getAvailableHosts()) {
+			try {
+				if (availableHost.containerRuntime.inspectContainer(containerId) != null) {
+					hostsByContainerId.put(containerId, availableHost);
+					return availableHost;
+				}
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void pauseContainer(String containerId) {
+		callContainerHost(containerId, r -> {
+			r.pauseContainer(containerId);
+			return null;
+		});
+	}
+
+	/**
+	 * Chooses the host of a new container, accounting it in the host counts until
+	 * they are refreshed. The memory limit of the container is used to check free
+	 * memory if it has one
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerSpec
+	 * @param excludedHosts
+	 * @return
+	 */
+	private synchronized ContainerHost placeContainer(ContainerSpec containerSpec, Set<ContainerHost> excludedHosts) {
+		List<ContainerHost> candidateHosts = hosts.stream()
+				.filter(h -> h.available && !excludedHosts.contains(h))
+				.collect(Collectors.toList());
+		if (candidateHosts.isEmpty())
+			throw new IllegalStateException("No container host is available");
+		// Memory is overcommitted rather than failing when every host is full
+		long containerMemoryBytes = containerSpec.getResourceProfile() != null && containerSpec.getResourceProfile().getMemoryBytes() != null
+				? containerSpec.getResourceProfile().getMemoryBytes()
+				: placementParameters.getContainerMemoryBytes();
+		List<ContainerHost> hostsWithFreeMemory = candidateHosts.stream().filter(h -> hasFreeMemory(h, containerMemoryBytes)).collect(Collectors.toList());
+		if (!hostsWithFreeMemory.isEmpty())
+			candidateHosts = hostsWithFreeMemory;
+
+		ContainerHost selectedHost = hostsByContainerName.get(containerSpec.getName());
+		if (!candidateHosts.contains(selectedHost)) {
+			int maximumRunningContainers = candidateHosts.stream().mapToInt(h -> h.runningContainers.get()).max().getAsInt();
+			double maximumColdStartMillis = candidateHosts.stream().mapToDouble(h -> h.coldStartMillis).max().getAsDouble();
+			selectedHost = candidateHosts.stream()
+					.min(Comparator.comparingDouble(h -> score(h, maximumRunningContainers, maximumColdStartMillis)))
+					.get();
+		}
+		selectedHost.runningContainers.incrementAndGet();
+		selectedHost.residentContainers.incrementAndGet();
+		return selectedHost;
+	}
+
+	/**
+	 * Pulls the image in the available hosts where it does not exist
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param imageName
+	 * @throws InterruptedException
+	 */
+	@Override
+	public void pullImage(String imageName) throws InterruptedException {
+		for (ContainerHost host : getAvailableHosts()) {
+			try {
+				if (!host.containerRuntime.imageExists(imageName))
+					host.containerRuntime.pullImage(imageName);
+			} catch (RuntimeException e) {
+				if (isReachable(host))
+					throw e;
+				host.available = false;
+			}
+		}
+	}
+
+	/**
+	 * Updates the moving average of the cold start latency of the host of a
+	 * container
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 * @param nanos
+	 */
+	@Override
+	public void recordColdStart(String containerId, long nanos) {
+		ContainerHost host = hostsByContainerId.get(containerId);
+		if (host == null)
+			return;
+		double coldStartMillis = nanos / 1e6;
+		double smoothing = placementParameters.getColdStartLatencySmoothing();
+		synchronized (host) {
+			host.coldStartMillis = host.coldStartMillis < 0 ? coldStartMillis : smoothing * coldStartMillis + (1 - smoothing) * host.coldStartMillis;
+		}
+	}
+
+	/**
+	 * Refreshes the containers and memory of every host. Unavailable hosts
+	 * reachable again become available, and event subscriptions are closed to be
+	 * renewed including them
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void refreshHosts() {
+		boolean recovered = false;
+		for (ContainerHost host : hosts) {
+			try {
+				listHostContainers(host);
+				host.totalMemoryBytes = host.containerRuntime.findTotalMemoryBytes();
+				if (!host.available) {
+					host.available = true;
+					recovered = true;
+				}
+			} catch (RuntimeException e) {
+				if (host.available)
+					e.printStackTrace();
+				host.available = false;
+			}
+		}
+		if (recovered) {
+			for (EventSubscription eventSubscription : new ArrayList<>(eventSubscriptions))
+				closeQuietly(eventSubscription);
+		}
+	}
+
+	/**
+	 * Removes a container. Containers of unavailable hosts are just forgotten,
+	 * they are removed when the host is reachable again if their data source has
+	 * been placed on another host
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerId
+	 */
+	@Override
+	public void removeContainer(String containerId) {
+		ContainerHost host = locateContainer(containerId);
+		if (host == null)
+			return;
+		if (host.available) {
+			try {
+				callContainerHost(containerId, r -> {
+					r.removeContainer(containerId);
+					return null;
+				});
+			} catch (RuntimeException e) {
+				if (host.available)
+					throw e;
+			}
+		}
+		hostsByContainerId.remove(containerId, host);
+	}
+
+	/**
+	 * Placement score of a host, the lower the better. Hosts without cold starts
+	 * yet are not penalized by latency
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param host
+	 * @param maximumRunningContainers
+	 *            Running containers of the busiest candidate host
+	 * @param maximumColdStartMillis
+	 *            Cold start latency of the slowest candidate host
+	 * @return
+	 */
+	private double score(ContainerHost host, int maximumRunningContainers, double maximumColdStartMillis) {
+		double score = 0;
+		if (host.totalMemoryBytes > 0)
+			score += placementParameters.getMemoryWeight()
+					* Math.min(1, (double) host.residentContainers.get() * placementParameters.getContainerMemoryBytes() / host.totalMemoryBytes);
+		if (maximumRunningContainers > 0)
+			score += placementParameters.getContainerCountWeight() * host.runningContainers.get() / maximumRunningContainers;
+		if (maximumColdStartMillis > 0 && host.coldStartMillis >= 0)
+			score += placementParameters.getColdStartLatencyWeight() * host.coldStartMillis / maximumColdStartMillis;
+		return score;
+	}
+
+	@Override
+	public void startContainer(String containerId) {
+		callContainerHost(containerId, r -> {
+			r.startContainer(containerId);
+			return null;
+		});
+	}
+
+	@Override
+	public void stopContainer(String containerId) {
+		callContainerHost(containerId, r -> {
+			r.stopContainer(containerId);
+			return null;
+		});
+	}
+
+	@Override
+	public Closeable subscribeEvents(ContainerEventListener containerEventListener) {
+		EventSubscription eventSubscription = new EventSubscription(containerEventListener::onClose);
+		eventSubscriptions.add(eventSubscription);
+		for (ContainerHost host : getAvailableHosts()) {
+			try {
+				eventSubscription.eventStreams.add(host.containerRuntime.subscribeEvents(new ContainerEventListener() {
+					@Override
+					public void onClose() {
+						closeQuietly(eventSubscription);
+					}
+
+					@Override
+					public void onEvent(String containerId, String action) {
+						if (action.equals("destroy"))
+							hostsByContainerId.remove(containerId, host);
+						else
+							hostsByContainerId.put(containerId, host);
+						containerEventListener.onEvent(containerId, action);
+					}
+				}));
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				host.available = false;
+			}
+		}
+		return eventSubscription;
+	}
+
+	@Override
+	public Closeable subscribeImageEvents(ImageEventListener imageEventListener) {
+		EventSubscription eventSubscription = new EventSubscription(imageEventListener::onClose);
+		eventSubscriptions.add(eventSubscription);
+		for (ContainerHost host : getAvailableHosts()) {
+			try {
+				eventSubscription.eventStreams.add(host.containerRuntime.subscribeImageEvents(new ImageEventListener() {
+					@Override
+					public void onClose() {
+						closeQuietly(eventSubscription);
+					}
+
+					@Override
+					public void onEvent(String imageName, String action) {
+						imageEventListener.onEvent(imageName, action);
+					}
+				}));
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				host.available = false;
+			}
+		}
+		return eventSubscription;
+	}
+
+	@Override
+	public void unpauseContainer(String containerId) {
+		callContainerHost(containerId, r -> {
+			r.unpauseContainer(containerId);
+			return null;
+		});
+	}
+}
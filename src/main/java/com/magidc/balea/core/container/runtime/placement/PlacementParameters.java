@@ -0,0 +1,122 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.runtime.placement;
+
+/**
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class PlacementParameters {
+	private long containerMemoryBytes = 536870912;
+	private double memoryWeight = 1;
+	private double containerCountWeight = 1;
+	private double coldStartLatencyWeight = 1;
+	private double coldStartLatencySmoothing = 0.3;
+	private long hostRefreshPeriodMillis = 10000;
+
+	public double getColdStartLatencySmoothing() {
+		return coldStartLatencySmoothing;
+	}
+
+	public double getColdStartLatencyWeight() {
+		return coldStartLatencyWeight;
+	}
+
+	public double getContainerCountWeight() {
+		return containerCountWeight;
+	}
+
+	public long getContainerMemoryBytes() {
+		return containerMemoryBytes;
+	}
+
+	public long getHostRefreshPeriodMillis() {
+		return hostRefreshPeriodMillis;
+	}
+
+	public double getMemoryWeight() {
+		return memoryWeight;
+	}
+
+	/**
+	 * Weight of the latest cold start in the moving average of the cold start
+	 * latency of each host
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param coldStartLatencySmoothing
+	 */
+	public void setColdStartLatencySmoothing(double coldStartLatencySmoothing) {
+		this.coldStartLatencySmoothing = coldStartLatencySmoothing;
+	}
+
+	/**
+	 * Weight of the recent cold start latency of a host, relative to the slowest
+	 * host, in its placement score
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param coldStartLatencyWeight
+	 */
+	public void setColdStartLatencyWeight(double coldStartLatencyWeight) {
+		this.coldStartLatencyWeight = coldStartLatencyWeight;
+	}
+
+	/**
+	 * Weight of the running containers of a host, relative to the busiest host,
+	 * in its placement score
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerCountWeight
+	 */
+	public void setContainerCountWeight(double containerCountWeight) {
+		this.containerCountWeight = containerCountWeight;
+	}
+
+	/**
+	 * Memory accounted for each running or paused container when estimating the
+	 * free memory of a host, and for new containers without memory limit
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param containerMemoryBytes
+	 */
+	public void setContainerMemoryBytes(long containerMemoryBytes) {
+		this.containerMemoryBytes = containerMemoryBytes;
+	}
+
+	/**
+	 * Period to refresh the containers and memory of every host and to check
+	 * whether unavailable hosts are reachable again
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param hostRefreshPeriodMillis
+	 */
+	public void setHostRefreshPeriodMillis(long hostRefreshPeriodMillis) {
+		this.hostRefreshPeriodMillis = hostRefreshPeriodMillis;
+	}
+
+	/**
+	 * Weight of the used memory fraction of a host in its placement score
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param memoryWeight
+	 */
+	public void setMemoryWeight(double memoryWeight) {
+		this.memoryWeight = memoryWeight;
+	}
+}
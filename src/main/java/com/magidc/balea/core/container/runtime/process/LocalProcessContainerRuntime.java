@@ -0,0 +1,477 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.runtime.process;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.magidc.balea.core.container.model.DataSourceContainerState;
+import com.magidc.balea.core.container.runtime.ContainerEventListener;
+import com.magidc.balea.core.container.runtime.ContainerRuntime;
+import com.magidc.balea.core.container.runtime.ContainerSpec;
+import com.magidc.balea.core.container.runtime.RuntimeContainer;
+
+/**
+ * Container runtime launching database server binaries (i.e.
+ * <code>postgres -D [dataDir]</code>) as local processes, skipping image and
+ * container setup. The data directory of a process is the host directory of
+ * its first data volume bind, and it listens on the published host port or on
+ * a free one. Pausing relies on <code>SIGSTOP</code> and <code>SIGCONT</code>
+ * signals, sent to the process group of the server when it is launched in its
+ * own, so it is only supported on Unix like systems. Images are ignored,
+ * the launched binaries have to be installed in the host
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class LocalProcessContainerRuntime implements ContainerRuntime {
+	private static final class LocalProcess {
+		private final String id;
+		private final ContainerSpec containerSpec;
+		private final String dataDir;
+		private final int port;
+		private final Deque<OutputLine> outputLines = new ArrayDeque<>();
+		private final List<Consumer<String>> outputConsumers = new CopyOnWriteArrayList<>();
+		private volatile DataSourceContainerState state = DataSourceContainerState.CREATED;
+		private Process process;
+		private long pid;
+		private boolean processGroupLeader;
+
+		private LocalProcess(String id, ContainerSpec containerSpec, String dataDir, int port) {
+			this.id = id;
+			this.containerSpec = containerSpec;
+			this.dataDir = dataDir;
+			this.port = port;
+		}
+	}
+
+	private static final class OutputLine {
+		private final long epochMillis;
+		private final String text;
+
+		private OutputLine(long epochMillis, String text) {
+			this.epochMillis = epochMillis;
+			this.text = text;
+		}
+	}
+
+	private static int findFreePort() {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			return serverSocket.getLocalPort();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Process ids are only exposed by <code>Process.pid()</code> since Java 9,
+	 * older Unix process implementations keep them in a private field
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param process
+	 * @return
+	 */
+	private static long findPid(Process process) {
+		try {
+			return (Long) Process.class.getMethod("pid").invoke(process);
+		} catch (NoSuchMethodException e) {
+			try {
+				Field pidField = process.getClass().getDeclaredField("pid");
+				pidField.setAccessible(true);
+				return pidField.getLong(process);
+			} catch (ReflectiveOperationException e1) {
+				throw new UnsupportedOperationException("Process ids are not available in this platform", e1);
+			}
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Process ids are not available in this platform", e);
+		}
+	}
+
+	private final LocalProcessRuntimeParameters localProcessRuntimeParameters;
+	private final ConcurrentMap<String, LocalProcess> processes = new ConcurrentHashMap<>();
+	private final List<ContainerEventListener> containerEventListeners = new CopyOnWriteArrayList<>();
+	private final ThreadFactory outputReaderThreadFactory = new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-process-output-%d").build();
+	private final Thread shutdownHook = new Thread(this::stopAllProcesses, "balea-process-shutdown");
+
+	/**
+	 * Launched processes are stopped on close or, at the latest, on JVM shutdown
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param localProcessRuntimeParameters
+	 */
+	public LocalProcessContainerRuntime(LocalProcessRuntimeParameters localProcessRuntimeParameters) {
+		this.localProcessRuntimeParameters = localProcessRuntimeParameters;
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	private void appendOutput(LocalProcess localProcess, String line) {
+		synchronized (localProcess.outputLines) {
+			localProcess.outputLines.addLast(new OutputLine(System.currentTimeMillis(), line));
+			while (localProcess.outputLines.size() > localProcessRuntimeParameters.getMaximumBufferedOutputLines())
+				localProcess.outputLines.removeFirst();
+			for (Consumer<String> outputConsumer : localProcess.outputConsumers)
+				outputConsumer.accept(line + "\n");
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// JVM already shutting down, the hook stops the processes
+			return;
+		}
+		stopAllProcesses();
+	}
+
+	@Override
+	public String createContainer(ContainerSpec containerSpec) {
+		if (containerSpec.getBinds().isEmpty())
+			throw new IllegalArgumentException(String.format("Container %s has no data directory", containerSpec.getName()));
+		String dataDir = containerSpec.getBinds().keySet().iterator().next();
+		int port = containerSpec.getHostPort() != null ? containerSpec.getHostPort() : findFreePort();
+		LocalProcess localProcess = new LocalProcess(UUID.randomUUID().toString().replace("-", ""), containerSpec, dataDir, port);
+		synchronized (processes) {
+			if (processes.values().stream().anyMatch(p -> p.containerSpec.getName().equals(containerSpec.getName())))
+				throw new IllegalStateException(String.format("Container name %s is already in use", containerSpec.getName()));
+			processes.put(localProcess.id, localProcess);
+		}
+		publishEvent(localProcess.id, "create");
+		return localProcess.id;
+	}
+
+	@Override
+	public String findContainerAddress(String containerId) {
+		return localProcessRuntimeParameters.getHost();
+	}
+
+	@Override
+	public String findHealthStatus(String containerId) {
+		return null;
+	}
+
+	@Override
+	public Integer findHostPort(String containerId, int containerPort) {
+		LocalProcess localProcess = processes.get(containerId);
+		return localProcess != null ? localProcess.port : null;
+	}
+
+	private LocalProcess findProcess(String containerId) {
+		LocalProcess localProcess = processes.get(containerId);
+		if (localProcess == null)
+			throw new IllegalArgumentException(String.format("No such container: %s", containerId));
+		return localProcess;
+	}
+
+	@Override
+	public String findPublishedPortsHost(String containerId) {
+		return localProcessRuntimeParameters.getHost();
+	}
+
+	@Override
+	public Closeable followOutput(String containerId, int sinceEpochSeconds, Consumer<String> outputConsumer) {
+		LocalProcess localProcess = findProcess(containerId);
+		long sinceEpochMillis = TimeUnit.SECONDS.toMillis(sinceEpochSeconds);
+		synchronized (localProcess.outputLines) {
+			for (OutputLine outputLine : localProcess.outputLines) {
+				if (outputLine.epochMillis >= sinceEpochMillis)
+					outputConsumer.accept(outputLine.text + "\n");
+			}
+			localProcess.outputConsumers.add(outputConsumer);
+		}
+		return () -> localProcess.outputConsumers.remove(outputConsumer);
+	}
+
+	@Override
+	public boolean hasContainerNetwork() {
+		return false;
+	}
+
+	@Override
+	public boolean imageExists(String imageName) {
+		return true;
+	}
+
+	/**
+	 * Runs the init command if the data directory is missing or empty. Its output
+	 * is buffered as process output
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param localProcess
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void initializeDataDir(LocalProcess localProcess) throws IOException, InterruptedException {
+		if (localProcessRuntimeParameters.getInitCommand() == null)
+			return;
+		String[] dataDirFiles = new File(localProcess.dataDir).list();
+		if (dataDirFiles != null && dataDirFiles.length > 0)
+			return;
+		Process initProcess = launch(localProcess, localProcessRuntimeParameters.getInitCommand());
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(initProcess.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null)
+				appendOutput(localProcess, line);
+		}
+		int exitCode = initProcess.waitFor();
+		if (exitCode != 0)
+			throw new IllegalStateException(
+					String.format("Data directory %s of container %s could not be initialized, exit code %d", localProcess.dataDir,
+							localProcess.containerSpec.getName(), exitCode));
+	}
+
+	@Override
+	public RuntimeContainer inspectContainer(String containerId) {
+		LocalProcess localProcess = processes.get(containerId);
+		return localProcess != null ? toRuntimeContainer(localProcess) : null;
+	}
+
+	private Process launch(LocalProcess localProcess, List<String> command) throws IOException {
+		ProcessBuilder processBuilder = new ProcessBuilder(
+				command.stream().map(argument -> resolvePlaceholders(localProcess, argument)).collect(Collectors.toList()));
+		processBuilder.environment().putAll(localProcess.containerSpec.getEnvironmentVariables());
+		processBuilder.redirectErrorStream(true);
+		return processBuilder.start();
+	}
+
+	@Override
+	public List<RuntimeContainer> listContainers() {
+		return processes.values().stream().map(this::toRuntimeContainer).collect(Collectors.toList());
+	}
+
+	@Override
+	public void pauseContainer(String containerId) {
+		LocalProcess localProcess = findProcess(containerId);
+		synchronized (localProcess) {
+			if (localProcess.state != DataSourceContainerState.RUNNING)
+				throw new IllegalStateException(String.format("Container %s is not running", containerId));
+			signal(localProcess, "STOP");
+			localProcess.state = DataSourceContainerState.PAUSED;
+		}
+		publishEvent(containerId, "pause");
+	}
+
+	private void publishEvent(String containerId, String action) {
+		for (ContainerEventListener containerEventListener : containerEventListeners) {
+			try {
+				containerEventListener.onEvent(containerId, action);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	@Override
+	public void pullImage(String imageName) {
+		// Binaries are expected to be installed in the host
+	}
+
+	/**
+	 * Forwards process output and registers the exit of processes that were not
+	 * stopped through this runtime
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param localProcess
+	 * @param process
+	 */
+	private void readOutput(LocalProcess localProcess, Process process) {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null)
+				appendOutput(localProcess, line);
+		} catch (IOException e) {
+			// Stream closed when the process is destroyed
+		}
+		try {
+			process.waitFor();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		boolean died;
+		synchronized (localProcess) {
+			died = localProcess.process == process && localProcess.state != DataSourceContainerState.STOPPED;
+			if (died)
+				localProcess.state = DataSourceContainerState.STOPPED;
+		}
+		if (died)
+			publishEvent(localProcess.id, "die");
+	}
+
+	@Override
+	public void removeContainer(String containerId) {
+		LocalProcess localProcess = processes.get(containerId);
+		if (localProcess == null)
+			return;
+		stopProcess(localProcess);
+		processes.remove(containerId);
+		publishEvent(containerId, "destroy");
+	}
+
+	private String resolvePlaceholders(LocalProcess localProcess, String argument) {
+		String resolvedArgument = argument.replace("{dataDir}", localProcess.dataDir).replace("{port}", String.valueOf(localProcess.port))
+				.replace("{name}", localProcess.containerSpec.getName());
+		for (Map.Entry<String, String> environmentVariable : localProcess.containerSpec.getEnvironmentVariables().entrySet())
+			resolvedArgument = resolvedArgument.replace(String.format("{%s}", environmentVariable.getKey()), environmentVariable.getValue());
+		return resolvedArgument;
+	}
+
+	/**
+	 * Signals the server process, or its whole process group if it leads one
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param localProcess
+	 * @param signal
+	 */
+	private void signal(LocalProcess localProcess, String signal) {
+		try {
+			String target = localProcess.processGroupLeader ? "-" + localProcess.pid : String.valueOf(localProcess.pid);
+			Process killProcess = new ProcessBuilder("kill", "-" + signal, "--", target).start();
+			if (killProcess.waitFor() != 0)
+				throw new IllegalStateException(String.format("Signal %s could not be sent to container %s", signal, localProcess.id));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void startContainer(String containerId) {
+		LocalProcess localProcess = findProcess(containerId);
+		synchronized (localProcess) {
+			if (localProcess.state == DataSourceContainerState.RUNNING || localProcess.state == DataSourceContainerState.PAUSED)
+				return;
+			try {
+				initializeDataDir(localProcess);
+				List<String> processGroupCommand = localProcessRuntimeParameters.getProcessGroupCommand();
+				List<String> command = localProcessRuntimeParameters.getCommand();
+				if (processGroupCommand != null) {
+					command = new ArrayList<>(processGroupCommand);
+					command.addAll(localProcessRuntimeParameters.getCommand());
+				}
+				Process process = launch(localProcess, command);
+				localProcess.process = process;
+				localProcess.pid = findPid(process);
+				localProcess.processGroupLeader = processGroupCommand != null;
+				localProcess.state = DataSourceContainerState.RUNNING;
+				outputReaderThreadFactory.newThread(() -> readOutput(localProcess, process)).start();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+		publishEvent(containerId, "start");
+	}
+
+	private void stopAllProcesses() {
+		for (LocalProcess localProcess : processes.values()) {
+			try {
+				stopProcess(localProcess);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	@Override
+	public void stopContainer(String containerId) {
+		if (stopProcess(findProcess(containerId)))
+			publishEvent(containerId, "stop");
+	}
+
+	/**
+	 * Requests a graceful shutdown (<code>SIGTERM</code>), paused processes are
+	 * resumed first so they can handle it. Processes still alive after the stop
+	 * timeout are killed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param localProcess
+	 * @return Whether a process was running
+	 */
+	private boolean stopProcess(LocalProcess localProcess) {
+		Process process;
+		synchronized (localProcess) {
+			if (localProcess.state != DataSourceContainerState.RUNNING && localProcess.state != DataSourceContainerState.PAUSED)
+				return false;
+			if (localProcess.state == DataSourceContainerState.PAUSED)
+				signal(localProcess, "CONT");
+			localProcess.state = DataSourceContainerState.STOPPED;
+			process = localProcess.process;
+		}
+		process.destroy();
+		try {
+			if (!process.waitFor(localProcessRuntimeParameters.getStopTimeoutMillis(), TimeUnit.MILLISECONDS))
+				process.destroyForcibly().waitFor();
+		} catch (InterruptedException e) {
+			process.destroyForcibly();
+			Thread.currentThread().interrupt();
+		}
+		return true;
+	}
+
+	@Override
+	public Closeable subscribeEvents(ContainerEventListener containerEventListener) {
+		containerEventListeners.add(containerEventListener);
+		return () -> containerEventListeners.remove(containerEventListener);
+	}
+
+	private RuntimeContainer toRuntimeContainer(LocalProcess localProcess) {
+		return new RuntimeContainer(localProcess.id, localProcess.containerSpec.getName(), localProcess.state,
+				Collections.singletonMap(localProcess.containerSpec.getContainerPort(), localProcess.port));
+	}
+
+	@Override
+	public void unpauseContainer(String containerId) {
+		LocalProcess localProcess = findProcess(containerId);
+		synchronized (localProcess) {
+			if (localProcess.state != DataSourceContainerState.PAUSED)
+				throw new IllegalStateException(String.format("Container %s is not paused", containerId));
+			signal(localProcess, "CONT");
+			localProcess.state = DataSourceContainerState.RUNNING;
+		}
+		publishEvent(containerId, "unpause");
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.runtime.process;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Configuration of database server processes launched by
+ * {@link LocalProcessContainerRuntime}. Command arguments may contain the
+ * placeholders <code>{dataDir}</code>, <code>{port}</code>, <code>{name}</code>
+ * and <code>{[environment variable]}</code>
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class LocalProcessRuntimeParameters {
+	private List<String> command = Arrays.asList("postgres", "-D", "{dataDir}", "-p", "{port}", "-k", "{dataDir}");
+	private List<String> initCommand;
+	private List<String> processGroupCommand = Arrays.asList("setsid");
+	private String host = "localhost";
+	private long stopTimeoutMillis = 30000L;
+	private int maximumBufferedOutputLines = 1000;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Command launching the database server in foreground
+	 */
+	public List<String> getCommand() {
+		return command;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Host where launched database servers listen
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * Command initializing a missing or empty data directory before the first
+	 * start (i.e. <code>initdb -D {dataDir} -U {POSTGRES_USER}</code>), null if
+	 * data directories are never initialized
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public List<String> getInitCommand() {
+		return initCommand;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Output lines kept per process to be replayed to late followers
+	 */
+	public int getMaximumBufferedOutputLines() {
+		return maximumBufferedOutputLines;
+	}
+
+	/**
+	 * Command prefix launching the database server as leader of its own process
+	 * group, so pausing freezes all its processes (i.e. PostgreSQL backends and
+	 * background workers) as the cgroup freezer does. Null to signal the server
+	 * process only
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public List<String> getProcessGroupCommand() {
+		return processGroupCommand;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Time given to a process to shut down gracefully before it is killed
+	 */
+	public long getStopTimeoutMillis() {
+		return stopTimeoutMillis;
+	}
+
+	public void setCommand(List<String> command) {
+		this.command = command;
+	}
+
+	public void setHost(String host) {
+		this.host = host;
+	}
+
+	public void setInitCommand(List<String> initCommand) {
+		this.initCommand = initCommand;
+	}
+
+	public void setMaximumBufferedOutputLines(int maximumBufferedOutputLines) {
+		this.maximumBufferedOutputLines = maximumBufferedOutputLines;
+	}
+
+	public void setProcessGroupCommand(List<String> processGroupCommand) {
+		this.processGroupCommand = processGroupCommand;
+	}
+
+	public void setStopTimeoutMillis(long stopTimeoutMillis) {
+		this.stopTimeoutMillis = stopTimeoutMillis;
+	}
+}
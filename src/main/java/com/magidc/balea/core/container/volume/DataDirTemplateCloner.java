@@ -0,0 +1,192 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.volume;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Provisions the data directories of new data sources by cloning a
+ * pre-initialized template instead of letting the database initialize them on
+ * first start. Templates are cloned with reflinks where the file system
+ * supports them, otherwise their files are copied in parallel. Hard links are
+ * not used as databases modify their files in place, which would modify the
+ * template. Clones are made in a temporary sibling directory and moved into
+ * place once complete, so a failed clone never leaves a partial data directory
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class DataDirTemplateCloner {
+	private static final boolean LINUX = System.getProperty("os.name", "").startsWith("Linux");
+
+	private final DataDirTemplateParameters dataDirTemplateParameters;
+	private final ExecutorService copyExecutor;
+	/**
+	 * Cleared once a reflink clone fails, so templates are copied without
+	 * retrying it
+	 */
+	private volatile boolean reflinkSupported;
+
+	public DataDirTemplateCloner(DataDirTemplateParameters dataDirTemplateParameters) {
+		this.dataDirTemplateParameters = dataDirTemplateParameters;
+		this.reflinkSupported = LINUX && dataDirTemplateParameters.isReflinkEnabled();
+		this.copyExecutor = Executors.newFixedThreadPool(Math.max(1, dataDirTemplateParameters.getCopyThreads()),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-template-copy-%d").build());
+	}
+
+	/**
+	 * Clones a template into a data directory, unless it already has content
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param templateDataDirPath
+	 * @param dataDirPath
+	 * @return False if the data directory already has content or the template is
+	 *         missing or empty
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public boolean clone(String templateDataDirPath, String dataDirPath) throws IOException, InterruptedException {
+		Path templateDataDir = Paths.get(templateDataDirPath);
+		Path dataDir = Paths.get(dataDirPath).toAbsolutePath();
+		if (isEmpty(templateDataDir) || !isEmpty(dataDir))
+			return false;
+		Files.createDirectories(dataDir.getParent());
+		Path cloneDir = dataDir.resolveSibling(String.format(".%s.%s", dataDir.getFileName(), UUID.randomUUID().toString().replace("-", "")));
+		try {
+			if (!reflinkSupported || !cloneWithReflinks(templateDataDir, cloneDir))
+				copy(templateDataDir, cloneDir);
+			Files.deleteIfExists(dataDir);
+			Files.move(cloneDir, dataDir, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} finally {
+			delete(cloneDir);
+		}
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param templateDataDir
+	 * @param cloneDir
+	 * @return False if the file system does not support reflinks
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private boolean cloneWithReflinks(Path templateDataDir, Path cloneDir) throws IOException, InterruptedException {
+		// Failures are reported by the copy fallback if they are not caused by
+		// missing reflink support
+		Process process = new ProcessBuilder("cp", "-a", "--reflink=always", templateDataDir.toString(), cloneDir.toString())
+				.redirectErrorStream(true)
+				.redirectOutput(new File("/dev/null"))
+				.start();
+		if (process.waitFor() == 0)
+			return true;
+		reflinkSupported = false;
+		delete(cloneDir);
+		return false;
+	}
+
+	public void close() {
+		copyExecutor.shutdownNow();
+	}
+
+	/**
+	 * Copies files in parallel, directories are created first. Attributes of
+	 * directories are copied last, as copying files into them changes their
+	 * modification time
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param templateDataDir
+	 * @param cloneDir
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void copy(Path templateDataDir, Path cloneDir) throws IOException, InterruptedException {
+		List<Path> dirs = new ArrayList<>();
+		List<Callable<Void>> fileCopies = new ArrayList<>();
+		try (Stream<Path> paths = Files.walk(templateDataDir)) {
+			for (Path path : (Iterable<Path>) paths::iterator) {
+				Path target = cloneDir.resolve(templateDataDir.relativize(path).toString());
+				if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+					Files.createDirectories(target);
+					dirs.add(path);
+				} else {
+					fileCopies.add(() -> {
+						Files.copy(path, target, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+						return null;
+					});
+				}
+			}
+		}
+		for (Future<Void> fileCopy : copyExecutor.invokeAll(fileCopies)) {
+			try {
+				fileCopy.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException)
+					throw (IOException) e.getCause();
+				throw new IOException(e.getCause());
+			}
+		}
+		Collections.reverse(dirs);
+		boolean posix = Files.getFileStore(templateDataDir).supportsFileAttributeView(PosixFileAttributeView.class);
+		for (Path dir : dirs) {
+			Path target = cloneDir.resolve(templateDataDir.relativize(dir).toString());
+			if (posix)
+				Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(dir));
+			Files.setLastModifiedTime(target, Files.getLastModifiedTime(dir));
+		}
+	}
+
+	private void delete(Path dir) throws IOException {
+		if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS))
+			return;
+		try (Stream<Path> paths = Files.walk(dir)) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+				Files.deleteIfExists(path);
+		}
+	}
+
+	private boolean isEmpty(Path dir) throws IOException {
+		if (!Files.isDirectory(dir))
+			return true;
+		try (Stream<Path> paths = Files.list(dir)) {
+			return !paths.findAny().isPresent();
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.container.volume;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class DataDirTemplateParameters {
+	private Map<String, String> templateDataDirPaths = new HashMap<>();
+	private boolean reflinkEnabled = true;
+	private int copyThreads = 8;
+
+	public int getCopyThreads() {
+		return copyThreads;
+	}
+
+	public Map<String, String> getTemplateDataDirPaths() {
+		return templateDataDirPaths;
+	}
+
+	public boolean isReflinkEnabled() {
+		return reflinkEnabled;
+	}
+
+	/**
+	 * Number of threads copying template files when they cannot be cloned with
+	 * reflinks
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param copyThreads
+	 */
+	public void setCopyThreads(int copyThreads) {
+		this.copyThreads = copyThreads;
+	}
+
+	/**
+	 * Whether templates are cloned with reflinks (<code>cp --reflink</code>) on
+	 * file systems supporting them (i.e. Btrfs, XFS), sharing data blocks until
+	 * they are modified. Templates are copied otherwise
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param reflinkEnabled
+	 */
+	public void setReflinkEnabled(boolean reflinkEnabled) {
+		this.reflinkEnabled = reflinkEnabled;
+	}
+
+	/**
+	 * Pre-initialized data directory (i.e. by a container of the data source
+	 * image on an empty volume, then stopped) of each container data volume.
+	 * Missing or empty data directories of new data sources are cloned from it
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param templateDataDirPaths
+	 *            Template data directory by container data volume path
+	 */
+	public void setTemplateDataDirPaths(Map<String, String> templateDataDirPaths) {
+		this.templateDataDirPaths = templateDataDirPaths;
+	}
+}
@@ -36,6 +36,21 @@ public interface DataSourceConfigurer {
 	 */
 	public DataSource createDataSource(String host, int port);
 
+	/**
+	 * Creates a data source instance of a tenant packed in a shared container,
+	 * selecting its own database or schema. The container data source is used by
+	 * default
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param host
+	 * @param port
+	 * @param dataSourceId
+	 * @return
+	 */
+	public default DataSource createDataSource(String host, int port, Object dataSourceId) {
+		return createDataSource(host, port);
+	}
+
 	/**
 	 * Solves the location of data directory basing in the given data source id
 	 * 
@@ -56,6 +71,32 @@ public interface DataSourceConfigurer {
 	 */
 	public Object getDataSourceId();
 
+	/**
+	 * Obtains whether the request being routed only reads data, so it can be
+	 * served by a read replica of its data source (i.e. bound to the thread as the
+	 * data source id). Requests are not read only by default, but connections
+	 * set read only before being used are served by read replicas anyway
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public default boolean isReadOnly() {
+		return false;
+	}
+
+	/**
+	 * Converts a data source id found in the name of an existing container back
+	 * to a data source id, so adopted containers are cached under the same ids
+	 * {@link #getDataSourceId()} returns. Ids are kept as strings by default
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 */
+	public default Object parseDataSourceId(String dataSourceId) {
+		return dataSourceId;
+	}
+
 	/**
 	 * Checks if the data source is active
 	 * 
@@ -0,0 +1,56 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.metrics;
+
+/**
+ * Phases of a data source container cold start
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public enum ColdStartPhase {
+	/**
+	 * Waiting for another operation on the same data source container
+	 */
+	LOCK,
+	/**
+	 * Checking image presence in the image registry
+	 */
+	LIST,
+	/**
+	 * Waiting for a missing image to be pulled in the background
+	 */
+	PULL,
+	/**
+	 * Cloning data directory templates of a new data source
+	 */
+	PROVISION,
+	/**
+	 * Creating the container
+	 */
+	CREATE,
+	/**
+	 * Starting or unpausing the container
+	 */
+	START,
+	/**
+	 * Waiting for the data source to be ready
+	 */
+	READINESS
+}
@@ -0,0 +1,240 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timeline of a data source cold start: every phase and container runtime call
+ * with its start offset and latency, readiness probe attempts and containers
+ * replaced because they could not be activated. Built by the thread obtaining
+ * the data source, it is read only once completed
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class ColdStartTrace {
+	/**
+	 * Phase or container runtime call of a cold start
+	 * 
+	 * @author magidc <info@magidc.io>
+	 *
+	 */
+	public static final class Span {
+		private final String name;
+		private final long startOffsetNanos;
+		private final long nanos;
+		private final boolean failed;
+
+		private Span(String name, long startOffsetNanos, long nanos, boolean failed) {
+			this.name = name;
+			this.startOffsetNanos = startOffsetNanos;
+			this.nanos = nanos;
+			this.failed = failed;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * 
+		 * @author magidc <info@magidc.io>
+		 * @return Time from the start of the cold start
+		 */
+		public long getStartOffsetNanos() {
+			return startOffsetNanos;
+		}
+
+		public boolean isFailed() {
+			return failed;
+		}
+	}
+
+	private final Object dataSourceId;
+	private final long startedMillis;
+	private final long startedNanos;
+	private final List<Span> phases = new ArrayList<>();
+	private final List<Span> dockerCalls = new ArrayList<>();
+	private final Map<String, Integer> readinessAttempts = new LinkedHashMap<>();
+	private String initialContainerState;
+	private int containerReplacements;
+	private long nanos;
+	private boolean succeeded;
+
+	ColdStartTrace(Object dataSourceId) {
+		this.dataSourceId = dataSourceId;
+		this.startedMillis = System.currentTimeMillis();
+		this.startedNanos = System.nanoTime();
+	}
+
+	private void appendSpans(StringBuilder stringBuilder, String field, List<Span> spans) {
+		stringBuilder.append(",\"").append(field).append("\":[");
+		for (int i = 0; i < spans.size(); i++) {
+			Span span = spans.get(i);
+			stringBuilder.append(i > 0 ? "," : "").append("{\"name\":\"").append(span.name)
+					.append("\",\"startMillis\":").append(formatMillis(span.startOffsetNanos))
+					.append(",\"millis\":").append(formatMillis(span.nanos))
+					.append(",\"failed\":").append(span.failed).append("}");
+		}
+		stringBuilder.append("]");
+	}
+
+	void complete(boolean succeeded) {
+		this.nanos = System.nanoTime() - startedNanos;
+		this.succeeded = succeeded;
+	}
+
+	private String escape(String value) {
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\')
+				escaped.append('\\').append(c);
+			else if (c < ' ')
+				escaped.append(String.format("\\u%04x", (int) c));
+			else
+				escaped.append(c);
+		}
+		return escaped.toString();
+	}
+
+	private String formatMillis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Containers removed because they could not be activated, before
+	 *         creating a new one
+	 */
+	public int getContainerReplacements() {
+		return containerReplacements;
+	}
+
+	public Object getDataSourceId() {
+		return dataSourceId;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Container runtime calls in call order
+	 */
+	public List<Span> getDockerCalls() {
+		return Collections.unmodifiableList(dockerCalls);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return State of the container when the cold start began, null if there
+	 *         was no container
+	 */
+	public String getInitialContainerState() {
+		return initialContainerState;
+	}
+
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Cold start phases in completion order
+	 */
+	public List<Span> getPhases() {
+		return Collections.unmodifiableList(phases);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Number of probes of each readiness phase
+	 */
+	public Map<String, Integer> getReadinessAttempts() {
+		return Collections.unmodifiableMap(readinessAttempts);
+	}
+
+	public long getStartedMillis() {
+		return startedMillis;
+	}
+
+	public boolean isSucceeded() {
+		return succeeded;
+	}
+
+	void recordContainerReplacement() {
+		containerReplacements++;
+	}
+
+	void recordDockerCall(String operation, long nanos, boolean failed) {
+		dockerCalls.add(new Span(operation, System.nanoTime() - nanos - startedNanos, nanos, failed));
+	}
+
+	void recordInitialContainerState(String initialContainerState) {
+		this.initialContainerState = initialContainerState;
+	}
+
+	void recordPhase(ColdStartPhase coldStartPhase, long nanos) {
+		phases.add(new Span(coldStartPhase.name(), System.nanoTime() - nanos - startedNanos, nanos, false));
+	}
+
+	void recordReadinessAttempts(String readinessPhase, int attempts) {
+		readinessAttempts.put(readinessPhase, attempts);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Trace as a single line JSON object
+	 */
+	public String toJson() {
+		StringBuilder stringBuilder = new StringBuilder();
+		stringBuilder.append("{\"dataSourceId\":\"").append(escape(String.valueOf(dataSourceId)))
+				.append("\",\"startedMillis\":").append(startedMillis)
+				.append(",\"millis\":").append(formatMillis(nanos))
+				.append(",\"succeeded\":").append(succeeded)
+				.append(",\"initialContainerState\":").append(initialContainerState != null ? "\"" + initialContainerState + "\"" : "null")
+				.append(",\"containerReplacements\":").append(containerReplacements);
+		appendSpans(stringBuilder, "phases", phases);
+		appendSpans(stringBuilder, "dockerCalls", dockerCalls);
+		stringBuilder.append(",\"readinessAttempts\":{");
+		int i = 0;
+		for (Map.Entry<String, Integer> entry : readinessAttempts.entrySet())
+			stringBuilder.append(i++ > 0 ? "," : "").append("\"").append(entry.getKey()).append("\":").append(entry.getValue());
+		return stringBuilder.append("}}").toString();
+	}
+
+	@Override
+	public String toString() {
+		return toJson();
+	}
+}
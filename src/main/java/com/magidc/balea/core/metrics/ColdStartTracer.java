@@ -0,0 +1,252 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.metrics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Traces data source cold starts, keeping the latest ones in a ring buffer and
+ * optionally appending them to a file as JSON lines. Phases and container
+ * runtime calls are recorded by decorating the metrics recorder of the
+ * container manager, into the trace of the thread obtaining the data source
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class ColdStartTracer implements Closeable {
+	private final ColdStartTrace[] traces;
+	private final ThreadLocal<ColdStartTrace> currentTrace = new ThreadLocal<>();
+	private final Writer traceWriter;
+	private int nextTraceIndex;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param capacity
+	 *            Number of latest cold starts kept in memory
+	 */
+	public ColdStartTracer(int capacity) {
+		this.traces = new ColdStartTrace[Math.max(1, capacity)];
+		this.traceWriter = null;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param capacity
+	 *            Number of latest cold starts kept in memory
+	 * @param traceFile
+	 *            File every cold start is appended to, one JSON object per line
+	 * @throws IOException
+	 */
+	public ColdStartTracer(int capacity, Path traceFile) throws IOException {
+		this.traces = new ColdStartTrace[Math.max(1, capacity)];
+		this.traceWriter = new BufferedWriter(Files.newBufferedWriter(traceFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND, StandardOpenOption.WRITE));
+	}
+
+	/**
+	 * Starts the trace of a cold start in the current thread
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 */
+	public ColdStartTrace begin(Object dataSourceId) {
+		ColdStartTrace coldStartTrace = new ColdStartTrace(dataSourceId);
+		currentTrace.set(coldStartTrace);
+		return coldStartTrace;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (traceWriter != null) {
+			synchronized (traceWriter) {
+				traceWriter.close();
+			}
+		}
+	}
+
+	/**
+	 * Metrics recorder also recording cold start phases and container runtime
+	 * calls into the trace of the current thread
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param metricsRecorder
+	 * @return
+	 */
+	public MetricsRecorder decorate(MetricsRecorder metricsRecorder) {
+		return new MetricsRecorder() {
+			@Override
+			public void recordCacheHit(Object dataSourceId) {
+				metricsRecorder.recordCacheHit(dataSourceId);
+			}
+
+			@Override
+			public void recordCacheMiss(Object dataSourceId) {
+				metricsRecorder.recordCacheMiss(dataSourceId);
+			}
+
+			@Override
+			public void recordColdStart(Object dataSourceId, long nanos) {
+				metricsRecorder.recordColdStart(dataSourceId, nanos);
+			}
+
+			@Override
+			public void recordColdStartPhase(ColdStartPhase coldStartPhase, long nanos) {
+				metricsRecorder.recordColdStartPhase(coldStartPhase, nanos);
+				ColdStartTrace coldStartTrace = currentTrace.get();
+				if (coldStartTrace != null)
+					coldStartTrace.recordPhase(coldStartPhase, nanos);
+			}
+
+			@Override
+			public void recordDataSourceRequest(Object dataSourceId) {
+				metricsRecorder.recordDataSourceRequest(dataSourceId);
+			}
+
+			@Override
+			public void recordDockerCall(String operation, long nanos, boolean failed) {
+				metricsRecorder.recordDockerCall(operation, nanos, failed);
+				ColdStartTrace coldStartTrace = currentTrace.get();
+				if (coldStartTrace != null)
+					coldStartTrace.recordDockerCall(operation, nanos, failed);
+			}
+
+			@Override
+			public void recordEviction(Object dataSourceId, EvictionCause evictionCause) {
+				metricsRecorder.recordEviction(dataSourceId, evictionCause);
+			}
+
+			@Override
+			public void registerGauge(String name, Supplier<Number> valueSupplier) {
+				metricsRecorder.registerGauge(name, valueSupplier);
+			}
+		};
+	}
+
+	/**
+	 * Completes the trace of the current thread, publishing it to the ring buffer
+	 * and the trace file
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param coldStartTrace
+	 * @param succeeded
+	 */
+	public void end(ColdStartTrace coldStartTrace, boolean succeeded) {
+		currentTrace.remove();
+		coldStartTrace.complete(succeeded);
+		synchronized (traces) {
+			traces[nextTraceIndex] = coldStartTrace;
+			nextTraceIndex = (nextTraceIndex + 1) % traces.length;
+		}
+		if (traceWriter != null) {
+			String json = coldStartTrace.toJson();
+			synchronized (traceWriter) {
+				try {
+					traceWriter.write(json);
+					traceWriter.write('\n');
+					traceWriter.flush();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Cold starts kept in memory, latest first
+	 */
+	public List<ColdStartTrace> getRecentColdStarts() {
+		List<ColdStartTrace> recentColdStarts = new ArrayList<>(traces.length);
+		synchronized (traces) {
+			for (int i = 1; i <= traces.length; i++) {
+				ColdStartTrace coldStartTrace = traces[(nextTraceIndex - i + traces.length) % traces.length];
+				if (coldStartTrace == null)
+					break;
+				recentColdStarts.add(coldStartTrace);
+			}
+		}
+		return recentColdStarts;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param count
+	 * @return Slowest cold starts kept in memory, slowest first
+	 */
+	public List<ColdStartTrace> getSlowestColdStarts(int count) {
+		return getRecentColdStarts().stream()
+				.sorted(Comparator.comparingLong(ColdStartTrace::getNanos).reversed())
+				.limit(count)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Container of the current cold start could not be activated and it is
+	 * replaced by a new one
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void recordContainerReplacement() {
+		ColdStartTrace coldStartTrace = currentTrace.get();
+		if (coldStartTrace != null)
+			coldStartTrace.recordContainerReplacement();
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param initialContainerState
+	 *            State of the container when the current cold start began
+	 */
+	public void recordInitialContainerState(String initialContainerState) {
+		ColdStartTrace coldStartTrace = currentTrace.get();
+		if (coldStartTrace != null)
+			coldStartTrace.recordInitialContainerState(initialContainerState);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readinessPhase
+	 * @param attempts
+	 *            Number of probes of the readiness phase in the current cold start
+	 */
+	public void recordReadinessAttempts(String readinessPhase, int attempts) {
+		ColdStartTrace coldStartTrace = currentTrace.get();
+		if (coldStartTrace != null)
+			coldStartTrace.recordReadinessAttempts(readinessPhase, attempts);
+	}
+}
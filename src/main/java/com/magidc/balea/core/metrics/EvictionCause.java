@@ -0,0 +1,48 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.metrics;
+
+/**
+ * Cause of a data source removal from the cache
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public enum EvictionCause {
+	/**
+	 * Not accessed during cache expiring time
+	 */
+	EXPIRED,
+	/**
+	 * Selected by the eviction policy to make room for another data source
+	 */
+	CAPACITY,
+	/**
+	 * Data source validation failed
+	 */
+	INVALID,
+	/**
+	 * Selected by the eviction policy to release host memory
+	 */
+	MEMORY_PRESSURE,
+	/**
+	 * Packed tenant moved to another shared container
+	 */
+	MOVED
+}
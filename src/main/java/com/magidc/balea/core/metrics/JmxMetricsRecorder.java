@@ -0,0 +1,233 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * In memory metrics recorder exposed as a JMX MXBean. Requests per data source
+ * are reported as cumulative counts, rates are derived by the monitoring system
+ * sampling them
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class JmxMetricsRecorder implements MetricsRecorder, JmxMetricsRecorderMXBean {
+	private static final class DockerCallMetrics {
+		private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+		private final LongAdder errors = new LongAdder();
+	}
+
+	private final ObjectName objectName;
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+	private final LatencyHistogram coldStartHistogram = new LatencyHistogram();
+	private final Map<ColdStartPhase, LatencyHistogram> coldStartPhaseHistograms = new EnumMap<>(ColdStartPhase.class);
+	private final Map<EvictionCause, LongAdder> evictions = new EnumMap<>(EvictionCause.class);
+	private final ConcurrentMap<Object, LongAdder> dataSourceRequests = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, DockerCallMetrics> dockerCallMetrics = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Supplier<Number>> gauges = new ConcurrentHashMap<>();
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param name
+	 *            MXBean is registered as
+	 *            <code>io.magidc.balea:type=Metrics,name=[name]</code>
+	 * @throws JMException
+	 */
+	public JmxMetricsRecorder(String name) throws JMException {
+		for (ColdStartPhase coldStartPhase : ColdStartPhase.values())
+			coldStartPhaseHistograms.put(coldStartPhase, new LatencyHistogram());
+		for (EvictionCause evictionCause : EvictionCause.values())
+			evictions.put(evictionCause, new LongAdder());
+		this.objectName = new ObjectName(String.format("io.magidc.balea:type=Metrics,name=%s", ObjectName.quote(name)));
+	}
+
+	@Override
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+
+	@Override
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+
+	@Override
+	public double getColdStartMeanMillis() {
+		return coldStartHistogram.getMeanMillis();
+	}
+
+	@Override
+	public double getColdStartP99Millis() {
+		return coldStartHistogram.getPercentileMillis(99);
+	}
+
+	@Override
+	public Map<String, Long> getColdStartPhaseCounts() {
+		Map<String, Long> coldStartPhaseCounts = new TreeMap<>();
+		for (Map.Entry<ColdStartPhase, LatencyHistogram> entry : coldStartPhaseHistograms.entrySet())
+			coldStartPhaseCounts.put(entry.getKey().name(), entry.getValue().getCount());
+		return coldStartPhaseCounts;
+	}
+
+	@Override
+	public Map<String, Double> getColdStartPhaseMeanMillis() {
+		Map<String, Double> coldStartPhaseMeanMillis = new TreeMap<>();
+		for (Map.Entry<ColdStartPhase, LatencyHistogram> entry : coldStartPhaseHistograms.entrySet())
+			coldStartPhaseMeanMillis.put(entry.getKey().name(), entry.getValue().getMeanMillis());
+		return coldStartPhaseMeanMillis;
+	}
+
+	@Override
+	public Map<String, Double> getColdStartPhaseP99Millis() {
+		Map<String, Double> coldStartPhaseP99Millis = new TreeMap<>();
+		for (Map.Entry<ColdStartPhase, LatencyHistogram> entry : coldStartPhaseHistograms.entrySet())
+			coldStartPhaseP99Millis.put(entry.getKey().name(), entry.getValue().getPercentileMillis(99));
+		return coldStartPhaseP99Millis;
+	}
+
+	@Override
+	public Map<String, Long> getDataSourceRequests() {
+		Map<String, Long> requests = new TreeMap<>();
+		for (Map.Entry<Object, LongAdder> entry : dataSourceRequests.entrySet())
+			requests.put(String.valueOf(entry.getKey()), entry.getValue().sum());
+		return requests;
+	}
+
+	@Override
+	public Map<String, Long> getDockerCallCounts() {
+		Map<String, Long> dockerCallCounts = new TreeMap<>();
+		for (Map.Entry<String, DockerCallMetrics> entry : dockerCallMetrics.entrySet())
+			dockerCallCounts.put(entry.getKey(), entry.getValue().latencyHistogram.getCount());
+		return dockerCallCounts;
+	}
+
+	@Override
+	public Map<String, Long> getDockerCallErrors() {
+		Map<String, Long> dockerCallErrors = new TreeMap<>();
+		for (Map.Entry<String, DockerCallMetrics> entry : dockerCallMetrics.entrySet())
+			dockerCallErrors.put(entry.getKey(), entry.getValue().errors.sum());
+		return dockerCallErrors;
+	}
+
+	@Override
+	public Map<String, Double> getDockerCallMeanMillis() {
+		Map<String, Double> dockerCallMeanMillis = new TreeMap<>();
+		for (Map.Entry<String, DockerCallMetrics> entry : dockerCallMetrics.entrySet())
+			dockerCallMeanMillis.put(entry.getKey(), entry.getValue().latencyHistogram.getMeanMillis());
+		return dockerCallMeanMillis;
+	}
+
+	@Override
+	public Map<String, Long> getEvictions() {
+		Map<String, Long> evictionCounts = new TreeMap<>();
+		for (Map.Entry<EvictionCause, LongAdder> entry : evictions.entrySet())
+			evictionCounts.put(entry.getKey().name(), entry.getValue().sum());
+		return evictionCounts;
+	}
+
+	@Override
+	public Map<String, Double> getGauges() {
+		Map<String, Double> gaugeValues = new TreeMap<>();
+		for (Map.Entry<String, Supplier<Number>> entry : gauges.entrySet()) {
+			Number value = entry.getValue().get();
+			gaugeValues.put(entry.getKey(), value == null ? Double.NaN : value.doubleValue());
+		}
+		return gaugeValues;
+	}
+
+	@Override
+	public void recordCacheHit(Object dataSourceId) {
+		cacheHits.increment();
+	}
+
+	@Override
+	public void recordCacheMiss(Object dataSourceId) {
+		cacheMisses.increment();
+	}
+
+	@Override
+	public void recordColdStart(Object dataSourceId, long nanos) {
+		coldStartHistogram.record(nanos);
+	}
+
+	@Override
+	public void recordColdStartPhase(ColdStartPhase coldStartPhase, long nanos) {
+		coldStartPhaseHistograms.get(coldStartPhase).record(nanos);
+	}
+
+	@Override
+	public void recordDataSourceRequest(Object dataSourceId) {
+		LongAdder requests = dataSourceRequests.get(dataSourceId);
+		if (requests == null)
+			requests = dataSourceRequests.computeIfAbsent(dataSourceId, id -> new LongAdder());
+		requests.increment();
+	}
+
+	@Override
+	public void recordDockerCall(String operation, long nanos, boolean failed) {
+		DockerCallMetrics metrics = dockerCallMetrics.get(operation);
+		if (metrics == null)
+			metrics = dockerCallMetrics.computeIfAbsent(operation, o -> new DockerCallMetrics());
+		metrics.latencyHistogram.record(nanos);
+		if (failed)
+			metrics.errors.increment();
+	}
+
+	@Override
+	public void recordEviction(Object dataSourceId, EvictionCause evictionCause) {
+		evictions.get(evictionCause).increment();
+	}
+
+	/**
+	 * Registers the MXBean in the platform MBean server
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @throws JMException
+	 */
+	public void register() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+	}
+
+	@Override
+	public void registerGauge(String name, Supplier<Number> valueSupplier) {
+		gauges.put(name, valueSupplier);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @throws JMException
+	 */
+	public void unregister() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+	}
+}
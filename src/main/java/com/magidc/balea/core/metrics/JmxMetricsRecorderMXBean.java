@@ -0,0 +1,55 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link JmxMetricsRecorder}
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public interface JmxMetricsRecorderMXBean {
+	public long getCacheHits();
+
+	public long getCacheMisses();
+
+	public double getColdStartMeanMillis();
+
+	public Map<String, Long> getColdStartPhaseCounts();
+
+	public Map<String, Double> getColdStartPhaseMeanMillis();
+
+	public Map<String, Double> getColdStartPhaseP99Millis();
+
+	public double getColdStartP99Millis();
+
+	public Map<String, Long> getDataSourceRequests();
+
+	public Map<String, Long> getDockerCallCounts();
+
+	public Map<String, Long> getDockerCallErrors();
+
+	public Map<String, Double> getDockerCallMeanMillis();
+
+	public Map<String, Long> getEvictions();
+
+	public Map<String, Double> getGauges();
+}
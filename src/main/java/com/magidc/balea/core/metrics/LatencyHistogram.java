@@ -0,0 +1,92 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with exponential buckets of microseconds (up to
+ * 1, 2, 4... microseconds), precise enough to estimate percentiles of
+ * latencies ranging from microseconds to minutes
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class LatencyHistogram {
+	private static final int BUCKETS = 40;
+
+	private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+
+	private static int bucketIndex(long nanos) {
+		long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Mean latency in milliseconds
+	 */
+	public double getMeanMillis() {
+		long currentCount = count.sum();
+		return currentCount == 0 ? 0 : totalNanos.sum() / 1e6 / currentCount;
+	}
+
+	/**
+	 * Estimates a latency percentile as the upper bound of the bucket containing
+	 * it
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param percentile
+	 *            Between 0 and 100
+	 * @return Latency in milliseconds
+	 */
+	public double getPercentileMillis(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long currentCount = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = bucketCounts.get(i);
+			currentCount += counts[i];
+		}
+		if (currentCount == 0)
+			return 0;
+		long rank = (long) Math.ceil(percentile / 100 * currentCount);
+		long accumulatedCount = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			accumulatedCount += counts[i];
+			if (accumulatedCount >= rank)
+				return (1L << i) / 1e3;
+		}
+		return (1L << (BUCKETS - 1)) / 1e3;
+	}
+
+	public void record(long nanos) {
+		bucketCounts.incrementAndGet(bucketIndex(nanos));
+		count.increment();
+		totalNanos.add(nanos);
+	}
+}
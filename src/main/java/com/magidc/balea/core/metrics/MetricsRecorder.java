@@ -0,0 +1,150 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.metrics;
+
+import java.util.function.Supplier;
+
+/**
+ * Metrics SPI, to be backed by a monitoring system (i.e. JMX or a metrics
+ * registry). Every method does nothing by default, so implementations only
+ * override what they report. Methods in the request path are called with
+ * already existing objects, so disabled metrics do not allocate
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public interface MetricsRecorder {
+	/**
+	 * Metrics disabled
+	 */
+	public static final MetricsRecorder NONE = new MetricsRecorder() {
+	};
+
+	/**
+	 * Request served by a data source already in the cache
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 */
+	public default void recordCacheHit(Object dataSourceId) {
+	}
+
+	/**
+	 * Request that had to wait for a data source to be loaded
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 */
+	public default void recordCacheMiss(Object dataSourceId) {
+	}
+
+	/**
+	 * Time spent obtaining a data source not present in the cache
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param nanos
+	 */
+	public default void recordColdStart(Object dataSourceId, long nanos) {
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param coldStartPhase
+	 * @param nanos
+	 */
+	public default void recordColdStartPhase(ColdStartPhase coldStartPhase, long nanos) {
+	}
+
+	/**
+	 * Routed request for a data source id
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 */
+	public default void recordDataSourceRequest(Object dataSourceId) {
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param operation
+	 *            Container runtime operation (i.e. "createContainer",
+	 *            "startContainer")
+	 * @param nanos
+	 * @param failed
+	 */
+	public default void recordDockerCall(String operation, long nanos, boolean failed) {
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param evictionCause
+	 */
+	public default void recordEviction(Object dataSourceId, EvictionCause evictionCause) {
+	}
+
+	/**
+	 * Registers a value sampled by the monitoring system (i.e. number of running
+	 * containers)
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param name
+	 * @param valueSupplier
+	 */
+	public default void registerGauge(String name, Supplier<Number> valueSupplier) {
+	}
+
+	/**
+	 * Calls container runtime recording its latency and failure
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param operation
+	 * @param dockerCall
+	 */
+	public default void timeDockerCall(String operation, Runnable dockerCall) {
+		timeDockerCall(operation, () -> {
+			dockerCall.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Calls container runtime recording its latency and failure
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param operation
+	 * @param dockerCall
+	 * @return
+	 */
+	public default <T> T timeDockerCall(String operation, Supplier<T> dockerCall) {
+		long startNanos = System.nanoTime();
+		boolean failed = true;
+		try {
+			T result = dockerCall.get();
+			failed = false;
+			return result;
+		} finally {
+			recordDockerCall(operation, System.nanoTime() - startNanos, failed);
+		}
+	}
+}
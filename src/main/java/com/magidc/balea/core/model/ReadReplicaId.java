@@ -0,0 +1,93 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.model;
+
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Id of a read replica of a data source. Read replicas are managed as any other
+ * data source under this id, so they are cached and expire as primaries do,
+ * and their container is named after its string form
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public final class ReadReplicaId {
+	private static final Pattern READ_REPLICA_ID_PATTERN = Pattern.compile("(.+)\\.replica-(\\d+)");
+
+	/**
+	 * Parses the string form of a read replica id, i.e. found in the name of an
+	 * existing container
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readReplicaId
+	 * @return Read replica id with the data source id as a string, null if it is
+	 *         not a read replica id
+	 */
+	public static ReadReplicaId parse(String readReplicaId) {
+		Matcher matcher = READ_REPLICA_ID_PATTERN.matcher(readReplicaId);
+		return matcher.matches() ? new ReadReplicaId(matcher.group(1), Integer.parseInt(matcher.group(2))) : null;
+	}
+
+	private final Object dataSourceId;
+	private final int replicaIndex;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 *            Id of the primary data source
+	 * @param replicaIndex
+	 *            Starting at 1
+	 */
+	public ReadReplicaId(Object dataSourceId, int replicaIndex) {
+		this.dataSourceId = dataSourceId;
+		this.replicaIndex = replicaIndex;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ReadReplicaId))
+			return false;
+		ReadReplicaId other = (ReadReplicaId) obj;
+		return replicaIndex == other.replicaIndex && dataSourceId.equals(other.dataSourceId);
+	}
+
+	public Object getDataSourceId() {
+		return dataSourceId;
+	}
+
+	public int getReplicaIndex() {
+		return replicaIndex;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(dataSourceId, replicaIndex);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s.replica-%d", dataSourceId, replicaIndex);
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.model.exception;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Request rejected by admission control because its wait queue is full or
+ * its wait timed out. It is transient, the request can be retried later
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class AdmissionRejectedException extends SQLTransientConnectionException {
+	private static final long serialVersionUID = 1L;
+
+	public AdmissionRejectedException(String reason) {
+		super(reason);
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy;
+
+import java.sql.Connection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non blocking connection acquisition, implemented by routing data sources.
+ * The data source id is resolved in the calling thread, while starting a non
+ * active data source happens in the cold start executor of the data source
+ * cache manager and opening the connection in its async connection executor
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public interface AsyncDataSource {
+
+	/**
+	 * Attempts to establish a connection with the data source selected by the
+	 * current data source id
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Future completed with the connection, or exceptionally if the data
+	 *         source could not be started or the connection could not be
+	 *         established
+	 */
+	public CompletableFuture<Connection> getConnectionAsync();
+
+	/**
+	 * Attempts to establish a connection with the data source selected by the
+	 * current data source id, with the given credentials
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param username
+	 * @param password
+	 * @return Future completed with the connection, or exceptionally if the data
+	 *         source could not be started or the connection could not be
+	 *         established
+	 */
+	public CompletableFuture<Connection> getConnectionAsync(String username, String password);
+}
@@ -20,6 +20,14 @@ package com.magidc.balea.core.proxy;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 
 import javax.sql.DataSource;
@@ -27,8 +35,20 @@ import javax.sql.DataSource;
 import com.github.dockerjava.api.exception.DockerException;
 import com.magidc.balea.core.container.DataSourceContainerManager;
 import com.magidc.balea.core.core.config.DataSourceConfigurer;
+import com.magidc.balea.core.metrics.MetricsRecorder;
 import com.magidc.balea.core.proxy.cache.DataSourceCacheManager;
+import com.magidc.balea.core.proxy.cache.config.DataSourceCacheParameters;
 import com.magidc.balea.core.proxy.cache.docker.DockerDataSourceCacheManagerConfigurer;
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+import com.magidc.balea.core.proxy.federation.Aggregation;
+import com.magidc.balea.core.proxy.federation.BatchStatement;
+import com.magidc.balea.core.proxy.federation.FederatedQueryExecutor;
+import com.magidc.balea.core.proxy.federation.ShardedBatchWriter;
+import com.magidc.balea.core.proxy.federation.SortColumn;
+import com.magidc.balea.core.proxy.invoker.DataSourceMethodInvoker;
+import com.magidc.balea.core.proxy.invoker.DataSourceMethodInvokerFactory;
+import com.magidc.balea.core.proxy.replica.ReadOnlyRoutingConnection;
+import com.magidc.balea.core.proxy.replica.ReadReplicaRouter;
 
 import javassist.util.proxy.MethodHandler;
 
@@ -39,26 +59,181 @@ import javassist.util.proxy.MethodHandler;
  * @author magidc <info@magidc.io>
  **/
 public class DataSourceMethodHandler implements MethodHandler {
+	/**
+	 * Creates a cache manager of container data sources. Containers left by a
+	 * previous run are adopted if data source adoption is enabled, otherwise they
+	 * are removed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceContainerManager
+	 * @param dataSourceCacheParameters
+	 * @return
+	 * @throws IOException
+	 */
+	private static DataSourceCacheManager createDockerDataSourceCacheManager(DataSourceContainerManager dataSourceContainerManager,
+			DataSourceCacheParameters dataSourceCacheParameters) throws IOException {
+		if (!dataSourceCacheParameters.isDataSourceAdoptionEnabled())
+			dataSourceContainerManager.stopAndAndRemoveAllDataSourceContainers();
+		DataSourceCacheManager dataSourceCacheManager = new DataSourceCacheManager(new DockerDataSourceCacheManagerConfigurer(dataSourceContainerManager),
+				dataSourceCacheParameters);
+		if (dataSourceCacheParameters.isDataSourceAdoptionEnabled())
+			dataSourceCacheManager.adoptDataSources();
+		return dataSourceCacheManager;
+	}
+
 	private final DataSourceCacheManager dataSourceCacheManager;
+	private final ConcurrentMap<Method, DataSourceMethodInvoker> dataSourceMethodInvokers = new ConcurrentHashMap<>();
 	private DataSource defaultDataSource;
+	private ManagedDataSource defaultManagedDataSource;
 	private DataSourceConfigurer dataSourceConfigurer;
+	private final MetricsRecorder metricsRecorder;
+
+	public DataSourceMethodHandler(Object defaultDataSourceId, DataSourceCacheManager dataSourceCacheManager, DataSourceConfigurer dataSourceConfigurer) {
+		this.dataSourceCacheManager = dataSourceCacheManager;
+		this.dataSourceConfigurer = dataSourceConfigurer;
+		this.metricsRecorder = dataSourceCacheManager.getMetricsRecorder();
+		// Default DB (should be running all the time)
+		this.defaultManagedDataSource = dataSourceCacheManager.pin(defaultDataSourceId);
+		this.defaultDataSource = defaultManagedDataSource.getDataSource();
+	}
+
+	public DataSourceMethodHandler(Object defaultDataSourceId, DataSourceContainerManager dataSourceContainerManager, DataSourceConfigurer dataSourceConfigurer,
+			DataSourceCacheParameters dataSourceCacheParameters)
+			throws DockerException, InterruptedException, IOException, ExecutionException {
+		this(defaultDataSourceId, createDockerDataSourceCacheManager(dataSourceContainerManager, dataSourceCacheParameters), dataSourceConfigurer);
+	}
 
 	public DataSourceMethodHandler(Object defaultDataSourceId, DataSourceContainerManager dataSourceContainerManager, DataSourceConfigurer dataSourceConfigurer,
 			Long cacheExpiringTimeMillis)
 			throws DockerException, InterruptedException, IOException, ExecutionException {
-		this.dataSourceCacheManager = new DataSourceCacheManager(new DockerDataSourceCacheManagerConfigurer(dataSourceContainerManager), cacheExpiringTimeMillis);
-		this.dataSourceConfigurer = dataSourceConfigurer;
-		dataSourceContainerManager.stopAndAndRemoveAllDataSourceContainers();
-		// Default DB (should be running all the time
-		this.defaultDataSource = dataSourceCacheManager.getManagedDataSource(defaultDataSourceId).getDataSource();
-		this.dataSourceCacheManager.getManagedDataSource(defaultDataSourceId);
+		this(defaultDataSourceId, dataSourceContainerManager, dataSourceConfigurer, new DataSourceCacheParameters(cacheExpiringTimeMillis));
+	}
+
+	/**
+	 * Federated queries and sharded batches of {@link FederatedDataSource}
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param method
+	 * @param args
+	 * @return
+	 * @throws SQLException
+	 */
+	@SuppressWarnings("unchecked")
+	private Object executeFederatedQuery(Method method, Object[] args) throws SQLException {
+		if (method.getName().equals("executeShardedBatch")) {
+			ShardedBatchWriter shardedBatchWriter = dataSourceCacheManager.getShardedBatchWriter();
+			if (shardedBatchWriter == null)
+				throw new SQLFeatureNotSupportedException("Sharded batches are disabled");
+			return shardedBatchWriter.executeBatch((Collection<BatchStatement>) args[0]);
+		}
+		FederatedQueryExecutor federatedQueryExecutor = dataSourceCacheManager.getFederatedQueryExecutor();
+		if (federatedQueryExecutor == null)
+			throw new SQLFeatureNotSupportedException("Federated queries are disabled");
+		if (method.getName().equals("executeFederatedAggregateQuery"))
+			return federatedQueryExecutor.executeAggregateQuery((Collection<?>) args[0], (String) args[1], (Aggregation[]) args[2]);
+		return federatedQueryExecutor.executeQuery((Collection<?>) args[0], (String) args[1], (SortColumn[]) args[2]);
+	}
+
+	/**
+	 * Asynchronous connection acquisition of {@link AsyncDataSource}. Data source
+	 * id is resolved in the calling thread as it is usually bound to it, the
+	 * connection is opened in the async connection executor of the cache manager,
+	 * also when the data source is cached
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param args
+	 * @return
+	 */
+	private CompletableFuture<Connection> getConnectionAsync(Object[] args) {
+		Object dataSourceId = dataSourceConfigurer.getDataSourceId();
+		if (dataSourceId != null)
+			metricsRecorder.recordDataSourceRequest(dataSourceId);
+		CompletableFuture<ManagedDataSource> managedDataSource = dataSourceId != null ? dataSourceCacheManager.getManagedDataSourceAsync(dataSourceId)
+				: CompletableFuture.completedFuture(defaultManagedDataSource);
+		return managedDataSource.thenApplyAsync(targetManagedDataSource -> {
+			try {
+				return leaseConnection(targetManagedDataSource, args);
+			} catch (SQLException e) {
+				throw new CompletionException(e);
+			}
+		}, dataSourceCacheManager.getAsyncConnectionExecutor());
+	}
+
+	private DataSourceMethodInvoker getDataSourceMethodInvoker(Method method) {
+		DataSourceMethodInvoker dataSourceMethodInvoker = dataSourceMethodInvokers.get(method);
+		if (dataSourceMethodInvoker == null)
+			dataSourceMethodInvoker = dataSourceMethodInvokers.computeIfAbsent(method, DataSourceMethodInvokerFactory::createInvoker);
+		return dataSourceMethodInvoker;
+	}
+
+	private String getPassword(Object[] args) {
+		return args.length == 0 ? null : (String) args[1];
+	}
+
+	/**
+	 * Connection of a data source when read replicas are enabled. Read only
+	 * requests get a connection of a read replica right away, otherwise the
+	 * connection is obtained once it is used, from a read replica if it has been
+	 * set read only meanwhile
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readReplicaRouter
+	 * @param dataSourceId
+	 * @param args
+	 * @return
+	 * @throws SQLException
+	 */
+	private Connection getReadReplicaConnection(ReadReplicaRouter readReplicaRouter, Object dataSourceId, Object[] args) throws SQLException {
+		String username = getUsername(args);
+		String password = getPassword(args);
+		if (dataSourceConfigurer.isReadOnly())
+			return readReplicaRouter.leaseReadOnlyConnection(dataSourceId, username, password);
+		return new ReadOnlyRoutingConnection(readOnly -> readOnly ? readReplicaRouter.leaseReadOnlyConnection(dataSourceId, username, password)
+				: dataSourceCacheManager.leaseConnection(dataSourceId, username, password));
+	}
+
+	private String getUsername(Object[] args) {
+		return args.length == 0 ? null : (String) args[0];
 	}
 
 	@Override
 	public Object invoke(Object self, Method method, Method proceed, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == AsyncDataSource.class)
+			return getConnectionAsync(args);
+		if (method.getDeclaringClass() == FederatedDataSource.class)
+			return executeFederatedQuery(method, args);
+
+		DataSourceMethodInvoker dataSourceMethodInvoker = getDataSourceMethodInvoker(method);
+		if (!dataSourceMethodInvoker.isRouted())
+			return dataSourceMethodInvoker.invoke(defaultDataSource, args);
+
 		Object dataSourceId = dataSourceConfigurer.getDataSourceId();
-		if (dataSourceId != null)
-			return method.invoke(dataSourceCacheManager.getManagedDataSource(dataSourceId).getDataSource(), args);
-		return method.invoke(defaultDataSource, args);
+		if (dataSourceId != null) {
+			metricsRecorder.recordDataSourceRequest(dataSourceId);
+			if (method.getName().equals("getConnection")) {
+				ReadReplicaRouter readReplicaRouter = dataSourceCacheManager.getReadReplicaRouter();
+				if (readReplicaRouter != null)
+					return getReadReplicaConnection(readReplicaRouter, dataSourceId, args);
+				return dataSourceCacheManager.leaseConnection(dataSourceId, getUsername(args), getPassword(args));
+			}
+			return dataSourceMethodInvoker.invoke(dataSourceCacheManager.acquireManagedDataSource(dataSourceId).getDataSource(), args);
+		}
+		return dataSourceMethodInvoker.invoke(defaultDataSource, args);
+	}
+
+	/**
+	 * Connections of routed data sources are leased, so their data source is not
+	 * evicted while they are open. If the data source has been evicted since it
+	 * was acquired, it is acquired again
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param managedDataSource
+	 * @param args
+	 * @return
+	 * @throws SQLException
+	 */
+	private Connection leaseConnection(ManagedDataSource managedDataSource, Object[] args) throws SQLException {
+		Connection connection = dataSourceCacheManager.tryLeaseConnection(managedDataSource, getUsername(args), getPassword(args));
+		return connection != null ? connection : dataSourceCacheManager.leaseConnection(managedDataSource.getDataSourceId(), getUsername(args), getPassword(args));
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,82 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
+
+import com.magidc.balea.core.proxy.federation.Aggregation;
+import com.magidc.balea.core.proxy.federation.BatchResult;
+import com.magidc.balea.core.proxy.federation.BatchStatement;
+import com.magidc.balea.core.proxy.federation.FederatedResultSet;
+import com.magidc.balea.core.proxy.federation.SortColumn;
+
+/**
+ * Queries and batches executed in several data sources at once, implemented by
+ * routing data sources. Unlike routed calls, data sources are given by id
+ * instead of being resolved from the current data source id
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public interface FederatedDataSource {
+
+	/**
+	 * Executes an aggregate statement in several data sources, combining the
+	 * partial aggregates of every data source. The statement is not rewritten, it
+	 * must return one row of aggregates combining as they are (count, sum, min or
+	 * max)
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceIds
+	 * @param sql
+	 * @param aggregations
+	 *            Aggregate function of each column of the statement
+	 * @return Combined value of each column
+	 * @throws SQLException
+	 */
+	public Object[] executeFederatedAggregateQuery(Collection<?> dataSourceIds, String sql, Aggregation... aggregations) throws SQLException;
+
+	/**
+	 * Executes a statement in several data sources in parallel, merging their rows
+	 * into a streaming result set, which must be closed to release the connections
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceIds
+	 * @param sql
+	 * @param sortColumns
+	 *            Columns rows of every data source are sorted by, merged rows keep
+	 *            that order
+	 * @return
+	 * @throws SQLException
+	 */
+	public FederatedResultSet executeFederatedQuery(Collection<?> dataSourceIds, String sql, SortColumn... sortColumns) throws SQLException;
+
+	/**
+	 * Writes statements tagged with data source ids, grouped by data source in JDBC
+	 * batches and written in parallel across data sources
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param batchStatements
+	 * @return Success or failure of each data source
+	 * @throws SQLException
+	 */
+	public Map<Object, BatchResult> executeShardedBatch(Collection<BatchStatement> batchStatements) throws SQLException;
+}
@@ -0,0 +1,121 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.admission;
+
+/**
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class AdmissionControlParameters {
+	private int maximumConcurrentColdStarts = 0;
+	private int maximumQueuedColdStarts = 100;
+	private long coldStartQueueTimeoutMillis = 30000;
+	private int maximumConnections = 0;
+	private int maximumQueuedConnectionRequests = 1000;
+	private long connectionQueueTimeoutMillis = 5000;
+
+	public long getColdStartQueueTimeoutMillis() {
+		return coldStartQueueTimeoutMillis;
+	}
+
+	public long getConnectionQueueTimeoutMillis() {
+		return connectionQueueTimeoutMillis;
+	}
+
+	public int getMaximumConcurrentColdStarts() {
+		return maximumConcurrentColdStarts;
+	}
+
+	public int getMaximumConnections() {
+		return maximumConnections;
+	}
+
+	public int getMaximumQueuedColdStarts() {
+		return maximumQueuedColdStarts;
+	}
+
+	public int getMaximumQueuedConnectionRequests() {
+		return maximumQueuedConnectionRequests;
+	}
+
+	/**
+	 * Maximum time a data source start waits in queue before being rejected
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param coldStartQueueTimeoutMillis
+	 */
+	public void setColdStartQueueTimeoutMillis(long coldStartQueueTimeoutMillis) {
+		this.coldStartQueueTimeoutMillis = coldStartQueueTimeoutMillis;
+	}
+
+	/**
+	 * Maximum time a connection request waits in queue before being rejected
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param connectionQueueTimeoutMillis
+	 */
+	public void setConnectionQueueTimeoutMillis(long connectionQueueTimeoutMillis) {
+		this.connectionQueueTimeoutMillis = connectionQueueTimeoutMillis;
+	}
+
+	/**
+	 * Maximum number of data sources being started at the same time, zero for no
+	 * limit
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param maximumConcurrentColdStarts
+	 */
+	public void setMaximumConcurrentColdStarts(int maximumConcurrentColdStarts) {
+		this.maximumConcurrentColdStarts = maximumConcurrentColdStarts;
+	}
+
+	/**
+	 * Global budget of open connections shared by all data sources, zero for no
+	 * limit. It applies to connections of the built-in connection pool
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param maximumConnections
+	 */
+	public void setMaximumConnections(int maximumConnections) {
+		this.maximumConnections = maximumConnections;
+	}
+
+	/**
+	 * Maximum number of data source starts waiting, further starts are rejected
+	 * right away
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param maximumQueuedColdStarts
+	 */
+	public void setMaximumQueuedColdStarts(int maximumQueuedColdStarts) {
+		this.maximumQueuedColdStarts = maximumQueuedColdStarts;
+	}
+
+	/**
+	 * Maximum number of connection requests waiting, further requests are
+	 * rejected right away
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param maximumQueuedConnectionRequests
+	 */
+	public void setMaximumQueuedConnectionRequests(int maximumQueuedConnectionRequests) {
+		this.maximumQueuedConnectionRequests = maximumQueuedConnectionRequests;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.admission;
+
+import com.magidc.balea.core.model.exception.AdmissionRejectedException;
+
+/**
+ * Global admission control over all managed data sources. It bounds the number
+ * of data sources being started at the same time and the number of open
+ * connections, so a burst of requests across many data sources does not
+ * overload Docker daemon nor the host. Requests exceeding a limit wait in a
+ * bounded queue and are rejected with {@link AdmissionRejectedException} when
+ * the queue is full or the wait times out
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class AdmissionController {
+	private final AdmissionQueue coldStartQueue;
+	private final AdmissionQueue connectionQueue;
+	private volatile Runnable connectionPressureHandler;
+
+	public AdmissionController(AdmissionControlParameters admissionControlParameters) {
+		this.coldStartQueue = admissionControlParameters.getMaximumConcurrentColdStarts() > 0
+				? new AdmissionQueue("data source start", admissionControlParameters.getMaximumConcurrentColdStarts(),
+						admissionControlParameters.getMaximumQueuedColdStarts(), admissionControlParameters.getColdStartQueueTimeoutMillis())
+				: null;
+		this.connectionQueue = admissionControlParameters.getMaximumConnections() > 0
+				? new AdmissionQueue("connection", admissionControlParameters.getMaximumConnections(),
+						admissionControlParameters.getMaximumQueuedConnectionRequests(), admissionControlParameters.getConnectionQueueTimeoutMillis())
+				: null;
+	}
+
+	/**
+	 * Acquires admission to start a data source
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @throws AdmissionRejectedException
+	 */
+	public void acquireColdStart(Object dataSourceId) throws AdmissionRejectedException {
+		if (coldStartQueue != null)
+			coldStartQueue.acquire(dataSourceId);
+	}
+
+	/**
+	 * Acquires admission to open a connection. If the connection budget is
+	 * exhausted the connection pressure handler is run before waiting, so idle
+	 * connections held by other data sources can be released
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @throws AdmissionRejectedException
+	 */
+	public void acquireConnection(Object dataSourceId) throws AdmissionRejectedException {
+		if (connectionQueue == null || connectionQueue.tryAcquire(dataSourceId))
+			return;
+		Runnable currentConnectionPressureHandler = connectionPressureHandler;
+		if (currentConnectionPressureHandler != null)
+			currentConnectionPressureHandler.run();
+		connectionQueue.acquire(dataSourceId);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Global connection budget, zero if there is no limit
+	 */
+	public int getMaximumConnections() {
+		return connectionQueue != null ? connectionQueue.getMaximumPermits() : 0;
+	}
+
+	public void releaseColdStart(Object dataSourceId) {
+		if (coldStartQueue != null)
+			coldStartQueue.release(dataSourceId);
+	}
+
+	public void releaseConnection(Object dataSourceId) {
+		if (connectionQueue != null)
+			connectionQueue.release(dataSourceId);
+	}
+
+	/**
+	 * Action run when a connection request finds the connection budget exhausted
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param connectionPressureHandler
+	 */
+	public void setConnectionPressureHandler(Runnable connectionPressureHandler) {
+		this.connectionPressureHandler = connectionPressureHandler;
+	}
+
+	/**
+	 * Acquires admission to open a connection only if it is available right away,
+	 * for connections opened ahead of demand
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 */
+	public boolean tryAcquireConnection(Object dataSourceId) {
+		return connectionQueue == null || connectionQueue.tryAcquire(dataSourceId);
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.admission;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.magidc.balea.core.model.exception.AdmissionRejectedException;
+
+/**
+ * Bounded number of permits shared by data sources, with a bounded queue of
+ * waiting requests. Released permits are granted first to the waiting data
+ * source holding fewer permits, so no data source takes over the whole budget
+ * while others wait
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class AdmissionQueue {
+	private static final class Waiter {
+		private final Object dataSourceId;
+		private boolean granted;
+
+		private Waiter(Object dataSourceId) {
+			this.dataSourceId = dataSourceId;
+		}
+	}
+
+	private final String name;
+	private final int maximumPermits;
+	private final int maximumWaiters;
+	private final long waitTimeoutMillis;
+	private final Map<Object, Integer> permitsByDataSourceId = new HashMap<>();
+	private final List<Waiter> waiters = new LinkedList<>();
+	private int grantedPermits;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param name
+	 *            Name of the limited resource, used in rejection messages
+	 * @param maximumPermits
+	 * @param maximumWaiters
+	 * @param waitTimeoutMillis
+	 */
+	public AdmissionQueue(String name, int maximumPermits, int maximumWaiters, long waitTimeoutMillis) {
+		this.name = name;
+		this.maximumPermits = maximumPermits;
+		this.maximumWaiters = maximumWaiters;
+		this.waitTimeoutMillis = waitTimeoutMillis;
+	}
+
+	/**
+	 * Acquires a permit, waiting in queue if none is available
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @throws AdmissionRejectedException
+	 *             If the queue is full or the wait times out
+	 */
+	public synchronized void acquire(Object dataSourceId) throws AdmissionRejectedException {
+		if (grantedPermits < maximumPermits && waiters.isEmpty()) {
+			grant(dataSourceId);
+			return;
+		}
+		if (waiters.size() >= maximumWaiters)
+			throw new AdmissionRejectedException(String.format("Too many %s requests waiting", name));
+
+		Waiter waiter = new Waiter(dataSourceId);
+		waiters.add(waiter);
+		long deadlineMillis = System.currentTimeMillis() + waitTimeoutMillis;
+		while (!waiter.granted) {
+			long remainingMillis = deadlineMillis - System.currentTimeMillis();
+			if (remainingMillis <= 0) {
+				waiters.remove(waiter);
+				throw new AdmissionRejectedException(String.format("Timeout waiting for %s admission", name));
+			}
+			try {
+				wait(remainingMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				if (waiter.granted)
+					release(dataSourceId);
+				else
+					waiters.remove(waiter);
+				throw new AdmissionRejectedException(String.format("Interrupted waiting for %s admission", name));
+			}
+		}
+	}
+
+	private void dispatch() {
+		boolean granted = false;
+		while (grantedPermits < maximumPermits && !waiters.isEmpty()) {
+			Waiter nextWaiter = null;
+			int nextWaiterPermits = Integer.MAX_VALUE;
+			for (Waiter waiter : waiters) {
+				int permits = getPermits(waiter.dataSourceId);
+				if (permits < nextWaiterPermits) {
+					nextWaiter = waiter;
+					nextWaiterPermits = permits;
+				}
+			}
+			for (Iterator<Waiter> iterator = waiters.iterator(); iterator.hasNext();) {
+				if (iterator.next() == nextWaiter) {
+					iterator.remove();
+					break;
+				}
+			}
+			grant(nextWaiter.dataSourceId);
+			nextWaiter.granted = true;
+			granted = true;
+		}
+		if (granted)
+			notifyAll();
+	}
+
+	public synchronized int getGrantedPermits() {
+		return grantedPermits;
+	}
+
+	public int getMaximumPermits() {
+		return maximumPermits;
+	}
+
+	private int getPermits(Object dataSourceId) {
+		Integer permits = permitsByDataSourceId.get(dataSourceId);
+		return permits != null ? permits : 0;
+	}
+
+	public synchronized int getWaiters() {
+		return waiters.size();
+	}
+
+	private void grant(Object dataSourceId) {
+		grantedPermits++;
+		permitsByDataSourceId.put(dataSourceId, getPermits(dataSourceId) + 1);
+	}
+
+	/**
+	 * Releases a permit previously acquired for a data source
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 */
+	public synchronized void release(Object dataSourceId) {
+		int permits = getPermits(dataSourceId);
+		if (permits == 0)
+			return;
+		if (permits == 1)
+			permitsByDataSourceId.remove(dataSourceId);
+		else
+			permitsByDataSourceId.put(dataSourceId, permits - 1);
+		grantedPermits--;
+		dispatch();
+	}
+
+	/**
+	 * Acquires a permit only if it is available right away and no request is
+	 * waiting
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 */
+	public synchronized boolean tryAcquire(Object dataSourceId) {
+		if (grantedPermits >= maximumPermits || !waiters.isEmpty())
+			return false;
+		grant(dataSourceId);
+		return true;
+	}
+}
@@ -19,20 +19,52 @@
 package com.magidc.balea.core.proxy.cache;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+import javax.sql.DataSource;
 
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.magidc.balea.core.metrics.EvictionCause;
+import com.magidc.balea.core.metrics.MetricsRecorder;
+import com.magidc.balea.core.model.ReadReplicaId;
+import com.magidc.balea.core.model.exception.AdmissionRejectedException;
+import com.magidc.balea.core.proxy.admission.AdmissionController;
 import com.magidc.balea.core.proxy.cache.config.DataSourceCacheManagerConfigurer;
+import com.magidc.balea.core.proxy.cache.config.DataSourceCacheParameters;
+import com.magidc.balea.core.proxy.cache.eviction.EvictionPolicy;
 import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+import com.magidc.balea.core.proxy.federation.FederatedQueryExecutor;
+import com.magidc.balea.core.proxy.federation.ShardedBatchWriter;
+import com.magidc.balea.core.proxy.health.DataSourceHealthChecker;
+import com.magidc.balea.core.proxy.pool.ConnectionPoolParameters;
+import com.magidc.balea.core.proxy.pool.PooledDataSource;
+import com.magidc.balea.core.proxy.prefetch.DataSourcePrefetcher;
+import com.magidc.balea.core.proxy.replica.ReadReplicaRouter;
 
 /**
  * Manager for DataSource cache
@@ -41,20 +73,308 @@ import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
  *
  */
 public class DataSourceCacheManager {
+	// Leases are released without notifying the cache manager, so capacity is
+	// checked again at least this often while waiting for it
+	private static final long CAPACITY_POLL_MILLIS = 100;
+
 	private LoadingCache<Object, ManagedDataSource> dataSourceCache;
 	private DataSourceCacheManagerConfigurer dataSourceCacheManagerConfigurer;
+	private DataSourceCacheParameters dataSourceCacheParameters;
+	private EvictionPolicy evictionPolicy;
+	private ExecutorService coldStartExecutor;
+	private ExecutorService drainExecutor;
+	private ExecutorService asyncConnectionExecutor;
+	private ScheduledExecutorService connectionPoolScheduler;
+	private AdmissionController admissionController;
+	private DataSourceHealthChecker dataSourceHealthChecker;
+	private DataSourcePrefetcher dataSourcePrefetcher;
+	private FederatedQueryExecutor federatedQueryExecutor;
+	private ShardedBatchWriter shardedBatchWriter;
+	private ReadReplicaRouter readReplicaRouter;
+	private MetricsRecorder metricsRecorder;
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+	// Asynchronous loads in progress, shared by concurrent requests of the same id
+	private final ConcurrentMap<Object, CompletableFuture<ManagedDataSource>> inFlightDataSourceLoads = new ConcurrentHashMap<>();
+	// Generation of the latest load per data source id, so a data source closed
+	// after being loaded again does not close the new one
+	private final ConcurrentMap<Object, Long> latestLoadGenerations = new ConcurrentHashMap<>();
+	private final AtomicLong loadGenerations = new AtomicLong();
+	private final Striped<Lock> dataSourceLocks = Striped.lock(64);
+	// Active data sources and weight, including data sources being loaded
+	private int activeDataSources;
+	private long activeWeight;
 
-	public DataSourceCacheManager(final DataSourceCacheManagerConfigurer dataSourceCacheManagerConfigurer, Long cacheExpiringTimeMillis) {
+	public DataSourceCacheManager(final DataSourceCacheManagerConfigurer dataSourceCacheManagerConfigurer, DataSourceCacheParameters dataSourceCacheParameters) {
 		this.dataSourceCacheManagerConfigurer = dataSourceCacheManagerConfigurer;
-		initCache(cacheExpiringTimeMillis);
+		this.dataSourceCacheParameters = dataSourceCacheParameters;
+		this.evictionPolicy = dataSourceCacheParameters.getEvictionPolicy();
+		this.metricsRecorder = dataSourceCacheParameters.getMetricsRecorder();
+		this.coldStartExecutor = Executors.newFixedThreadPool(Math.max(1, dataSourceCacheParameters.getColdStartThreads()),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-cold-start-%d").build());
+		this.drainExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-data-source-drain-%d").build());
+		this.asyncConnectionExecutor = Executors.newFixedThreadPool(Math.max(1, dataSourceCacheParameters.getAsyncConnectionThreads()),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-async-connection-%d").build());
+		if (dataSourceCacheParameters.getAdmissionControlParameters() != null) {
+			this.admissionController = new AdmissionController(dataSourceCacheParameters.getAdmissionControlParameters());
+			this.admissionController.setConnectionPressureHandler(this::relieveConnectionPressure);
+		}
+		this.dataSourceHealthChecker = new DataSourceHealthChecker(dataSourceCacheManagerConfigurer, dataSourceCacheParameters.getHealthCheckParameters(),
+				this::removeUnhealthyDataSource);
+		initCache();
+		dataSourceCacheManagerConfigurer.setDataSourceInvalidator(this::invalidateDataSource);
+		metricsRecorder.registerGauge("balea.dataSources.active", () -> dataSourceCache.size());
+		if (dataSourceCacheParameters.getConnectionPoolParameters() != null)
+			scheduleConnectionPoolMaintenance(dataSourceCacheParameters.getConnectionPoolParameters());
+		if (dataSourceCacheParameters.getPrefetchParameters() != null)
+			this.dataSourcePrefetcher = new DataSourcePrefetcher(this, dataSourceCacheParameters.getPrefetchParameters(), metricsRecorder);
+		if (dataSourceCacheParameters.getFederatedQueryParameters() != null)
+			this.federatedQueryExecutor = new FederatedQueryExecutor(this, dataSourceCacheParameters.getFederatedQueryParameters());
+		if (dataSourceCacheParameters.getBatchWriterParameters() != null)
+			this.shardedBatchWriter = new ShardedBatchWriter(this, dataSourceCacheParameters.getBatchWriterParameters());
+		if (dataSourceCacheParameters.getReadReplicaParameters() != null)
+			this.readReplicaRouter = new ReadReplicaRouter(this, dataSourceCacheParameters.getReadReplicaParameters(), metricsRecorder);
+	}
+
+	public DataSourceCacheManager(final DataSourceCacheManagerConfigurer dataSourceCacheManagerConfigurer, Long cacheExpiringTimeMillis) {
+		this(dataSourceCacheManagerConfigurer, new DataSourceCacheParameters(cacheExpiringTimeMillis));
+	}
+
+	/**
+	 * Gets a data source from the cache if it exists or obtain it from method given
+	 * in data source cache configurer. Unlike {@link #getManagedDataSource(Object)}
+	 * failures are propagated, admission control rejections as
+	 * {@link com.magidc.balea.core.model.exception.AdmissionRejectedException}
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 * @throws SQLException
+	 */
+	public ManagedDataSource acquireManagedDataSource(Object dataSourceId) throws SQLException {
+		recordAccess(dataSourceId);
+		ManagedDataSource managedDataSource = findCachedDataSource(dataSourceId);
+		if (managedDataSource != null)
+			return managedDataSource;
+		recordCacheMiss(dataSourceId);
+		try {
+			managedDataSource = dataSourceCache.get(dataSourceId);
+			managedDataSource.recordAccess();
+			return managedDataSource;
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			if (e.getCause() instanceof SQLException)
+				throw (SQLException) e.getCause();
+			throw new SQLException(String.format("Data source %s is not available", dataSourceId), e.getCause());
+		}
 	}
 
-	private void cleanUpDataSourceCache() throws IOException {
+	/**
+	 * Manages the data sources adopted from the cache manager configurer (i.e.
+	 * containers left running by a previous run) without cold starts. Adopted
+	 * data sources exceeding the cache limits are closed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Number of adopted data sources
+	 * @throws IOException
+	 */
+	public int adoptDataSources() throws IOException {
+		int adoptedDataSources = 0;
+		for (Map.Entry<Object, DataSource> adoptedDataSource : dataSourceCacheManagerConfigurer.adoptDataSources().entrySet()) {
+			Object dataSourceId = adoptedDataSource.getKey();
+			long weight = dataSourceCacheParameters.getDataSourceWeigher().weigh(dataSourceId);
+			if (!tryReserveCapacity(weight)) {
+				dataSourceCacheManagerConfigurer.closeDataSource(dataSourceId);
+				continue;
+			}
+			ManagedDataSource managedDataSource = createManagedDataSource(dataSourceId, adoptedDataSource.getValue(), weight, 0);
+			if (putAdoptedDataSource(managedDataSource)) {
+				evictionPolicy.onLoad(managedDataSource);
+				adoptedDataSources++;
+			} else {
+				// Already loaded by a request
+				releaseCapacity(weight);
+				drainConnectionPool(managedDataSource);
+			}
+		}
+		return adoptedDataSources;
+	}
+
+	/**
+	 * Records a new load of a data source
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Generation of the load
+	 */
+	private long beginLoad(Object dataSourceId) {
+		Lock dataSourceLock = dataSourceLocks.get(dataSourceId);
+		dataSourceLock.lock();
+		try {
+			long loadGeneration = loadGenerations.incrementAndGet();
+			latestLoadGenerations.put(dataSourceId, loadGeneration);
+			return loadGeneration;
+		} finally {
+			dataSourceLock.unlock();
+		}
+	}
+
+	/**
+	 * Evicts expired data sources, and others while host memory is under
+	 * pressure, and checks the health of the rest, unhealthy ones are removed as
+	 * health probes complete. Run periodically by the cache manager
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @throws IOException
+	 */
+	public void cleanUpDataSourceCache() throws IOException {
+		long now = System.currentTimeMillis();
 		for (Entry<Object, ManagedDataSource> dataSourceCacheEntry : dataSourceCache.asMap().entrySet()) {
-			if (!dataSourceCacheManagerConfigurer.validateDataSource(dataSourceCacheEntry.getValue()))
-				dataSourceCache.invalidate(dataSourceCacheEntry.getKey());
+			if (isExpired(dataSourceCacheEntry.getValue(), now))
+				evictDataSource(dataSourceCacheEntry.getKey(), dataSourceCacheEntry.getValue());
+		}
+		relieveMemoryPressure(null);
+		dataSourceHealthChecker.check(dataSourceCache.asMap().values());
+	}
+
+	/**
+	 * Closes a data source removed from the cache. If it has leased connections,
+	 * it is closed in the background once they are closed, or after the lease
+	 * drain timeout
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param managedDataSource
+	 * @throws IOException
+	 */
+	private void closeDataSource(ManagedDataSource managedDataSource) throws IOException {
+		if (managedDataSource.getLeasedConnections() == 0) {
+			closeReleasedDataSource(managedDataSource);
+			return;
+		}
+		try {
+			drainExecutor.execute(() -> {
+				try {
+					managedDataSource.awaitLeasesReleased(dataSourceCacheParameters.getLeaseDrainTimeoutMillis());
+					closeReleasedDataSource(managedDataSource);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (IOException | RuntimeException e) {
+					e.printStackTrace();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			closeReleasedDataSource(managedDataSource);
+		}
+	}
+
+	private void closeDataSources(List<ManagedDataSource> managedDataSources) {
+		for (ManagedDataSource managedDataSource : managedDataSources) {
+			try {
+				closeDataSource(managedDataSource);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Drains the connection pool of a data source and closes it, unless the same
+	 * data source has been loaded again meanwhile (i.e. it is still using the
+	 * same container)
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param managedDataSource
+	 * @throws IOException
+	 */
+	private void closeReleasedDataSource(ManagedDataSource managedDataSource) throws IOException {
+		drainConnectionPool(managedDataSource);
+		Lock dataSourceLock = dataSourceLocks.get(managedDataSource.getDataSourceId());
+		dataSourceLock.lock();
+		try {
+			if (latestLoadGenerations.remove(managedDataSource.getDataSourceId(), managedDataSource.getLoadGeneration()))
+				dataSourceCacheManagerConfigurer.closeDataSource(managedDataSource.getDataSourceId());
+		} finally {
+			dataSourceLock.unlock();
+		}
+	}
+
+	/**
+	 * Wraps a data source in the built-in connection pool if enabled
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param dataSource
+	 * @param weight
+	 * @param coldStartMillis
+	 * @return
+	 */
+	private ManagedDataSource createManagedDataSource(Object dataSourceId, DataSource dataSource, long weight, long coldStartMillis) {
+		if (connectionPoolScheduler != null) {
+			PooledDataSource pooledDataSource = new PooledDataSource(dataSource, dataSourceCacheParameters.getConnectionPoolParameters(),
+					connectionPoolScheduler, dataSourceId, admissionController);
+			pooledDataSource.prewarm();
+			dataSource = pooledDataSource;
 		}
-		dataSourceCache.cleanUp();
+		ManagedDataSource managedDataSource = new ManagedDataSource(dataSourceId, dataSource);
+		managedDataSource.setColdStartMillis(coldStartMillis);
+		managedDataSource.setWeight(weight);
+		return managedDataSource;
+	}
+
+	private void drainConnectionPool(ManagedDataSource managedDataSource) {
+		if (managedDataSource.getDataSource() instanceof PooledDataSource)
+			((PooledDataSource) managedDataSource.getDataSource()).drain();
+	}
+
+	/**
+	 * Removes an expired entry from the cache and closes its data source. Entry is
+	 * kept if it has been replaced or accessed meanwhile
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param managedDataSource
+	 * @throws IOException
+	 */
+	private void evictDataSource(Object dataSourceId, ManagedDataSource managedDataSource) throws IOException {
+		if (!isExpired(managedDataSource, System.currentTimeMillis()))
+			return;
+		if (dataSourceCache.asMap().remove(dataSourceId, managedDataSource)) {
+			metricsRecorder.recordEviction(dataSourceId, EvictionCause.EXPIRED);
+			closeDataSource(managedDataSource);
+		}
+	}
+
+	private boolean exceedsCapacity(long weight) {
+		return dataSourceCacheParameters.getMaximumActiveDataSources() > 0 && activeDataSources + 1 > dataSourceCacheParameters.getMaximumActiveDataSources()
+				|| dataSourceCacheParameters.getMaximumWeight() > 0 && activeWeight + weight > dataSourceCacheParameters.getMaximumWeight();
+	}
+
+	/**
+	 * Cache hit path, reads the cache map directly so hits neither allocate nor
+	 * contend on cache internal state
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Cached data source or null
+	 */
+	private ManagedDataSource findCachedDataSource(Object dataSourceId) {
+		ManagedDataSource managedDataSource = dataSourceCache.asMap().get(dataSourceId);
+		if (managedDataSource != null) {
+			managedDataSource.recordAccess();
+			cacheHits.increment();
+			metricsRecorder.recordCacheHit(dataSourceId);
+		}
+		return managedDataSource;
+	}
+
+	/**
+	 * Gets a data source from the cache without obtaining it if it is not cached
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Cached data source or null
+	 */
+	public ManagedDataSource findManagedDataSource(Object dataSourceId) {
+		return findCachedDataSource(dataSourceId);
 	}
 
 	/**
@@ -67,6 +387,52 @@ public class DataSourceCacheManager {
 		return dataSourceCache.asMap().values();
 	}
 
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Executor opening connections requested asynchronously
+	 */
+	public ExecutorService getAsyncConnectionExecutor() {
+		return asyncConnectionExecutor;
+	}
+
+	public DataSourcePrefetcher getDataSourcePrefetcher() {
+		return dataSourcePrefetcher;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Executor of queries in several data sources, null if federated
+	 *         queries are disabled
+	 */
+	public FederatedQueryExecutor getFederatedQueryExecutor() {
+		return federatedQueryExecutor;
+	}
+
+	private List<ManagedDataSource> getEvictionCandidates() {
+		List<ManagedDataSource> evictionCandidates = new ArrayList<>();
+		for (ManagedDataSource managedDataSource : dataSourceCache.asMap().values()) {
+			// Data sources with leased connections are not evicted, not to abort
+			// in-flight transactions
+			if (!managedDataSource.isPinned() && managedDataSource.getLeasedConnections() == 0)
+				evictionCandidates.add(managedDataSource);
+		}
+		return evictionCandidates;
+	}
+
+	/**
+	 * Ratio of data source requests served from the cache
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public double getHitRatio() {
+		long hits = cacheHits.sum();
+		long requests = hits + cacheMisses.sum();
+		return requests == 0 ? 1 : (double) hits / requests;
+	}
+
 	/**
 	 * Gets a data source from the cache if it exists or obtain it from method given
 	 * in data source cache configurer
@@ -76,10 +442,15 @@ public class DataSourceCacheManager {
 	 * @return
 	 */
 	public ManagedDataSource getManagedDataSource(Object dataSourceId) {
+		recordAccess(dataSourceId);
+		ManagedDataSource managedDataSource = findCachedDataSource(dataSourceId);
+		if (managedDataSource != null)
+			return managedDataSource;
+		recordCacheMiss(dataSourceId);
 		try {
-			ManagedDataSource managedDataSource = dataSourceCache.get(dataSourceId);
+			managedDataSource = dataSourceCache.get(dataSourceId);
 			if (managedDataSource != null)
-				managedDataSource.setLastAccess(new Date());
+				managedDataSource.recordAccess();
 			return managedDataSource;
 		} catch (Exception e) {
 			return null;
@@ -87,41 +458,125 @@ public class DataSourceCacheManager {
 	}
 
 	/**
-	 * Initializes cache
+	 * Gets a data source without blocking the calling thread. Cached data sources
+	 * are returned as a completed future, otherwise the data source is obtained in
+	 * the cold start executor. Concurrent requests of the same data source id share
+	 * the same load. Unlike {@link #getManagedDataSource(Object)}, failures are
+	 * propagated by completing the future exceptionally
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 */
+	public CompletableFuture<ManagedDataSource> getManagedDataSourceAsync(Object dataSourceId) {
+		recordAccess(dataSourceId);
+		ManagedDataSource managedDataSource = findCachedDataSource(dataSourceId);
+		if (managedDataSource != null)
+			return CompletableFuture.completedFuture(managedDataSource);
+		recordCacheMiss(dataSourceId);
+
+		// Dependent future per caller, so a caller cancelling or completing it does
+		// not affect others sharing the load
+		return shareDataSourceLoad(dataSourceId).thenApply(loadedDataSource -> {
+			loadedDataSource.recordAccess();
+			return loadedDataSource;
+		});
+	}
+
+	public MetricsRecorder getMetricsRecorder() {
+		return metricsRecorder;
+	}
+
+	/**
 	 * 
-	 * @author magidc <info@magidc.io> Data source related actions required by cache manager
-	 * @param cacheExpiringTimeMillis
-	 *            Cache entries expiring time in milliseconds
+	 * @author magidc <info@magidc.io>
+	 * @return Router of read only requests to read replicas, null if read
+	 *         replicas are disabled
 	 */
-	private void initCache(Long cacheExpiringTimeMillis) {
+	public ReadReplicaRouter getReadReplicaRouter() {
+		return readReplicaRouter;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Writer of statements in several data sources, null if sharded
+	 *         batches are disabled
+	 */
+	public ShardedBatchWriter getShardedBatchWriter() {
+		return shardedBatchWriter;
+	}
+
+	private synchronized boolean hasFreeCapacity(long weight) {
+		return !exceedsCapacity(weight);
+	}
+
+	/**
+	 * Initializes cache. Entries expire after cache expiring time without access,
+	 * tracked by last access time of managed data sources instead of cache access
+	 * order so hits do not contend on cache internal queues. Number and weight of
+	 * entries are bounded by the eviction policy when a new entry is loaded
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	private void initCache() {
 		CacheLoader<Object, ManagedDataSource> dataSourceCacheLoader;
 		dataSourceCacheLoader = new CacheLoader<Object, ManagedDataSource>() {
 			@Override
-			public ManagedDataSource load(final Object dataSourceId) throws IOException {
-				return new ManagedDataSource(dataSourceId, dataSourceCacheManagerConfigurer.obtainDataSource(dataSourceId));
+			public ManagedDataSource load(final Object dataSourceId) throws IOException, SQLException {
+				return loadDataSource(dataSourceId);
 			}
 		};
 
 		RemovalListener<Object, ManagedDataSource> removalListener = new RemovalListener<Object, ManagedDataSource>() {
 			@Override
 			public void onRemoval(RemovalNotification<Object, ManagedDataSource> removalNotification) {
-				if (removalNotification.wasEvicted()) {
-					try {
-						dataSourceCacheManagerConfigurer.closeDataSource(removalNotification.getKey());
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
-				}
+				releaseCapacity(removalNotification.getValue().getWeight());
+				evictionPolicy.onRemoval(removalNotification.getValue());
+				if (dataSourcePrefetcher != null)
+					dataSourcePrefetcher.onRemoval(removalNotification.getValue());
 			}
 		};
 
 		dataSourceCache = CacheBuilder.newBuilder()
-				.expireAfterAccess(cacheExpiringTimeMillis, TimeUnit.MILLISECONDS)
 				.removalListener(removalListener)
 				.build(dataSourceCacheLoader);
 		scheduleCleanUpCache();
 	}
 
+	/**
+	 * Removes a data source that stopped being valid (i.e. packed tenant moved to
+	 * another container) from the cache and closes it, waiting for its leased
+	 * connections to be closed up to the lease drain timeout and draining its
+	 * connection pool. Its next request loads it again. Pinned data sources are
+	 * kept, only their idle pooled connections are closed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 */
+	private void invalidateDataSource(Object dataSourceId) {
+		ManagedDataSource managedDataSource = dataSourceCache.asMap().get(dataSourceId);
+		if (managedDataSource == null)
+			return;
+		try {
+			if (managedDataSource.isPinned()) {
+				managedDataSource.awaitLeasesReleased(dataSourceCacheParameters.getLeaseDrainTimeoutMillis());
+				if (managedDataSource.getDataSource() instanceof PooledDataSource)
+					((PooledDataSource) managedDataSource.getDataSource()).closeIdleConnections(0);
+				return;
+			}
+			if (!dataSourceCache.asMap().remove(dataSourceId, managedDataSource))
+				return;
+			metricsRecorder.recordEviction(dataSourceId, EvictionCause.MOVED);
+			managedDataSource.awaitLeasesReleased(dataSourceCacheParameters.getLeaseDrainTimeoutMillis());
+			closeReleasedDataSource(managedDataSource);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * 
 	 * @author magidc <info@magidc.io>
@@ -132,6 +587,259 @@ public class DataSourceCacheManager {
 		return dataSourceCache.getIfPresent(dataSourceId) != null;
 	}
 
+	private boolean isExpired(ManagedDataSource managedDataSource, long now) {
+		return !managedDataSource.isPinned() && managedDataSource.getLeasedConnections() == 0
+				&& now - managedDataSource.refreshLastAccess(now) > dataSourceCacheParameters.getCacheExpiringTimeMillis();
+	}
+
+	/**
+	 * Opens a connection of a data source, leased until it is closed so the data
+	 * source is not evicted meanwhile. The data source is acquired again if it is
+	 * evicted while the connection is being leased
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param username
+	 *            Null for the default user
+	 * @param password
+	 * @return
+	 * @throws SQLException
+	 * @see #acquireManagedDataSource(Object)
+	 */
+	public Connection leaseConnection(Object dataSourceId, String username, String password) throws SQLException {
+		Connection connection;
+		do
+			connection = tryLeaseConnection(acquireManagedDataSource(dataSourceId), username, password);
+		while (connection == null);
+		return connection;
+	}
+
+	/**
+	 * Obtains a data source not present in the cache, once admitted by admission
+	 * control and evicting other data sources first if a cache limit would be
+	 * exceeded
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	private ManagedDataSource loadDataSource(Object dataSourceId) throws IOException, SQLException {
+		if (admissionController == null)
+			return startDataSource(dataSourceId);
+		admissionController.acquireColdStart(dataSourceId);
+		try {
+			return startDataSource(dataSourceId);
+		} finally {
+			admissionController.releaseColdStart(dataSourceId);
+		}
+	}
+
+	private void loadDataSourceAsync(Object dataSourceId, CompletableFuture<ManagedDataSource> dataSourceLoad) {
+		ManagedDataSource managedDataSource = null;
+		Throwable failure = null;
+		try {
+			// Loading through the cache so synchronous requests of the same id wait
+			// for this load instead of starting another one
+			managedDataSource = dataSourceCache.get(dataSourceId);
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			failure = e.getCause() != null ? e.getCause() : e;
+		} catch (Throwable e) {
+			failure = e;
+		}
+		// Removed before completion so requests arriving after a failure retry the
+		// load
+		inFlightDataSourceLoads.remove(dataSourceId, dataSourceLoad);
+		if (failure != null)
+			dataSourceLoad.completeExceptionally(failure);
+		else
+			dataSourceLoad.complete(managedDataSource);
+	}
+
+	/**
+	 * Keeps a data source in the cache regardless of its use
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 */
+	public ManagedDataSource pin(Object dataSourceId) {
+		ManagedDataSource managedDataSource = getManagedDataSource(dataSourceId);
+		if (managedDataSource != null)
+			managedDataSource.setPinned(true);
+		return managedDataSource;
+	}
+
+	/**
+	 * Loads a data source ahead of demand in the cold start executor, only if it
+	 * is not cached and it fits in the cache without evicting others. Capacity is
+	 * checked before the load, so a concurrent load may still take it
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Data source load or null if it is not prefetched
+	 */
+	public CompletableFuture<ManagedDataSource> prefetchDataSource(Object dataSourceId) {
+		if (dataSourceCache.asMap().containsKey(dataSourceId) || !hasFreeCapacity(dataSourceCacheParameters.getDataSourceWeigher().weigh(dataSourceId)))
+			return null;
+		return shareDataSourceLoad(dataSourceId);
+	}
+
+	/**
+	 * Caches an adopted data source as a new load, unless it has already been
+	 * loaded by a request
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param managedDataSource
+	 * @return False if it was already loaded
+	 */
+	private boolean putAdoptedDataSource(ManagedDataSource managedDataSource) {
+		Lock dataSourceLock = dataSourceLocks.get(managedDataSource.getDataSourceId());
+		dataSourceLock.lock();
+		try {
+			if (dataSourceCache.asMap().putIfAbsent(managedDataSource.getDataSourceId(), managedDataSource) != null)
+				return false;
+			long loadGeneration = loadGenerations.incrementAndGet();
+			managedDataSource.setLoadGeneration(loadGeneration);
+			latestLoadGenerations.put(managedDataSource.getDataSourceId(), loadGeneration);
+			return true;
+		} finally {
+			dataSourceLock.unlock();
+		}
+	}
+
+	private void recordAccess(Object dataSourceId) {
+		if (dataSourcePrefetcher != null)
+			dataSourcePrefetcher.recordAccess(dataSourceId);
+	}
+
+	private void recordCacheMiss(Object dataSourceId) {
+		cacheMisses.increment();
+		metricsRecorder.recordCacheMiss(dataSourceId);
+	}
+
+	private synchronized void releaseCapacity(long weight) {
+		activeDataSources--;
+		activeWeight -= weight;
+		notifyAll();
+	}
+
+	/**
+	 * Closes idle pooled connections of data sources holding more than their
+	 * fair share of the global connection budget. If there is none, an idle
+	 * connection of the data source holding most connections is closed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	private void relieveConnectionPressure() {
+		List<PooledDataSource> pooledDataSources = new ArrayList<>();
+		for (ManagedDataSource managedDataSource : dataSourceCache.asMap().values()) {
+			if (managedDataSource.getDataSource() instanceof PooledDataSource)
+				pooledDataSources.add((PooledDataSource) managedDataSource.getDataSource());
+		}
+		if (pooledDataSources.isEmpty())
+			return;
+		int fairShareConnections = Math.max(1, admissionController.getMaximumConnections() / pooledDataSources.size());
+		int closedConnections = 0;
+		for (PooledDataSource pooledDataSource : pooledDataSources)
+			closedConnections += pooledDataSource.closeIdleConnections(fairShareConnections);
+		if (closedConnections > 0)
+			return;
+
+		PooledDataSource largestPooledDataSource = null;
+		for (PooledDataSource pooledDataSource : pooledDataSources) {
+			if (pooledDataSource.getIdleConnections() > 0
+					&& (largestPooledDataSource == null || pooledDataSource.getTotalConnections() > largestPooledDataSource.getTotalConnections()))
+				largestPooledDataSource = pooledDataSource;
+		}
+		if (largestPooledDataSource != null)
+			largestPooledDataSource.closeIdleConnections(largestPooledDataSource.getTotalConnections() - 1);
+	}
+
+	/**
+	 * Releases host memory while it is under pressure, before the host starts
+	 * swapping. Memory of hibernated data sources is released first, then data
+	 * sources selected by the eviction policy are evicted
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 *            Data source about to be started, if any
+	 * @return False if memory is still under pressure with nothing left to
+	 *         evict
+	 * @throws IOException
+	 */
+	private boolean relieveMemoryPressure(Object dataSourceId) throws IOException {
+		while (dataSourceCacheManagerConfigurer.isUnderMemoryPressure(dataSourceId)) {
+			if (dataSourceCacheManagerConfigurer.releaseHibernatedMemory())
+				continue;
+			List<ManagedDataSource> evictionCandidates = getEvictionCandidates();
+			ManagedDataSource victim = evictionCandidates.isEmpty() ? null : evictionPolicy.selectVictim(evictionCandidates);
+			if (victim == null)
+				return false;
+			if (dataSourceCache.asMap().remove(victim.getDataSourceId(), victim)) {
+				metricsRecorder.recordEviction(victim.getDataSourceId(), EvictionCause.MEMORY_PRESSURE);
+				closeDataSource(victim);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes a data source failing its health check and closes it as evicted
+	 * data sources are (i.e. a packed tenant stops to count as active in its
+	 * container). Entry is kept if it has been replaced meanwhile, and, as in
+	 * evictions, if it is pinned or has leased connections
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param managedDataSource
+	 */
+	private void removeUnhealthyDataSource(ManagedDataSource managedDataSource) {
+		if (managedDataSource.isPinned() || managedDataSource.getLeasedConnections() > 0)
+			return;
+		if (dataSourceCache.asMap().remove(managedDataSource.getDataSourceId(), managedDataSource)) {
+			metricsRecorder.recordEviction(managedDataSource.getDataSourceId(), EvictionCause.INVALID);
+			try {
+				closeDataSource(managedDataSource);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Reserves capacity for a data source, evicting others if needed. Evicted data
+	 * sources are only removed from the cache, they are closed by the caller out
+	 * of the cache manager monitor, also when no capacity is reserved
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param weight
+	 * @param evictedDataSources
+	 *            Evicted data sources are added to it
+	 * @return False if no capacity is available before the capacity wait timeout
+	 * @throws InterruptedException
+	 */
+	private synchronized boolean reserveCapacity(long weight, List<ManagedDataSource> evictedDataSources) throws InterruptedException {
+		long deadlineMillis = System.currentTimeMillis() + dataSourceCacheParameters.getCapacityWaitTimeoutMillis();
+		while (!tryReserveCapacity(weight)) {
+			List<ManagedDataSource> evictionCandidates = getEvictionCandidates();
+			ManagedDataSource victim = evictionCandidates.isEmpty() ? null : evictionPolicy.selectVictim(evictionCandidates);
+			if (victim != null) {
+				if (dataSourceCache.asMap().remove(victim.getDataSourceId(), victim)) {
+					metricsRecorder.recordEviction(victim.getDataSourceId(), EvictionCause.CAPACITY);
+					evictedDataSources.add(victim);
+				}
+				continue;
+			}
+
+			long remainingMillis = deadlineMillis - System.currentTimeMillis();
+			if (remainingMillis <= 0)
+				return false;
+			wait(Math.min(remainingMillis, CAPACITY_POLL_MILLIS));
+		}
+		return true;
+	}
+
 	/**
 	 * Scheduling process to clean up expired entries asynchronous (important to
 	 * avoid having unnecessary active docker containers)
@@ -139,7 +847,8 @@ public class DataSourceCacheManager {
 	 * @author magidc <info@magidc.io>
 	 */
 	private void scheduleCleanUpCache() {
-		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1,
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-cache-cleanup-%d").build());
 		scheduler.scheduleAtFixedRate(new Runnable() {
 			@Override
 			public void run() {
@@ -149,6 +858,160 @@ public class DataSourceCacheManager {
 					e.printStackTrace();
 				}
 			}
-		}, 30, 10, TimeUnit.SECONDS);
+		}, dataSourceCacheParameters.getCleanUpInitialDelayMillis(), dataSourceCacheParameters.getCleanUpPeriodMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Scheduling process to resize connection pools of cached data sources
+	 * according to their load
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param connectionPoolParameters
+	 */
+	private void scheduleConnectionPoolMaintenance(ConnectionPoolParameters connectionPoolParameters) {
+		connectionPoolScheduler = Executors.newScheduledThreadPool(2,
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-connection-pool-%d").build());
+		long maintenancePeriodMillis = connectionPoolParameters.getMaintenancePeriodMillis();
+		connectionPoolScheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				for (ManagedDataSource managedDataSource : dataSourceCache.asMap().values()) {
+					try {
+						if (managedDataSource.getDataSource() instanceof PooledDataSource)
+							((PooledDataSource) managedDataSource.getDataSource()).maintain();
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}, maintenancePeriodMillis, maintenancePeriodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Load of a data source in the cold start executor, shared by concurrent
+	 * requests of the same data source id
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 */
+	private CompletableFuture<ManagedDataSource> shareDataSourceLoad(Object dataSourceId) {
+		CompletableFuture<ManagedDataSource> dataSourceLoad = inFlightDataSourceLoads.get(dataSourceId);
+		if (dataSourceLoad == null) {
+			CompletableFuture<ManagedDataSource> newDataSourceLoad = new CompletableFuture<>();
+			dataSourceLoad = inFlightDataSourceLoads.putIfAbsent(dataSourceId, newDataSourceLoad);
+			if (dataSourceLoad == null) {
+				dataSourceLoad = newDataSourceLoad;
+				startDataSourceLoad(dataSourceId, newDataSourceLoad);
+			}
+		}
+		return dataSourceLoad;
+	}
+
+	/**
+	 * Obtains a data source once there is capacity for it and host memory is not
+	 * under pressure
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	private ManagedDataSource startDataSource(Object dataSourceId) throws IOException, SQLException {
+		long weight = dataSourceCacheParameters.getDataSourceWeigher().weigh(dataSourceId);
+		List<ManagedDataSource> evictedDataSources = new ArrayList<>();
+		boolean capacityReserved;
+		try {
+			capacityReserved = reserveCapacity(weight, evictedDataSources);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} finally {
+			closeDataSources(evictedDataSources);
+		}
+		if (!capacityReserved)
+			throw new IOException("No capacity available for a new data source");
+		try {
+			if (!relieveMemoryPressure(dataSourceId))
+				throw new AdmissionRejectedException(String.format("Host memory is under pressure, data source %s is not started", dataSourceId));
+			// Read replicas are provisioned once their load starts, never while they
+			// are loaded or cached
+			if (readReplicaRouter != null && dataSourceId instanceof ReadReplicaId)
+				readReplicaRouter.provisionReadReplica((ReadReplicaId) dataSourceId);
+			long loadGeneration = beginLoad(dataSourceId);
+			long coldStartStartNanos = System.nanoTime();
+			DataSource dataSource = dataSourceCacheManagerConfigurer.obtainDataSource(dataSourceId);
+			long coldStartNanos = System.nanoTime() - coldStartStartNanos;
+			long coldStartMillis = TimeUnit.NANOSECONDS.toMillis(coldStartNanos);
+			metricsRecorder.recordColdStart(dataSourceId, coldStartNanos);
+			ManagedDataSource managedDataSource = createManagedDataSource(dataSourceId, dataSource, weight, coldStartMillis);
+			managedDataSource.setLoadGeneration(loadGeneration);
+			evictionPolicy.onLoad(managedDataSource);
+			return managedDataSource;
+		} catch (IOException | SQLException | RuntimeException e) {
+			releaseCapacity(weight);
+			throw e;
+		}
+	}
+
+	private void startDataSourceLoad(Object dataSourceId, CompletableFuture<ManagedDataSource> dataSourceLoad) {
+		try {
+			coldStartExecutor.execute(() -> loadDataSourceAsync(dataSourceId, dataSourceLoad));
+		} catch (RejectedExecutionException e) {
+			inFlightDataSourceLoads.remove(dataSourceId, dataSourceLoad);
+			dataSourceLoad.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Keeps a cached data source from expiring as if it was accessed, without
+	 * counting a cache request nor obtaining it if it is not cached
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 */
+	public void touchDataSource(Object dataSourceId) {
+		ManagedDataSource managedDataSource = dataSourceCache.asMap().get(dataSourceId);
+		if (managedDataSource != null)
+			managedDataSource.recordAccess();
+	}
+
+	/**
+	 * Opens a connection of a cached data source, leased until it is closed. The
+	 * lease is taken before checking the data source is still cached, so
+	 * evictions deciding meanwhile either see it and wait for the connection to
+	 * be closed, or have already removed the data source
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param managedDataSource
+	 * @param username
+	 *            Null for the default user
+	 * @param password
+	 * @return Null if the data source is no longer cached
+	 * @throws SQLException
+	 */
+	public Connection tryLeaseConnection(ManagedDataSource managedDataSource, String username, String password) throws SQLException {
+		managedDataSource.acquireLease();
+		if (dataSourceCache.asMap().get(managedDataSource.getDataSourceId()) != managedDataSource) {
+			managedDataSource.releaseLease();
+			return null;
+		}
+		return managedDataSource.openLeasedConnection(username, password);
+	}
+
+	/**
+	 * Reserves capacity for a data source without evicting others
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param weight
+	 * @return False if a cache limit would be exceeded
+	 */
+	private synchronized boolean tryReserveCapacity(long weight) {
+		if (exceedsCapacity(weight))
+			return false;
+		activeDataSources++;
+		activeWeight += weight;
+		return true;
 	}
 }
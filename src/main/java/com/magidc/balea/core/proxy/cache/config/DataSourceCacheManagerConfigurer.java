@@ -19,6 +19,10 @@
 package com.magidc.balea.core.proxy.cache.config;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import javax.sql.DataSource;
 
@@ -31,6 +35,17 @@ import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
  *
  */
 public interface DataSourceCacheManagerConfigurer {
+	/**
+	 * Data sources already active when the cache manager starts (i.e. left by a
+	 * previous run), to be managed without obtaining them again. None by default
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Data sources by data source id
+	 * @throws IOException
+	 */
+	public default Map<Object, DataSource> adoptDataSources() throws IOException {
+		return Collections.emptyMap();
+	}
 
 	/**
 	 * Action to be perform when data source stops to be managed by cache
@@ -41,6 +56,21 @@ public interface DataSourceCacheManagerConfigurer {
 	 */
 	public void closeDataSource(Object dataSourceId) throws IOException;
 
+	/**
+	 * Whether the host running the data sources is short of memory, so new data
+	 * sources must not be obtained before releasing memory. Never by default
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 *            Data source about to be obtained, its memory is counted too. Null
+	 *            to check current memory usage only
+	 * @return
+	 * @throws IOException
+	 */
+	public default boolean isUnderMemoryPressure(Object dataSourceId) throws IOException {
+		return false;
+	}
+
 	/**
 	 * Given a data source id, produces a ready to use data source instance
 	 * 
@@ -51,6 +81,58 @@ public interface DataSourceCacheManagerConfigurer {
 	 */
 	public DataSource obtainDataSource(Object dataSourceId) throws IOException;
 
+	/**
+	 * Checks a data source known to be available in the last availability
+	 * snapshot (i.e. by opening a connection). Run periodically by health checks,
+	 * same as {@link #validateDataSource(ManagedDataSource)} by default
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param managedDataSource
+	 * @return
+	 * @throws IOException
+	 */
+	public default boolean probeDataSource(ManagedDataSource managedDataSource) throws IOException {
+		return validateDataSource(managedDataSource);
+	}
+
+	/**
+	 * Releases memory held by a data source no longer managed by the cache (i.e.
+	 * stops a paused container). Nothing is released by default
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return False if there is nothing to release
+	 * @throws IOException
+	 */
+	public default boolean releaseHibernatedMemory() throws IOException {
+		return false;
+	}
+
+	/**
+	 * Receives the action removing a data source from the cache, once its leased
+	 * connections are closed, for data sources that stop being valid outside the
+	 * cache manager (i.e. packed tenants moved to another container). Ignored by
+	 * default
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceInvalidator
+	 *            Consumer of data source ids
+	 */
+	public default void setDataSourceInvalidator(Consumer<Object> dataSourceInvalidator) {
+	}
+
+	/**
+	 * Snapshot of data source availability taken once per health check sweep
+	 * (i.e. container states), so unavailable data sources are detected without
+	 * probing them. Every data source is considered available by default
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Predicate testing data source ids
+	 * @throws IOException
+	 */
+	public default Predicate<Object> snapshotDataSourceAvailability() throws IOException {
+		return dataSourceId -> true;
+	}
+
 	/**
 	 * Given a data source, check its availability
 	 * 
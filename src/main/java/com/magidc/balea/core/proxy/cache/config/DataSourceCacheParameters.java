@@ -0,0 +1,345 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.cache.config;
+
+import com.magidc.balea.core.metrics.MetricsRecorder;
+import com.magidc.balea.core.proxy.admission.AdmissionControlParameters;
+import com.magidc.balea.core.proxy.cache.eviction.AdaptiveEvictionPolicy;
+import com.magidc.balea.core.proxy.cache.eviction.EvictionPolicy;
+import com.magidc.balea.core.proxy.federation.BatchWriterParameters;
+import com.magidc.balea.core.proxy.federation.FederatedQueryParameters;
+import com.magidc.balea.core.proxy.health.HealthCheckParameters;
+import com.magidc.balea.core.proxy.pool.ConnectionPoolParameters;
+import com.magidc.balea.core.proxy.prefetch.PrefetchParameters;
+import com.magidc.balea.core.proxy.replica.ReadReplicaParameters;
+
+/**
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class DataSourceCacheParameters {
+	private long cacheExpiringTimeMillis = 60000;
+	private int maximumActiveDataSources = 0;
+	private long maximumWeight = 0;
+	private long capacityWaitTimeoutMillis = 30000;
+	private long leaseDrainTimeoutMillis = 30000;
+	private long cleanUpInitialDelayMillis = 30000;
+	private long cleanUpPeriodMillis = 10000;
+	private int coldStartThreads = 4;
+	private int asyncConnectionThreads = 8;
+	private DataSourceWeigher dataSourceWeigher = dataSourceId -> 1;
+	private EvictionPolicy evictionPolicy = new AdaptiveEvictionPolicy();
+	private ConnectionPoolParameters connectionPoolParameters;
+	private AdmissionControlParameters admissionControlParameters;
+	private HealthCheckParameters healthCheckParameters = new HealthCheckParameters();
+	private PrefetchParameters prefetchParameters;
+	private ReadReplicaParameters readReplicaParameters;
+	private FederatedQueryParameters federatedQueryParameters = new FederatedQueryParameters();
+	private BatchWriterParameters batchWriterParameters = new BatchWriterParameters();
+	private MetricsRecorder metricsRecorder = MetricsRecorder.NONE;
+	private boolean dataSourceAdoptionEnabled = false;
+
+	public DataSourceCacheParameters() {
+		super();
+	}
+
+	public DataSourceCacheParameters(long cacheExpiringTimeMillis) {
+		super();
+		this.cacheExpiringTimeMillis = cacheExpiringTimeMillis;
+	}
+
+	public AdmissionControlParameters getAdmissionControlParameters() {
+		return admissionControlParameters;
+	}
+
+	public int getAsyncConnectionThreads() {
+		return asyncConnectionThreads;
+	}
+
+	public BatchWriterParameters getBatchWriterParameters() {
+		return batchWriterParameters;
+	}
+
+	public long getCacheExpiringTimeMillis() {
+		return cacheExpiringTimeMillis;
+	}
+
+	public long getCapacityWaitTimeoutMillis() {
+		return capacityWaitTimeoutMillis;
+	}
+
+	public long getCleanUpInitialDelayMillis() {
+		return cleanUpInitialDelayMillis;
+	}
+
+	public long getCleanUpPeriodMillis() {
+		return cleanUpPeriodMillis;
+	}
+
+	public int getColdStartThreads() {
+		return coldStartThreads;
+	}
+
+	public ConnectionPoolParameters getConnectionPoolParameters() {
+		return connectionPoolParameters;
+	}
+
+	public DataSourceWeigher getDataSourceWeigher() {
+		return dataSourceWeigher;
+	}
+
+	public EvictionPolicy getEvictionPolicy() {
+		return evictionPolicy;
+	}
+
+	public FederatedQueryParameters getFederatedQueryParameters() {
+		return federatedQueryParameters;
+	}
+
+	public HealthCheckParameters getHealthCheckParameters() {
+		return healthCheckParameters;
+	}
+
+	public long getLeaseDrainTimeoutMillis() {
+		return leaseDrainTimeoutMillis;
+	}
+
+	public int getMaximumActiveDataSources() {
+		return maximumActiveDataSources;
+	}
+
+	public long getMaximumWeight() {
+		return maximumWeight;
+	}
+
+	public MetricsRecorder getMetricsRecorder() {
+		return metricsRecorder;
+	}
+
+	public PrefetchParameters getPrefetchParameters() {
+		return prefetchParameters;
+	}
+
+	public ReadReplicaParameters getReadReplicaParameters() {
+		return readReplicaParameters;
+	}
+
+	public boolean isDataSourceAdoptionEnabled() {
+		return dataSourceAdoptionEnabled;
+	}
+
+	/**
+	 * Global limits of concurrent data source starts and open connections. Null
+	 * (default) for no admission control
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param admissionControlParameters
+	 */
+	public void setAdmissionControlParameters(AdmissionControlParameters admissionControlParameters) {
+		this.admissionControlParameters = admissionControlParameters;
+	}
+
+	/**
+	 * Number of threads opening connections requested asynchronously, so waits
+	 * for pooled connections or admission neither block the requesting thread nor
+	 * the threads starting data sources
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param asyncConnectionThreads
+	 */
+	public void setAsyncConnectionThreads(int asyncConnectionThreads) {
+		this.asyncConnectionThreads = asyncConnectionThreads;
+	}
+
+	/**
+	 * Concurrency and batch size of sharded batches. Null disables sharded batches
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param batchWriterParameters
+	 */
+	public void setBatchWriterParameters(BatchWriterParameters batchWriterParameters) {
+		this.batchWriterParameters = batchWriterParameters;
+	}
+
+	/**
+	 * Time without access after which a data source is evicted
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param cacheExpiringTimeMillis
+	 */
+	public void setCacheExpiringTimeMillis(long cacheExpiringTimeMillis) {
+		this.cacheExpiringTimeMillis = cacheExpiringTimeMillis;
+	}
+
+	/**
+	 * Maximum time a new data source waits for capacity when every active slot is
+	 * taken by data sources still being started or with leased connections
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param capacityWaitTimeoutMillis
+	 */
+	public void setCapacityWaitTimeoutMillis(long capacityWaitTimeoutMillis) {
+		this.capacityWaitTimeoutMillis = capacityWaitTimeoutMillis;
+	}
+
+	/**
+	 * Delay of the first cache clean up, which evicts expired data sources and
+	 * checks the health of the others
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param cleanUpInitialDelayMillis
+	 */
+	public void setCleanUpInitialDelayMillis(long cleanUpInitialDelayMillis) {
+		this.cleanUpInitialDelayMillis = cleanUpInitialDelayMillis;
+	}
+
+	public void setCleanUpPeriodMillis(long cleanUpPeriodMillis) {
+		this.cleanUpPeriodMillis = cleanUpPeriodMillis;
+	}
+
+	/**
+	 * Number of threads starting data sources requested asynchronously
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param coldStartThreads
+	 */
+	public void setColdStartThreads(int coldStartThreads) {
+		this.coldStartThreads = coldStartThreads;
+	}
+
+	/**
+	 * Wraps every managed data source in a built-in connection pool, for data
+	 * sources created as non pooling ones. Null (default) to use data sources as
+	 * they are created
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param connectionPoolParameters
+	 */
+	public void setConnectionPoolParameters(ConnectionPoolParameters connectionPoolParameters) {
+		this.connectionPoolParameters = connectionPoolParameters;
+	}
+
+	/**
+	 * Adopts the data sources left active by a previous run (i.e. running
+	 * containers) when the routing data source is created, instead of removing
+	 * every managed container. Disabled by default
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceAdoptionEnabled
+	 */
+	public void setDataSourceAdoptionEnabled(boolean dataSourceAdoptionEnabled) {
+		this.dataSourceAdoptionEnabled = dataSourceAdoptionEnabled;
+	}
+
+	public void setDataSourceWeigher(DataSourceWeigher dataSourceWeigher) {
+		this.dataSourceWeigher = dataSourceWeigher;
+	}
+
+	/**
+	 * Policy selecting the data source to evict when a limit is reached
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param evictionPolicy
+	 */
+	public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+		this.evictionPolicy = evictionPolicy;
+	}
+
+	/**
+	 * Concurrency and fetch size of queries executed in several data sources at
+	 * once. Null disables federated queries
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param federatedQueryParameters
+	 */
+	public void setFederatedQueryParameters(FederatedQueryParameters federatedQueryParameters) {
+		this.federatedQueryParameters = federatedQueryParameters;
+	}
+
+	public void setHealthCheckParameters(HealthCheckParameters healthCheckParameters) {
+		this.healthCheckParameters = healthCheckParameters;
+	}
+
+	/**
+	 * Maximum time a data source removed from the cache waits for its leased
+	 * connections to be closed before it is closed, so in-flight transactions
+	 * can finish
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param leaseDrainTimeoutMillis
+	 */
+	public void setLeaseDrainTimeoutMillis(long leaseDrainTimeoutMillis) {
+		this.leaseDrainTimeoutMillis = leaseDrainTimeoutMillis;
+	}
+
+	/**
+	 * Maximum number of concurrently active data sources, zero for no limit
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param maximumActiveDataSources
+	 */
+	public void setMaximumActiveDataSources(int maximumActiveDataSources) {
+		this.maximumActiveDataSources = maximumActiveDataSources;
+	}
+
+	/**
+	 * Maximum total weight of concurrently active data sources as given by the
+	 * data source weigher, zero for no limit
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param maximumWeight
+	 */
+	public void setMaximumWeight(long maximumWeight) {
+		this.maximumWeight = maximumWeight;
+	}
+
+	/**
+	 * Recorder of cache, cold start and routing metrics. Disabled by default
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param metricsRecorder
+	 */
+	public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+		this.metricsRecorder = metricsRecorder;
+	}
+
+	/**
+	 * Warms data sources ahead of demand learning time of day and co-access
+	 * patterns. Null (default) for no prefetching
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param prefetchParameters
+	 */
+	public void setPrefetchParameters(PrefetchParameters prefetchParameters) {
+		this.prefetchParameters = prefetchParameters;
+	}
+
+	/**
+	 * Starts read replicas of data sources with high read only request rates and
+	 * spreads read only requests across them. Null (default) for no read
+	 * replicas
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readReplicaParameters
+	 */
+	public void setReadReplicaParameters(ReadReplicaParameters readReplicaParameters) {
+		this.readReplicaParameters = readReplicaParameters;
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.cache.config;
+
+/**
+ * Estimates the weight (i.e. container memory in megabytes) of a data source
+ * before it is started, used to bound the total weight of active data sources
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public interface DataSourceWeigher {
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Weight of the data source, must be positive
+	 */
+	public long weigh(Object dataSourceId);
+}
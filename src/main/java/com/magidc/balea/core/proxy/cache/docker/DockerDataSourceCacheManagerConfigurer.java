@@ -19,6 +19,11 @@
 package com.magidc.balea.core.proxy.cache.docker;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import javax.sql.DataSource;
 
@@ -29,7 +34,9 @@ import com.magidc.balea.core.proxy.cache.config.DataSourceCacheManagerConfigurer
 import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
 
 /**
- * Docker based implementation of data source cache manager actions configurer
+ * Container based implementation of data source cache manager actions
+ * configurer. Containers are managed by the container runtime of the data
+ * source container manager (Docker or local processes)
  * 
  * @author magidc <info@magidc.io>
  *
@@ -43,20 +50,55 @@ public class DockerDataSourceCacheManagerConfigurer implements DataSourceCacheMa
 		this.dataSourceContainerManager = dataSourceContainerManager;
 	}
 
+	@Override
+	public Map<Object, DataSource> adoptDataSources() throws IOException {
+		try {
+			return dataSourceContainerManager.adoptDataSourceContainers();
+		} catch (DockerException | UncheckedIOException | InterruptedException e) {
+			throw new IOException(e);
+		}
+	}
+
 	@Override
 	public void closeDataSource(Object dataSourceId) {
-		dataSourceContainerManager.stopAndRemoveDataSourceContainer(dataSourceId);
+		dataSourceContainerManager.hibernateDataSourceContainer(dataSourceId);
+	}
+
+	@Override
+	public boolean isUnderMemoryPressure(Object dataSourceId) {
+		return dataSourceId != null ? dataSourceContainerManager.isUnderMemoryPressure(dataSourceId) : dataSourceContainerManager.isUnderMemoryPressure();
 	}
 
 	@Override
 	public DataSource obtainDataSource(Object dataSourceId) throws IOException {
 		try {
 			return dataSourceContainerManager.getDataSource(dataSourceId);
-		} catch (DockerException | InterruptedException | DataSourceNotAvailableException e) {
+		} catch (DockerException | UncheckedIOException | InterruptedException | DataSourceNotAvailableException e) {
 			throw new IOException(e);
 		}
 	}
 
+	@Override
+	public boolean probeDataSource(ManagedDataSource managedDataSource) {
+		return dataSourceContainerManager.validateDataSource(managedDataSource.getDataSource());
+	}
+
+	@Override
+	public boolean releaseHibernatedMemory() {
+		return dataSourceContainerManager.stopLongestPausedDataSourceContainer();
+	}
+
+	@Override
+	public void setDataSourceInvalidator(Consumer<Object> dataSourceInvalidator) {
+		dataSourceContainerManager.setTenantMoveHandler(dataSourceInvalidator);
+	}
+
+	@Override
+	public Predicate<Object> snapshotDataSourceAvailability() {
+		Set<String> runningDataSourceIds = dataSourceContainerManager.findRunningDataSourceIds();
+		return dataSourceId -> runningDataSourceIds.contains(dataSourceContainerManager.resolveContainerDataSourceId(dataSourceId).toString());
+	}
+
 	@Override
 	public boolean validateDataSource(ManagedDataSource managedDataSource) throws IOException {
 		return dataSourceContainerManager.isDataSourceContainerUp(managedDataSource.getDataSourceId())
@@ -0,0 +1,152 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.cache.eviction;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+
+/**
+ * W-TinyLFU inspired policy. Each candidate gets a retention value that
+ * combines its aged frequency (kept in a frequency sketch that survives
+ * evictions) and its recency, and that value is scaled by the measured cold
+ * start cost of the candidate. The candidate with the lowest cost-weighted
+ * retention per unit of weight is evicted. The balance between frequency and
+ * recency is tuned by hill climbing on the observed hit ratio
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class AdaptiveEvictionPolicy implements EvictionPolicy {
+	private static final double ADAPTATION_STEP = 0.1;
+	private static final int ADAPTATION_SAMPLE_MISSES = 100;
+	private static final double MINIMUM_RECENCY_WEIGHT = 0.05;
+	private static final double MAXIMUM_RECENCY_WEIGHT = 0.95;
+
+	private final FrequencySketch frequencySketch;
+	private final Map<ManagedDataSource, Long> recordedAccessCounts = new IdentityHashMap<>();
+	private double recencyWeight = 0.5;
+	private double adaptationDirection = ADAPTATION_STEP;
+	private double previousSampleHitRatio = -1;
+	private long sampleRequests;
+	private long sampleMisses;
+
+	public AdaptiveEvictionPolicy() {
+		this(1024);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param expectedDataSources
+	 *            Expected number of distinct data source ids, sizes the frequency
+	 *            sketch
+	 */
+	public AdaptiveEvictionPolicy(int expectedDataSources) {
+		this.frequencySketch = new FrequencySketch(expectedDataSources);
+	}
+
+	private void adapt() {
+		double sampleHitRatio = sampleRequests == 0 ? 0 : Math.max(0, 1 - (double) sampleMisses / sampleRequests);
+		if (previousSampleHitRatio >= 0 && sampleHitRatio < previousSampleHitRatio)
+			adaptationDirection = -adaptationDirection;
+		recencyWeight = Math.max(MINIMUM_RECENCY_WEIGHT, Math.min(MAXIMUM_RECENCY_WEIGHT, recencyWeight + adaptationDirection));
+		previousSampleHitRatio = sampleHitRatio;
+		sampleRequests = 0;
+		sampleMisses = 0;
+	}
+
+	/**
+	 * Current weight of recency against frequency, between 0 and 1
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public synchronized double getRecencyWeight() {
+		return recencyWeight;
+	}
+
+	@Override
+	public synchronized void onLoad(ManagedDataSource managedDataSource) {
+		frequencySketch.increment(managedDataSource.getDataSourceId(), 1);
+		recordedAccessCounts.put(managedDataSource, 0L);
+		if (++sampleMisses >= ADAPTATION_SAMPLE_MISSES)
+			adapt();
+	}
+
+	@Override
+	public synchronized void onRemoval(ManagedDataSource managedDataSource) {
+		recordAccesses(managedDataSource);
+		recordedAccessCounts.remove(managedDataSource);
+	}
+
+	private void recordAccesses(ManagedDataSource managedDataSource) {
+		long accessCount = managedDataSource.getAccessCount();
+		Long recordedAccessCount = recordedAccessCounts.get(managedDataSource);
+		long newAccesses = accessCount - (recordedAccessCount == null ? 0 : recordedAccessCount);
+		if (newAccesses > 0) {
+			frequencySketch.increment(managedDataSource.getDataSourceId(), newAccesses);
+			sampleRequests += newAccesses;
+			recordedAccessCounts.put(managedDataSource, accessCount);
+		}
+	}
+
+	@Override
+	public synchronized ManagedDataSource selectVictim(Collection<ManagedDataSource> candidates) {
+		long now = System.currentTimeMillis();
+		int size = candidates.size();
+		ManagedDataSource[] managedDataSources = candidates.toArray(new ManagedDataSource[size]);
+		long[] idleTimes = new long[size];
+		int[] frequencies = new int[size];
+		long maxIdleTime = 0;
+		int maxFrequency = 1;
+		double totalColdStartMillis = 0;
+		double totalWeight = 0;
+		for (int i = 0; i < size; i++) {
+			ManagedDataSource managedDataSource = managedDataSources[i];
+			recordAccesses(managedDataSource);
+			idleTimes[i] = Math.max(0, now - managedDataSource.refreshLastAccess(now));
+			frequencies[i] = frequencySketch.frequency(managedDataSource.getDataSourceId());
+			maxIdleTime = Math.max(maxIdleTime, idleTimes[i]);
+			maxFrequency = Math.max(maxFrequency, frequencies[i]);
+			totalColdStartMillis += Math.max(1, managedDataSource.getColdStartMillis());
+			totalWeight += managedDataSource.getWeight();
+		}
+
+		double averageColdStartMillis = totalColdStartMillis / size;
+		double averageWeight = Math.max(1, totalWeight / size);
+		ManagedDataSource victim = null;
+		double victimScore = -1;
+		for (int i = 0; i < size; i++) {
+			double frequencyRetention = Math.log1p(frequencies[i]) / Math.log1p(maxFrequency);
+			double recencyRetention = maxIdleTime == 0 ? 1 : 1 - (double) idleTimes[i] / maxIdleTime;
+			double retention = (1 - recencyWeight) * frequencyRetention + recencyWeight * recencyRetention;
+			double costFactor = Math.max(1, managedDataSources[i].getColdStartMillis()) / averageColdStartMillis;
+			double weightFactor = Math.max(1, managedDataSources[i].getWeight()) / averageWeight;
+			double score = weightFactor / ((retention + 0.01) * costFactor);
+			if (score > victimScore) {
+				victim = managedDataSources[i];
+				victimScore = score;
+			}
+		}
+		return victim;
+	}
+}
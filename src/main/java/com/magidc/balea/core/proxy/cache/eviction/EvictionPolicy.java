@@ -0,0 +1,61 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.cache.eviction;
+
+import java.util.Collection;
+
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+
+/**
+ * Policy selecting which active data source is evicted when the cache reaches
+ * its number or weight limit. Accesses are not notified one by one, policies
+ * read access counters and times from managed data sources when a victim is
+ * needed
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public interface EvictionPolicy {
+
+	/**
+	 * Notifies a data source loaded into the cache (cache miss)
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param managedDataSource
+	 */
+	public void onLoad(ManagedDataSource managedDataSource);
+
+	/**
+	 * Notifies a data source removed from the cache for any reason
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param managedDataSource
+	 */
+	public void onRemoval(ManagedDataSource managedDataSource);
+
+	/**
+	 * Selects the data source to be evicted
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param candidates
+	 *            Evictable data sources, never empty
+	 * @return Data source to be evicted or null to evict none
+	 */
+	public ManagedDataSource selectVictim(Collection<ManagedDataSource> candidates);
+}
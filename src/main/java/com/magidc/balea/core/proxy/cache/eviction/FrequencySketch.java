@@ -0,0 +1,94 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.cache.eviction;
+
+/**
+ * Count-min sketch estimating access frequency of data source ids, including
+ * ids no longer cached. Counters are halved periodically so the estimation
+ * follows recent popularity (TinyLFU aging)
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class FrequencySketch {
+	private static final int[] SEEDS = { 0x97cb3127, 0xb7e15162, 0x8f1bbcdc, 0x6ed9eba1 };
+
+	private final int[][] table;
+	private final int mask;
+	private final long sampleSize;
+	private long additions;
+
+	public FrequencySketch(int expectedEntries) {
+		int width = Integer.highestOneBit(Math.max(16, expectedEntries * 4) - 1) << 1;
+		this.table = new int[SEEDS.length][width];
+		this.mask = width - 1;
+		this.sampleSize = 10L * width;
+	}
+
+	/**
+	 * Estimated frequency of a key
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param key
+	 * @return
+	 */
+	public synchronized int frequency(Object key) {
+		int hash = spread(key.hashCode());
+		int frequency = Integer.MAX_VALUE;
+		for (int row = 0; row < SEEDS.length; row++)
+			frequency = Math.min(frequency, table[row][index(hash, row)]);
+		return frequency;
+	}
+
+	/**
+	 * Adds a number of occurrences of a key
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param key
+	 * @param count
+	 */
+	public synchronized void increment(Object key, long count) {
+		int hash = spread(key.hashCode());
+		for (int row = 0; row < SEEDS.length; row++) {
+			int index = index(hash, row);
+			table[row][index] = (int) Math.min(Integer.MAX_VALUE, table[row][index] + count);
+		}
+		additions += count;
+		if (additions >= sampleSize)
+			reset();
+	}
+
+	private int index(int hash, int row) {
+		int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void reset() {
+		for (int[] row : table) {
+			for (int i = 0; i < row.length; i++)
+				row[i] >>>= 1;
+		}
+		additions >>>= 1;
+	}
+
+	private int spread(int hash) {
+		int h = hash * 0x85ebca6b;
+		return h ^ (h >>> 13);
+	}
+}
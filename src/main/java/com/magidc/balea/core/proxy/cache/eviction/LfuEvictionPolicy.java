@@ -0,0 +1,57 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.cache.eviction;
+
+import java.util.Collection;
+
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+
+/**
+ * Evicts the least frequently used data source since it was loaded, ties are
+ * broken by recency
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class LfuEvictionPolicy implements EvictionPolicy {
+
+	@Override
+	public void onLoad(ManagedDataSource managedDataSource) {
+	}
+
+	@Override
+	public void onRemoval(ManagedDataSource managedDataSource) {
+	}
+
+	@Override
+	public ManagedDataSource selectVictim(Collection<ManagedDataSource> candidates) {
+		long now = System.currentTimeMillis();
+		ManagedDataSource victim = null;
+		long victimAccessCount = Long.MAX_VALUE;
+		for (ManagedDataSource candidate : candidates) {
+			long accessCount = candidate.getAccessCount();
+			if (victim == null || accessCount < victimAccessCount
+					|| accessCount == victimAccessCount && candidate.refreshLastAccess(now) < victim.refreshLastAccess(now)) {
+				victim = candidate;
+				victimAccessCount = accessCount;
+			}
+		}
+		return victim;
+	}
+}
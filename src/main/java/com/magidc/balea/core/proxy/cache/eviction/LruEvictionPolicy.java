@@ -0,0 +1,57 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.cache.eviction;
+
+import java.util.Collection;
+
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+
+/**
+ * Evicts the least recently used data source. Recency resolution is the
+ * interval between cache sweeps and evictions, ties are broken by access count
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class LruEvictionPolicy implements EvictionPolicy {
+
+	@Override
+	public void onLoad(ManagedDataSource managedDataSource) {
+	}
+
+	@Override
+	public void onRemoval(ManagedDataSource managedDataSource) {
+	}
+
+	@Override
+	public ManagedDataSource selectVictim(Collection<ManagedDataSource> candidates) {
+		long now = System.currentTimeMillis();
+		ManagedDataSource victim = null;
+		long victimLastAccessMillis = Long.MAX_VALUE;
+		for (ManagedDataSource candidate : candidates) {
+			long lastAccessMillis = candidate.refreshLastAccess(now);
+			if (victim == null || lastAccessMillis < victimLastAccessMillis
+					|| lastAccessMillis == victimLastAccessMillis && candidate.getAccessCount() < victim.getAccessCount()) {
+				victim = candidate;
+				victimLastAccessMillis = lastAccessMillis;
+			}
+		}
+		return victim;
+	}
+}
@@ -0,0 +1,355 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.cache.model;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Connection handed out by the routing data source, holding a lease on its
+ * managed data source until it is closed, so the data source is neither
+ * evicted nor closed while it is in use. Its statements and metadata return
+ * it as their connection
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class LeasedConnection implements Connection {
+	private final ManagedDataSource managedDataSource;
+	private final Connection connection;
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	LeasedConnection(ManagedDataSource managedDataSource, Connection connection) {
+		this.managedDataSource = managedDataSource;
+		this.connection = connection;
+	}
+
+	@Override
+	public void abort(Executor executor) throws SQLException {
+		// Lease is released once even if the connection is closed concurrently
+		if (!closed.compareAndSet(false, true))
+			return;
+		try {
+			connection.abort(executor);
+		} finally {
+			managedDataSource.releaseLease();
+		}
+	}
+
+	private Connection checkOpen() throws SQLException {
+		if (closed.get())
+			throw new SQLException("Connection is closed");
+		return connection;
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		checkOpen().clearWarnings();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (!closed.compareAndSet(false, true))
+			return;
+		try {
+			connection.close();
+		} finally {
+			managedDataSource.releaseLease();
+		}
+	}
+
+	@Override
+	public void commit() throws SQLException {
+		checkOpen().commit();
+	}
+
+	@Override
+	public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+		return checkOpen().createArrayOf(typeName, elements);
+	}
+
+	@Override
+	public Blob createBlob() throws SQLException {
+		return checkOpen().createBlob();
+	}
+
+	@Override
+	public Clob createClob() throws SQLException {
+		return checkOpen().createClob();
+	}
+
+	@Override
+	public NClob createNClob() throws SQLException {
+		return checkOpen().createNClob();
+	}
+
+	@Override
+	public SQLXML createSQLXML() throws SQLException {
+		return checkOpen().createSQLXML();
+	}
+
+	@Override
+	public Statement createStatement() throws SQLException {
+		return LeasedResourceHandler.createResource(this, Statement.class, checkOpen().createStatement());
+	}
+
+	@Override
+	public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+		return LeasedResourceHandler.createResource(this, Statement.class, checkOpen().createStatement(resultSetType, resultSetConcurrency));
+	}
+
+	@Override
+	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return LeasedResourceHandler.createResource(this, Statement.class, checkOpen().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+	}
+
+	@Override
+	public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+		return checkOpen().createStruct(typeName, attributes);
+	}
+
+	@Override
+	public boolean getAutoCommit() throws SQLException {
+		return checkOpen().getAutoCommit();
+	}
+
+	@Override
+	public String getCatalog() throws SQLException {
+		return checkOpen().getCatalog();
+	}
+
+	@Override
+	public Properties getClientInfo() throws SQLException {
+		return checkOpen().getClientInfo();
+	}
+
+	@Override
+	public String getClientInfo(String name) throws SQLException {
+		return checkOpen().getClientInfo(name);
+	}
+
+	@Override
+	public int getHoldability() throws SQLException {
+		return checkOpen().getHoldability();
+	}
+
+	@Override
+	public DatabaseMetaData getMetaData() throws SQLException {
+		return LeasedResourceHandler.createResource(this, DatabaseMetaData.class, checkOpen().getMetaData());
+	}
+
+	@Override
+	public int getNetworkTimeout() throws SQLException {
+		return checkOpen().getNetworkTimeout();
+	}
+
+	@Override
+	public String getSchema() throws SQLException {
+		return checkOpen().getSchema();
+	}
+
+	@Override
+	public int getTransactionIsolation() throws SQLException {
+		return checkOpen().getTransactionIsolation();
+	}
+
+	@Override
+	public Map<String, Class<?>> getTypeMap() throws SQLException {
+		return checkOpen().getTypeMap();
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		return checkOpen().getWarnings();
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return closed.get();
+	}
+
+	@Override
+	public boolean isReadOnly() throws SQLException {
+		return checkOpen().isReadOnly();
+	}
+
+	@Override
+	public boolean isValid(int timeout) throws SQLException {
+		return !closed.get() && connection.isValid(timeout);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || checkOpen().isWrapperFor(iface);
+	}
+
+	@Override
+	public String nativeSQL(String sql) throws SQLException {
+		return checkOpen().nativeSQL(sql);
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql) throws SQLException {
+		return LeasedResourceHandler.createResource(this, CallableStatement.class, checkOpen().prepareCall(sql));
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return LeasedResourceHandler.createResource(this, CallableStatement.class, checkOpen().prepareCall(sql, resultSetType, resultSetConcurrency));
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return LeasedResourceHandler.createResource(this, CallableStatement.class, checkOpen().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return LeasedResourceHandler.createResource(this, PreparedStatement.class, checkOpen().prepareStatement(sql));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+		return LeasedResourceHandler.createResource(this, PreparedStatement.class, checkOpen().prepareStatement(sql, columnNames));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		return LeasedResourceHandler.createResource(this, PreparedStatement.class, checkOpen().prepareStatement(sql, autoGeneratedKeys));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return LeasedResourceHandler.createResource(this, PreparedStatement.class, checkOpen().prepareStatement(sql, resultSetType, resultSetConcurrency));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return LeasedResourceHandler.createResource(this, PreparedStatement.class, checkOpen().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+		return LeasedResourceHandler.createResource(this, PreparedStatement.class, checkOpen().prepareStatement(sql, columnIndexes));
+	}
+
+	@Override
+	public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+		checkOpen().releaseSavepoint(savepoint);
+	}
+
+	@Override
+	public void rollback() throws SQLException {
+		checkOpen().rollback();
+	}
+
+	@Override
+	public void rollback(Savepoint savepoint) throws SQLException {
+		checkOpen().rollback(savepoint);
+	}
+
+	@Override
+	public void setAutoCommit(boolean autoCommit) throws SQLException {
+		checkOpen().setAutoCommit(autoCommit);
+	}
+
+	@Override
+	public void setCatalog(String catalog) throws SQLException {
+		checkOpen().setCatalog(catalog);
+	}
+
+	@Override
+	public void setClientInfo(Properties properties) throws SQLClientInfoException {
+		if (closed.get())
+			throw new SQLClientInfoException("Connection is closed", null);
+		connection.setClientInfo(properties);
+	}
+
+	@Override
+	public void setClientInfo(String name, String value) throws SQLClientInfoException {
+		if (closed.get())
+			throw new SQLClientInfoException("Connection is closed", null);
+		connection.setClientInfo(name, value);
+	}
+
+	@Override
+	public void setHoldability(int holdability) throws SQLException {
+		checkOpen().setHoldability(holdability);
+	}
+
+	@Override
+	public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+		checkOpen().setNetworkTimeout(executor, milliseconds);
+	}
+
+	@Override
+	public void setReadOnly(boolean readOnly) throws SQLException {
+		checkOpen().setReadOnly(readOnly);
+	}
+
+	@Override
+	public Savepoint setSavepoint() throws SQLException {
+		return checkOpen().setSavepoint();
+	}
+
+	@Override
+	public Savepoint setSavepoint(String name) throws SQLException {
+		return checkOpen().setSavepoint(name);
+	}
+
+	@Override
+	public void setSchema(String schema) throws SQLException {
+		checkOpen().setSchema(schema);
+	}
+
+	@Override
+	public void setTransactionIsolation(int level) throws SQLException {
+		checkOpen().setTransactionIsolation(level);
+	}
+
+	@Override
+	public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+		checkOpen().setTypeMap(map);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this))
+			return (T) this;
+		return checkOpen().unwrap(iface);
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.cache.model;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Statement or database metadata obtained through a {@link LeasedConnection}.
+ * Its connection is the leased connection instead of the physical connection,
+ * so it cannot be closed without releasing its lease
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+class LeasedResourceHandler implements InvocationHandler {
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param leasedConnection
+	 * @param resourceType
+	 * @param resource
+	 * @return Proxy of the resource, null if resource is null
+	 */
+	static <T> T createResource(LeasedConnection leasedConnection, Class<T> resourceType, T resource) {
+		if (resource == null)
+			return null;
+		return resourceType.cast(Proxy.newProxyInstance(LeasedResourceHandler.class.getClassLoader(), new Class<?>[] { resourceType },
+				new LeasedResourceHandler(leasedConnection, resource)));
+	}
+
+	private final LeasedConnection leasedConnection;
+	private final Object resource;
+
+	private LeasedResourceHandler(LeasedConnection leasedConnection, Object resource) {
+		this.leasedConnection = leasedConnection;
+		this.resource = resource;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		switch (method.getName()) {
+		case "getConnection":
+			return leasedConnection;
+		case "equals":
+			return proxy == args[0];
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		default:
+			break;
+		}
+		try {
+			return method.invoke(resource, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -18,7 +18,11 @@
  */
 package com.magidc.balea.core.proxy.cache.model;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.sql.DataSource;
 
@@ -31,8 +35,15 @@ import javax.sql.DataSource;
 public class ManagedDataSource {
 	private Object dataSourceId;
 	private DataSource dataSource;
-	private Date lastAccess = new Date();
+	private volatile long lastAccessMillis = System.currentTimeMillis();
 	private Date addedOn = new Date();
+	private final LongAdder accessCount = new LongAdder();
+	private long lastAccessCount;
+	private long coldStartMillis;
+	private long weight = 1;
+	private volatile boolean pinned;
+	private final AtomicInteger leasedConnections = new AtomicInteger();
+	private long loadGeneration;
 
 	public ManagedDataSource(Object dataSourceId, DataSource dataSource) {
 		super();
@@ -40,10 +51,55 @@ public class ManagedDataSource {
 		this.dataSourceId = dataSourceId;
 	}
 
+	/**
+	 * Counts a connection about to be opened, so evictions deciding meanwhile see
+	 * it. It must be followed by {@link #openLeasedConnection(String, String)} or
+	 * {@link #releaseLease()}
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void acquireLease() {
+		leasedConnections.incrementAndGet();
+	}
+
+	/**
+	 * Waits for the leased connections to be closed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param timeoutMillis
+	 * @return False if there are leased connections yet after the timeout
+	 * @throws InterruptedException
+	 */
+	public synchronized boolean awaitLeasesReleased(long timeoutMillis) throws InterruptedException {
+		long deadlineMillis = System.currentTimeMillis() + timeoutMillis;
+		long remainingMillis;
+		while (leasedConnections.get() > 0) {
+			remainingMillis = deadlineMillis - System.currentTimeMillis();
+			if (remainingMillis <= 0)
+				return false;
+			wait(remainingMillis);
+		}
+		return true;
+	}
+
+	public long getAccessCount() {
+		return accessCount.sum();
+	}
+
 	public Date getAddedOn() {
 		return addedOn;
 	}
 
+	/**
+	 * Time spent obtaining the data source when it was loaded into the cache
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public long getColdStartMillis() {
+		return coldStartMillis;
+	}
+
 	public DataSource getDataSource() {
 		return dataSource;
 	}
@@ -53,13 +109,116 @@ public class ManagedDataSource {
 	}
 
 	public Date getLastAccess() {
-		return lastAccess;
+		return new Date(lastAccessMillis);
+	}
+
+	public long getLastAccessMillis() {
+		return lastAccessMillis;
+	}
+
+	/**
+	 * Connections handed out and not closed yet
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public int getLeasedConnections() {
+		return leasedConnections.get();
+	}
+
+	/**
+	 * Generation of the load of the data source, telling apart a data source
+	 * being closed from a later load of the same data source id
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public long getLoadGeneration() {
+		return loadGeneration;
+	}
+
+	public long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Pinned data sources never expire nor are evicted
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public boolean isPinned() {
+		return pinned;
+	}
+
+	/**
+	 * Opens a connection under a lease acquired by {@link #acquireLease()}, leased
+	 * until it is closed. The lease is released if it cannot be opened
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param username
+	 *            Null for the default user
+	 * @param password
+	 * @return
+	 * @throws SQLException
+	 */
+	public Connection openLeasedConnection(String username, String password) throws SQLException {
+		try {
+			return new LeasedConnection(this, username == null ? dataSource.getConnection() : dataSource.getConnection(username, password));
+		} catch (SQLException | RuntimeException e) {
+			releaseLease();
+			throw e;
+		}
+	}
+
+	/**
+	 * Records an access to the data source. Access time is not read on every
+	 * access, it is resolved periodically by {@link #refreshLastAccess(long)}
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void recordAccess() {
+		accessCount.increment();
+	}
+
+	/**
+	 * Updates last access time if the data source has been accessed since the
+	 * previous refresh
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param nowMillis
+	 *            Current time in milliseconds
+	 * @return Last access time in milliseconds
+	 */
+	public synchronized long refreshLastAccess(long nowMillis) {
+		long currentAccessCount = accessCount.sum();
+		if (currentAccessCount != lastAccessCount) {
+			lastAccessCount = currentAccessCount;
+			lastAccessMillis = nowMillis;
+		}
+		return lastAccessMillis;
+	}
+
+	/**
+	 * Releases a lease of a connection closed or not opened
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void releaseLease() {
+		if (leasedConnections.decrementAndGet() == 0)
+			synchronized (this) {
+				notifyAll();
+			}
 	}
 
 	public void setAddedOn(Date addedOn) {
 		this.addedOn = addedOn;
 	}
 
+	public void setColdStartMillis(long coldStartMillis) {
+		this.coldStartMillis = coldStartMillis;
+	}
+
 	public void setDataSource(DataSource dataSource) {
 		this.dataSource = dataSource;
 	}
@@ -69,6 +228,22 @@ public class ManagedDataSource {
 	}
 
 	public void setLastAccess(Date lastAccess) {
-		this.lastAccess = lastAccess;
+		this.lastAccessMillis = lastAccess.getTime();
+	}
+
+	public void setLastAccessMillis(long lastAccessMillis) {
+		this.lastAccessMillis = lastAccessMillis;
+	}
+
+	public void setLoadGeneration(long loadGeneration) {
+		this.loadGeneration = loadGeneration;
+	}
+
+	public void setPinned(boolean pinned) {
+		this.pinned = pinned;
+	}
+
+	public void setWeight(long weight) {
+		this.weight = weight;
 	}
 }
@@ -19,6 +19,8 @@
 package com.magidc.balea.core.proxy.factory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import javax.sql.DataSource;
@@ -26,7 +28,12 @@ import javax.sql.DataSource;
 import com.github.dockerjava.api.exception.DockerException;
 import com.magidc.balea.core.container.DataSourceContainerManager;
 import com.magidc.balea.core.core.config.DataSourceConfigurer;
+import com.magidc.balea.core.proxy.AsyncDataSource;
 import com.magidc.balea.core.proxy.DataSourceMethodHandler;
+import com.magidc.balea.core.proxy.FederatedDataSource;
+import com.magidc.balea.core.proxy.cache.DataSourceCacheManager;
+import com.magidc.balea.core.proxy.cache.config.DataSourceCacheManagerConfigurer;
+import com.magidc.balea.core.proxy.cache.config.DataSourceCacheParameters;
 
 import javassist.util.proxy.Proxy;
 import javassist.util.proxy.ProxyFactory;
@@ -37,16 +44,77 @@ import javassist.util.proxy.ProxyFactory;
  * @author magidc <info@magidc.io>
  **/
 public abstract class RoutingDataSourceFactory {
-	@SuppressWarnings("unchecked")
+	/**
+	 * Creates a routing data source over data sources provided by a cache manager
+	 * configurer
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceType
+	 * @param defaultDataSourceId
+	 * @param dataSourceCacheManagerConfigurer
+	 * @param dataSourceConfigurer
+	 * @param cacheExpiringTimeMillis
+	 * @return
+	 * @throws InstantiationException
+	 * @throws IllegalAccessException
+	 */
+	public static <T extends DataSource> T createRoutingDataSource(Class<T> dataSourceType, Object defaultDataSourceId,
+			DataSourceCacheManagerConfigurer dataSourceCacheManagerConfigurer, DataSourceConfigurer dataSourceConfigurer, Long cacheExpiringTimeMillis)
+			throws InstantiationException, IllegalAccessException {
+		return createRoutingDataSource(dataSourceType,
+				new DataSourceMethodHandler(defaultDataSourceId, new DataSourceCacheManager(dataSourceCacheManagerConfigurer, cacheExpiringTimeMillis),
+						dataSourceConfigurer));
+	}
+
+	/**
+	 * Creates a routing data source over Docker based data sources
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceType
+	 * @param defaultDataSourceId
+	 * @param dataSourceContainerManager
+	 * @param dataSourceConfigurer
+	 * @param dataSourceCacheParameters
+	 *            Expiration, limits and eviction policy of active data sources
+	 * @return
+	 * @throws DockerException
+	 * @throws InterruptedException
+	 * @throws IOException
+	 * @throws ExecutionException
+	 * @throws InstantiationException
+	 * @throws IllegalAccessException
+	 */
+	public static <T extends DataSource> T createRoutingDataSource(Class<T> dataSourceType, Object defaultDataSourceId, DataSourceContainerManager dataSourceContainerManager,
+			DataSourceConfigurer dataSourceConfigurer, DataSourceCacheParameters dataSourceCacheParameters)
+			throws DockerException, InterruptedException, IOException, ExecutionException, InstantiationException, IllegalAccessException {
+		return createRoutingDataSource(dataSourceType,
+				new DataSourceMethodHandler(defaultDataSourceId, dataSourceContainerManager, dataSourceConfigurer, dataSourceCacheParameters));
+	}
+
 	public static <T extends DataSource> T createRoutingDataSource(Class<T> dataSourceType, Object defaultDataSourceId, DataSourceContainerManager dataSourceContainerManager,
 			DataSourceConfigurer dataSourceConfigurer, Long cacheExpiringTimeMillis)
 			throws DockerException, InterruptedException, IOException, ExecutionException, InstantiationException, IllegalAccessException {
+		return createRoutingDataSource(dataSourceType, defaultDataSourceId, dataSourceContainerManager, dataSourceConfigurer,
+				new DataSourceCacheParameters(cacheExpiringTimeMillis));
+	}
 
+	@SuppressWarnings("unchecked")
+	private static <T extends DataSource> T createRoutingDataSource(Class<T> dataSourceType, DataSourceMethodHandler dataSourceMethodHandler)
+			throws InstantiationException, IllegalAccessException {
 		ProxyFactory proxyFactory = new ProxyFactory();
 		proxyFactory.setSuperclass(dataSourceType);
+		// Routing data sources can be cast to AsyncDataSource for non blocking
+		// connection acquisition and to FederatedDataSource for queries in several
+		// data sources
+		List<Class<?>> interfaces = new ArrayList<>();
+		for (Class<?> routingInterface : new Class<?>[] { AsyncDataSource.class, FederatedDataSource.class })
+			if (!routingInterface.isAssignableFrom(dataSourceType))
+				interfaces.add(routingInterface);
+		if (!interfaces.isEmpty())
+			proxyFactory.setInterfaces(interfaces.toArray(new Class<?>[interfaces.size()]));
 		Class<T> proxyClass = proxyFactory.createClass();
 		T proxy = proxyClass.newInstance();
-		((Proxy) proxy).setHandler(new DataSourceMethodHandler(defaultDataSourceId, dataSourceContainerManager, dataSourceConfigurer, cacheExpiringTimeMillis));
+		((Proxy) proxy).setHandler(dataSourceMethodHandler);
 
 		return proxy;
 	}
@@ -0,0 +1,96 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.federation;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Aggregate function computed by each data source of a federated query, whose
+ * partial results are combined into the global result. Only functions whose
+ * partial results combine directly are supported, others (i.e. average) must
+ * be derived by the caller from them
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public enum Aggregation {
+	/**
+	 * Partial counts are added up
+	 */
+	COUNT,
+	/**
+	 * Partial sums are added up
+	 */
+	SUM,
+	/**
+	 * Minimum of partial minimums
+	 */
+	MIN,
+	/**
+	 * Maximum of partial maximums
+	 */
+	MAX;
+
+	private static Number add(Number value, Number otherValue) {
+		if (value instanceof BigDecimal || value instanceof BigInteger || otherValue instanceof BigDecimal || otherValue instanceof BigInteger)
+			return toBigDecimal(value).add(toBigDecimal(otherValue));
+		if (isIntegral(value) && isIntegral(otherValue))
+			return value.longValue() + otherValue.longValue();
+		return value.doubleValue() + otherValue.doubleValue();
+	}
+
+	private static boolean isIntegral(Number value) {
+		return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+	}
+
+	private static BigDecimal toBigDecimal(Number value) {
+		if (value instanceof BigDecimal)
+			return (BigDecimal) value;
+		if (value instanceof BigInteger)
+			return new BigDecimal((BigInteger) value);
+		return isIntegral(value) ? BigDecimal.valueOf(value.longValue()) : BigDecimal.valueOf(value.doubleValue());
+	}
+
+	/**
+	 * Combines two partial results. Null values (i.e. aggregates of data sources
+	 * without rows) are ignored, as SQL aggregate functions do
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param value
+	 * @param otherValue
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public Object combine(Object value, Object otherValue) {
+		if (value == null)
+			return otherValue;
+		if (otherValue == null)
+			return value;
+		switch (this) {
+		case COUNT:
+		case SUM:
+			return add((Number) value, (Number) otherValue);
+		case MIN:
+			return ((Comparable<Object>) value).compareTo(otherValue) <= 0 ? value : otherValue;
+		default:
+			return ((Comparable<Object>) value).compareTo(otherValue) >= 0 ? value : otherValue;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.federation;
+
+import java.sql.SQLException;
+
+/**
+ * Outcome of the statements of a sharded batch in one data source
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class BatchResult {
+	private final Object dataSourceId;
+	private final int[] updateCounts;
+	private final SQLException failure;
+
+	BatchResult(Object dataSourceId, int[] updateCounts, SQLException failure) {
+		this.dataSourceId = dataSourceId;
+		this.updateCounts = updateCounts;
+		this.failure = failure;
+	}
+
+	public Object getDataSourceId() {
+		return dataSourceId;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Failure of the data source, null if every statement succeeded
+	 */
+	public SQLException getFailure() {
+		return failure;
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Update count of each statement executed, in the order they were
+	 *         given. Empty if the data source could not be obtained
+	 */
+	public int[] getUpdateCounts() {
+		return updateCounts;
+	}
+
+	public boolean isSucceeded() {
+		return failure == null;
+	}
+}
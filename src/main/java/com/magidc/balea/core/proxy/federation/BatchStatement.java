@@ -0,0 +1,57 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.federation;
+
+/**
+ * Statement of a sharded batch, executed in the data source it is tagged with
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class BatchStatement {
+	private final Object dataSourceId;
+	private final String sql;
+	private final Object[] parameters;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param sql
+	 *            Statement, with a placeholder for each parameter
+	 * @param parameters
+	 */
+	public BatchStatement(Object dataSourceId, String sql, Object... parameters) {
+		this.dataSourceId = dataSourceId;
+		this.sql = sql;
+		this.parameters = parameters;
+	}
+
+	public Object getDataSourceId() {
+		return dataSourceId;
+	}
+
+	public Object[] getParameters() {
+		return parameters;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+}
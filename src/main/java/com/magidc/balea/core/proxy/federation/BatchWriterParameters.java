@@ -0,0 +1,76 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.federation;
+
+/**
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class BatchWriterParameters {
+	private int writerThreads = 8;
+	private int maximumBatchSize = 1000;
+	private boolean transactional = true;
+
+	public int getMaximumBatchSize() {
+		return maximumBatchSize;
+	}
+
+	public int getWriterThreads() {
+		return writerThreads;
+	}
+
+	public boolean isTransactional() {
+		return transactional;
+	}
+
+	/**
+	 * Maximum statements sent to a data source in a single JDBC batch
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param maximumBatchSize
+	 */
+	public void setMaximumBatchSize(int maximumBatchSize) {
+		this.maximumBatchSize = maximumBatchSize;
+	}
+
+	/**
+	 * Whether statements of each data source are committed together, so a failure
+	 * rolls back every statement of that data source. Otherwise statements
+	 * executed before a failure are kept
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param transactional
+	 */
+	public void setTransactional(boolean transactional) {
+		this.transactional = transactional;
+	}
+
+	/**
+	 * Maximum number of data sources written at the same time across every
+	 * sharded batch. Data sources are started in the cold start executor of the
+	 * cache manager
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param writerThreads
+	 */
+	public void setWriterThreads(int writerThreads) {
+		this.writerThreads = writerThreads;
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.federation;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.magidc.balea.core.proxy.cache.DataSourceCacheManager;
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+import com.magidc.balea.core.proxy.federation.FederatedResultSet.Shard;
+
+/**
+ * Executes the same statement in several data sources at once. Data sources
+ * that are not active are started in parallel and the statement is executed in
+ * each one as soon as it is ready, with bounded concurrency, so a federated
+ * query takes about as long as its slowest data source
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class FederatedQueryExecutor {
+	private final DataSourceCacheManager dataSourceCacheManager;
+	private final FederatedQueryParameters federatedQueryParameters;
+	private final ExecutorService queryExecutor;
+
+	public FederatedQueryExecutor(DataSourceCacheManager dataSourceCacheManager, FederatedQueryParameters federatedQueryParameters) {
+		this.dataSourceCacheManager = dataSourceCacheManager;
+		this.federatedQueryParameters = federatedQueryParameters;
+		this.queryExecutor = Executors.newFixedThreadPool(Math.max(1, federatedQueryParameters.getQueryThreads()),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-federated-query-%d").build());
+	}
+
+	/**
+	 * Executes an aggregate statement in several data sources, combining their
+	 * partial aggregates (i.e.
+	 * <code>SELECT count(*), max(created_on) FROM orders</code> with
+	 * {@link Aggregation#COUNT} and {@link Aggregation#MAX}). Aggregates are
+	 * computed by each data source, but the statement is not rewritten: it must
+	 * already return one row of partial aggregates that combine as they are, so
+	 * averages must be queried as a sum and a count and divided by the caller, and
+	 * grouped aggregates are not supported. The combined values are returned as a
+	 * single row instead of a result set
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceIds
+	 * @param sql
+	 * @param aggregations
+	 *            Aggregate function of each column of the statement
+	 * @return Combined value of each column
+	 * @throws SQLException
+	 */
+	public Object[] executeAggregateQuery(Collection<?> dataSourceIds, String sql, Aggregation... aggregations) throws SQLException {
+		Object[] values = new Object[aggregations.length];
+		try (FederatedResultSet resultSet = executeQuery(dataSourceIds, sql)) {
+			while (resultSet.next())
+				for (int i = 0; i < aggregations.length; i++)
+					values[i] = aggregations[i].combine(values[i], resultSet.getObject(i + 1));
+		}
+		return values;
+	}
+
+	/**
+	 * Executes a statement in several data sources, merging their rows. The
+	 * returned result set must be closed to release the connections of the data
+	 * sources
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceIds
+	 * @param sql
+	 * @param sortColumns
+	 *            Columns rows of every data source are sorted by, merged rows keep
+	 *            that order. Without sort columns rows are returned in any order
+	 * @return
+	 */
+	public FederatedResultSet executeQuery(Collection<?> dataSourceIds, String sql, SortColumn... sortColumns) {
+		List<CompletableFuture<Shard>> shards = new ArrayList<>(dataSourceIds.size());
+		for (Object dataSourceId : new LinkedHashSet<>(dataSourceIds)) {
+			dataSourceCacheManager.getMetricsRecorder().recordDataSourceRequest(dataSourceId);
+			shards.add(dataSourceCacheManager.getManagedDataSourceAsync(dataSourceId)
+					.thenApplyAsync(managedDataSource -> openShard(dataSourceId, managedDataSource, sql), queryExecutor));
+		}
+		return new FederatedResultSet(shards, sortColumns);
+	}
+
+	private Shard openShard(Object dataSourceId, ManagedDataSource managedDataSource, String sql) {
+		Connection connection = null;
+		boolean autoCommitDisabled = false;
+		try {
+			connection = dataSourceCacheManager.tryLeaseConnection(managedDataSource, null, null);
+			if (connection == null)
+				connection = dataSourceCacheManager.leaseConnection(dataSourceId, null, null);
+			// Drivers as PostgreSQL only stream results with a fetch size inside a
+			// transaction
+			if (federatedQueryParameters.getFetchSize() > 0 && connection.getAutoCommit()) {
+				connection.setAutoCommit(false);
+				autoCommitDisabled = true;
+			}
+			Statement statement = connection.createStatement();
+			if (federatedQueryParameters.getFetchSize() > 0)
+				statement.setFetchSize(federatedQueryParameters.getFetchSize());
+			if (federatedQueryParameters.getQueryTimeoutSeconds() > 0)
+				statement.setQueryTimeout(federatedQueryParameters.getQueryTimeoutSeconds());
+			return new Shard(dataSourceId, connection, statement, statement.executeQuery(sql), autoCommitDisabled);
+		} catch (SQLException e) {
+			if (connection != null)
+				try {
+					if (autoCommitDisabled) {
+						connection.rollback();
+						connection.setAutoCommit(true);
+					}
+				} catch (SQLException restoreException) {
+					e.addSuppressed(restoreException);
+				} finally {
+					try {
+						connection.close();
+					} catch (SQLException closeException) {
+						e.addSuppressed(closeException);
+					}
+				}
+			throw new CompletionException(new SQLException(String.format("Federated query failed in data source %s", dataSourceId), e));
+		}
+	}
+
+	/**
+	 * Stops the threads executing federated queries
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void shutdown() {
+		queryExecutor.shutdownNow();
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.federation;
+
+/**
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class FederatedQueryParameters {
+	private int queryThreads = 8;
+	private int fetchSize = 1000;
+	private int queryTimeoutSeconds = 0;
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	public int getQueryThreads() {
+		return queryThreads;
+	}
+
+	public int getQueryTimeoutSeconds() {
+		return queryTimeoutSeconds;
+	}
+
+	/**
+	 * Rows fetched from each data source per round trip, so rows are streamed
+	 * instead of loaded at once. Some drivers (i.e. PostgreSQL) only stream rows
+	 * out of auto-commit mode, so connections of federated queries are switched to
+	 * manual commit. Zero uses the default of the driver and keeps auto-commit
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param fetchSize
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Maximum number of statements being executed at the same time across every
+	 * federated query. Data sources are started in the cold start executor of the
+	 * cache manager
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param queryThreads
+	 */
+	public void setQueryThreads(int queryThreads) {
+		this.queryThreads = queryThreads;
+	}
+
+	/**
+	 * Query timeout of the statement in each data source. Zero for no timeout
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param queryTimeoutSeconds
+	 */
+	public void setQueryTimeoutSeconds(int queryTimeoutSeconds) {
+		this.queryTimeoutSeconds = queryTimeoutSeconds;
+	}
+}
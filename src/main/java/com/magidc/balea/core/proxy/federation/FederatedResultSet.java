@@ -0,0 +1,1287 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.federation;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Forward only, read only result set merging the results of the same statement
+ * executed in several data sources. Rows are streamed from the data sources as
+ * they are read: without sort columns, data sources are read one after another
+ * in the order their statements finish, otherwise rows are merged in the order
+ * of the sort columns, which every data source must return its rows sorted by.
+ * Getters read the current row of the data source it comes from. Metadata is
+ * the one of the first data source opened, available before the first row
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class FederatedResultSet implements ResultSet {
+	/**
+	 * Open statement of a federated query in a data source
+	 * 
+	 * @author magidc <info@magidc.io>
+	 *
+	 */
+	static final class Shard {
+		private final Object dataSourceId;
+		private final Connection connection;
+		private final Statement statement;
+		private final ResultSet resultSet;
+		// Copied when the shard is opened, so it is not read concurrently with rows
+		private final FederatedResultSetMetaData metaData;
+		// Auto commit disabled to stream the results, restored when closed
+		private final boolean autoCommitDisabled;
+		private Object[] sortKey;
+		private boolean closed;
+
+		Shard(Object dataSourceId, Connection connection, Statement statement, ResultSet resultSet, boolean autoCommitDisabled) throws SQLException {
+			this.dataSourceId = dataSourceId;
+			this.connection = connection;
+			this.statement = statement;
+			this.resultSet = resultSet;
+			this.metaData = new FederatedResultSetMetaData(resultSet.getMetaData());
+			this.autoCommitDisabled = autoCommitDisabled;
+		}
+
+		/**
+		 * Closes every resource even if closing a previous one fails, ending the
+		 * read transaction before the connection is returned
+		 * 
+		 * @author magidc <info@magidc.io>
+		 */
+		private synchronized void close() {
+			if (closed)
+				return;
+			closed = true;
+			try {
+				resultSet.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+			if (autoCommitDisabled) {
+				try {
+					connection.rollback();
+					connection.setAutoCommit(true);
+				} catch (SQLException e) {
+					e.printStackTrace();
+				}
+			}
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static final String READ_ONLY_MESSAGE = "Federated result sets are read only";
+	private static final String FORWARD_ONLY_MESSAGE = "Federated result sets are forward only";
+
+	@SuppressWarnings("unchecked")
+	private static int compareValues(Object value, Object otherValue) {
+		// Nulls are sorted last in ascending order, as PostgreSQL does
+		if (value == null)
+			return otherValue == null ? 0 : 1;
+		if (otherValue == null)
+			return -1;
+		return ((Comparable<Object>) value).compareTo(otherValue);
+	}
+
+	private final List<CompletableFuture<Shard>> shards;
+	private final BlockingQueue<CompletableFuture<Shard>> completedShards = new LinkedBlockingQueue<>();
+	private final SortColumn[] sortColumns;
+	// Metadata of the first data source opened, or failure of the first data
+	// source failing before
+	private final CompletableFuture<FederatedResultSetMetaData> metaData = new CompletableFuture<>();
+	private PriorityQueue<Shard> sortedShards;
+	private int pendingShards;
+	private Shard currentShard;
+	private int row;
+	private int fetchSize;
+	private boolean afterLast;
+	private volatile boolean closed;
+
+	FederatedResultSet(List<CompletableFuture<Shard>> shards, SortColumn[] sortColumns) {
+		this.shards = shards;
+		this.sortColumns = sortColumns;
+		this.pendingShards = shards.size();
+		for (CompletableFuture<Shard> shard : shards)
+			shard.whenComplete((openedShard, e) -> {
+				if (e != null)
+					metaData.completeExceptionally(e);
+				else
+					metaData.complete(openedShard.metaData);
+				completedShards.add(shard);
+			});
+		if (shards.isEmpty())
+			metaData.complete(new FederatedResultSetMetaData());
+	}
+
+	@Override
+	public boolean absolute(int row) throws SQLException {
+		throw new SQLFeatureNotSupportedException(FORWARD_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void afterLast() throws SQLException {
+		throw new SQLFeatureNotSupportedException(FORWARD_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void beforeFirst() throws SQLException {
+		throw new SQLFeatureNotSupportedException(FORWARD_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void cancelRowUpdates() throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	private void checkOpen() throws SQLException {
+		if (closed)
+			throw new SQLException("Federated result set is closed");
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		checkOpen();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (closed)
+			return;
+		closed = true;
+		// Shards still being opened are closed as soon as they are
+		for (CompletableFuture<Shard> shard : shards)
+			shard.thenAccept(Shard::close);
+	}
+
+	private int compareSortKeys(Shard shard, Shard otherShard) {
+		for (int i = 0; i < sortColumns.length; i++) {
+			int comparison = compareValues(shard.sortKey[i], otherShard.sortKey[i]);
+			if (comparison != 0)
+				return sortColumns[i].isDescending() ? -comparison : comparison;
+		}
+		return 0;
+	}
+
+	private ResultSet currentRow() throws SQLException {
+		checkOpen();
+		if (currentShard == null)
+			throw new SQLException("Federated result set is not positioned on a row");
+		return currentShard.resultSet;
+	}
+
+	@Override
+	public void deleteRow() throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public int findColumn(String columnLabel) throws SQLException {
+		return getFederatedMetaData().findColumn(columnLabel);
+	}
+
+	@Override
+	public boolean first() throws SQLException {
+		throw new SQLFeatureNotSupportedException(FORWARD_ONLY_MESSAGE);
+	}
+
+	@Override
+	public Array getArray(String columnLabel) throws SQLException {
+		return currentRow().getArray(columnLabel);
+	}
+
+	@Override
+	public Array getArray(int columnIndex) throws SQLException {
+		return currentRow().getArray(columnIndex);
+	}
+
+	@Override
+	public InputStream getAsciiStream(String columnLabel) throws SQLException {
+		return currentRow().getAsciiStream(columnLabel);
+	}
+
+	@Override
+	public InputStream getAsciiStream(int columnIndex) throws SQLException {
+		return currentRow().getAsciiStream(columnIndex);
+	}
+
+	@Override
+	public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+		return currentRow().getBigDecimal(columnLabel);
+	}
+
+	@Deprecated
+	@Override
+	public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
+		return currentRow().getBigDecimal(columnLabel, scale);
+	}
+
+	@Override
+	public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+		return currentRow().getBigDecimal(columnIndex);
+	}
+
+	@Deprecated
+	@Override
+	public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
+		return currentRow().getBigDecimal(columnIndex, scale);
+	}
+
+	@Override
+	public InputStream getBinaryStream(String columnLabel) throws SQLException {
+		return currentRow().getBinaryStream(columnLabel);
+	}
+
+	@Override
+	public InputStream getBinaryStream(int columnIndex) throws SQLException {
+		return currentRow().getBinaryStream(columnIndex);
+	}
+
+	@Override
+	public Blob getBlob(String columnLabel) throws SQLException {
+		return currentRow().getBlob(columnLabel);
+	}
+
+	@Override
+	public Blob getBlob(int columnIndex) throws SQLException {
+		return currentRow().getBlob(columnIndex);
+	}
+
+	@Override
+	public boolean getBoolean(String columnLabel) throws SQLException {
+		return currentRow().getBoolean(columnLabel);
+	}
+
+	@Override
+	public boolean getBoolean(int columnIndex) throws SQLException {
+		return currentRow().getBoolean(columnIndex);
+	}
+
+	@Override
+	public byte getByte(String columnLabel) throws SQLException {
+		return currentRow().getByte(columnLabel);
+	}
+
+	@Override
+	public byte getByte(int columnIndex) throws SQLException {
+		return currentRow().getByte(columnIndex);
+	}
+
+	@Override
+	public byte[] getBytes(String columnLabel) throws SQLException {
+		return currentRow().getBytes(columnLabel);
+	}
+
+	@Override
+	public byte[] getBytes(int columnIndex) throws SQLException {
+		return currentRow().getBytes(columnIndex);
+	}
+
+	@Override
+	public Reader getCharacterStream(String columnLabel) throws SQLException {
+		return currentRow().getCharacterStream(columnLabel);
+	}
+
+	@Override
+	public Reader getCharacterStream(int columnIndex) throws SQLException {
+		return currentRow().getCharacterStream(columnIndex);
+	}
+
+	@Override
+	public Clob getClob(String columnLabel) throws SQLException {
+		return currentRow().getClob(columnLabel);
+	}
+
+	@Override
+	public Clob getClob(int columnIndex) throws SQLException {
+		return currentRow().getClob(columnIndex);
+	}
+
+	@Override
+	public int getConcurrency() throws SQLException {
+		return currentRow().getConcurrency();
+	}
+
+	@Override
+	public String getCursorName() throws SQLException {
+		return currentRow().getCursorName();
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Id of the data source the current row comes from
+	 * @throws SQLException
+	 */
+	public Object getDataSourceId() throws SQLException {
+		currentRow();
+		return currentShard.dataSourceId;
+	}
+
+	@Override
+	public Date getDate(String columnLabel) throws SQLException {
+		return currentRow().getDate(columnLabel);
+	}
+
+	@Override
+	public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+		return currentRow().getDate(columnLabel, cal);
+	}
+
+	@Override
+	public Date getDate(int columnIndex) throws SQLException {
+		return currentRow().getDate(columnIndex);
+	}
+
+	@Override
+	public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+		return currentRow().getDate(columnIndex, cal);
+	}
+
+	@Override
+	public double getDouble(String columnLabel) throws SQLException {
+		return currentRow().getDouble(columnLabel);
+	}
+
+	@Override
+	public double getDouble(int columnIndex) throws SQLException {
+		return currentRow().getDouble(columnIndex);
+	}
+
+	/**
+	 * Metadata of the federated result set, also before the first row and after
+	 * the last one. Waits for the first data source to be opened
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 * @throws SQLException
+	 */
+	private FederatedResultSetMetaData getFederatedMetaData() throws SQLException {
+		checkOpen();
+		try {
+			return metaData.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a federated query", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SQLException)
+				throw (SQLException) e.getCause();
+			throw new SQLException("Federated query failed", e.getCause());
+		}
+	}
+
+	@Override
+	public int getFetchDirection() throws SQLException {
+		return currentRow().getFetchDirection();
+	}
+
+	@Override
+	public int getFetchSize() throws SQLException {
+		return currentRow().getFetchSize();
+	}
+
+	@Override
+	public float getFloat(String columnLabel) throws SQLException {
+		return currentRow().getFloat(columnLabel);
+	}
+
+	@Override
+	public float getFloat(int columnIndex) throws SQLException {
+		return currentRow().getFloat(columnIndex);
+	}
+
+	@Override
+	public int getHoldability() throws SQLException {
+		return currentRow().getHoldability();
+	}
+
+	@Override
+	public int getInt(String columnLabel) throws SQLException {
+		return currentRow().getInt(columnLabel);
+	}
+
+	@Override
+	public int getInt(int columnIndex) throws SQLException {
+		return currentRow().getInt(columnIndex);
+	}
+
+	@Override
+	public long getLong(String columnLabel) throws SQLException {
+		return currentRow().getLong(columnLabel);
+	}
+
+	@Override
+	public long getLong(int columnIndex) throws SQLException {
+		return currentRow().getLong(columnIndex);
+	}
+
+	@Override
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return getFederatedMetaData();
+	}
+
+	@Override
+	public Reader getNCharacterStream(String columnLabel) throws SQLException {
+		return currentRow().getNCharacterStream(columnLabel);
+	}
+
+	@Override
+	public Reader getNCharacterStream(int columnIndex) throws SQLException {
+		return currentRow().getNCharacterStream(columnIndex);
+	}
+
+	@Override
+	public NClob getNClob(String columnLabel) throws SQLException {
+		return currentRow().getNClob(columnLabel);
+	}
+
+	@Override
+	public NClob getNClob(int columnIndex) throws SQLException {
+		return currentRow().getNClob(columnIndex);
+	}
+
+	@Override
+	public String getNString(String columnLabel) throws SQLException {
+		return currentRow().getNString(columnLabel);
+	}
+
+	@Override
+	public String getNString(int columnIndex) throws SQLException {
+		return currentRow().getNString(columnIndex);
+	}
+
+	@Override
+	public Object getObject(String columnLabel) throws SQLException {
+		return currentRow().getObject(columnLabel);
+	}
+
+	@Override
+	public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+		return currentRow().getObject(columnLabel, type);
+	}
+
+	@Override
+	public Object getObject(String columnLabel, Map<String, Class<?>> map) throws SQLException {
+		return currentRow().getObject(columnLabel, map);
+	}
+
+	@Override
+	public Object getObject(int columnIndex) throws SQLException {
+		return currentRow().getObject(columnIndex);
+	}
+
+	@Override
+	public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+		return currentRow().getObject(columnIndex, type);
+	}
+
+	@Override
+	public Object getObject(int columnIndex, Map<String, Class<?>> map) throws SQLException {
+		return currentRow().getObject(columnIndex, map);
+	}
+
+	@Override
+	public Ref getRef(String columnLabel) throws SQLException {
+		return currentRow().getRef(columnLabel);
+	}
+
+	@Override
+	public Ref getRef(int columnIndex) throws SQLException {
+		return currentRow().getRef(columnIndex);
+	}
+
+	@Override
+	public int getRow() throws SQLException {
+		return currentRow().getRow();
+	}
+
+	@Override
+	public RowId getRowId(String columnLabel) throws SQLException {
+		return currentRow().getRowId(columnLabel);
+	}
+
+	@Override
+	public RowId getRowId(int columnIndex) throws SQLException {
+		return currentRow().getRowId(columnIndex);
+	}
+
+	@Override
+	public SQLXML getSQLXML(String columnLabel) throws SQLException {
+		return currentRow().getSQLXML(columnLabel);
+	}
+
+	@Override
+	public SQLXML getSQLXML(int columnIndex) throws SQLException {
+		return currentRow().getSQLXML(columnIndex);
+	}
+
+	/**
+	 * Waits for the statement of a data source to be executed. Failure of any data
+	 * source fails the whole federated query
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param shard
+	 * @return
+	 * @throws SQLException
+	 */
+	private Shard getShard(CompletableFuture<Shard> shard) throws SQLException {
+		try {
+			return shard.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new SQLException("Interrupted while waiting for a federated query", e);
+		} catch (ExecutionException e) {
+			close();
+			if (e.getCause() instanceof SQLException)
+				throw (SQLException) e.getCause();
+			throw new SQLException("Federated query failed", e.getCause());
+		}
+	}
+
+	@Override
+	public short getShort(String columnLabel) throws SQLException {
+		return currentRow().getShort(columnLabel);
+	}
+
+	@Override
+	public short getShort(int columnIndex) throws SQLException {
+		return currentRow().getShort(columnIndex);
+	}
+
+	@Override
+	public Statement getStatement() throws SQLException {
+		return currentRow().getStatement();
+	}
+
+	@Override
+	public String getString(String columnLabel) throws SQLException {
+		return currentRow().getString(columnLabel);
+	}
+
+	@Override
+	public String getString(int columnIndex) throws SQLException {
+		return currentRow().getString(columnIndex);
+	}
+
+	@Override
+	public Time getTime(String columnLabel) throws SQLException {
+		return currentRow().getTime(columnLabel);
+	}
+
+	@Override
+	public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+		return currentRow().getTime(columnLabel, cal);
+	}
+
+	@Override
+	public Time getTime(int columnIndex) throws SQLException {
+		return currentRow().getTime(columnIndex);
+	}
+
+	@Override
+	public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+		return currentRow().getTime(columnIndex, cal);
+	}
+
+	@Override
+	public Timestamp getTimestamp(String columnLabel) throws SQLException {
+		return currentRow().getTimestamp(columnLabel);
+	}
+
+	@Override
+	public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+		return currentRow().getTimestamp(columnLabel, cal);
+	}
+
+	@Override
+	public Timestamp getTimestamp(int columnIndex) throws SQLException {
+		return currentRow().getTimestamp(columnIndex);
+	}
+
+	@Override
+	public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+		return currentRow().getTimestamp(columnIndex, cal);
+	}
+
+	@Override
+	public int getType() throws SQLException {
+		return currentRow().getType();
+	}
+
+	@Override
+	public URL getURL(String columnLabel) throws SQLException {
+		return currentRow().getURL(columnLabel);
+	}
+
+	@Override
+	public URL getURL(int columnIndex) throws SQLException {
+		return currentRow().getURL(columnIndex);
+	}
+
+	@Deprecated
+	@Override
+	public InputStream getUnicodeStream(String columnLabel) throws SQLException {
+		return currentRow().getUnicodeStream(columnLabel);
+	}
+
+	@Deprecated
+	@Override
+	public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+		return currentRow().getUnicodeStream(columnIndex);
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		return currentRow().getWarnings();
+	}
+
+	@Override
+	public void insertRow() throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public boolean isAfterLast() throws SQLException {
+		checkOpen();
+		return afterLast;
+	}
+
+	@Override
+	public boolean isBeforeFirst() throws SQLException {
+		checkOpen();
+		return row == 0 && !afterLast;
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return closed;
+	}
+
+	@Override
+	public boolean isFirst() throws SQLException {
+		checkOpen();
+		return row == 1 && !afterLast;
+	}
+
+	@Override
+	public boolean isLast() throws SQLException {
+		throw new SQLFeatureNotSupportedException("Last row of a federated result set is not known until it is passed");
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+
+	@Override
+	public boolean last() throws SQLException {
+		throw new SQLFeatureNotSupportedException(FORWARD_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void moveToCurrentRow() throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void moveToInsertRow() throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public boolean next() throws SQLException {
+		checkOpen();
+		if (afterLast)
+			return false;
+		boolean hasRow = sortColumns.length > 0 ? nextSorted() : nextUnsorted();
+		if (hasRow)
+			row++;
+		else
+			afterLast = true;
+		return hasRow;
+	}
+
+	/**
+	 * K-way merge of data source rows, each data source returning its rows sorted
+	 * by the same columns
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 * @throws SQLException
+	 */
+	private boolean nextSorted() throws SQLException {
+		if (sortedShards == null) {
+			sortedShards = new PriorityQueue<>(Math.max(1, shards.size()), this::compareSortKeys);
+			for (CompletableFuture<Shard> shard : shards)
+				queueSortedShard(getShard(shard));
+		} else
+			queueSortedShard(currentShard);
+		currentShard = sortedShards.poll();
+		return currentShard != null;
+	}
+
+	/**
+	 * Rows of every data source in turn, in the order their statements are executed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 * @throws SQLException
+	 */
+	private boolean nextUnsorted() throws SQLException {
+		while (true) {
+			if (currentShard != null) {
+				if (currentShard.resultSet.next())
+					return true;
+				currentShard.close();
+				currentShard = null;
+			}
+			if (pendingShards == 0)
+				return false;
+			CompletableFuture<Shard> completedShard;
+			try {
+				completedShard = completedShards.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new SQLException("Interrupted while waiting for a federated query", e);
+			}
+			pendingShards--;
+			currentShard = getShard(completedShard);
+		}
+	}
+
+	@Override
+	public boolean previous() throws SQLException {
+		throw new SQLFeatureNotSupportedException(FORWARD_ONLY_MESSAGE);
+	}
+
+	private void queueSortedShard(Shard shard) throws SQLException {
+		if (!shard.resultSet.next()) {
+			shard.close();
+			return;
+		}
+		if (shard.sortKey == null)
+			shard.sortKey = new Object[sortColumns.length];
+		for (int i = 0; i < sortColumns.length; i++)
+			shard.sortKey[i] = shard.resultSet.getObject(sortColumns[i].getColumnLabel());
+		sortedShards.add(shard);
+	}
+
+	@Override
+	public void refreshRow() throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public boolean relative(int rows) throws SQLException {
+		throw new SQLFeatureNotSupportedException(FORWARD_ONLY_MESSAGE);
+	}
+
+	@Override
+	public boolean rowDeleted() throws SQLException {
+		return false;
+	}
+
+	@Override
+	public boolean rowInserted() throws SQLException {
+		return false;
+	}
+
+	@Override
+	public boolean rowUpdated() throws SQLException {
+		return false;
+	}
+
+	@Override
+	public void setFetchDirection(int direction) throws SQLException {
+		if (direction != ResultSet.FETCH_FORWARD)
+			throw new SQLFeatureNotSupportedException(FORWARD_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void setFetchSize(int rows) throws SQLException {
+		checkOpen();
+		this.fetchSize = rows;
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this))
+			return iface.cast(this);
+		throw new SQLException(String.format("Not a wrapper for %s", iface.getName()));
+	}
+
+	@Override
+	public void updateArray(String columnLabel, Array x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateArray(int columnIndex, Array x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateAsciiStream(String columnLabel, InputStream inputStream) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateAsciiStream(String columnLabel, InputStream inputStream, int length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateAsciiStream(String columnLabel, InputStream inputStream, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateAsciiStream(int columnIndex, InputStream inputStream) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateAsciiStream(int columnIndex, InputStream inputStream, int length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateAsciiStream(int columnIndex, InputStream inputStream, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBigDecimal(String columnLabel, BigDecimal x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBigDecimal(int columnIndex, BigDecimal x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBinaryStream(String columnLabel, InputStream inputStream) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBinaryStream(String columnLabel, InputStream inputStream, int length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBinaryStream(String columnLabel, InputStream inputStream, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBinaryStream(int columnIndex, InputStream inputStream) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBinaryStream(int columnIndex, InputStream inputStream, int length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBinaryStream(int columnIndex, InputStream inputStream, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBlob(String columnLabel, Blob x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBlob(String columnLabel, InputStream inputStream) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBlob(String columnLabel, InputStream inputStream, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBlob(int columnIndex, Blob x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBlob(int columnIndex, InputStream inputStream) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBlob(int columnIndex, InputStream inputStream, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBoolean(String columnLabel, boolean x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateByte(String columnLabel, byte x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateByte(int columnIndex, byte x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateCharacterStream(String columnLabel, Reader reader) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateCharacterStream(String columnLabel, Reader reader, int length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateCharacterStream(int columnIndex, Reader reader) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateCharacterStream(int columnIndex, Reader reader, int length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateCharacterStream(int columnIndex, Reader reader, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateClob(String columnLabel, Clob x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateClob(String columnLabel, Reader reader) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateClob(String columnLabel, Reader reader, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateClob(int columnIndex, Clob x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateClob(int columnIndex, Reader reader) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateClob(int columnIndex, Reader reader, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateDate(String columnLabel, Date x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateDate(int columnIndex, Date x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateDouble(String columnLabel, double x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateDouble(int columnIndex, double x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateFloat(String columnLabel, float x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateFloat(int columnIndex, float x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateInt(String columnLabel, int x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateInt(int columnIndex, int x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateLong(String columnLabel, long x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateLong(int columnIndex, long x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNCharacterStream(String columnLabel, Reader reader) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNCharacterStream(int columnIndex, Reader reader) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNCharacterStream(int columnIndex, Reader reader, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNClob(String columnLabel, NClob x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNClob(String columnLabel, Reader reader) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNClob(String columnLabel, Reader reader, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNClob(int columnIndex, NClob x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNClob(int columnIndex, Reader reader) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNClob(int columnIndex, Reader reader, long length) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNString(String columnLabel, String x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNString(int columnIndex, String x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNull(String columnLabel) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateNull(int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateObject(String columnLabel, Object x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateObject(String columnLabel, Object x, int scaleOrLength) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateObject(int columnIndex, Object x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateObject(int columnIndex, Object x, int scaleOrLength) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateRef(String columnLabel, Ref x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateRef(int columnIndex, Ref x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateRow() throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateRowId(String columnLabel, RowId x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateRowId(int columnIndex, RowId x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateSQLXML(String columnLabel, SQLXML x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateSQLXML(int columnIndex, SQLXML x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateShort(String columnLabel, short x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateShort(int columnIndex, short x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateString(String columnLabel, String x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateString(int columnIndex, String x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateTime(String columnLabel, Time x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateTime(int columnIndex, Time x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateTimestamp(String columnLabel, Timestamp x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public void updateTimestamp(int columnIndex, Timestamp x) throws SQLException {
+		throw new SQLFeatureNotSupportedException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public boolean wasNull() throws SQLException {
+		return currentRow().wasNull();
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.federation;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Copy of the metadata of a data source result set of a federated query, still
+ * available once that result set is closed. The one of the first data source
+ * opened is the metadata of the federated result set
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+class FederatedResultSetMetaData implements ResultSetMetaData {
+	private static final class Column {
+		private String catalogName;
+		private String columnClassName;
+		private int columnDisplaySize;
+		private String columnLabel;
+		private String columnName;
+		private int columnType;
+		private String columnTypeName;
+		private int precision;
+		private int scale;
+		private String schemaName;
+		private String tableName;
+		private boolean autoIncrement;
+		private boolean caseSensitive;
+		private boolean currency;
+		private boolean definitelyWritable;
+		private int nullable;
+		private boolean readOnly;
+		private boolean searchable;
+		private boolean signed;
+		private boolean writable;
+	}
+
+	private final Column[] columns;
+	// Lower case column labels with the index of their first column
+	private final Map<String, Integer> columnIndexes = new HashMap<>();
+
+	/**
+	 * Metadata without columns, of a federated query in no data source
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	FederatedResultSetMetaData() {
+		this.columns = new Column[0];
+	}
+
+	FederatedResultSetMetaData(ResultSetMetaData metaData) throws SQLException {
+		this.columns = new Column[metaData.getColumnCount()];
+		for (int i = 0; i < columns.length; i++) {
+			int columnIndex = i + 1;
+			Column column = new Column();
+			column.catalogName = metaData.getCatalogName(columnIndex);
+			column.columnClassName = metaData.getColumnClassName(columnIndex);
+			column.columnDisplaySize = metaData.getColumnDisplaySize(columnIndex);
+			column.columnLabel = metaData.getColumnLabel(columnIndex);
+			column.columnName = metaData.getColumnName(columnIndex);
+			column.columnType = metaData.getColumnType(columnIndex);
+			column.columnTypeName = metaData.getColumnTypeName(columnIndex);
+			column.precision = metaData.getPrecision(columnIndex);
+			column.scale = metaData.getScale(columnIndex);
+			column.schemaName = metaData.getSchemaName(columnIndex);
+			column.tableName = metaData.getTableName(columnIndex);
+			column.autoIncrement = metaData.isAutoIncrement(columnIndex);
+			column.caseSensitive = metaData.isCaseSensitive(columnIndex);
+			column.currency = metaData.isCurrency(columnIndex);
+			column.definitelyWritable = metaData.isDefinitelyWritable(columnIndex);
+			column.nullable = metaData.isNullable(columnIndex);
+			column.readOnly = metaData.isReadOnly(columnIndex);
+			column.searchable = metaData.isSearchable(columnIndex);
+			column.signed = metaData.isSigned(columnIndex);
+			column.writable = metaData.isWritable(columnIndex);
+			columns[i] = column;
+			if (column.columnLabel != null)
+				columnIndexes.putIfAbsent(column.columnLabel.toLowerCase(Locale.ROOT), columnIndex);
+		}
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param columnLabel
+	 * @return Index of the first column with the given label, ignoring case
+	 * @throws SQLException
+	 *             If there is no column with the given label
+	 */
+	int findColumn(String columnLabel) throws SQLException {
+		Integer columnIndex = columnLabel != null ? columnIndexes.get(columnLabel.toLowerCase(Locale.ROOT)) : null;
+		if (columnIndex == null)
+			throw new SQLException(String.format("Column %s not found in federated result set", columnLabel));
+		return columnIndex;
+	}
+
+	@Override
+	public String getCatalogName(int column) throws SQLException {
+		return getColumn(column).catalogName;
+	}
+
+	private Column getColumn(int column) throws SQLException {
+		if (column < 1 || column > columns.length)
+			throw new SQLException(String.format("Column index %d out of range", column));
+		return columns[column - 1];
+	}
+
+	@Override
+	public String getColumnClassName(int column) throws SQLException {
+		return getColumn(column).columnClassName;
+	}
+
+	@Override
+	public int getColumnCount() throws SQLException {
+		return columns.length;
+	}
+
+	@Override
+	public int getColumnDisplaySize(int column) throws SQLException {
+		return getColumn(column).columnDisplaySize;
+	}
+
+	@Override
+	public String getColumnLabel(int column) throws SQLException {
+		return getColumn(column).columnLabel;
+	}
+
+	@Override
+	public String getColumnName(int column) throws SQLException {
+		return getColumn(column).columnName;
+	}
+
+	@Override
+	public int getColumnType(int column) throws SQLException {
+		return getColumn(column).columnType;
+	}
+
+	@Override
+	public String getColumnTypeName(int column) throws SQLException {
+		return getColumn(column).columnTypeName;
+	}
+
+	@Override
+	public int getPrecision(int column) throws SQLException {
+		return getColumn(column).precision;
+	}
+
+	@Override
+	public int getScale(int column) throws SQLException {
+		return getColumn(column).scale;
+	}
+
+	@Override
+	public String getSchemaName(int column) throws SQLException {
+		return getColumn(column).schemaName;
+	}
+
+	@Override
+	public String getTableName(int column) throws SQLException {
+		return getColumn(column).tableName;
+	}
+
+	@Override
+	public boolean isAutoIncrement(int column) throws SQLException {
+		return getColumn(column).autoIncrement;
+	}
+
+	@Override
+	public boolean isCaseSensitive(int column) throws SQLException {
+		return getColumn(column).caseSensitive;
+	}
+
+	@Override
+	public boolean isCurrency(int column) throws SQLException {
+		return getColumn(column).currency;
+	}
+
+	@Override
+	public boolean isDefinitelyWritable(int column) throws SQLException {
+		return getColumn(column).definitelyWritable;
+	}
+
+	@Override
+	public int isNullable(int column) throws SQLException {
+		return getColumn(column).nullable;
+	}
+
+	@Override
+	public boolean isReadOnly(int column) throws SQLException {
+		return getColumn(column).readOnly;
+	}
+
+	@Override
+	public boolean isSearchable(int column) throws SQLException {
+		return getColumn(column).searchable;
+	}
+
+	@Override
+	public boolean isSigned(int column) throws SQLException {
+		return getColumn(column).signed;
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+
+	@Override
+	public boolean isWritable(int column) throws SQLException {
+		return getColumn(column).writable;
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this))
+			return iface.cast(this);
+		throw new SQLException(String.format("Not a wrapper for %s", iface.getName()));
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.federation;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.magidc.balea.core.proxy.cache.DataSourceCacheManager;
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+
+/**
+ * Writes statements tagged with data source ids. Statements are grouped by data
+ * source and each group is executed in one connection as JDBC batches, while
+ * groups of different data sources are written in parallel, starting data
+ * sources that are not active at the same time. Each data source succeeds or
+ * fails on its own
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class ShardedBatchWriter {
+	private static SQLException toSQLException(Object dataSourceId, Throwable throwable) {
+		Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+		if (cause instanceof SQLException)
+			return (SQLException) cause;
+		return new SQLException(String.format("Sharded batch failed in data source %s", dataSourceId), cause);
+	}
+
+	private static int[] toUpdateCounts(List<int[]> batchUpdateCounts) {
+		return batchUpdateCounts.stream().flatMapToInt(Arrays::stream).toArray();
+	}
+
+	private final DataSourceCacheManager dataSourceCacheManager;
+	private final BatchWriterParameters batchWriterParameters;
+	private final ExecutorService writerExecutor;
+
+	public ShardedBatchWriter(DataSourceCacheManager dataSourceCacheManager, BatchWriterParameters batchWriterParameters) {
+		this.dataSourceCacheManager = dataSourceCacheManager;
+		this.batchWriterParameters = batchWriterParameters;
+		this.writerExecutor = Executors.newFixedThreadPool(Math.max(1, batchWriterParameters.getWriterThreads()),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-batch-writer-%d").build());
+	}
+
+	/**
+	 * Executes consecutive statements with the same SQL as JDBC batches of a
+	 * single prepared statement
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param connection
+	 * @param batchStatements
+	 * @param batchUpdateCounts
+	 *            Update counts of every executed batch
+	 * @throws SQLException
+	 */
+	private void executeBatches(Connection connection, List<BatchStatement> batchStatements, List<int[]> batchUpdateCounts) throws SQLException {
+		try (PreparedStatement preparedStatement = connection.prepareStatement(batchStatements.get(0).getSql())) {
+			int batchSize = 0;
+			for (BatchStatement batchStatement : batchStatements) {
+				Object[] parameters = batchStatement.getParameters();
+				for (int i = 0; i < parameters.length; i++)
+					preparedStatement.setObject(i + 1, parameters[i]);
+				preparedStatement.addBatch();
+				if (++batchSize == batchWriterParameters.getMaximumBatchSize()) {
+					batchUpdateCounts.add(preparedStatement.executeBatch());
+					batchSize = 0;
+				}
+			}
+			if (batchSize > 0)
+				batchUpdateCounts.add(preparedStatement.executeBatch());
+		}
+	}
+
+	/**
+	 * Writes statements in the data sources they are tagged with, waiting for
+	 * every data source to finish
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param batchStatements
+	 * @return Result of each data source, in the order data sources first appear
+	 *         in the statements
+	 * @throws SQLException
+	 */
+	public Map<Object, BatchResult> executeBatch(Collection<BatchStatement> batchStatements) throws SQLException {
+		try {
+			return executeBatchAsync(batchStatements).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a sharded batch", e);
+		} catch (ExecutionException e) {
+			throw new SQLException("Sharded batch failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Writes statements in the data sources they are tagged with without blocking
+	 * the calling thread, so several sharded batches can be pipelined
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param batchStatements
+	 * @return Future completed with the result of each data source once every data
+	 *         source finishes. Failures are reported by data source, the future
+	 *         itself does not fail
+	 */
+	public CompletableFuture<Map<Object, BatchResult>> executeBatchAsync(Collection<BatchStatement> batchStatements) {
+		Map<Object, List<BatchStatement>> batchStatementsByDataSource = new LinkedHashMap<>();
+		for (BatchStatement batchStatement : batchStatements)
+			batchStatementsByDataSource.computeIfAbsent(batchStatement.getDataSourceId(), dataSourceId -> new ArrayList<>()).add(batchStatement);
+
+		Map<Object, CompletableFuture<BatchResult>> batchResults = new LinkedHashMap<>();
+		for (Map.Entry<Object, List<BatchStatement>> entry : batchStatementsByDataSource.entrySet()) {
+			Object dataSourceId = entry.getKey();
+			dataSourceCacheManager.getMetricsRecorder().recordDataSourceRequest(dataSourceId);
+			batchResults.put(dataSourceId,
+					dataSourceCacheManager.getManagedDataSourceAsync(dataSourceId)
+							.thenApplyAsync(managedDataSource -> writeBatch(dataSourceId, managedDataSource, entry.getValue()), writerExecutor)
+							.exceptionally(e -> new BatchResult(dataSourceId, new int[0], toSQLException(dataSourceId, e))));
+		}
+		return CompletableFuture.allOf(batchResults.values().toArray(new CompletableFuture<?>[batchResults.size()])).thenApply(completed -> {
+			Map<Object, BatchResult> completedBatchResults = new LinkedHashMap<>();
+			for (Map.Entry<Object, CompletableFuture<BatchResult>> entry : batchResults.entrySet())
+				completedBatchResults.put(entry.getKey(), entry.getValue().join());
+			return completedBatchResults;
+		});
+	}
+
+	/**
+	 * Stops the threads writing sharded batches
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void shutdown() {
+		writerExecutor.shutdownNow();
+	}
+
+	/**
+	 * Executes the statements of a data source in a single connection, committing
+	 * them together if batches are transactional
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param managedDataSource
+	 * @param batchStatements
+	 * @return
+	 */
+	private BatchResult writeBatch(Object dataSourceId, ManagedDataSource managedDataSource, List<BatchStatement> batchStatements) {
+		List<int[]> batchUpdateCounts = new ArrayList<>();
+		Connection leasedConnection;
+		try {
+			leasedConnection = dataSourceCacheManager.tryLeaseConnection(managedDataSource, null, null);
+			if (leasedConnection == null)
+				leasedConnection = dataSourceCacheManager.leaseConnection(dataSourceId, null, null);
+		} catch (SQLException e) {
+			return new BatchResult(dataSourceId, toUpdateCounts(batchUpdateCounts), e);
+		}
+		try (Connection connection = leasedConnection) {
+			boolean autoCommitDisabled = batchWriterParameters.isTransactional() && connection.getAutoCommit();
+			if (autoCommitDisabled)
+				connection.setAutoCommit(false);
+			boolean inTransaction = !connection.getAutoCommit();
+			try {
+				int start = 0;
+				while (start < batchStatements.size()) {
+					String sql = batchStatements.get(start).getSql();
+					int end = start + 1;
+					while (end < batchStatements.size() && batchStatements.get(end).getSql().equals(sql))
+						end++;
+					executeBatches(connection, batchStatements.subList(start, end), batchUpdateCounts);
+					start = end;
+				}
+				if (inTransaction)
+					connection.commit();
+			} catch (SQLException e) {
+				if (e instanceof BatchUpdateException && ((BatchUpdateException) e).getUpdateCounts() != null)
+					batchUpdateCounts.add(((BatchUpdateException) e).getUpdateCounts());
+				if (inTransaction) {
+					// Nothing written in the data source is kept
+					batchUpdateCounts.clear();
+					try {
+						connection.rollback();
+					} catch (SQLException rollbackException) {
+						e.addSuppressed(rollbackException);
+					}
+				}
+				// Failures restoring auto commit do not replace the batch failure
+				if (autoCommitDisabled)
+					try {
+						connection.setAutoCommit(true);
+					} catch (SQLException restoreException) {
+						e.addSuppressed(restoreException);
+					}
+				throw e;
+			}
+			if (autoCommitDisabled)
+				connection.setAutoCommit(true);
+			return new BatchResult(dataSourceId, toUpdateCounts(batchUpdateCounts), null);
+		} catch (SQLException e) {
+			return new BatchResult(dataSourceId, toUpdateCounts(batchUpdateCounts), e);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.federation;
+
+/**
+ * Column merged rows of a federated query are sorted by. The statement must
+ * return the rows of each data source sorted the same way (i.e. with the same
+ * ORDER BY clause)
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class SortColumn {
+	private final String columnLabel;
+	private final boolean descending;
+
+	public SortColumn(String columnLabel) {
+		this(columnLabel, false);
+	}
+
+	public SortColumn(String columnLabel, boolean descending) {
+		this.columnLabel = columnLabel;
+		this.descending = descending;
+	}
+
+	public String getColumnLabel() {
+		return columnLabel;
+	}
+
+	public boolean isDescending() {
+		return descending;
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.health;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.magidc.balea.core.proxy.cache.config.DataSourceCacheManagerConfigurer;
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+
+/**
+ * Health checks of cached data sources. Each sweep takes a single availability
+ * snapshot (i.e. container states) and probes the data sources that are due in
+ * parallel, each probe bounded by a timeout, so a slow data source does not
+ * delay the others nor the sweep. Probes timing out are interrupted, and while
+ * one is still running its thread is replaced and its data source is not probed
+ * again. Probe intervals adapt per data source: data sources used since their
+ * last probe are probed less and less often, as requests already exercise them
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class DataSourceHealthChecker {
+	private static final class ProbeSchedule {
+		private long intervalMillis;
+		private long nextProbeMillis;
+		private long lastAccessCount;
+		private boolean probing;
+
+		private ProbeSchedule(long intervalMillis, long nextProbeMillis, long lastAccessCount) {
+			this.intervalMillis = intervalMillis;
+			this.nextProbeMillis = nextProbeMillis;
+			this.lastAccessCount = lastAccessCount;
+		}
+	}
+
+	private final DataSourceCacheManagerConfigurer dataSourceCacheManagerConfigurer;
+	private final HealthCheckParameters healthCheckParameters;
+	private final Consumer<ManagedDataSource> unhealthyDataSourceHandler;
+	private final ConcurrentMap<ManagedDataSource, ProbeSchedule> probeSchedules = new ConcurrentHashMap<>();
+	// Data sources with a probe running, also after it timed out
+	private final Set<ManagedDataSource> runningProbes = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	private final ThreadPoolExecutor probeExecutor;
+	// Probes timed out and still running, each holding a probe thread
+	private int hungProbes;
+	private final ScheduledExecutorService probeTimeoutScheduler;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceCacheManagerConfigurer
+	 * @param healthCheckParameters
+	 * @param unhealthyDataSourceHandler
+	 *            Receives data sources unavailable or failing their probe
+	 */
+	public DataSourceHealthChecker(DataSourceCacheManagerConfigurer dataSourceCacheManagerConfigurer, HealthCheckParameters healthCheckParameters,
+			Consumer<ManagedDataSource> unhealthyDataSourceHandler) {
+		this.dataSourceCacheManagerConfigurer = dataSourceCacheManagerConfigurer;
+		this.healthCheckParameters = healthCheckParameters;
+		this.unhealthyDataSourceHandler = unhealthyDataSourceHandler;
+		this.probeExecutor = new ThreadPoolExecutor(getProbeThreads(), getProbeThreads(), 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-health-probe-%d").build());
+		this.probeTimeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-health-probe-timeout-%d").build());
+	}
+
+	/**
+	 * Checks the given data sources. Data sources unavailable in the availability
+	 * snapshot are handled as unhealthy right away, probes of the others are
+	 * started if due and not awaited
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param managedDataSources
+	 * @throws IOException
+	 */
+	public void check(Collection<ManagedDataSource> managedDataSources) throws IOException {
+		Set<ManagedDataSource> checkedDataSources = Collections.newSetFromMap(new IdentityHashMap<>());
+		checkedDataSources.addAll(managedDataSources);
+		probeSchedules.keySet().retainAll(checkedDataSources);
+
+		Predicate<Object> availableDataSources = dataSourceCacheManagerConfigurer.snapshotDataSourceAvailability();
+		long now = System.currentTimeMillis();
+		for (ManagedDataSource managedDataSource : checkedDataSources) {
+			if (!availableDataSources.test(managedDataSource.getDataSourceId())) {
+				probeSchedules.remove(managedDataSource);
+				unhealthyDataSourceHandler.accept(managedDataSource);
+				continue;
+			}
+			// Data sources are valid when loaded, first probe is due after the
+			// minimum interval
+			ProbeSchedule probeSchedule = probeSchedules.computeIfAbsent(managedDataSource,
+					m -> new ProbeSchedule(healthCheckParameters.getMinimumProbeIntervalMillis(),
+							now + healthCheckParameters.getMinimumProbeIntervalMillis(), m.getAccessCount()));
+			synchronized (probeSchedule) {
+				if (probeSchedule.probing || now < probeSchedule.nextProbeMillis || runningProbes.contains(managedDataSource))
+					continue;
+				probeSchedule.probing = true;
+			}
+			startProbe(managedDataSource, probeSchedule);
+		}
+	}
+
+	/**
+	 * Stops probing data sources
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void close() {
+		probeExecutor.shutdownNow();
+		probeTimeoutScheduler.shutdownNow();
+	}
+
+	private void completeProbe(ManagedDataSource managedDataSource, ProbeSchedule probeSchedule, boolean healthy) {
+		if (!healthy) {
+			probeSchedules.remove(managedDataSource, probeSchedule);
+			unhealthyDataSourceHandler.accept(managedDataSource);
+			return;
+		}
+		long accessCount = managedDataSource.getAccessCount();
+		synchronized (probeSchedule) {
+			probeSchedule.intervalMillis = accessCount != probeSchedule.lastAccessCount
+					? Math.min(probeSchedule.intervalMillis * 2, healthCheckParameters.getMaximumProbeIntervalMillis())
+					: healthCheckParameters.getMinimumProbeIntervalMillis();
+			probeSchedule.lastAccessCount = accessCount;
+			probeSchedule.nextProbeMillis = System.currentTimeMillis() + probeSchedule.intervalMillis;
+			probeSchedule.probing = false;
+		}
+	}
+
+	private int getProbeThreads() {
+		return Math.max(1, healthCheckParameters.getProbeThreads());
+	}
+
+	/**
+	 * Grows the probe executor by a thread per hung probe, so probes of other data
+	 * sources keep running while hung probes hold their threads
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param hungProbesDelta
+	 */
+	private synchronized void resizeProbeExecutor(int hungProbesDelta) {
+		hungProbes += hungProbesDelta;
+		int probeThreads = getProbeThreads() + Math.max(0, hungProbes);
+		if (probeThreads > probeExecutor.getMaximumPoolSize()) {
+			probeExecutor.setMaximumPoolSize(probeThreads);
+			probeExecutor.setCorePoolSize(probeThreads);
+		} else {
+			probeExecutor.setCorePoolSize(probeThreads);
+			probeExecutor.setMaximumPoolSize(probeThreads);
+		}
+	}
+
+	/**
+	 * Probes a data source in the probe executor. Probe timeout counts from the
+	 * probe start, a probe timing out is interrupted and reported as failed, its
+	 * thread is replaced until it returns
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param managedDataSource
+	 * @param probeSchedule
+	 */
+	private void startProbe(ManagedDataSource managedDataSource, ProbeSchedule probeSchedule) {
+		AtomicBoolean completed = new AtomicBoolean();
+		FutureTask<Boolean> probe = new FutureTask<>(() -> dataSourceCacheManagerConfigurer.probeDataSource(managedDataSource));
+		runningProbes.add(managedDataSource);
+		try {
+			probeExecutor.execute(() -> {
+				Future<?> probeTimeout = probeTimeoutScheduler.schedule(() -> {
+					if (completed.compareAndSet(false, true)) {
+						if (probe.cancel(true))
+							resizeProbeExecutor(1);
+						completeProbe(managedDataSource, probeSchedule, false);
+					}
+				}, healthCheckParameters.getProbeTimeoutMillis(), TimeUnit.MILLISECONDS);
+				probe.run();
+				probeTimeout.cancel(false);
+				runningProbes.remove(managedDataSource);
+				if (probe.isCancelled()) {
+					resizeProbeExecutor(-1);
+					return;
+				}
+				boolean healthy;
+				try {
+					healthy = probe.get();
+				} catch (ExecutionException | InterruptedException e) {
+					healthy = false;
+				}
+				if (completed.compareAndSet(false, true))
+					completeProbe(managedDataSource, probeSchedule, healthy);
+			});
+		} catch (RejectedExecutionException e) {
+			runningProbes.remove(managedDataSource);
+			synchronized (probeSchedule) {
+				probeSchedule.probing = false;
+			}
+		}
+	}
+}
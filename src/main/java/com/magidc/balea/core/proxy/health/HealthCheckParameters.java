@@ -0,0 +1,88 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.health;
+
+/**
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class HealthCheckParameters {
+	private int probeThreads = 4;
+	private long probeTimeoutMillis = 5000;
+	private long minimumProbeIntervalMillis = 10000;
+	private long maximumProbeIntervalMillis = 120000;
+
+	public long getMaximumProbeIntervalMillis() {
+		return maximumProbeIntervalMillis;
+	}
+
+	public long getMinimumProbeIntervalMillis() {
+		return minimumProbeIntervalMillis;
+	}
+
+	public int getProbeThreads() {
+		return probeThreads;
+	}
+
+	public long getProbeTimeoutMillis() {
+		return probeTimeoutMillis;
+	}
+
+	/**
+	 * Longest interval between probes of a data source, reached by data sources
+	 * in continuous use
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param maximumProbeIntervalMillis
+	 */
+	public void setMaximumProbeIntervalMillis(long maximumProbeIntervalMillis) {
+		this.maximumProbeIntervalMillis = maximumProbeIntervalMillis;
+	}
+
+	/**
+	 * Interval between probes of a data source not used since its last probe
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param minimumProbeIntervalMillis
+	 */
+	public void setMinimumProbeIntervalMillis(long minimumProbeIntervalMillis) {
+		this.minimumProbeIntervalMillis = minimumProbeIntervalMillis;
+	}
+
+	/**
+	 * Number of threads probing data sources in parallel
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param probeThreads
+	 */
+	public void setProbeThreads(int probeThreads) {
+		this.probeThreads = probeThreads;
+	}
+
+	/**
+	 * Time after which a probe still running is considered failed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param probeTimeoutMillis
+	 */
+	public void setProbeTimeoutMillis(long probeTimeoutMillis) {
+		this.probeTimeoutMillis = probeTimeoutMillis;
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.invoker;
+
+import javax.sql.DataSource;
+
+/**
+ * Precompiled invocation of a single proxied data source method
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public interface DataSourceMethodInvoker {
+
+	/**
+	 * Invokes the method on the given target data source. Exceptions thrown by
+	 * the target are propagated as they are, without reflective wrapping
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSource
+	 *            Target data source
+	 * @param args
+	 *            Method arguments
+	 * @return
+	 * @throws Throwable
+	 */
+	public Object invoke(DataSource dataSource, Object[] args) throws Throwable;
+
+	/**
+	 * Indicates if the method result depends on the data source selected by the
+	 * current data source id. Methods not depending on it are dispatched to the
+	 * default data source without resolving the id nor accessing the cache
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public default boolean isRouted() {
+		return true;
+	}
+}
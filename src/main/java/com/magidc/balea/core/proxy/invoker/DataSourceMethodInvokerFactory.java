@@ -0,0 +1,152 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.invoker;
+
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+/**
+ * Factory for precompiled data source method invokers. Methods declared by
+ * {@link DataSource} and its super interfaces are called directly through the
+ * interface, any other method is bound once to a {@link MethodHandle}
+ * 
+ * @author magidc <info@magidc.io>
+ **/
+public abstract class DataSourceMethodInvokerFactory {
+	private static final class UnroutedDataSourceMethodInvoker implements DataSourceMethodInvoker {
+		private final DataSourceMethodInvoker delegate;
+
+		private UnroutedDataSourceMethodInvoker(DataSourceMethodInvoker delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Object invoke(DataSource dataSource, Object[] args) throws Throwable {
+			return delegate.invoke(dataSource, args);
+		}
+
+		@Override
+		public boolean isRouted() {
+			return false;
+		}
+	}
+
+	private static final MethodType GENERIC_INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+	/**
+	 * Creates the invoker for the given proxied method
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param method
+	 * @return
+	 */
+	public static DataSourceMethodInvoker createInvoker(Method method) {
+		DataSourceMethodInvoker invoker = createInterfaceInvoker(method);
+		if (invoker == null)
+			invoker = createMethodHandleInvoker(method);
+		return isRouted(method) ? invoker : new UnroutedDataSourceMethodInvoker(invoker);
+	}
+
+	private static DataSourceMethodInvoker createInterfaceInvoker(Method method) {
+		String name = method.getName();
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		if (parameterTypes.length == 0) {
+			switch (name) {
+			case "getConnection":
+				return (dataSource, args) -> dataSource.getConnection();
+			case "getLogWriter":
+				return (dataSource, args) -> dataSource.getLogWriter();
+			case "getLoginTimeout":
+				return (dataSource, args) -> dataSource.getLoginTimeout();
+			case "getParentLogger":
+				return (dataSource, args) -> dataSource.getParentLogger();
+			default:
+				return null;
+			}
+		}
+		if (parameterTypes.length == 1) {
+			if ("setLogWriter".equals(name) && parameterTypes[0] == PrintWriter.class)
+				return (dataSource, args) -> {
+					dataSource.setLogWriter((PrintWriter) args[0]);
+					return null;
+				};
+			if ("setLoginTimeout".equals(name) && parameterTypes[0] == int.class)
+				return (dataSource, args) -> {
+					dataSource.setLoginTimeout((Integer) args[0]);
+					return null;
+				};
+			if ("unwrap".equals(name) && parameterTypes[0] == Class.class)
+				return (dataSource, args) -> dataSource.unwrap((Class<?>) args[0]);
+			if ("isWrapperFor".equals(name) && parameterTypes[0] == Class.class)
+				return (dataSource, args) -> dataSource.isWrapperFor((Class<?>) args[0]);
+			return null;
+		}
+		if ("getConnection".equals(name) && Arrays.equals(parameterTypes, new Class<?>[] { String.class, String.class }))
+			return (dataSource, args) -> dataSource.getConnection((String) args[0], (String) args[1]);
+		return null;
+	}
+
+	private static DataSourceMethodInvoker createMethodHandleInvoker(Method method) {
+		MethodHandle methodHandle;
+		try {
+			methodHandle = MethodHandles.publicLookup().unreflect(method)
+					.asSpreader(Object[].class, method.getParameterCount())
+					.asType(GENERIC_INVOKER_TYPE);
+		} catch (IllegalAccessException e) {
+			// Non accessible method (i.e. declared in a non public class), keeping
+			// reflective invocation as last resort
+			return createReflectiveInvoker(method);
+		}
+		final MethodHandle invokerMethodHandle = methodHandle;
+		return (dataSource, args) -> (Object) invokerMethodHandle.invokeExact((Object) dataSource, args);
+	}
+
+	private static DataSourceMethodInvoker createReflectiveInvoker(Method method) {
+		method.setAccessible(true);
+		return (dataSource, args) -> {
+			try {
+				return method.invoke(dataSource, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		};
+	}
+
+	/**
+	 * Checks if the result of a method depends on the data source selected for the
+	 * current data source id. Wrapper methods only depend on the data source type,
+	 * shared by all routed data sources
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param method
+	 * @return
+	 */
+	public static boolean isRouted(Method method) {
+		if (method.getParameterCount() != 1 || method.getParameterTypes()[0] != Class.class)
+			return true;
+		return !"unwrap".equals(method.getName()) && !"isWrapperFor".equals(method.getName());
+	}
+}
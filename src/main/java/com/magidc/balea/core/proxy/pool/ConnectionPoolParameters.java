@@ -0,0 +1,146 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.pool;
+
+/**
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class ConnectionPoolParameters {
+	private int prewarmConnections = 2;
+	private int minimumConnections = 1;
+	private int maximumConnections = 10;
+	private long connectionWaitTimeoutMillis = 30000;
+	private long idleConnectionTimeoutMillis = 60000;
+	private long validationIdleTimeMillis = 5000;
+	private int validationTimeoutSeconds = 1;
+	private long drainTimeoutMillis = 10000;
+	private long maintenancePeriodMillis = 5000;
+
+	public long getConnectionWaitTimeoutMillis() {
+		return connectionWaitTimeoutMillis;
+	}
+
+	public long getDrainTimeoutMillis() {
+		return drainTimeoutMillis;
+	}
+
+	public long getIdleConnectionTimeoutMillis() {
+		return idleConnectionTimeoutMillis;
+	}
+
+	public long getMaintenancePeriodMillis() {
+		return maintenancePeriodMillis;
+	}
+
+	public int getMaximumConnections() {
+		return maximumConnections;
+	}
+
+	public int getMinimumConnections() {
+		return minimumConnections;
+	}
+
+	public int getPrewarmConnections() {
+		return prewarmConnections;
+	}
+
+	public long getValidationIdleTimeMillis() {
+		return validationIdleTimeMillis;
+	}
+
+	public int getValidationTimeoutSeconds() {
+		return validationTimeoutSeconds;
+	}
+
+	/**
+	 * Maximum time to wait for a connection when all connections are in use
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param connectionWaitTimeoutMillis
+	 */
+	public void setConnectionWaitTimeoutMillis(long connectionWaitTimeoutMillis) {
+		this.connectionWaitTimeoutMillis = connectionWaitTimeoutMillis;
+	}
+
+	/**
+	 * Maximum time to wait for connections in use to be returned when a data
+	 * source is closed, they are closed afterwards
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param drainTimeoutMillis
+	 */
+	public void setDrainTimeoutMillis(long drainTimeoutMillis) {
+		this.drainTimeoutMillis = drainTimeoutMillis;
+	}
+
+	/**
+	 * Time after which an idle connection is closed, as long as the pool keeps
+	 * its minimum size
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param idleConnectionTimeoutMillis
+	 */
+	public void setIdleConnectionTimeoutMillis(long idleConnectionTimeoutMillis) {
+		this.idleConnectionTimeoutMillis = idleConnectionTimeoutMillis;
+	}
+
+	/**
+	 * Period of pool resizing according to the observed load
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param maintenancePeriodMillis
+	 */
+	public void setMaintenancePeriodMillis(long maintenancePeriodMillis) {
+		this.maintenancePeriodMillis = maintenancePeriodMillis;
+	}
+
+	public void setMaximumConnections(int maximumConnections) {
+		this.maximumConnections = maximumConnections;
+	}
+
+	public void setMinimumConnections(int minimumConnections) {
+		this.minimumConnections = minimumConnections;
+	}
+
+	/**
+	 * Connections opened in background as soon as a data source is ready
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param prewarmConnections
+	 */
+	public void setPrewarmConnections(int prewarmConnections) {
+		this.prewarmConnections = prewarmConnections;
+	}
+
+	/**
+	 * Connections idle for longer are validated before being lent
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param validationIdleTimeMillis
+	 */
+	public void setValidationIdleTimeMillis(long validationIdleTimeMillis) {
+		this.validationIdleTimeMillis = validationIdleTimeMillis;
+	}
+
+	public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+		this.validationTimeoutSeconds = validationTimeoutSeconds;
+	}
+}
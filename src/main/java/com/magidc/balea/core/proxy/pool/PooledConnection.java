@@ -0,0 +1,461 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.pool;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import com.magidc.balea.core.proxy.pool.PooledDataSource.PoolEntry;
+
+/**
+ * Connection handle lent by {@link PooledDataSource}. Closing it returns the
+ * physical connection to the pool, after closing the statements left open,
+ * rolling back any pending transaction and restoring the connection settings
+ * changed through the handle
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class PooledConnection implements Connection {
+	private final PooledDataSource pooledDataSource;
+	private final PoolEntry poolEntry;
+	private final Connection connection;
+	private boolean closed;
+	private Boolean originalAutoCommit;
+	private Boolean originalReadOnly;
+	private Integer originalTransactionIsolation;
+	private Integer originalHoldability;
+	private boolean catalogChanged;
+	private String originalCatalog;
+	private boolean schemaChanged;
+	private String originalSchema;
+	// Statements not closed yet, closed when the handle is returned to the pool
+	private final Set<Statement> openStatements = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	PooledConnection(PooledDataSource pooledDataSource, PoolEntry poolEntry) {
+		this.pooledDataSource = pooledDataSource;
+		this.poolEntry = poolEntry;
+		this.connection = poolEntry.getConnection();
+	}
+
+	@Override
+	public void abort(Executor executor) throws SQLException {
+		if (closed)
+			return;
+		closed = true;
+		synchronized (openStatements) {
+			openStatements.clear();
+		}
+		try {
+			connection.abort(executor);
+		} finally {
+			pooledDataSource.release(poolEntry, false);
+		}
+	}
+
+	private Connection checkOpen() throws SQLException {
+		if (closed)
+			throw new SQLException("Connection is closed");
+		return connection;
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		checkOpen().clearWarnings();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (closed)
+			return;
+		closed = true;
+		boolean reusable;
+		try {
+			reset();
+			reusable = true;
+		} catch (SQLException | RuntimeException e) {
+			reusable = false;
+		}
+		pooledDataSource.release(poolEntry, reusable);
+	}
+
+	/**
+	 * Closes the statements left open through the handle
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @throws SQLException
+	 */
+	private void closeStatements() throws SQLException {
+		List<Statement> statements;
+		synchronized (openStatements) {
+			statements = new ArrayList<>(openStatements);
+			openStatements.clear();
+		}
+		SQLException closeException = null;
+		for (Statement statement : statements) {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				if (closeException == null)
+					closeException = e;
+				else
+					closeException.addSuppressed(e);
+			}
+		}
+		if (closeException != null)
+			throw closeException;
+	}
+
+	@Override
+	public void commit() throws SQLException {
+		checkOpen().commit();
+	}
+
+	@Override
+	public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+		return checkOpen().createArrayOf(typeName, elements);
+	}
+
+	@Override
+	public Blob createBlob() throws SQLException {
+		return checkOpen().createBlob();
+	}
+
+	@Override
+	public Clob createClob() throws SQLException {
+		return checkOpen().createClob();
+	}
+
+	@Override
+	public NClob createNClob() throws SQLException {
+		return checkOpen().createNClob();
+	}
+
+	@Override
+	public SQLXML createSQLXML() throws SQLException {
+		return checkOpen().createSQLXML();
+	}
+
+	@Override
+	public Statement createStatement() throws SQLException {
+		return trackStatement(Statement.class, checkOpen().createStatement());
+	}
+
+	@Override
+	public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+		return trackStatement(Statement.class, checkOpen().createStatement(resultSetType, resultSetConcurrency));
+	}
+
+	@Override
+	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return trackStatement(Statement.class, checkOpen().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+	}
+
+	@Override
+	public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+		return checkOpen().createStruct(typeName, attributes);
+	}
+
+	@Override
+	public boolean getAutoCommit() throws SQLException {
+		return checkOpen().getAutoCommit();
+	}
+
+	@Override
+	public String getCatalog() throws SQLException {
+		return checkOpen().getCatalog();
+	}
+
+	@Override
+	public Properties getClientInfo() throws SQLException {
+		return checkOpen().getClientInfo();
+	}
+
+	@Override
+	public String getClientInfo(String name) throws SQLException {
+		return checkOpen().getClientInfo(name);
+	}
+
+	@Override
+	public int getHoldability() throws SQLException {
+		return checkOpen().getHoldability();
+	}
+
+	@Override
+	public DatabaseMetaData getMetaData() throws SQLException {
+		return checkOpen().getMetaData();
+	}
+
+	@Override
+	public int getNetworkTimeout() throws SQLException {
+		return checkOpen().getNetworkTimeout();
+	}
+
+	@Override
+	public String getSchema() throws SQLException {
+		return checkOpen().getSchema();
+	}
+
+	@Override
+	public int getTransactionIsolation() throws SQLException {
+		return checkOpen().getTransactionIsolation();
+	}
+
+	@Override
+	public Map<String, Class<?>> getTypeMap() throws SQLException {
+		return checkOpen().getTypeMap();
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		return checkOpen().getWarnings();
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return closed;
+	}
+
+	@Override
+	public boolean isReadOnly() throws SQLException {
+		return checkOpen().isReadOnly();
+	}
+
+	@Override
+	public boolean isValid(int timeout) throws SQLException {
+		return !closed && connection.isValid(timeout);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || checkOpen().isWrapperFor(iface);
+	}
+
+	@Override
+	public String nativeSQL(String sql) throws SQLException {
+		return checkOpen().nativeSQL(sql);
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql) throws SQLException {
+		return trackStatement(CallableStatement.class, checkOpen().prepareCall(sql));
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return trackStatement(CallableStatement.class, checkOpen().prepareCall(sql, resultSetType, resultSetConcurrency));
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return trackStatement(CallableStatement.class, checkOpen().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return trackStatement(PreparedStatement.class, checkOpen().prepareStatement(sql));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		return trackStatement(PreparedStatement.class, checkOpen().prepareStatement(sql, autoGeneratedKeys));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return trackStatement(PreparedStatement.class, checkOpen().prepareStatement(sql, resultSetType, resultSetConcurrency));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return trackStatement(PreparedStatement.class, checkOpen().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+		return trackStatement(PreparedStatement.class, checkOpen().prepareStatement(sql, columnIndexes));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+		return trackStatement(PreparedStatement.class, checkOpen().prepareStatement(sql, columnNames));
+	}
+
+	void releaseStatement(Statement statement) {
+		synchronized (openStatements) {
+			openStatements.remove(statement);
+		}
+	}
+
+	@Override
+	public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+		checkOpen().releaseSavepoint(savepoint);
+	}
+
+	/**
+	 * Restores the physical connection to the state it had when it was lent
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @throws SQLException
+	 */
+	private void reset() throws SQLException {
+		closeStatements();
+		if (!connection.getAutoCommit())
+			connection.rollback();
+		if (originalAutoCommit != null)
+			connection.setAutoCommit(originalAutoCommit);
+		if (originalReadOnly != null)
+			connection.setReadOnly(originalReadOnly);
+		if (originalTransactionIsolation != null)
+			connection.setTransactionIsolation(originalTransactionIsolation);
+		if (originalHoldability != null)
+			connection.setHoldability(originalHoldability);
+		if (catalogChanged)
+			connection.setCatalog(originalCatalog);
+		if (schemaChanged)
+			connection.setSchema(originalSchema);
+		connection.clearWarnings();
+	}
+
+	@Override
+	public void rollback() throws SQLException {
+		checkOpen().rollback();
+	}
+
+	@Override
+	public void rollback(Savepoint savepoint) throws SQLException {
+		checkOpen().rollback(savepoint);
+	}
+
+	@Override
+	public void setAutoCommit(boolean autoCommit) throws SQLException {
+		if (originalAutoCommit == null)
+			originalAutoCommit = checkOpen().getAutoCommit();
+		checkOpen().setAutoCommit(autoCommit);
+	}
+
+	@Override
+	public void setCatalog(String catalog) throws SQLException {
+		if (!catalogChanged) {
+			originalCatalog = checkOpen().getCatalog();
+			catalogChanged = true;
+		}
+		checkOpen().setCatalog(catalog);
+	}
+
+	@Override
+	public void setClientInfo(Properties properties) throws SQLClientInfoException {
+		if (closed)
+			throw new SQLClientInfoException("Connection is closed", null);
+		connection.setClientInfo(properties);
+	}
+
+	@Override
+	public void setClientInfo(String name, String value) throws SQLClientInfoException {
+		if (closed)
+			throw new SQLClientInfoException("Connection is closed", null);
+		connection.setClientInfo(name, value);
+	}
+
+	@Override
+	public void setHoldability(int holdability) throws SQLException {
+		if (originalHoldability == null)
+			originalHoldability = checkOpen().getHoldability();
+		checkOpen().setHoldability(holdability);
+	}
+
+	@Override
+	public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+		checkOpen().setNetworkTimeout(executor, milliseconds);
+	}
+
+	@Override
+	public void setReadOnly(boolean readOnly) throws SQLException {
+		if (originalReadOnly == null)
+			originalReadOnly = checkOpen().isReadOnly();
+		checkOpen().setReadOnly(readOnly);
+	}
+
+	@Override
+	public Savepoint setSavepoint() throws SQLException {
+		return checkOpen().setSavepoint();
+	}
+
+	@Override
+	public Savepoint setSavepoint(String name) throws SQLException {
+		return checkOpen().setSavepoint(name);
+	}
+
+	@Override
+	public void setSchema(String schema) throws SQLException {
+		if (!schemaChanged) {
+			originalSchema = checkOpen().getSchema();
+			schemaChanged = true;
+		}
+		checkOpen().setSchema(schema);
+	}
+
+	@Override
+	public void setTransactionIsolation(int level) throws SQLException {
+		if (originalTransactionIsolation == null)
+			originalTransactionIsolation = checkOpen().getTransactionIsolation();
+		checkOpen().setTransactionIsolation(level);
+	}
+
+	@Override
+	public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+		checkOpen().setTypeMap(map);
+	}
+
+	private <T extends Statement> T trackStatement(Class<T> statementType, T statement) {
+		synchronized (openStatements) {
+			openStatements.add(statement);
+		}
+		return PooledStatementHandler.createStatement(this, statementType, statement);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this))
+			return (T) this;
+		return checkOpen().unwrap(iface);
+	}
+}
@@ -0,0 +1,520 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.pool;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import com.magidc.balea.core.proxy.admission.AdmissionController;
+
+/**
+ * Lightweight connection pool over a non pooling data source. Pool is prewarmed
+ * in background once the data source is ready and sized periodically from the
+ * peak of connections in use, smoothed over time, between minimum and maximum
+ * connections. Idle connections are lent most recently used first, so least
+ * used ones become idle for long and are closed. Before the data source is
+ * closed the pool is drained, waiting for connections in use to be returned
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class PooledDataSource implements DataSource {
+	static final class PoolEntry {
+		private final Connection connection;
+		private long lastReleasedMillis = System.currentTimeMillis();
+
+		private PoolEntry(Connection connection) {
+			this.connection = connection;
+		}
+
+		Connection getConnection() {
+			return connection;
+		}
+	}
+
+	// Weight of the last maintenance period in the smoothed peak of connections in
+	// use
+	private static final double LOAD_SMOOTHING_FACTOR = 0.3;
+
+	private static void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException | RuntimeException e) {
+			// Connection is discarded anyway
+		}
+	}
+
+	private final DataSource dataSource;
+	private final ConnectionPoolParameters connectionPoolParameters;
+	private final Executor executor;
+	private final Object dataSourceId;
+	private final AdmissionController admissionController;
+	// Most recently released first
+	private final Deque<PoolEntry> idleEntries = new ArrayDeque<>();
+	private final Set<PoolEntry> borrowedEntries = Collections.newSetFromMap(new IdentityHashMap<>());
+	// Idle, borrowed and being opened connections
+	private int totalConnections;
+	// Borrowed connections, including those being opened to be borrowed
+	private int borrowedConnections;
+	private int peakBorrowedConnections;
+	private double smoothedPeakBorrowedConnections = -1;
+	private boolean closed;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSource
+	 *            Non pooling data source
+	 * @param connectionPoolParameters
+	 * @param executor
+	 *            Executor opening connections in background
+	 */
+	public PooledDataSource(DataSource dataSource, ConnectionPoolParameters connectionPoolParameters, Executor executor) {
+		this(dataSource, connectionPoolParameters, executor, null, null);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSource
+	 *            Non pooling data source
+	 * @param connectionPoolParameters
+	 * @param executor
+	 *            Executor opening connections in background
+	 * @param dataSourceId
+	 * @param admissionController
+	 *            Admission control of opened connections, null for no control
+	 */
+	public PooledDataSource(DataSource dataSource, ConnectionPoolParameters connectionPoolParameters, Executor executor, Object dataSourceId,
+			AdmissionController admissionController) {
+		this.dataSource = dataSource;
+		this.connectionPoolParameters = connectionPoolParameters;
+		this.executor = executor;
+		this.dataSourceId = dataSourceId;
+		this.admissionController = admissionController;
+	}
+
+	private void addIdleEntry(PoolEntry poolEntry) {
+		synchronized (this) {
+			if (!closed) {
+				idleEntries.addFirst(poolEntry);
+				notifyAll();
+				return;
+			}
+			totalConnections--;
+		}
+		closeEntry(poolEntry);
+	}
+
+	private synchronized void cancelConnections(int connections, boolean borrowed) {
+		totalConnections -= connections;
+		if (borrowed)
+			borrowedConnections -= connections;
+		notifyAll();
+	}
+
+	/**
+	 * Closes idle connections, least recently used first, until the pool size is
+	 * reduced to the given number of connections
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param keptConnections
+	 * @return Number of closed connections
+	 */
+	public int closeIdleConnections(int keptConnections) {
+		List<PoolEntry> idleEntriesToClose = new ArrayList<>();
+		synchronized (this) {
+			while (!idleEntries.isEmpty() && totalConnections > keptConnections) {
+				idleEntriesToClose.add(idleEntries.pollLast());
+				totalConnections--;
+			}
+		}
+		closeEntries(idleEntriesToClose);
+		return idleEntriesToClose.size();
+	}
+
+	private void closeEntries(List<PoolEntry> poolEntries) {
+		for (PoolEntry poolEntry : poolEntries)
+			closeEntry(poolEntry);
+	}
+
+	/**
+	 * Closes the physical connection of an entry already removed from the pool
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param poolEntry
+	 */
+	private void closeEntry(PoolEntry poolEntry) {
+		closeQuietly(poolEntry.connection);
+		releaseConnectionAdmission();
+	}
+
+	private void discardEntry(PoolEntry poolEntry) {
+		synchronized (this) {
+			if (!borrowedEntries.remove(poolEntry)) {
+				// Already closed by drain
+				closeQuietly(poolEntry.connection);
+				return;
+			}
+			borrowedConnections--;
+			totalConnections--;
+			notifyAll();
+		}
+		closeEntry(poolEntry);
+	}
+
+	/**
+	 * Closes the pool. Idle connections are closed and connections in use are
+	 * waited for up to the drain timeout, then closed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void drain() {
+		List<PoolEntry> idleEntriesToClose;
+		synchronized (this) {
+			closed = true;
+			idleEntriesToClose = new ArrayList<>(idleEntries);
+			totalConnections -= idleEntries.size();
+			idleEntries.clear();
+			notifyAll();
+		}
+		closeEntries(idleEntriesToClose);
+
+		List<PoolEntry> borrowedEntriesToClose;
+		synchronized (this) {
+			long deadlineMillis = System.currentTimeMillis() + connectionPoolParameters.getDrainTimeoutMillis();
+			long remainingMillis;
+			while (borrowedConnections > 0 && (remainingMillis = deadlineMillis - System.currentTimeMillis()) > 0) {
+				try {
+					wait(remainingMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			borrowedEntriesToClose = new ArrayList<>(borrowedEntries);
+			borrowedConnections -= borrowedEntries.size();
+			totalConnections -= borrowedEntries.size();
+			borrowedEntries.clear();
+		}
+		closeEntries(borrowedEntriesToClose);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Connections in use
+	 */
+	public synchronized int getBorrowedConnections() {
+		return borrowedConnections;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		long deadlineMillis = System.currentTimeMillis() + connectionPoolParameters.getConnectionWaitTimeoutMillis();
+		while (true) {
+			PoolEntry poolEntry = takeEntry(deadlineMillis);
+			if (poolEntry == null)
+				return new PooledConnection(this, openBorrowedEntry());
+			if (isUsable(poolEntry))
+				return new PooledConnection(this, poolEntry);
+			discardEntry(poolEntry);
+		}
+	}
+
+	/**
+	 * Connections with specific credentials are not pooled
+	 */
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return dataSource.getConnection(username, password);
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Underlying non pooling data source
+	 */
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	public synchronized int getIdleConnections() {
+		return idleEntries.size();
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return dataSource.getLoginTimeout();
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return dataSource.getLogWriter();
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return dataSource.getParentLogger();
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return Idle, in use and being opened connections
+	 */
+	public synchronized int getTotalConnections() {
+		return totalConnections;
+	}
+
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	private boolean isUsable(PoolEntry poolEntry) {
+		if (System.currentTimeMillis() - poolEntry.lastReleasedMillis < connectionPoolParameters.getValidationIdleTimeMillis())
+			return true;
+		try {
+			return poolEntry.connection.isValid(connectionPoolParameters.getValidationTimeoutSeconds());
+		} catch (SQLException | RuntimeException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+	}
+
+	/**
+	 * Resizes the pool according to the load observed since the previous
+	 * maintenance: idle connections exceeding the target size or idle for too
+	 * long are closed, and if the pool has been saturated missing connections up
+	 * to the target size are opened in background
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void maintain() {
+		List<PoolEntry> expiredEntries = new ArrayList<>();
+		int missingConnections;
+		synchronized (this) {
+			if (closed)
+				return;
+			smoothedPeakBorrowedConnections = smoothedPeakBorrowedConnections < 0 ? peakBorrowedConnections
+					: (1 - LOAD_SMOOTHING_FACTOR) * smoothedPeakBorrowedConnections + LOAD_SMOOTHING_FACTOR * peakBorrowedConnections;
+			// Pool grows ahead of demand only if every connection has been in use
+			boolean saturated = peakBorrowedConnections >= totalConnections;
+			peakBorrowedConnections = borrowedConnections;
+			int targetConnections = Math.max(connectionPoolParameters.getMinimumConnections(),
+					Math.min(connectionPoolParameters.getMaximumConnections(), (int) Math.ceil(smoothedPeakBorrowedConnections)));
+
+			long now = System.currentTimeMillis();
+			while (!idleEntries.isEmpty() && totalConnections > connectionPoolParameters.getMinimumConnections()) {
+				PoolEntry leastRecentlyUsedEntry = idleEntries.peekLast();
+				if (totalConnections <= targetConnections
+						&& now - leastRecentlyUsedEntry.lastReleasedMillis < connectionPoolParameters.getIdleConnectionTimeoutMillis())
+					break;
+				expiredEntries.add(idleEntries.pollLast());
+				totalConnections--;
+			}
+			missingConnections = Math.max(0, (saturated ? targetConnections : connectionPoolParameters.getMinimumConnections()) - totalConnections);
+			totalConnections += missingConnections;
+		}
+		closeEntries(expiredEntries);
+		openIdleEntries(missingConnections);
+	}
+
+	private PoolEntry openBorrowedEntry() throws SQLException {
+		if (admissionController != null) {
+			try {
+				admissionController.acquireConnection(dataSourceId);
+			} catch (SQLException e) {
+				cancelConnections(1, true);
+				throw e;
+			}
+		}
+		PoolEntry poolEntry;
+		try {
+			poolEntry = new PoolEntry(dataSource.getConnection());
+		} catch (SQLException | RuntimeException e) {
+			releaseConnectionAdmission();
+			cancelConnections(1, true);
+			throw e;
+		}
+		synchronized (this) {
+			if (!closed) {
+				borrowedEntries.add(poolEntry);
+				return poolEntry;
+			}
+		}
+		cancelConnections(1, true);
+		closeEntry(poolEntry);
+		throw new SQLException("Connection pool is closed");
+	}
+
+	/**
+	 * Opens connections in background, their slots must be already counted in
+	 * total connections
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param connections
+	 */
+	private void openIdleEntries(int connections) {
+		if (connections <= 0)
+			return;
+		try {
+			executor.execute(() -> {
+				for (int i = 0; i < connections; i++) {
+					// Connections ahead of demand do not wait for admission
+					if (admissionController != null && !admissionController.tryAcquireConnection(dataSourceId)) {
+						cancelConnections(connections - i, false);
+						return;
+					}
+					try {
+						addIdleEntry(new PoolEntry(dataSource.getConnection()));
+					} catch (SQLException | RuntimeException e) {
+						releaseConnectionAdmission();
+						cancelConnections(connections - i, false);
+						return;
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			cancelConnections(connections, false);
+		}
+	}
+
+	/**
+	 * Opens the configured prewarm connections in background
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void prewarm() {
+		int prewarmConnections;
+		synchronized (this) {
+			if (closed)
+				return;
+			prewarmConnections = Math.max(0,
+					Math.min(connectionPoolParameters.getPrewarmConnections(), connectionPoolParameters.getMaximumConnections()) - totalConnections);
+			totalConnections += prewarmConnections;
+		}
+		openIdleEntries(prewarmConnections);
+	}
+
+	/**
+	 * Returns a connection to the pool
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param poolEntry
+	 * @param reusable
+	 *            False if connection state could not be reset
+	 */
+	void release(PoolEntry poolEntry, boolean reusable) {
+		synchronized (this) {
+			if (!borrowedEntries.remove(poolEntry)) {
+				// Already closed by drain
+				closeQuietly(poolEntry.connection);
+				return;
+			}
+			borrowedConnections--;
+			notifyAll();
+			if (reusable && !closed) {
+				poolEntry.lastReleasedMillis = System.currentTimeMillis();
+				idleEntries.addFirst(poolEntry);
+				return;
+			}
+			totalConnections--;
+		}
+		closeEntry(poolEntry);
+	}
+
+	private void releaseConnectionAdmission() {
+		if (admissionController != null)
+			admissionController.releaseConnection(dataSourceId);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		dataSource.setLoginTimeout(seconds);
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		dataSource.setLogWriter(out);
+	}
+
+	/**
+	 * Takes an idle connection or reserves a slot to open a new one, waiting for a
+	 * connection to be released if the pool is full
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param deadlineMillis
+	 * @return Idle connection or null if a new connection has to be opened
+	 * @throws SQLException
+	 */
+	private synchronized PoolEntry takeEntry(long deadlineMillis) throws SQLException {
+		while (true) {
+			if (closed)
+				throw new SQLException("Connection pool is closed");
+			PoolEntry poolEntry = idleEntries.pollFirst();
+			if (poolEntry != null || totalConnections < connectionPoolParameters.getMaximumConnections()) {
+				if (poolEntry != null)
+					borrowedEntries.add(poolEntry);
+				else
+					totalConnections++;
+				borrowedConnections++;
+				peakBorrowedConnections = Math.max(peakBorrowedConnections, borrowedConnections);
+				return poolEntry;
+			}
+
+			long remainingMillis = deadlineMillis - System.currentTimeMillis();
+			if (remainingMillis <= 0)
+				throw new SQLTransientConnectionException("Timeout waiting for a pooled connection");
+			try {
+				wait(remainingMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted waiting for a pooled connection", e);
+			}
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this))
+			return (T) this;
+		return dataSource.unwrap(iface);
+	}
+}
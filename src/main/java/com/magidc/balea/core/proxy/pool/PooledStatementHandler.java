@@ -0,0 +1,78 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+
+/**
+ * Statement lent through a {@link PooledConnection}. Its connection is the
+ * connection handle instead of the physical connection, and closing it stops
+ * its tracking by the handle
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+class PooledStatementHandler implements InvocationHandler {
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param pooledConnection
+	 * @param statementType
+	 * @param statement
+	 * @return Proxy of the statement
+	 */
+	static <T extends Statement> T createStatement(PooledConnection pooledConnection, Class<T> statementType, T statement) {
+		return statementType.cast(Proxy.newProxyInstance(PooledStatementHandler.class.getClassLoader(), new Class<?>[] { statementType },
+				new PooledStatementHandler(pooledConnection, statement)));
+	}
+
+	private final PooledConnection pooledConnection;
+	private final Statement statement;
+
+	private PooledStatementHandler(PooledConnection pooledConnection, Statement statement) {
+		this.pooledConnection = pooledConnection;
+		this.statement = statement;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		switch (method.getName()) {
+		case "getConnection":
+			return pooledConnection;
+		case "close":
+			pooledConnection.releaseStatement(statement);
+			break;
+		case "equals":
+			return proxy == args[0];
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		default:
+			break;
+		}
+		try {
+			return method.invoke(statement, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
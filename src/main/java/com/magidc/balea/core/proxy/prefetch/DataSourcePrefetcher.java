@@ -0,0 +1,399 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.prefetch;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.magidc.balea.core.metrics.MetricsRecorder;
+import com.magidc.balea.core.model.ReadReplicaId;
+import com.magidc.balea.core.proxy.cache.DataSourceCacheManager;
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+
+/**
+ * Warms data sources ahead of demand, learning two patterns from the data
+ * source access stream:
+ * <ul>
+ * <li>Time of day: per data source and time of day slot, the fraction of past
+ * days with accesses in the slot, weighted by recency. Data sources likely to
+ * be used in the upcoming slot are prefetched before it</li>
+ * <li>Co-access: per data source, the data sources whose sessions usually start
+ * right after its own. They are prefetched when one of its sessions
+ * starts</li>
+ * </ul>
+ * Accesses are sampled and queued in the request path, the model is updated
+ * and queried by a single background thread. Prefetches are bounded in number
+ * and only take free cache capacity, so they never evict data sources in use.
+ * Precision is the fraction of prefetched data sources used before being
+ * evicted
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class DataSourcePrefetcher {
+	private static final class AccessEvent {
+		private final Object dataSourceId;
+		private final long accessMillis;
+
+		private AccessEvent(Object dataSourceId, long accessMillis) {
+			this.dataSourceId = dataSourceId;
+			this.accessMillis = accessMillis;
+		}
+	}
+
+	private static final class AccessProfile {
+		private final long firstDay;
+		// Recency weighted count of days with accesses per slot, as of the day in
+		// slotDays
+		private final double[] slotScores;
+		private final long[] slotDays;
+		private long lastAccessMillis;
+		private double sessions;
+		private final Map<Object, Double> successorScores = new HashMap<>();
+
+		private AccessProfile(long firstDay, int slotsPerDay) {
+			this.firstDay = firstDay;
+			this.slotScores = new double[slotsPerDay];
+			this.slotDays = new long[slotsPerDay];
+			Arrays.fill(slotDays, -1);
+		}
+	}
+
+	private static final class PrefetchRecord {
+		private final long startMillis;
+		private volatile ManagedDataSource managedDataSource;
+
+		private PrefetchRecord(long startMillis) {
+			this.startMillis = startMillis;
+		}
+	}
+
+	private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+	// Accesses of a data source are recorded at most once per interval
+	private static final long ACCESS_SAMPLING_INTERVAL_MILLIS = 1000;
+	// Co-access history is halved beyond this number of sessions
+	private static final int MAXIMUM_SESSION_HISTORY = 100;
+
+	private final DataSourceCacheManager dataSourceCacheManager;
+	private final PrefetchParameters prefetchParameters;
+	private final int slotsPerDay;
+	private final BlockingQueue<AccessEvent> accessEvents;
+	private final ConcurrentMap<Object, AtomicLong> lastRecordedAccesses = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Object, PrefetchRecord> unusedPrefetches = new ConcurrentHashMap<>();
+	private final AtomicInteger inFlightPrefetches = new AtomicInteger();
+	private final LongAdder issuedPrefetches = new LongAdder();
+	private final LongAdder usefulPrefetches = new LongAdder();
+	private final LongAdder wastedPrefetches = new LongAdder();
+	private final LongAdder failedPrefetches = new LongAdder();
+	// Confined to the prefetch thread
+	private final Map<Object, AccessProfile> accessProfiles = new HashMap<>();
+	private final Deque<AccessEvent> recentSessionStarts = new ArrayDeque<>();
+	private final ScheduledExecutorService prefetchScheduler;
+
+	public DataSourcePrefetcher(DataSourceCacheManager dataSourceCacheManager, PrefetchParameters prefetchParameters, MetricsRecorder metricsRecorder) {
+		this.dataSourceCacheManager = dataSourceCacheManager;
+		this.prefetchParameters = prefetchParameters;
+		this.slotsPerDay = (int) Math.max(1, DAY_MILLIS / prefetchParameters.getTimeOfDaySlotMillis());
+		this.accessEvents = new ArrayBlockingQueue<>(Math.max(1, prefetchParameters.getAccessQueueCapacity()));
+		metricsRecorder.registerGauge("balea.prefetch.issued", issuedPrefetches::sum);
+		metricsRecorder.registerGauge("balea.prefetch.useful", usefulPrefetches::sum);
+		metricsRecorder.registerGauge("balea.prefetch.wasted", wastedPrefetches::sum);
+		metricsRecorder.registerGauge("balea.prefetch.precision", this::getPrecision);
+		this.prefetchScheduler = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-prefetch-%d").build());
+		this.prefetchScheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					learnAccesses();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}, 100, 100, TimeUnit.MILLISECONDS);
+		this.prefetchScheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					learnAccesses();
+					forgetInactiveDataSources(System.currentTimeMillis());
+					prefetchExpectedDataSources(System.currentTimeMillis());
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}, prefetchParameters.getSchedulePeriodMillis(), prefetchParameters.getSchedulePeriodMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	private void addSuccessor(AccessProfile accessProfile, Object successorDataSourceId) {
+		accessProfile.successorScores.merge(successorDataSourceId, 1d, Double::sum);
+		if (accessProfile.successorScores.size() <= prefetchParameters.getMaximumSuccessors())
+			return;
+		// Weakest successor other than the new one is forgotten
+		Object weakestSuccessorDataSourceId = null;
+		double weakestScore = Double.MAX_VALUE;
+		for (Map.Entry<Object, Double> successorScore : accessProfile.successorScores.entrySet()) {
+			if (!successorScore.getKey().equals(successorDataSourceId) && successorScore.getValue() < weakestScore) {
+				weakestSuccessorDataSourceId = successorScore.getKey();
+				weakestScore = successorScore.getValue();
+			}
+		}
+		accessProfile.successorScores.remove(weakestSuccessorDataSourceId);
+	}
+
+	/**
+	 * Stops learning and prefetching
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void close() {
+		prefetchScheduler.shutdownNow();
+	}
+
+	/**
+	 * Forgets the access history of data sources without accesses beyond the
+	 * history horizon, so it does not grow with every data source ever accessed
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param nowMillis
+	 */
+	private void forgetInactiveDataSources(long nowMillis) {
+		long horizonMillis = nowMillis - prefetchParameters.getHistoryHorizonDays() * DAY_MILLIS;
+		accessProfiles.values().removeIf(accessProfile -> accessProfile.lastAccessMillis < horizonMillis);
+		lastRecordedAccesses.values().removeIf(lastRecordedAccessMillis -> lastRecordedAccessMillis.get() < horizonMillis);
+	}
+
+	private long findDay(long localMillis) {
+		return localMillis / DAY_MILLIS;
+	}
+
+	private int findSlot(long localMillis) {
+		return (int) Math.min(slotsPerDay - 1, localMillis % DAY_MILLIS / prefetchParameters.getTimeOfDaySlotMillis());
+	}
+
+	public long getFailedPrefetches() {
+		return failedPrefetches.sum();
+	}
+
+	public long getIssuedPrefetches() {
+		return issuedPrefetches.sum();
+	}
+
+	/**
+	 * Fraction of resolved prefetches (used or evicted) that were used
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 */
+	public double getPrecision() {
+		long useful = usefulPrefetches.sum();
+		long resolved = useful + wastedPrefetches.sum();
+		return resolved == 0 ? Double.NaN : (double) useful / resolved;
+	}
+
+	/**
+	 * Probability of accesses to a data source in a time of day slot: recency
+	 * weighted fraction of the days observed before the given one with accesses
+	 * in the slot
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param accessProfile
+	 * @param slot
+	 * @param day
+	 * @return
+	 */
+	private double getTimeOfDayProbability(AccessProfile accessProfile, int slot, long day) {
+		long observedDays = day - accessProfile.firstDay;
+		if (observedDays < prefetchParameters.getMinimumObservations() || accessProfile.slotDays[slot] < 0 || accessProfile.slotDays[slot] >= day)
+			return 0;
+		double decay = prefetchParameters.getHistoryDecay();
+		double score = accessProfile.slotScores[slot] * Math.pow(decay, day - accessProfile.slotDays[slot]);
+		double maximumScore = decay == 1 ? observedDays : decay * (1 - Math.pow(decay, observedDays)) / (1 - decay);
+		return score / maximumScore;
+	}
+
+	public long getUsefulPrefetches() {
+		return usefulPrefetches.sum();
+	}
+
+	public long getWastedPrefetches() {
+		return wastedPrefetches.sum();
+	}
+
+	private void learnAccess(AccessEvent accessEvent) {
+		Object dataSourceId = accessEvent.dataSourceId;
+		PrefetchRecord prefetchRecord = unusedPrefetches.get(dataSourceId);
+		if (prefetchRecord != null && prefetchRecord.startMillis <= accessEvent.accessMillis && unusedPrefetches.remove(dataSourceId, prefetchRecord))
+			usefulPrefetches.increment();
+
+		long localMillis = toLocalMillis(accessEvent.accessMillis);
+		long day = findDay(localMillis);
+		int slot = findSlot(localMillis);
+		AccessProfile accessProfile = accessProfiles.computeIfAbsent(dataSourceId, id -> new AccessProfile(day, slotsPerDay));
+		if (accessProfile.slotDays[slot] != day) {
+			accessProfile.slotScores[slot] = accessProfile.slotDays[slot] < 0 ? 1
+					: accessProfile.slotScores[slot] * Math.pow(prefetchParameters.getHistoryDecay(), day - accessProfile.slotDays[slot]) + 1;
+			accessProfile.slotDays[slot] = day;
+		}
+
+		boolean sessionStart = accessEvent.accessMillis - accessProfile.lastAccessMillis > prefetchParameters.getCoAccessWindowMillis();
+		accessProfile.lastAccessMillis = accessEvent.accessMillis;
+		if (!sessionStart)
+			return;
+		accessProfile.sessions++;
+		if (accessProfile.sessions > MAXIMUM_SESSION_HISTORY) {
+			accessProfile.sessions /= 2;
+			accessProfile.successorScores.replaceAll((id, score) -> score / 2);
+		}
+
+		// Data sources whose session started within the window are followed by this
+		// one
+		Iterator<AccessEvent> recentSessionStartsIterator = recentSessionStarts.iterator();
+		while (recentSessionStartsIterator.hasNext()) {
+			AccessEvent recentSessionStart = recentSessionStartsIterator.next();
+			if (accessEvent.accessMillis - recentSessionStart.accessMillis > prefetchParameters.getCoAccessWindowMillis())
+				recentSessionStartsIterator.remove();
+			else if (!recentSessionStart.dataSourceId.equals(dataSourceId) && accessProfiles.containsKey(recentSessionStart.dataSourceId))
+				addSuccessor(accessProfiles.get(recentSessionStart.dataSourceId), dataSourceId);
+		}
+		recentSessionStarts.addLast(accessEvent);
+
+		if (accessProfile.sessions < prefetchParameters.getMinimumObservations())
+			return;
+		for (Map.Entry<Object, Double> successorScore : accessProfile.successorScores.entrySet()) {
+			if (successorScore.getValue() / accessProfile.sessions >= prefetchParameters.getCoAccessThreshold())
+				prefetch(successorScore.getKey());
+		}
+	}
+
+	/**
+	 * Updates access profiles with the queued accesses
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	private void learnAccesses() {
+		AccessEvent accessEvent;
+		while ((accessEvent = accessEvents.poll()) != null)
+			learnAccess(accessEvent);
+	}
+
+	/**
+	 * Counts prefetched data sources evicted before being used
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param managedDataSource
+	 */
+	public void onRemoval(ManagedDataSource managedDataSource) {
+		PrefetchRecord prefetchRecord = unusedPrefetches.get(managedDataSource.getDataSourceId());
+		if (prefetchRecord != null && prefetchRecord.managedDataSource == managedDataSource
+				&& unusedPrefetches.remove(managedDataSource.getDataSourceId(), prefetchRecord))
+			wastedPrefetches.increment();
+	}
+
+	private void prefetch(Object dataSourceId) {
+		if (inFlightPrefetches.get() >= prefetchParameters.getMaximumConcurrentPrefetches()
+				|| unusedPrefetches.size() >= prefetchParameters.getMaximumUnusedPrefetches() || unusedPrefetches.containsKey(dataSourceId)
+				|| dataSourceCacheManager.isDataSourceManaged(dataSourceId))
+			return;
+		PrefetchRecord prefetchRecord = new PrefetchRecord(System.currentTimeMillis());
+		unusedPrefetches.put(dataSourceId, prefetchRecord);
+		CompletableFuture<ManagedDataSource> dataSourceLoad = dataSourceCacheManager.prefetchDataSource(dataSourceId);
+		if (dataSourceLoad == null) {
+			unusedPrefetches.remove(dataSourceId, prefetchRecord);
+			return;
+		}
+		issuedPrefetches.increment();
+		inFlightPrefetches.incrementAndGet();
+		dataSourceLoad.whenComplete((managedDataSource, failure) -> {
+			inFlightPrefetches.decrementAndGet();
+			if (failure != null) {
+				failedPrefetches.increment();
+				unusedPrefetches.remove(dataSourceId, prefetchRecord);
+			} else
+				prefetchRecord.managedDataSource = managedDataSource;
+		});
+	}
+
+	/**
+	 * Prefetches data sources likely to be used in the time of day slot starting
+	 * within the lead time, most likely first
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param nowMillis
+	 */
+	private void prefetchExpectedDataSources(long nowMillis) {
+		long localMillis = toLocalMillis(nowMillis + prefetchParameters.getLeadTimeMillis());
+		long day = findDay(localMillis);
+		int slot = findSlot(localMillis);
+		List<Map.Entry<Object, Double>> expectedDataSources = new ArrayList<>();
+		for (Map.Entry<Object, AccessProfile> accessProfile : accessProfiles.entrySet()) {
+			double probability = getTimeOfDayProbability(accessProfile.getValue(), slot, day);
+			if (probability >= prefetchParameters.getTimeOfDayThreshold())
+				expectedDataSources.add(new AbstractMap.SimpleEntry<>(accessProfile.getKey(), probability));
+		}
+		expectedDataSources.sort(Map.Entry.<Object, Double> comparingByValue().reversed());
+		for (Map.Entry<Object, Double> expectedDataSource : expectedDataSources)
+			prefetch(expectedDataSource.getKey());
+	}
+
+	/**
+	 * Records an access to a data source. Called in the request path, it only
+	 * queues one access per data source and second. Read replicas are started on
+	 * demand of their primary, so their accesses are not recorded
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 */
+	public void recordAccess(Object dataSourceId) {
+		if (dataSourceId instanceof ReadReplicaId)
+			return;
+		long now = System.currentTimeMillis();
+		AtomicLong lastRecordedAccessMillis = lastRecordedAccesses.get(dataSourceId);
+		if (lastRecordedAccessMillis == null)
+			lastRecordedAccessMillis = lastRecordedAccesses.computeIfAbsent(dataSourceId, id -> new AtomicLong());
+		long lastRecordedMillis = lastRecordedAccessMillis.get();
+		if (now - lastRecordedMillis < ACCESS_SAMPLING_INTERVAL_MILLIS || !lastRecordedAccessMillis.compareAndSet(lastRecordedMillis, now))
+			return;
+		accessEvents.offer(new AccessEvent(dataSourceId, now));
+	}
+
+	private long toLocalMillis(long epochMillis) {
+		return epochMillis + TimeZone.getDefault().getOffset(epochMillis);
+	}
+}
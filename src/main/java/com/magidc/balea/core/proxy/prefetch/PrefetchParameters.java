@@ -0,0 +1,219 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.prefetch;
+
+/**
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class PrefetchParameters {
+	private long timeOfDaySlotMillis = 900000;
+	private long leadTimeMillis = 300000;
+	private double timeOfDayThreshold = 0.6;
+	private double historyDecay = 0.8;
+	private int historyHorizonDays = 28;
+	private long coAccessWindowMillis = 10000;
+	private double coAccessThreshold = 0.5;
+	private int maximumSuccessors = 8;
+	private int minimumObservations = 3;
+	private int maximumConcurrentPrefetches = 2;
+	private int maximumUnusedPrefetches = 10;
+	private long schedulePeriodMillis = 60000;
+	private int accessQueueCapacity = 10000;
+
+	public int getAccessQueueCapacity() {
+		return accessQueueCapacity;
+	}
+
+	public double getCoAccessThreshold() {
+		return coAccessThreshold;
+	}
+
+	public long getCoAccessWindowMillis() {
+		return coAccessWindowMillis;
+	}
+
+	public double getHistoryDecay() {
+		return historyDecay;
+	}
+
+	public int getHistoryHorizonDays() {
+		return historyHorizonDays;
+	}
+
+	public long getLeadTimeMillis() {
+		return leadTimeMillis;
+	}
+
+	public int getMaximumConcurrentPrefetches() {
+		return maximumConcurrentPrefetches;
+	}
+
+	public int getMaximumSuccessors() {
+		return maximumSuccessors;
+	}
+
+	public int getMaximumUnusedPrefetches() {
+		return maximumUnusedPrefetches;
+	}
+
+	public int getMinimumObservations() {
+		return minimumObservations;
+	}
+
+	public long getSchedulePeriodMillis() {
+		return schedulePeriodMillis;
+	}
+
+	public double getTimeOfDayThreshold() {
+		return timeOfDayThreshold;
+	}
+
+	public long getTimeOfDaySlotMillis() {
+		return timeOfDaySlotMillis;
+	}
+
+	/**
+	 * Maximum accesses waiting to be learned, further accesses are not recorded
+	 * while it is full
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param accessQueueCapacity
+	 */
+	public void setAccessQueueCapacity(int accessQueueCapacity) {
+		this.accessQueueCapacity = accessQueueCapacity;
+	}
+
+	/**
+	 * Minimum fraction of sessions of a data source followed by a session of
+	 * another one for the latter to be prefetched
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param coAccessThreshold
+	 */
+	public void setCoAccessThreshold(double coAccessThreshold) {
+		this.coAccessThreshold = coAccessThreshold;
+	}
+
+	/**
+	 * Maximum time between the session starts of two data sources to consider
+	 * them accessed together. It is also the idle time starting a new session
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param coAccessWindowMillis
+	 */
+	public void setCoAccessWindowMillis(long coAccessWindowMillis) {
+		this.coAccessWindowMillis = coAccessWindowMillis;
+	}
+
+	/**
+	 * Weight of each past day of access history relative to the following one,
+	 * between 0 and 1
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param historyDecay
+	 */
+	public void setHistoryDecay(double historyDecay) {
+		this.historyDecay = historyDecay;
+	}
+
+	/**
+	 * Days without accesses after which the access history of a data source is
+	 * forgotten
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param historyHorizonDays
+	 */
+	public void setHistoryHorizonDays(int historyHorizonDays) {
+		this.historyHorizonDays = historyHorizonDays;
+	}
+
+	/**
+	 * How long before the time of day slot of expected demand data sources are
+	 * prefetched
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param leadTimeMillis
+	 */
+	public void setLeadTimeMillis(long leadTimeMillis) {
+		this.leadTimeMillis = leadTimeMillis;
+	}
+
+	public void setMaximumConcurrentPrefetches(int maximumConcurrentPrefetches) {
+		this.maximumConcurrentPrefetches = maximumConcurrentPrefetches;
+	}
+
+	/**
+	 * Maximum co-accessed data sources tracked per data source
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param maximumSuccessors
+	 */
+	public void setMaximumSuccessors(int maximumSuccessors) {
+		this.maximumSuccessors = maximumSuccessors;
+	}
+
+	/**
+	 * Maximum prefetched data sources not used yet, no more are prefetched until
+	 * they are used or evicted
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param maximumUnusedPrefetches
+	 */
+	public void setMaximumUnusedPrefetches(int maximumUnusedPrefetches) {
+		this.maximumUnusedPrefetches = maximumUnusedPrefetches;
+	}
+
+	/**
+	 * Days of history (time of day patterns) or sessions (co-access patterns)
+	 * required before a data source is prefetched
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param minimumObservations
+	 */
+	public void setMinimumObservations(int minimumObservations) {
+		this.minimumObservations = minimumObservations;
+	}
+
+	/**
+	 * Period of the time of day predictions
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param schedulePeriodMillis
+	 */
+	public void setSchedulePeriodMillis(long schedulePeriodMillis) {
+		this.schedulePeriodMillis = schedulePeriodMillis;
+	}
+
+	/**
+	 * Minimum weighted fraction of past days with accesses in a time of day slot
+	 * for a data source to be prefetched before that slot
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param timeOfDayThreshold
+	 */
+	public void setTimeOfDayThreshold(double timeOfDayThreshold) {
+		this.timeOfDayThreshold = timeOfDayThreshold;
+	}
+
+	public void setTimeOfDaySlotMillis(long timeOfDaySlotMillis) {
+		this.timeOfDaySlotMillis = timeOfDaySlotMillis;
+	}
+}
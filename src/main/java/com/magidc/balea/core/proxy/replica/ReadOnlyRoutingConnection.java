@@ -0,0 +1,419 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.replica;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * Connection of a data source with read replicas, obtained once it is used
+ * instead of when it is opened. If it is set read only before, it is obtained
+ * from a read replica. Auto commit and transaction isolation given before are
+ * applied to the obtained connection
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class ReadOnlyRoutingConnection implements Connection {
+	/**
+	 * Obtains the connection of a data source or one of its read replicas
+	 * 
+	 * @author magidc <info@magidc.io>
+	 *
+	 */
+	@FunctionalInterface
+	public interface ConnectionSupplier {
+		public Connection getConnection(boolean readOnly) throws SQLException;
+	}
+
+	private final ConnectionSupplier connectionSupplier;
+	private Connection connection;
+	private boolean closed;
+	private boolean readOnly;
+	private Boolean autoCommit;
+	private Integer transactionIsolation;
+
+	public ReadOnlyRoutingConnection(ConnectionSupplier connectionSupplier) {
+		this.connectionSupplier = connectionSupplier;
+	}
+
+	@Override
+	public void abort(Executor executor) throws SQLException {
+		if (closed)
+			return;
+		closed = true;
+		if (connection != null)
+			connection.abort(executor);
+	}
+
+	private void checkOpen() throws SQLException {
+		if (closed)
+			throw new SQLException("Connection is closed");
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		checkOpen();
+		if (connection != null)
+			connection.clearWarnings();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (closed)
+			return;
+		closed = true;
+		if (connection != null)
+			connection.close();
+	}
+
+	@Override
+	public void commit() throws SQLException {
+		getTargetConnection().commit();
+	}
+
+	@Override
+	public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+		return getTargetConnection().createArrayOf(typeName, elements);
+	}
+
+	@Override
+	public Blob createBlob() throws SQLException {
+		return getTargetConnection().createBlob();
+	}
+
+	@Override
+	public Clob createClob() throws SQLException {
+		return getTargetConnection().createClob();
+	}
+
+	@Override
+	public NClob createNClob() throws SQLException {
+		return getTargetConnection().createNClob();
+	}
+
+	@Override
+	public SQLXML createSQLXML() throws SQLException {
+		return getTargetConnection().createSQLXML();
+	}
+
+	@Override
+	public Statement createStatement() throws SQLException {
+		return getTargetConnection().createStatement();
+	}
+
+	@Override
+	public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+		return getTargetConnection().createStatement(resultSetType, resultSetConcurrency);
+	}
+
+	@Override
+	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return getTargetConnection().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+	}
+
+	@Override
+	public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+		return getTargetConnection().createStruct(typeName, attributes);
+	}
+
+	@Override
+	public boolean getAutoCommit() throws SQLException {
+		checkOpen();
+		if (connection != null)
+			return connection.getAutoCommit();
+		return autoCommit == null || autoCommit;
+	}
+
+	@Override
+	public String getCatalog() throws SQLException {
+		return getTargetConnection().getCatalog();
+	}
+
+	@Override
+	public Properties getClientInfo() throws SQLException {
+		return getTargetConnection().getClientInfo();
+	}
+
+	@Override
+	public String getClientInfo(String name) throws SQLException {
+		return getTargetConnection().getClientInfo(name);
+	}
+
+	@Override
+	public int getHoldability() throws SQLException {
+		return getTargetConnection().getHoldability();
+	}
+
+	@Override
+	public DatabaseMetaData getMetaData() throws SQLException {
+		return getTargetConnection().getMetaData();
+	}
+
+	@Override
+	public int getNetworkTimeout() throws SQLException {
+		return getTargetConnection().getNetworkTimeout();
+	}
+
+	@Override
+	public String getSchema() throws SQLException {
+		return getTargetConnection().getSchema();
+	}
+
+	/**
+	 * Obtains the connection once it is used, from a read replica if it has been
+	 * set read only, applying the settings given meanwhile
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @return
+	 * @throws SQLException
+	 */
+	private Connection getTargetConnection() throws SQLException {
+		checkOpen();
+		if (connection == null) {
+			Connection targetConnection = connectionSupplier.getConnection(readOnly);
+			try {
+				if (readOnly)
+					targetConnection.setReadOnly(true);
+				if (transactionIsolation != null)
+					targetConnection.setTransactionIsolation(transactionIsolation);
+				if (autoCommit != null)
+					targetConnection.setAutoCommit(autoCommit);
+			} catch (SQLException | RuntimeException e) {
+				targetConnection.close();
+				throw e;
+			}
+			connection = targetConnection;
+		}
+		return connection;
+	}
+
+	@Override
+	public int getTransactionIsolation() throws SQLException {
+		checkOpen();
+		if (connection == null && transactionIsolation != null)
+			return transactionIsolation;
+		return getTargetConnection().getTransactionIsolation();
+	}
+
+	@Override
+	public Map<String, Class<?>> getTypeMap() throws SQLException {
+		return getTargetConnection().getTypeMap();
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		checkOpen();
+		return connection != null ? connection.getWarnings() : null;
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return closed;
+	}
+
+	@Override
+	public boolean isReadOnly() throws SQLException {
+		checkOpen();
+		return connection != null ? connection.isReadOnly() : readOnly;
+	}
+
+	@Override
+	public boolean isValid(int timeout) throws SQLException {
+		return !closed && (connection == null || connection.isValid(timeout));
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || getTargetConnection().isWrapperFor(iface);
+	}
+
+	@Override
+	public String nativeSQL(String sql) throws SQLException {
+		return getTargetConnection().nativeSQL(sql);
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql) throws SQLException {
+		return getTargetConnection().prepareCall(sql);
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return getTargetConnection().prepareCall(sql, resultSetType, resultSetConcurrency);
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return getTargetConnection().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return getTargetConnection().prepareStatement(sql);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+		return getTargetConnection().prepareStatement(sql, columnNames);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		return getTargetConnection().prepareStatement(sql, autoGeneratedKeys);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return getTargetConnection().prepareStatement(sql, resultSetType, resultSetConcurrency);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return getTargetConnection().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+		return getTargetConnection().prepareStatement(sql, columnIndexes);
+	}
+
+	@Override
+	public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+		getTargetConnection().releaseSavepoint(savepoint);
+	}
+
+	@Override
+	public void rollback() throws SQLException {
+		getTargetConnection().rollback();
+	}
+
+	@Override
+	public void rollback(Savepoint savepoint) throws SQLException {
+		getTargetConnection().rollback(savepoint);
+	}
+
+	@Override
+	public void setAutoCommit(boolean autoCommit) throws SQLException {
+		checkOpen();
+		if (connection != null)
+			connection.setAutoCommit(autoCommit);
+		else
+			this.autoCommit = autoCommit;
+	}
+
+	@Override
+	public void setCatalog(String catalog) throws SQLException {
+		getTargetConnection().setCatalog(catalog);
+	}
+
+	@Override
+	public void setClientInfo(Properties properties) throws SQLClientInfoException {
+		try {
+			getTargetConnection().setClientInfo(properties);
+		} catch (SQLClientInfoException e) {
+			throw e;
+		} catch (SQLException e) {
+			throw new SQLClientInfoException(e.getMessage(), null, e);
+		}
+	}
+
+	@Override
+	public void setClientInfo(String name, String value) throws SQLClientInfoException {
+		try {
+			getTargetConnection().setClientInfo(name, value);
+		} catch (SQLClientInfoException e) {
+			throw e;
+		} catch (SQLException e) {
+			throw new SQLClientInfoException(e.getMessage(), null, e);
+		}
+	}
+
+	@Override
+	public void setHoldability(int holdability) throws SQLException {
+		getTargetConnection().setHoldability(holdability);
+	}
+
+	@Override
+	public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+		getTargetConnection().setNetworkTimeout(executor, milliseconds);
+	}
+
+	@Override
+	public void setReadOnly(boolean readOnly) throws SQLException {
+		checkOpen();
+		if (connection != null)
+			connection.setReadOnly(readOnly);
+		else
+			this.readOnly = readOnly;
+	}
+
+	@Override
+	public Savepoint setSavepoint() throws SQLException {
+		return getTargetConnection().setSavepoint();
+	}
+
+	@Override
+	public Savepoint setSavepoint(String name) throws SQLException {
+		return getTargetConnection().setSavepoint(name);
+	}
+
+	@Override
+	public void setSchema(String schema) throws SQLException {
+		getTargetConnection().setSchema(schema);
+	}
+
+	@Override
+	public void setTransactionIsolation(int level) throws SQLException {
+		checkOpen();
+		if (connection != null)
+			connection.setTransactionIsolation(level);
+		else
+			this.transactionIsolation = level;
+	}
+
+	@Override
+	public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+		getTargetConnection().setTypeMap(map);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this))
+			return (T) this;
+		return getTargetConnection().unwrap(iface);
+	}
+}
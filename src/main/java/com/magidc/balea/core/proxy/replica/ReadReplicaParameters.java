@@ -0,0 +1,106 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.replica;
+
+/**
+ * 
+ * @author magidc <info@magidc.io>
+ * 
+ */
+public class ReadReplicaParameters {
+	private long samplePeriodMillis = 10000;
+	private double requestsPerSecondPerReplica = 50;
+	private int maximumReplicas = 2;
+	private double rateSmoothing = 0.5;
+	private ReadReplicaProvisioner readReplicaProvisioner;
+
+	public int getMaximumReplicas() {
+		return maximumReplicas;
+	}
+
+	public double getRateSmoothing() {
+		return rateSmoothing;
+	}
+
+	public ReadReplicaProvisioner getReadReplicaProvisioner() {
+		return readReplicaProvisioner;
+	}
+
+	public double getRequestsPerSecondPerReplica() {
+		return requestsPerSecondPerReplica;
+	}
+
+	public long getSamplePeriodMillis() {
+		return samplePeriodMillis;
+	}
+
+	/**
+	 * Maximum number of read replicas of a data source
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param maximumReplicas
+	 */
+	public void setMaximumReplicas(int maximumReplicas) {
+		this.maximumReplicas = maximumReplicas;
+	}
+
+	/**
+	 * Weight of the previous read rate of a data source in its smoothed read
+	 * rate, between 0 (last sample only) and 1, so replicas are not started and
+	 * retired on short bursts
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param rateSmoothing
+	 */
+	public void setRateSmoothing(double rateSmoothing) {
+		this.rateSmoothing = rateSmoothing;
+	}
+
+	/**
+	 * Required, read replicas are started once provisioned by it
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readReplicaProvisioner
+	 */
+	public void setReadReplicaProvisioner(ReadReplicaProvisioner readReplicaProvisioner) {
+		this.readReplicaProvisioner = readReplicaProvisioner;
+	}
+
+	/**
+	 * Read only requests per second served by each read replica. A data source
+	 * gets a read replica for each time its read rate reaches it
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param requestsPerSecondPerReplica
+	 */
+	public void setRequestsPerSecondPerReplica(double requestsPerSecondPerReplica) {
+		this.requestsPerSecondPerReplica = requestsPerSecondPerReplica;
+	}
+
+	/**
+	 * Period of read rate sampling, when read replicas are started or stop
+	 * receiving requests
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param samplePeriodMillis
+	 */
+	public void setSamplePeriodMillis(long samplePeriodMillis) {
+		this.samplePeriodMillis = samplePeriodMillis;
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.replica;
+
+import java.io.IOException;
+
+import com.magidc.balea.core.model.ReadReplicaId;
+
+/**
+ * Prepares the data of a read replica before it is started, i.e. sets up its
+ * data directories (see
+ * {@link com.magidc.balea.core.core.config.DataSourceConfigurer#getDataDirPath(Object, String)})
+ * as a standby server of its primary. Read replicas are never provisioned
+ * like new data sources (data directory templates or database
+ * initialization), as they would serve an empty database
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+@FunctionalInterface
+public interface ReadReplicaProvisioner {
+	/**
+	 * Called each time a read replica is about to be started, replicas already
+	 * provisioned are expected to be left as they are
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readReplicaId
+	 * @throws IOException
+	 *             If the replica could not be provisioned, it is not started
+	 */
+	public void provisionReadReplica(ReadReplicaId readReplicaId) throws IOException;
+}
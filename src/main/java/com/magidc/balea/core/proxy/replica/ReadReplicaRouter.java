@@ -0,0 +1,239 @@
+/*
+ *
+ *  Copyright 2019 magidc.io
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package com.magidc.balea.core.proxy.replica;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.magidc.balea.core.metrics.MetricsRecorder;
+import com.magidc.balea.core.model.ReadReplicaId;
+import com.magidc.balea.core.proxy.cache.DataSourceCacheManager;
+import com.magidc.balea.core.proxy.cache.model.ManagedDataSource;
+
+/**
+ * Spreads read only requests of hot data sources across read replicas. Read
+ * only requests are counted per data source and their rate is sampled
+ * periodically: a data source gets a read replica for each time its smoothed
+ * read rate reaches the requests per second per replica, up to the maximum.
+ * Replicas are data sources of the cache under a {@link ReadReplicaId}, started
+ * only while the cache has free capacity, so they never evict data sources in
+ * use. When the cache starts loading a replica, the read replica provisioner
+ * prepares its data. When the read rate drops, the replicas no longer needed stop receiving
+ * requests and expire as any other data source. Replicas are expected to lag
+ * behind their primary, so only requests tolerating stale reads should be read
+ * only
+ * 
+ * @author magidc <info@magidc.io>
+ *
+ */
+public class ReadReplicaRouter {
+	private static final class ReadLoad {
+		private final LongAdder requests = new LongAdder();
+		private double requestsPerSecond;
+		private volatile int replicas;
+	}
+
+	private final DataSourceCacheManager dataSourceCacheManager;
+	private final ReadReplicaParameters readReplicaParameters;
+	private final ConcurrentMap<Object, ReadLoad> readLoads = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService samplingScheduler;
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceCacheManager
+	 * @param readReplicaParameters
+	 * @param metricsRecorder
+	 * @throws IllegalArgumentException
+	 *             If no read replica provisioner is set
+	 */
+	public ReadReplicaRouter(DataSourceCacheManager dataSourceCacheManager, ReadReplicaParameters readReplicaParameters, MetricsRecorder metricsRecorder) {
+		if (readReplicaParameters.getReadReplicaProvisioner() == null)
+			throw new IllegalArgumentException("Read replicas require a read replica provisioner");
+		this.dataSourceCacheManager = dataSourceCacheManager;
+		this.readReplicaParameters = readReplicaParameters;
+		metricsRecorder.registerGauge("balea.readReplicas.target", this::getTargetReplicas);
+		this.samplingScheduler = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("balea-read-replica-%d").build());
+		long samplePeriodMillis = readReplicaParameters.getSamplePeriodMillis();
+		this.samplingScheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sampleReadLoads();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}, samplePeriodMillis, samplePeriodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Gets the data source serving a read only request: one of the started read
+	 * replicas of the data source chosen at random, or the data source itself if
+	 * it has none
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return
+	 * @throws SQLException
+	 */
+	public ManagedDataSource acquireReadOnlyDataSource(Object dataSourceId) throws SQLException {
+		ReadLoad readLoad = readLoads.get(dataSourceId);
+		if (readLoad == null)
+			readLoad = readLoads.computeIfAbsent(dataSourceId, id -> new ReadLoad());
+		readLoad.requests.increment();
+		int replicas = readLoad.replicas;
+		if (replicas > 0) {
+			int firstReplicaIndex = ThreadLocalRandom.current().nextInt(replicas);
+			for (int i = 0; i < replicas; i++) {
+				ManagedDataSource readReplica = dataSourceCacheManager
+						.findManagedDataSource(new ReadReplicaId(dataSourceId, (firstReplicaIndex + i) % replicas + 1));
+				if (readReplica != null)
+					return readReplica;
+			}
+		}
+		return dataSourceCacheManager.acquireManagedDataSource(dataSourceId);
+	}
+
+	/**
+	 * Stops sampling read rates. Read replicas already started expire as usual
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void close() {
+		samplingScheduler.shutdownNow();
+	}
+
+	/**
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @return Number of read replicas the data source should have for its read
+	 *         rate
+	 */
+	public int getTargetReplicas(Object dataSourceId) {
+		ReadLoad readLoad = readLoads.get(dataSourceId);
+		return readLoad != null ? readLoad.replicas : 0;
+	}
+
+	private int getTargetReplicas() {
+		int targetReplicas = 0;
+		for (ReadLoad readLoad : readLoads.values())
+			targetReplicas += readLoad.replicas;
+		return targetReplicas;
+	}
+
+	/**
+	 * Opens a connection for a read only request, leased until it is closed. If
+	 * the chosen data source is evicted while the connection is being leased,
+	 * another one is chosen
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param dataSourceId
+	 * @param username
+	 *            Null for the default user
+	 * @param password
+	 * @return
+	 * @throws SQLException
+	 * @see #acquireReadOnlyDataSource(Object)
+	 */
+	public Connection leaseReadOnlyConnection(Object dataSourceId, String username, String password) throws SQLException {
+		Connection connection;
+		do
+			connection = dataSourceCacheManager.tryLeaseConnection(acquireReadOnlyDataSource(dataSourceId), username, password);
+		while (connection == null);
+		return connection;
+	}
+
+	/**
+	 * Prepares the data of a read replica about to be started. Run by the cache
+	 * when it starts loading the replica
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readReplicaId
+	 * @throws IOException
+	 */
+	public void provisionReadReplica(ReadReplicaId readReplicaId) throws IOException {
+		readReplicaParameters.getReadReplicaProvisioner().provisionReadReplica(readReplicaId);
+	}
+
+	/**
+	 * Updates the smoothed read rate and target number of read replicas of every
+	 * data source, starting the missing replicas. Data sources with read
+	 * replicas are kept in the cache, as read only requests do not access them.
+	 * Run periodically by the read replica router
+	 * 
+	 * @author magidc <info@magidc.io>
+	 */
+	public void sampleReadLoads() {
+		double samplePeriodSeconds = readReplicaParameters.getSamplePeriodMillis() / 1000d;
+		double rateSmoothing = readReplicaParameters.getRateSmoothing();
+		for (Iterator<Map.Entry<Object, ReadLoad>> iterator = readLoads.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry<Object, ReadLoad> readLoadEntry = iterator.next();
+			ReadLoad readLoad = readLoadEntry.getValue();
+			long requests = readLoad.requests.sumThenReset();
+			readLoad.requestsPerSecond = rateSmoothing * readLoad.requestsPerSecond + (1 - rateSmoothing) * requests / samplePeriodSeconds;
+			int replicas = (int) Math.min(readReplicaParameters.getMaximumReplicas(),
+					Math.floor(readLoad.requestsPerSecond / readReplicaParameters.getRequestsPerSecondPerReplica()));
+			readLoad.replicas = replicas;
+			if (replicas == 0) {
+				if (requests == 0)
+					iterator.remove();
+				continue;
+			}
+			Object dataSourceId = readLoadEntry.getKey();
+			dataSourceCacheManager.touchDataSource(dataSourceId);
+			for (int replicaIndex = 1; replicaIndex <= replicas; replicaIndex++)
+				startReadReplica(new ReadReplicaId(dataSourceId, replicaIndex));
+		}
+	}
+
+	/**
+	 * Starts a read replica unless it is already started. Loads in progress are
+	 * shared, and the replica is only provisioned once its load starts, so
+	 * starting a replica again while it loads or while the cache has no capacity
+	 * does not provision it again
+	 * 
+	 * @author magidc <info@magidc.io>
+	 * @param readReplicaId
+	 */
+	private void startReadReplica(ReadReplicaId readReplicaId) {
+		if (dataSourceCacheManager.isDataSourceManaged(readReplicaId))
+			return;
+		CompletableFuture<ManagedDataSource> readReplicaLoad = dataSourceCacheManager.prefetchDataSource(readReplicaId);
+		if (readReplicaLoad != null)
+			readReplicaLoad.whenComplete((readReplica, failure) -> {
+				if (failure != null)
+					failure.printStackTrace();
+			});
+	}
+}